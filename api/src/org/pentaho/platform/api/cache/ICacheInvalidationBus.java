@@ -0,0 +1,47 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.api.cache;
+
+/**
+ * Carries cache invalidations between the nodes of a cluster, so that an entry a node removes from a shared region is
+ * dropped from the other nodes' copies of that region too, rather than served until it expires.
+ * <p>
+ * A node publishes the invalidations it makes; they are delivered asynchronously to the
+ * {@link ICacheInvalidationListener listeners} of every other node, never to those of the node that published them.
+ * Delivery is best effort, so regions should still expire their entries eventually. Implementations also carry the
+ * last modified times of the {@link ILastModifiedCacheItem items} in the {@link ICacheExpirationRegistry}.
+ */
+public interface ICacheInvalidationBus {
+
+  /**
+   * Tells the other nodes that the entry with <code>key</code> was removed from <code>region</code>.
+   */
+  public void publishRemove(String region, Object key);
+
+  /**
+   * Tells the other nodes that <code>region</code> was cleared.
+   */
+  public void publishClear(String region);
+
+  /**
+   * Adds a listener that applies the invalidations made by the other nodes.
+   */
+  public void addListener(ICacheInvalidationListener listener);
+
+  public void removeListener(ICacheInvalidationListener listener);
+
+}
@@ -0,0 +1,35 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.api.cache;
+
+/**
+ * Applies to the local caches the invalidations another node published on the {@link ICacheInvalidationBus}. The
+ * invalidations must not be published again.
+ */
+public interface ICacheInvalidationListener {
+
+  /**
+   * Removes the entry with <code>key</code> from <code>region</code>, if the region exists.
+   */
+  public void onRemove(String region, Object key);
+
+  /**
+   * Clears <code>region</code>, if it exists.
+   */
+  public void onClear(String region);
+
+}
@@ -0,0 +1,36 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.api.cache;
+
+/**
+ * Estimates the memory an entry of a bounded cache region holds, so that regions can be limited by weight rather than
+ * by entry count.
+ */
+public interface ICacheWeigher {
+
+  /**
+   * Returns the weight of the entry, in bytes; must not be negative. It is computed once, when the entry is put.
+   *
+   * @param key
+   *          the key of the entry
+   * @param value
+   *          the value of the entry
+   * @return the estimated size of the entry
+   */
+  public long weigh(Object key, Object value);
+
+}
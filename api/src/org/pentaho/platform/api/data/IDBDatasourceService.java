@@ -37,15 +37,23 @@ public interface IDBDatasourceService {
    public static final String MAX_WAIT_KEY = "POOLING_maxWait";
    public static final String QUERY_KEY = "query";
 
+  /**
+   * Cache region of the query results cached per datasource. The results of a datasource are stamped with the
+   * generation kept in the region under the datasource name; removing it invalidates them.
+   */
+  public static final String RESULT_CACHE = "sql-result-cache"; //$NON-NLS-1$
+
   /**
    * This method clears the JNDI DS cache.  The need exists because after a JNDI
-   * connection edit the old DS must be removed from the cache.
+   * connection edit the old DS must be removed from the cache. The query results
+   * cached in the {@link #RESULT_CACHE} region are dropped too.
    */
   public void clearCache();
 
   /**
    * This method clears the JNDI DS cache.  The need exists because after a JNDI
-   * connection edit the old DS must be removed from the cache.
+   * connection edit the old DS must be removed from the cache. The query results
+   * cached for the datasource in the {@link #RESULT_CACHE} region are invalidated too.
    */
   public void clearDataSource(String dsName);
 
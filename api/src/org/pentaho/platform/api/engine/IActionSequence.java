@@ -56,6 +56,35 @@ public interface IActionSequence extends ISequenceDefinition {
    */
   public boolean getLoopUsingPeek();
 
+  /**
+   * Returns the number of iterations of the loop that may run at the same
+   * time, set by the <code>parallel</code> and <code>max-threads</code>
+   * attributes of the loop.
+   * 
+   * @return the maximum number of concurrent iterations; 1 if the iterations
+   * run one after another
+   */
+  public int getLoopMaxThreads();
+
+  /**
+   * Returns whether the outputs of parallel iterations are applied in
+   * iteration order, so that a parallel loop ends with the outputs of its
+   * last iteration, as a sequential loop does.
+   * 
+   * @return false if the <code>ordered</code> attribute of the loop is false,
+   * otherwise true
+   */
+  public boolean getLoopOrdered();
+
+  /**
+   * Returns whether the first failed iteration stops the loop. If not, the
+   * remaining iterations run and the loop fails once they are done.
+   * 
+   * @return false if the <code>on-error</code> attribute of the loop is
+   * <code>continue</code>, otherwise true
+   */
+  public boolean getLoopFailFast();
+
   /**
    * Returns whether the ActionSequence has a loop in its definition.
    * 
@@ -23,6 +23,21 @@ import java.util.Set;
 public interface ICacheManager extends ILogoutListener {
   public static final String SESSION ="SESSION"; //$NON-NLS-1$
   public static final String GLOBAL ="GLOBAL"; //$NON-NLS-1$
+
+  /**
+   * Property of {@link #addCacheRegion(String, Properties)} asking for a region that keeps its values off the Java
+   * heap, holding at most the given number of bytes. Values put in such a region must be byte arrays,
+   * <code>ByteBuffer</code>s or <code>ByteArrayOutputStream</code>s; what they are read back as depends on the
+   * implementation. Implementations without off-heap regions build an ordinary region.
+   */
+  public static final String OFF_HEAP_MAXIMUM_BYTES = "offHeapMaximumBytes"; //$NON-NLS-1$
+
+  /**
+   * Property of {@link #addCacheRegion(String, Properties)} asking for a region limited to the given estimated weight
+   * of its entries, in bytes, whatever the cache provider. Implementations that cannot bound a region by weight build
+   * an ordinary region.
+   */
+  public static final String MAXIMUM_WEIGHT = "maximumWeight"; //$NON-NLS-1$
   /**
    * Stops the cache by calling the cacheProvider stop method. This method
    * should be called either when the VM goes away, or when the web context
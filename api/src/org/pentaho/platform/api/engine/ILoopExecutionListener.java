@@ -0,0 +1,40 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software 
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this 
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html 
+ * or from the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+package org.pentaho.platform.api.engine;
+
+/**
+ * An execution listener that is also told when each iteration of a loop
+ * completes. The runtime context calls {@link #loopIterationComplete} on the
+ * thread that runs the action sequence, also for the iterations of a parallel
+ * loop, in the order in which their outputs are applied.
+ */
+public interface ILoopExecutionListener extends IExecutionListener {
+
+  /**
+   * Called once an iteration of a loop has run.
+   * 
+   * @param runtime the runtime context running the loop
+   * @param count the index of the iteration, as passed to {@link #loop}
+   * @param durationMillis the time the iteration took to run
+   * @param failure the exception that failed the iteration, or null if it
+   * succeeded
+   */
+  public void loopIterationComplete(IRuntimeContext runtime, long count, long durationMillis,
+      ActionSequenceException failure);
+
+}
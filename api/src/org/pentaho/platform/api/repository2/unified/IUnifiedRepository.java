@@ -35,6 +35,27 @@ public interface IUnifiedRepository {
    */
   RepositoryFileTree getTree(final String path, final int depth, final String filter, final boolean showHidden);
 
+  /**
+   * Gets a tree rooted at path, returning only one page of the root's immediate children. Children are sorted before
+   * the page is taken so that consecutive pages are stable. Paging applies to the first level only; each returned child
+   * is expanded to {@code depth - 1} levels as in {@link #getTree(String, int, String, boolean)}. Clients that expand
+   * folders on demand should use a small depth and call this method again for each expanded folder.
+   *
+   * @param path       path to file
+   * @param depth      0 fetches just file at path; positive integer n fetches node at path plus n levels of children;
+   *                   negative integer fetches all children
+   * @param filter     filter may be a full name or a partial name with one or more wildcard characters ("*"), or a
+   *                   disjunction (using the "|" character to represent logical OR) of these; filter does not apply to root node
+   * @param showHidden is a boolean which identify whether to include the hidden files/folders in the list or not
+   * @param showSystemFolders whether to include the root's immediate children marked with {@link #SYSTEM_FOLDER}; they
+   *                   are left out before the page is taken, so pages stay full
+   * @param offset     index of the first child of the root to return
+   * @param limit      maximum number of children of the root to return; negative integer returns all remaining children
+   * @return file or {@code null} if the file does not exist or access is denied
+   */
+  RepositoryFileTree getTree(final String path, final int depth, final String filter, final boolean showHidden,
+      final boolean showSystemFolders, final int offset, final int limit);
+
   /**
    * Gets file as it was at the given version.
    *
@@ -267,6 +288,46 @@ public interface IUnifiedRepository {
    */
   List<RepositoryFile> getChildren(final Serializable folderId, final String filter);
 
+  /**
+   * Returns one page of the children of this folder that match the specified filter. Children are sorted before the page
+   * is taken so that consecutive pages are stable.
+   *
+   * @param folderId id of folder whose children to fetch
+   * @param filter   filter may be a full name or a partial name with one or more wildcard characters ("*"), or a
+   *                 disjunction (using the "|" character to represent logical OR) of these
+   * @param offset   index of the first child to return
+   * @param limit    maximum number of children to return; negative integer returns all remaining children
+   * @return list of children (never {@code null})
+   */
+  List<RepositoryFile> getChildren(final Serializable folderId, final String filter, final int offset, final int limit);
+
+  /**
+   * Returns one page of the files (not folders) in this folder whose metadata value for {@code metadataKey} (see
+   * {@link #getFileMetadata(Serializable)}) equals {@code value}, such as the content generated from a given file. Only
+   * immediate children are considered. Implementations should use an index rather than read the metadata of every
+   * child. Files are sorted before the page is taken so that consecutive pages are stable.
+   *
+   * @param folderId    id of folder whose children to search
+   * @param metadataKey metadata key to compare
+   * @param value       metadata value to match
+   * @param offset      index of the first matching file to return
+   * @param limit       maximum number of files to return; negative integer returns all remaining files
+   * @return list of matching files (never {@code null})
+   */
+  List<RepositoryFile> getChildrenByMetadata(final Serializable folderId, final String metadataKey,
+      final String value, final int offset, final int limit);
+
+  /**
+   * Returns one page of the files and folders below {@link RepositoryQuery#getPath()} that match {@code query}. Only
+   * files the caller may read are returned. Implementations should find candidates using an index so that the cost of
+   * a search follows the number of matches rather than the size of the repository. Matches are sorted before the page
+   * is taken so that consecutive pages are stable.
+   *
+   * @param query search criteria, including the page to return
+   * @return list of matching files (never {@code null})
+   */
+  List<RepositoryFile> search(final RepositoryQuery query);
+
   /**
    * Updates a file and/or the data of a file.
    *
@@ -0,0 +1,494 @@
+package org.pentaho.platform.api.repository2.unified;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Immutable repository search criteria for {@link IUnifiedRepository#search(RepositoryQuery)}. Use the
+ * {@link Builder} to create instances. A file matches when it satisfies every criterion that is set; a query with no
+ * criteria matches every file and folder below {@link #getPath() path}.
+ *
+ * <p>
+ * Text criteria ({@link #getText() text}, {@link #getTitle() title} and {@link #getDescription() description}) are
+ * lists of words separated by whitespace. Each word must appear as a whole word, ignoring case.
+ * </p>
+ */
+public class RepositoryQuery implements Serializable {
+
+  // ~ Static fields/initializers ======================================================================================
+
+  private static final long serialVersionUID = 4376219358402335421L;
+
+  private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+"); //$NON-NLS-1$
+
+  // ~ Instance fields =================================================================================================
+
+  /**
+   * Folder whose descendants are searched. Defaults to the root folder.
+   */
+  private final String path;
+
+  /**
+   * Words to find anywhere in a file: its name, title, description, metadata or (indexed) content.
+   */
+  private final String text;
+
+  /**
+   * Name pattern with one or more wildcard characters ("*"); case is ignored.
+   */
+  private final String name;
+
+  /**
+   * Words to find in the title of a file for the {@link #locale}.
+   */
+  private final String title;
+
+  /**
+   * Words to find in the description of a file for the {@link #locale}.
+   */
+  private final String description;
+
+  private final String creatorId;
+
+  /**
+   * Mime type of the content of a file. Folders never match.
+   */
+  private final String mimeType;
+
+  /**
+   * Metadata values (see {@link IUnifiedRepository#getFileMetadata(Serializable)}) a file must have.
+   */
+  private final Map<String, String> metadata;
+
+  private final Date createdAfter;
+
+  private final Date createdBefore;
+
+  private final Date modifiedAfter;
+
+  private final Date modifiedBefore;
+
+  private final boolean includeFiles;
+
+  private final boolean includeFolders;
+
+  private final boolean showHidden;
+
+  /**
+   * Folders that are left out of the results, together with everything below them.
+   */
+  private final Set<String> excludedPaths;
+
+  /**
+   * Locale with which titles and descriptions are resolved and matched. Defaults to the locale of the caller.
+   */
+  private final String locale;
+
+  private final int offset;
+
+  private final int limit;
+
+  // ~ Constructors ===================================================================================================
+
+  private RepositoryQuery(final Builder builder) {
+    this.path = builder.path;
+    this.text = builder.text;
+    this.name = builder.name;
+    this.title = builder.title;
+    this.description = builder.description;
+    this.creatorId = builder.creatorId;
+    this.mimeType = builder.mimeType;
+    this.metadata = Collections.unmodifiableMap(new HashMap<String, String>(builder.metadata));
+    this.createdAfter = builder.createdAfter != null ? new Date(builder.createdAfter.getTime()) : null;
+    this.createdBefore = builder.createdBefore != null ? new Date(builder.createdBefore.getTime()) : null;
+    this.modifiedAfter = builder.modifiedAfter != null ? new Date(builder.modifiedAfter.getTime()) : null;
+    this.modifiedBefore = builder.modifiedBefore != null ? new Date(builder.modifiedBefore.getTime()) : null;
+    this.includeFiles = builder.includeFiles;
+    this.includeFolders = builder.includeFolders;
+    this.showHidden = builder.showHidden;
+    this.excludedPaths = Collections.unmodifiableSet(new HashSet<String>(builder.excludedPaths));
+    this.locale = builder.locale;
+    this.offset = builder.offset;
+    this.limit = builder.limit;
+  }
+
+  // ~ Methods =========================================================================================================
+
+  public String getPath() {
+    return path;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public String getCreatorId() {
+    return creatorId;
+  }
+
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  /**
+   * Returns the metadata values a file must have (never {@code null}).
+   */
+  public Map<String, String> getMetadata() {
+    return metadata;
+  }
+
+  public Date getCreatedAfter() {
+    return createdAfter != null ? new Date(createdAfter.getTime()) : null;
+  }
+
+  public Date getCreatedBefore() {
+    return createdBefore != null ? new Date(createdBefore.getTime()) : null;
+  }
+
+  public Date getModifiedAfter() {
+    return modifiedAfter != null ? new Date(modifiedAfter.getTime()) : null;
+  }
+
+  public Date getModifiedBefore() {
+    return modifiedBefore != null ? new Date(modifiedBefore.getTime()) : null;
+  }
+
+  public boolean isIncludeFiles() {
+    return includeFiles;
+  }
+
+  public boolean isIncludeFolders() {
+    return includeFolders;
+  }
+
+  public boolean isShowHidden() {
+    return showHidden;
+  }
+
+  public Set<String> getExcludedPaths() {
+    return excludedPaths;
+  }
+
+  public String getLocale() {
+    return locale;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Returns the maximum number of files to return; a negative integer returns all remaining files.
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Returns {@code true} if {@code file} satisfies the criteria that can be checked against a {@link RepositoryFile}:
+   * path, excluded paths, name, title, description, creator, dates, hidden and file or folder. {@link #getText() text},
+   * {@link #getMimeType() mimeType} and {@link #getMetadata() metadata} are not checked. Repositories use this to
+   * verify the candidates found by their index. {@code file} must have been read with the query's locale.
+   */
+  public boolean accepts(final RepositoryFile file) {
+    if (file.isFolder() ? !includeFolders : !includeFiles) {
+      return false;
+    }
+    if (!showHidden && file.isHidden()) {
+      return false;
+    }
+    if (!isDescendant(file.getPath()) || isExcluded(file.getPath())) {
+      return false;
+    }
+    if (name != null && !matchesPattern(file.getName(), name)) {
+      return false;
+    }
+    if (title != null && !containsWords(file.getTitle(), title)) {
+      return false;
+    }
+    if (description != null && !containsWords(file.getDescription(), description)) {
+      return false;
+    }
+    if (creatorId != null && !creatorId.equals(file.getCreatorId())) {
+      return false;
+    }
+    if (!inRange(file.getCreatedDate(), createdAfter, createdBefore)) {
+      return false;
+    }
+    return inRange(file.getLastModifiedDate(), modifiedAfter, modifiedBefore);
+  }
+
+  private boolean isDescendant(final String filePath) {
+    if (filePath == null) {
+      return false;
+    }
+    String folderPath = path.endsWith(RepositoryFile.SEPARATOR) ? path : path + RepositoryFile.SEPARATOR;
+    return filePath.length() > folderPath.length() && filePath.startsWith(folderPath);
+  }
+
+  private boolean isExcluded(final String filePath) {
+    for (String excludedPath : excludedPaths) {
+      if (filePath.equals(excludedPath) || filePath.startsWith(excludedPath + RepositoryFile.SEPARATOR)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean inRange(final Date date, final Date after, final Date before) {
+    if (after == null && before == null) {
+      return true;
+    }
+    if (date == null) {
+      return false;
+    }
+    return (after == null || date.after(after)) && (before == null || date.before(before));
+  }
+
+  /**
+   * Returns {@code true} if every word of {@code words} is a word of {@code in}, ignoring case.
+   */
+  public static boolean containsWords(final String in, final String words) {
+    Set<String> required = splitWords(words);
+    if (required.isEmpty()) {
+      return true;
+    }
+    return in != null && splitWords(in).containsAll(required);
+  }
+
+  /**
+   * Splits {@code in} into lower case words. Letters and digits form words; everything else separates them.
+   */
+  public static Set<String> splitWords(final String in) {
+    Set<String> words = new HashSet<String>();
+    for (String word : WORD_SEPARATOR.split(in.toLowerCase(Locale.ENGLISH))) {
+      if (word.length() > 0) {
+        words.add(word);
+      }
+    }
+    return words;
+  }
+
+  /**
+   * Returns {@code true} if {@code in} matches {@code pattern}, in which "*" matches any sequence of characters,
+   * ignoring case.
+   */
+  public static boolean matchesPattern(final String in, final String pattern) {
+    if (in == null) {
+      return false;
+    }
+    StringBuilder regex = new StringBuilder();
+    int start = 0;
+    int star;
+    while ((star = pattern.indexOf('*', start)) >= 0) {
+      regex.append(Pattern.quote(pattern.substring(start, star))).append(".*"); //$NON-NLS-1$
+      start = star + 1;
+    }
+    regex.append(Pattern.quote(pattern.substring(start)));
+    return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE).matcher(in).matches();
+  }
+
+  @Override
+  public String toString() {
+    return ToStringBuilder.reflectionToString(this);
+  }
+
+  // ~ Inner classes ===================================================================================================
+
+  public static class Builder {
+
+    private String path = RepositoryFile.SEPARATOR;
+
+    private String text;
+
+    private String name;
+
+    private String title;
+
+    private String description;
+
+    private String creatorId;
+
+    private String mimeType;
+
+    private Map<String, String> metadata = new HashMap<String, String>();
+
+    private Date createdAfter;
+
+    private Date createdBefore;
+
+    private Date modifiedAfter;
+
+    private Date modifiedBefore;
+
+    private boolean includeFiles = true;
+
+    private boolean includeFolders = true;
+
+    private boolean showHidden;
+
+    private Set<String> excludedPaths = new HashSet<String>();
+
+    private String locale;
+
+    private int offset;
+
+    private int limit = -1;
+
+    public Builder() {
+      super();
+    }
+
+    public Builder(final RepositoryQuery other) {
+      this.path(other.path).text(other.text).name(other.name).title(other.title).description(other.description)
+          .creatorId(other.creatorId).mimeType(other.mimeType).createdAfter(other.createdAfter)
+          .createdBefore(other.createdBefore).modifiedAfter(other.modifiedAfter).modifiedBefore(other.modifiedBefore)
+          .includeFiles(other.includeFiles).includeFolders(other.includeFolders).showHidden(other.showHidden)
+          .locale(other.locale).offset(other.offset).limit(other.limit);
+      this.metadata.putAll(other.metadata);
+      this.excludedPaths.addAll(other.excludedPaths);
+    }
+
+    public RepositoryQuery build() {
+      return new RepositoryQuery(this);
+    }
+
+    public Builder path(final String path1) {
+      this.path = path1 != null ? path1 : RepositoryFile.SEPARATOR;
+      return this;
+    }
+
+    public Builder text(final String text1) {
+      this.text = blankToNull(text1);
+      return this;
+    }
+
+    public Builder name(final String name1) {
+      this.name = blankToNull(name1);
+      return this;
+    }
+
+    public Builder title(final String title1) {
+      this.title = blankToNull(title1);
+      return this;
+    }
+
+    public Builder description(final String description1) {
+      this.description = blankToNull(description1);
+      return this;
+    }
+
+    public Builder creatorId(final String creatorId1) {
+      this.creatorId = blankToNull(creatorId1);
+      return this;
+    }
+
+    public Builder mimeType(final String mimeType1) {
+      this.mimeType = blankToNull(mimeType1);
+      return this;
+    }
+
+    public Builder metadata(final String key, final String value) {
+      notNull(key);
+      notNull(value);
+      this.metadata.put(key, value);
+      return this;
+    }
+
+    public Builder createdAfter(final Date createdAfter1) {
+      this.createdAfter = createdAfter1;
+      return this;
+    }
+
+    public Builder createdBefore(final Date createdBefore1) {
+      this.createdBefore = createdBefore1;
+      return this;
+    }
+
+    public Builder modifiedAfter(final Date modifiedAfter1) {
+      this.modifiedAfter = modifiedAfter1;
+      return this;
+    }
+
+    public Builder modifiedBefore(final Date modifiedBefore1) {
+      this.modifiedBefore = modifiedBefore1;
+      return this;
+    }
+
+    public Builder includeFiles(final boolean includeFiles1) {
+      this.includeFiles = includeFiles1;
+      return this;
+    }
+
+    public Builder includeFolders(final boolean includeFolders1) {
+      this.includeFolders = includeFolders1;
+      return this;
+    }
+
+    public Builder showHidden(final boolean showHidden1) {
+      this.showHidden = showHidden1;
+      return this;
+    }
+
+    /**
+     * Leaves the folder at {@code path1} and everything below it out of the results.
+     */
+    public Builder excludePath(final String path1) {
+      notNull(path1);
+      this.excludedPaths.add(path1.endsWith(RepositoryFile.SEPARATOR) && path1.length() > 1 ? path1.substring(0,
+          path1.length() - 1) : path1);
+      return this;
+    }
+
+    public Builder locale(final String locale1) {
+      this.locale = blankToNull(locale1);
+      return this;
+    }
+
+    public Builder offset(final int offset1) {
+      if (offset1 < 0) {
+        throw new IllegalArgumentException();
+      }
+      this.offset = offset1;
+      return this;
+    }
+
+    public Builder limit(final int limit1) {
+      this.limit = limit1;
+      return this;
+    }
+
+    private static String blankToNull(final String in) {
+      return in != null && in.trim().length() > 0 ? in.trim() : null;
+    }
+
+    private static void notNull(final Object in) {
+      if (in == null) {
+        throw new IllegalArgumentException();
+      }
+    }
+
+  }
+
+}
@@ -43,6 +43,8 @@ public class SimpleRepositoryFileData implements IRepositoryFileData {
 
   private String mimeType;
 
+  private Long size;
+
   // ~ Constructors ====================================================================================================
 
   public SimpleRepositoryFileData(final InputStream stream, final String encoding, final String mimeType) {
@@ -52,6 +54,16 @@ public class SimpleRepositoryFileData implements IRepositoryFileData {
     this.mimeType = mimeType;
   }
 
+  /**
+   * @param size
+   *          the number of bytes in {@code stream}, as recorded by the store it is read from
+   */
+  public SimpleRepositoryFileData(final InputStream stream, final String encoding, final String mimeType,
+      final long size) {
+    this(stream, encoding, mimeType);
+    this.size = size;
+  }
+
   // ~ Methods =========================================================================================================
 
   /**
@@ -94,6 +106,15 @@ public class SimpleRepositoryFileData implements IRepositoryFileData {
     return mimeType;
   }
 
+  /**
+   * Returns the number of bytes in the data stream, if the store it is read from recorded it.
+   * 
+   * @return size or {@code -1} if unknown
+   */
+  public long getSize() {
+    return size != null ? size.longValue() : -1L;
+  }
+
   /* (non-Javadoc)
    * @see org.pentaho.platform.api.repository2.unified.IRepositoryFileData#getDataSize()
    */
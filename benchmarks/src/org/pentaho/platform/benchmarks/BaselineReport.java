@@ -0,0 +1,174 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Compares two sets of JMH results written with <code>-rf json</code>: the score and the normalized allocation rate
+ * of each benchmark, and of each of its parameter combinations, in the baseline and in the last run. A change in
+ * score worse than the threshold, or a growth in allocation per operation beyond it, is flagged as a regression;
+ * whether a higher score is better depends on the benchmark mode, higher being better for throughput and lower for
+ * the time modes.
+ * <p>
+ * Usage: <code>BaselineReport baseline.json results.json report.txt thresholdPercent</code>. The report is written to
+ * the report file and to standard out; the run fails when there are regressions.
+ */
+public class BaselineReport {
+
+  private static final String ALLOC_RATE_NORM = "gc.alloc.rate.norm"; //$NON-NLS-1$
+
+  private static final String ROW_FORMAT = "%-90s %14s %14s %9s %9s %s%n"; //$NON-NLS-1$
+
+  public static void main(final String[] args) throws IOException, JSONException {
+    if (args.length != 4) {
+      System.err.println("Usage: BaselineReport <baseline> <results> <report> <thresholdPercent>"); //$NON-NLS-1$
+      System.exit(2);
+    }
+    Map<String, Result> baseline = read(new File(args[0]));
+    Map<String, Result> results = read(new File(args[1]));
+    double threshold = Double.parseDouble(args[3]);
+
+    StringBuilder report = new StringBuilder();
+    report.append(String.format(ROW_FORMAT, "Benchmark", "Baseline", "Score", "Score %", "Alloc %", "")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+    int regressions = 0;
+    for (Map.Entry<String, Result> entry : results.entrySet()) {
+      Result result = entry.getValue();
+      Result base = baseline.get(entry.getKey());
+      if (base == null) {
+        report.append(String.format(ROW_FORMAT, entry.getKey(), "-", format(result.score, result.unit), "-", "-", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            "NEW")); //$NON-NLS-1$
+        continue;
+      }
+      double scoreChange = change(base.score, result.score);
+      double allocChange = change(base.allocPerOp, result.allocPerOp);
+      // a positive improvement is better whichever way the mode counts
+      double improvement = result.higherIsBetter() ? scoreChange : -scoreChange;
+      String flag = ""; //$NON-NLS-1$
+      // allocating more per operation is a regression even when the score holds
+      if (improvement < -threshold || allocChange > threshold) {
+        flag = "REGRESSION"; //$NON-NLS-1$
+        regressions++;
+      } else if (improvement > threshold) {
+        flag = "IMPROVED"; //$NON-NLS-1$
+      }
+      report.append(String.format(ROW_FORMAT, entry.getKey(), format(base.score, base.unit), format(result.score,
+          result.unit), percent(scoreChange), percent(allocChange), flag));
+    }
+    for (String key : baseline.keySet()) {
+      if (!results.containsKey(key)) {
+        report.append(String.format(ROW_FORMAT, key, format(baseline.get(key).score, baseline.get(key).unit), "-", //$NON-NLS-1$
+            "-", "-", "NOT RUN")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      }
+    }
+    report.append(String.format("%n%d regression(s) beyond %s%%%n", regressions, args[3])); //$NON-NLS-1$
+
+    System.out.print(report);
+    FileUtils.writeStringToFile(new File(args[2]), report.toString(), "UTF-8"); //$NON-NLS-1$
+    if (regressions > 0) {
+      System.exit(1);
+    }
+  }
+
+  private static Map<String, Result> read(final File file) throws IOException, JSONException {
+    JSONArray entries = new JSONArray(FileUtils.readFileToString(file, "UTF-8")); //$NON-NLS-1$
+    Map<String, Result> results = new LinkedHashMap<String, Result>();
+    for (int i = 0; i < entries.length(); i++) {
+      JSONObject entry = entries.getJSONObject(i);
+      JSONObject primary = entry.getJSONObject("primaryMetric"); //$NON-NLS-1$
+      Result result = new Result();
+      result.mode = entry.getString("mode"); //$NON-NLS-1$
+      result.score = primary.getDouble("score"); //$NON-NLS-1$
+      result.unit = primary.getString("scoreUnit"); //$NON-NLS-1$
+      result.allocPerOp = Double.NaN;
+      JSONObject secondary = entry.optJSONObject("secondaryMetrics"); //$NON-NLS-1$
+      if (secondary != null) {
+        Iterator<?> names = secondary.keys();
+        while (names.hasNext()) {
+          String name = (String) names.next();
+          // the profiler prefixes its metric names with a marker that differs between JMH versions
+          if (name.endsWith(ALLOC_RATE_NORM)) {
+            result.allocPerOp = secondary.getJSONObject(name).getDouble("score"); //$NON-NLS-1$
+          }
+        }
+      }
+      results.put(key(entry), result);
+    }
+    return results;
+  }
+
+  private static String key(final JSONObject entry) throws JSONException {
+    StringBuilder key = new StringBuilder(entry.getString("benchmark")); //$NON-NLS-1$
+    JSONObject params = entry.optJSONObject("params"); //$NON-NLS-1$
+    if (params != null) {
+      // sort the parameters so that keys do not depend on the order they were written in
+      Map<String, String> sorted = new TreeMap<String, String>();
+      Iterator<?> names = params.keys();
+      while (names.hasNext()) {
+        String name = (String) names.next();
+        sorted.put(name, params.getString(name));
+      }
+      key.append(sorted);
+    }
+    key.append(' ').append(entry.getString("mode")); //$NON-NLS-1$
+    return key.toString();
+  }
+
+  private static double change(final double before, final double after) {
+    if (Double.isNaN(before) || Double.isNaN(after) || before == 0.0) {
+      return Double.NaN;
+    }
+    return (after - before) * 100.0 / before;
+  }
+
+  private static String format(final double score, final String unit) {
+    return String.format("%.3f %s", score, unit); //$NON-NLS-1$
+  }
+
+  private static String percent(final double change) {
+    return Double.isNaN(change) ? "-" : String.format("%+.1f", change); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  private static class Result {
+    private String mode;
+
+    private double score;
+
+    private String unit;
+
+    private double allocPerOp;
+
+    private boolean higherIsBetter() {
+      return "thrpt".equals(mode); //$NON-NLS-1$
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.engine;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.pentaho.platform.util.beans.ComponentMetadata;
+
+/**
+ * Finding the methods through which a pojo component is driven: from the component metadata registry, and by
+ * scanning the methods of the class as every execution did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ComponentMetadataBenchmark {
+
+  private static final String[] INPUTS = { "QUERY", "JNDI", "MAXROWS", "TIMEOUT", "LIVE" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+  @Benchmark
+  public List<Method> registry() {
+    ComponentMetadata metadata = ComponentMetadata.forClass(SamplePojoComponent.class);
+    List<Method> methods = new ArrayList<Method>(INPUTS.length + 1);
+    for (String input : INPUTS) {
+      methods.addAll(metadata.getSetMethods().get(input));
+    }
+    methods.add(metadata.getExecuteMethod());
+    return methods;
+  }
+
+  @Benchmark
+  public List<Method> scan() {
+    List<Method> methods = new ArrayList<Method>(INPUTS.length + 1);
+    for (String input : INPUTS) {
+      for (Method method : SamplePojoComponent.class.getMethods()) {
+        if (method.getName().startsWith("set") && method.getName().substring(3).equalsIgnoreCase(input)) { //$NON-NLS-1$
+          methods.add(method);
+        }
+      }
+    }
+    for (Method method : SamplePojoComponent.class.getMethods()) {
+      if (method.getName().equalsIgnoreCase("execute")) { //$NON-NLS-1$
+        methods.add(method);
+      }
+    }
+    return methods;
+  }
+
+  public static class SamplePojoComponent {
+    private String query;
+
+    private String jndi;
+
+    private int maxRows;
+
+    private int timeout;
+
+    private boolean live;
+
+    private String result;
+
+    public void setQuery(final String query) {
+      this.query = query;
+    }
+
+    public void setJndi(final String jndi) {
+      this.jndi = jndi;
+    }
+
+    public void setMaxRows(final int maxRows) {
+      this.maxRows = maxRows;
+    }
+
+    public void setTimeout(final int timeout) {
+      this.timeout = timeout;
+    }
+
+    public void setLive(final boolean live) {
+      this.live = live;
+    }
+
+    public boolean validate() {
+      return query != null && jndi != null;
+    }
+
+    public boolean execute() {
+      result = query + jndi + maxRows + timeout + live;
+      return true;
+    }
+
+    public String getResult() {
+      return result;
+    }
+  }
+
+}
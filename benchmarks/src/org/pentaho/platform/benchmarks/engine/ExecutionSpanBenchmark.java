@@ -0,0 +1,99 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.platform.engine.core.metrics.ExecutionMetrics;
+import org.pentaho.platform.engine.core.metrics.ExecutionSpan;
+
+/**
+ * Overhead of execution telemetry. A request span holding a component span and a JDBC span is wrapped around a
+ * fixed amount of work standing in for the component, and compared with the bare work. The work is far shorter than
+ * any real component execution, so the overhead measured here bounds the overhead on real requests from above; it
+ * should stay under 1% of the bare work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class ExecutionSpanBenchmark {
+
+  /**
+   * Amount of work, in JMH tokens, done by each simulated execution.
+   */
+  @Param({ "10000" })
+  public long work;
+
+  @Param({ "true", "false" })
+  public boolean enabled;
+
+  private boolean wasEnabled;
+
+  @Setup
+  public void setUp() {
+    wasEnabled = ExecutionMetrics.isEnabled();
+    ExecutionMetrics.setEnabled(enabled);
+  }
+
+  @TearDown
+  public void tearDown() {
+    ExecutionMetrics.setEnabled(wasEnabled);
+    ExecutionMetrics.reset();
+  }
+
+  @Benchmark
+  public void bare() {
+    Blackhole.consumeCPU(work);
+  }
+
+  @Benchmark
+  public void spans() {
+    ExecutionSpan request = ExecutionSpan.start(ExecutionMetrics.HTTP_REQUEST, "api"); //$NON-NLS-1$
+    try {
+      ExecutionSpan component = ExecutionSpan.start(ExecutionMetrics.COMPONENT, "SQLLookupRule"); //$NON-NLS-1$
+      try {
+        ExecutionSpan query = ExecutionSpan.start(ExecutionMetrics.JDBC, "executeQuery"); //$NON-NLS-1$
+        try {
+          Blackhole.consumeCPU(work);
+        } finally {
+          query.end();
+        }
+      } finally {
+        component.end();
+      }
+    } finally {
+      request.end();
+    }
+  }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.pentaho.platform.api.engine.IPentahoDefinableObjectFactory;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.engine.core.system.boot.PentahoSystemBoot;
+import org.pentaho.platform.engine.core.system.boot.PlatformInitializationException;
+
+/**
+ * Looking up platform objects through {@link PentahoSystem#get}: a global singleton, a new instance per lookup, and
+ * an object looked up by key. Lookups run on four threads, as they do from concurrent requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class PentahoSystemGetBenchmark {
+
+  private static final String KEY = "benchmarkService"; //$NON-NLS-1$
+
+  private PentahoSystemBoot boot;
+
+  @Setup
+  public void setUp() throws PlatformInitializationException {
+    boot = new PentahoSystemBoot();
+    boot.define(SingletonService.class, SingletonServiceImpl.class, IPentahoDefinableObjectFactory.Scope.GLOBAL);
+    boot.define(PrototypeService.class, PrototypeServiceImpl.class, IPentahoDefinableObjectFactory.Scope.LOCAL);
+    boot.define(KEY, SingletonServiceImpl.class, IPentahoDefinableObjectFactory.Scope.GLOBAL);
+    boot.start();
+  }
+
+  @TearDown
+  public void tearDown() {
+    boot.stop();
+  }
+
+  @State(Scope.Thread)
+  public static class Session {
+    @Setup
+    public void setUp() {
+      PentahoSessionHolder.setSession(new StandaloneSession("benchmark")); //$NON-NLS-1$
+    }
+
+    @TearDown
+    public void tearDown() {
+      PentahoSessionHolder.removeSession();
+    }
+  }
+
+  @Benchmark
+  public SingletonService getGlobal(final Session session) {
+    return PentahoSystem.get(SingletonService.class);
+  }
+
+  @Benchmark
+  public PrototypeService getLocal(final Session session) {
+    return PentahoSystem.get(PrototypeService.class);
+  }
+
+  @Benchmark
+  public SingletonService getByKey(final Session session) {
+    return PentahoSystem.get(SingletonService.class, KEY, null);
+  }
+
+  public interface SingletonService {
+  }
+
+  public static class SingletonServiceImpl implements SingletonService {
+  }
+
+  public interface PrototypeService {
+  }
+
+  public static class PrototypeServiceImpl implements PrototypeService {
+  }
+
+}
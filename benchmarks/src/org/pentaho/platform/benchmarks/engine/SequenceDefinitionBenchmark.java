@@ -0,0 +1,115 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.engine;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.dom4j.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.pentaho.platform.api.engine.IActionSequence;
+import org.pentaho.platform.api.engine.ILogger;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
+import org.pentaho.platform.engine.services.actionsequence.ActionSequenceCache;
+import org.pentaho.platform.engine.services.actionsequence.SequenceDefinition;
+import org.pentaho.platform.util.logging.SimpleLogger;
+import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
+
+/**
+ * Turning an xaction into an action sequence: parsing the document, building the sequence from a parsed document,
+ * and copying the sequence the action sequence cache holds for it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SequenceDefinitionBenchmark {
+
+  private static final String SOLUTION_PATH = "/public/benchmark.xaction"; //$NON-NLS-1$
+
+  /**
+   * Number of action definitions in the xaction.
+   */
+  @Param({ "1", "20" })
+  public int actionCount;
+
+  private String xaction;
+
+  private Document document;
+
+  private ActionSequenceCache cache;
+
+  private RepositoryFile file;
+
+  private ILogger logger;
+
+  @Setup
+  public void setUp() throws Exception {
+    StringBuilder actions = new StringBuilder();
+    for (int i = 0; i < actionCount; i++) {
+      actions.append("<action-definition><component-name>TestComponent</component-name>") //$NON-NLS-1$
+          .append("<action-inputs><region type=\"string\"/></action-inputs>") //$NON-NLS-1$
+          .append("<action-outputs><result type=\"string\"/></action-outputs>") //$NON-NLS-1$
+          .append("<component-definition><query><![CDATA[select * from sales where region = '{region}']]></query>") //$NON-NLS-1$
+          .append("</component-definition></action-definition>"); //$NON-NLS-1$
+    }
+    xaction = "<action-sequence><title>Benchmark</title>" //$NON-NLS-1$
+        + "<inputs><region type=\"string\"><default-value>east</default-value>" //$NON-NLS-1$
+        + "<sources><request>region</request></sources></region></inputs>" //$NON-NLS-1$
+        + "<outputs><result type=\"string\"/></outputs>" //$NON-NLS-1$
+        + "<actions>" + actions + "</actions></action-sequence>"; //$NON-NLS-1$ //$NON-NLS-2$
+    logger = new SimpleLogger(this);
+    document = XmlDom4JHelper.getDocFromString(xaction, null);
+
+    cache = new ActionSequenceCache(new SimpleMapCacheManager());
+    file = new RepositoryFile.Builder("benchmark", "benchmark.xaction").path(SOLUTION_PATH).versionId("1.0") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        .lastModificationDate(new Date(1000L)).build();
+    cache.put(file, Locale.US, createSequence(document), ILogger.ERROR, 0L);
+  }
+
+  @Benchmark
+  public IActionSequence parseAndCreate() throws Exception {
+    return createSequence(XmlDom4JHelper.getDocFromString(xaction, null));
+  }
+
+  @Benchmark
+  public IActionSequence create() {
+    return createSequence(document);
+  }
+
+  @Benchmark
+  public IActionSequence copyFromCache() {
+    return cache.get(file, Locale.US, ILogger.ERROR);
+  }
+
+  private IActionSequence createSequence(final Document xactionDocument) {
+    return SequenceDefinition.ActionSequenceFactory(xactionDocument, SOLUTION_PATH, logger, null, ILogger.ERROR);
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.engine;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.pentaho.platform.engine.services.runtime.TemplateUtil;
+
+/**
+ * Expanding the parameters of a query template, for a template applied again and for a template applied for the
+ * first time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TemplateUtilBenchmark {
+
+  @Param({ "1", "10", "50" })
+  public int parameterCount;
+
+  private String template;
+
+  private Properties inputs;
+
+  private int templateNumber;
+
+  @Setup
+  public void setUp() {
+    StringBuilder query = new StringBuilder("select region, sum(amount) from sales where 1 = 1"); //$NON-NLS-1$
+    inputs = new Properties();
+    for (int i = 0; i < parameterCount; i++) {
+      query.append(" and column").append(i).append(" = '{param").append(i).append("}'"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      inputs.setProperty("param" + i, "value" + i); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    template = query.append(" group by region").toString(); //$NON-NLS-1$
+  }
+
+  @Benchmark
+  public String applyTemplate() {
+    return TemplateUtil.applyTemplate(template, inputs, null);
+  }
+
+  @Benchmark
+  public String applyNewTemplate() {
+    return TemplateUtil.applyTemplate(template + " -- " + templateNumber++, inputs, null); //$NON-NLS-1$
+  }
+
+}
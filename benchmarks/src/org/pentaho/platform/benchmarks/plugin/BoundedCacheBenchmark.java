@@ -0,0 +1,88 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.plugin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.pentaho.platform.plugin.services.cache.BoundedCache;
+import org.pentaho.platform.plugin.services.cache.DefaultCacheWeigher;
+
+/**
+ * Reads and puts on a weight-bounded region, on four threads. Half of the keys read fit in the region, so reads both
+ * hit and miss and puts evict.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class BoundedCacheBenchmark {
+
+  @Param({ "1000", "100000" })
+  public int entryCount;
+
+  private BoundedCache cache;
+
+  private String[] keys;
+
+  private byte[] value;
+
+  @Setup
+  public void setUp() {
+    value = new byte[100];
+    long entryWeight = new DefaultCacheWeigher().weigh("key" + entryCount, value); //$NON-NLS-1$
+    cache = new BoundedCache("benchmark", entryWeight * entryCount / 2, 0L, 0L, new DefaultCacheWeigher()); //$NON-NLS-1$
+    keys = new String[entryCount];
+    for (int i = 0; i < entryCount; i++) {
+      keys[i] = "key" + i; //$NON-NLS-1$
+      cache.put(keys[i], value);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    int next(final int bound) {
+      next = (next + 7919) % bound;
+      return next;
+    }
+  }
+
+  @Benchmark
+  public Object get(final Cursor cursor) {
+    return cache.get(keys[cursor.next(entryCount)]);
+  }
+
+  @Benchmark
+  public void put(final Cursor cursor) {
+    cache.put(keys[cursor.next(entryCount)], value);
+  }
+
+}
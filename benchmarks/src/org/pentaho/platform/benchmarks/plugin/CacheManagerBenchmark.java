@@ -0,0 +1,118 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.plugin;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.pentaho.platform.engine.core.system.PathBasedSystemSettings;
+import org.pentaho.platform.engine.core.system.boot.PentahoSystemBoot;
+import org.pentaho.platform.engine.core.system.boot.PlatformInitializationException;
+import org.pentaho.platform.plugin.services.cache.CacheManager;
+
+/**
+ * Region operations of the cache manager on the EHCache provider configured in benchmark-solution/system/pentaho.xml:
+ * lookups that hit, lookups that miss, and replacing entries. Operations run on four threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class CacheManagerBenchmark {
+
+  private static final String SOLUTION_PATH = "benchmark-solution"; //$NON-NLS-1$
+
+  private static final String REGION = "benchmark-region"; //$NON-NLS-1$
+
+  @Param({ "100", "5000" })
+  public int entryCount;
+
+  private PentahoSystemBoot boot;
+
+  private CacheManager cacheManager;
+
+  private String[] keys;
+
+  @Setup
+  public void setUp() throws PlatformInitializationException {
+    boot = new PentahoSystemBoot(new File(SOLUTION_PATH).getAbsolutePath());
+    boot.setSettingsProvider(new PathBasedSystemSettings());
+    boot.start();
+    cacheManager = new CacheManager();
+    cacheManager.addCacheRegion(REGION);
+    keys = new String[entryCount];
+    for (int i = 0; i < entryCount; i++) {
+      keys[i] = "key" + i; //$NON-NLS-1$
+      cacheManager.putInRegionCache(REGION, keys[i], Integer.valueOf(i));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    cacheManager.removeRegionCache(REGION);
+    cacheManager.cacheStop();
+    boot.stop();
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    int next(final int bound) {
+      next = (next + 7919) % bound;
+      return next;
+    }
+  }
+
+  @Benchmark
+  public Object getHit(final Cursor cursor) {
+    return cacheManager.getFromRegionCache(REGION, keys[cursor.next(entryCount)]);
+  }
+
+  @Benchmark
+  public Object getMiss(final Cursor cursor) {
+    return cacheManager.getFromRegionCache(REGION, Integer.valueOf(cursor.next(entryCount)));
+  }
+
+  @Benchmark
+  public void put(final Cursor cursor) {
+    int i = cursor.next(entryCount);
+    cacheManager.putInRegionCache(REGION, keys[i], Integer.valueOf(i));
+  }
+
+  @Benchmark
+  public void removeAndPut(final Cursor cursor) {
+    int i = cursor.next(entryCount);
+    cacheManager.removeFromRegionCache(REGION, keys[i]);
+    cacheManager.putInRegionCache(REGION, keys[i], Integer.valueOf(i));
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.plugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.platform.plugin.services.cache.BoundedCache;
+import org.pentaho.platform.plugin.services.cache.DefaultCacheWeigher;
+import org.pentaho.platform.plugin.services.cache.OffHeapCache;
+import org.pentaho.platform.plugin.services.cache.OffHeapValue;
+
+/**
+ * Serves cached files of <code>valueSize</code> bytes from a heap region and from an off-heap region, writing them to
+ * a stream the way the plugin file resource does. Run with the gc profiler: the heap region keeps the files on the
+ * heap the collector scans, while the off-heap region holds them outside it and copies them to the stream through a
+ * small transfer buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OffHeapCacheBenchmark {
+
+  private static final int VALUE_COUNT = 64;
+
+  @Param({ "4096", "262144" })
+  public int valueSize;
+
+  private BoundedCache heapCache;
+
+  private OffHeapCache offHeapCache;
+
+  private Blackhole blackhole;
+
+  private OutputStream sink;
+
+  @Setup(Level.Trial)
+  public void setUp(final Blackhole blackhole) {
+    this.blackhole = blackhole;
+    sink = new OutputStream() {
+      @Override
+      public void write(final int b) {
+        OffHeapCacheBenchmark.this.blackhole.consume(b);
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len) {
+        OffHeapCacheBenchmark.this.blackhole.consume(b);
+      }
+    };
+    long capacity = 2L * VALUE_COUNT * valueSize;
+    heapCache = new BoundedCache("heap", capacity, 0L, 0L, new DefaultCacheWeigher()); //$NON-NLS-1$
+    offHeapCache = new OffHeapCache("off-heap", capacity); //$NON-NLS-1$
+    for (int i = 0; i < VALUE_COUNT; i++) {
+      byte[] value = new byte[valueSize];
+      value[i] = (byte) i;
+      heapCache.put(Integer.valueOf(i), value);
+      offHeapCache.put(Integer.valueOf(i), value);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    offHeapCache.destroy();
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    Integer next() {
+      next = (next + 1) % VALUE_COUNT;
+      return Integer.valueOf(next);
+    }
+  }
+
+  @Benchmark
+  public void heap(final Cursor cursor) throws IOException {
+    sink.write((byte[]) heapCache.get(cursor.next()));
+  }
+
+  @Benchmark
+  public boolean offHeap(final Cursor cursor) throws IOException {
+    return ((OffHeapValue) offHeapCache.get(cursor.next())).writeTo(sink);
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.plugin;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.pentaho.platform.api.engine.IPentahoResultSet;
+import org.pentaho.platform.api.engine.PentahoSystemException;
+import org.pentaho.platform.plugin.services.connections.sql.SQLConnection;
+import org.pentaho.platform.plugin.services.connections.sql.SQLResultSet;
+import org.pentaho.platform.util.logging.SimpleLogger;
+
+/**
+ * Runs a query through the SQL connection of the SQL components against an in-memory HSQLDB table and copies its
+ * result set into memory, as the components do before handing rows to the action sequence. Each query opens and closes
+ * a connection of its own, as an action does; the connection keeps every statement and result set until it is closed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SQLResultSetBenchmark {
+
+  private static final String DRIVER = "org.hsqldb.jdbcDriver"; //$NON-NLS-1$
+
+  private static final String URL = "jdbc:hsqldb:mem:benchmark"; //$NON-NLS-1$
+
+  private static final String QUERY = "select ID, NAME, AMOUNT from BENCHMARK_ROWS"; //$NON-NLS-1$
+
+  @Param({ "100", "10000" })
+  public int rowCount;
+
+  private SimpleLogger logger;
+
+  /** holds the table, which lives as long as a connection to the in-memory database is open */
+  private SQLConnection connection;
+
+  @Setup
+  public void setUp() throws SQLException {
+    logger = new SimpleLogger(this);
+    connection = new SQLConnection(DRIVER, URL, "sa", "", logger); //$NON-NLS-1$ //$NON-NLS-2$
+    connection.execute("drop table BENCHMARK_ROWS if exists"); //$NON-NLS-1$
+    connection.execute("create table BENCHMARK_ROWS (ID integer, NAME varchar(50), AMOUNT double)"); //$NON-NLS-1$
+    PreparedStatement insert = connection.getNativeConnection().prepareStatement(
+        "insert into BENCHMARK_ROWS (ID, NAME, AMOUNT) values (?, ?, ?)"); //$NON-NLS-1$
+    try {
+      for (int i = 0; i < rowCount; i++) {
+        insert.setInt(1, i);
+        insert.setString(2, "name" + i); //$NON-NLS-1$
+        insert.setDouble(3, i * 1.5);
+        insert.executeUpdate();
+      }
+    } finally {
+      insert.close();
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    connection.execute("drop table BENCHMARK_ROWS"); //$NON-NLS-1$
+    connection.close();
+  }
+
+  @Benchmark
+  public IPentahoResultSet queryAndCopy() throws SQLException, InterruptedException, PentahoSystemException {
+    SQLConnection queryConnection = new SQLConnection(DRIVER, URL, "sa", "", logger); //$NON-NLS-1$ //$NON-NLS-2$
+    try {
+      SQLResultSet resultSet = (SQLResultSet) queryConnection.executeQuery(QUERY);
+      return resultSet.memoryCopy();
+    } finally {
+      // closes the statement and the result set too
+      queryConnection.close();
+    }
+  }
+
+}
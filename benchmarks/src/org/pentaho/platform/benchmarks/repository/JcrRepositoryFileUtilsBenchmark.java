@@ -0,0 +1,118 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.repository;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
+import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+import org.pentaho.platform.repository2.unified.jcr.RepositoryFileMetadataCache;
+import org.springframework.extensions.jcr.JcrCallback;
+
+/**
+ * Converting repository nodes to files: a single node, the children of a folder and a folder tree, with and without
+ * the file metadata cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JcrRepositoryFileUtilsBenchmark {
+
+  private static final int TREE_DEPTH = 3;
+
+  @Param({ "10", "100", "1000" })
+  public int fileCount;
+
+  @Param({ "false", "true" })
+  public boolean cached;
+
+  private JcrRepositoryFixture fixture;
+
+  private RepositoryFile folder;
+
+  private RepositoryFile file;
+
+  private RepositoryFileMetadataCache cache;
+
+  @Setup
+  public void setUp() throws IOException {
+    fixture = new JcrRepositoryFixture();
+    fixture.start();
+    folder = fixture.createFolder("benchmark", fileCount, TREE_DEPTH); //$NON-NLS-1$
+    file = fixture.getFiles(folder.getId()).get(0);
+    cache = cached ? fixture.getMetadataCache() : null;
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    fixture.stop();
+  }
+
+  @Benchmark
+  public RepositoryFile nodeToFile() {
+    return (RepositoryFile) fixture.getAdminJcrTemplate().execute(new JcrCallback() {
+      public Object doInJcr(final Session session) throws IOException, RepositoryException {
+        return JcrRepositoryFileUtils.nodeToFile(session, new PentahoJcrConstants(session), fixture
+            .getPathConversionHelper(), fixture.getLockHelper(), session.getNodeByIdentifier(file.getId().toString()),
+            false, null, cache);
+      }
+    });
+  }
+
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public List<RepositoryFile> getChildren() {
+    return (List<RepositoryFile>) fixture.getAdminJcrTemplate().execute(new JcrCallback() {
+      public Object doInJcr(final Session session) throws IOException, RepositoryException {
+        return JcrRepositoryFileUtils.getChildren(session, new PentahoJcrConstants(session), fixture
+            .getPathConversionHelper(), fixture.getLockHelper(), folder.getId(), null, cache);
+      }
+    });
+  }
+
+  @Benchmark
+  public RepositoryFileTree getTree() {
+    return (RepositoryFileTree) fixture.getAdminJcrTemplate().execute(new JcrCallback() {
+      public Object doInJcr(final Session session) throws IOException, RepositoryException {
+        return JcrRepositoryFileUtils.getTree(session, new PentahoJcrConstants(session), fixture
+            .getPathConversionHelper(), fixture.getLockHelper(), session.getNodeByIdentifier(
+            folder.getId().toString()).getPath(), -1, null, false, cache);
+      }
+    });
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.io.FileUtils;
+import org.pentaho.platform.api.engine.security.userroledao.IUserRoleDao;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.ILockHelper;
+import org.pentaho.platform.repository2.unified.jcr.IPathConversionHelper;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileDao;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
+import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+import org.pentaho.platform.repository2.unified.jcr.RepositoryFileMetadataCache;
+import org.pentaho.platform.repository2.unified.jcr.jackrabbit.security.TestPrincipalProvider;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.CredentialsStrategy;
+import org.pentaho.platform.repository2.unified.jcr.transform.SimpleRepositoryFileDataTransformer;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.extensions.jcr.JcrCallback;
+import org.springframework.extensions.jcr.JcrTemplate;
+
+/**
+ * Boots the repository module's Spring context on an in-memory Jackrabbit and fills it with folders of files for the
+ * repository benchmarks. Everything is read and written as the repository admin, so that no tenant or user is needed.
+ */
+public class JcrRepositoryFixture {
+
+  /**
+   * Must match the home directory of the <code>jcrRepository</code> bean in repository-benchmark-override.spring.xml.
+   */
+  private static final String HOME_DIR = "/tmp/jackrabbit-benchmark-TRUNK"; //$NON-NLS-1$
+
+  private static final byte[] CONTENT = "<report><title>benchmark</title></report>".getBytes(); //$NON-NLS-1$
+
+  private ClassPathXmlApplicationContext context;
+
+  private JcrTemplate adminJcrTemplate;
+
+  private IPathConversionHelper pathConversionHelper;
+
+  private ILockHelper lockHelper;
+
+  private RepositoryFileMetadataCache metadataCache;
+
+  private JcrRepositoryFileDao repositoryFileDao;
+
+  public void start() throws IOException {
+    FileUtils.deleteDirectory(new File(HOME_DIR));
+    context = new ClassPathXmlApplicationContext(new String[] { "repository.spring.xml", //$NON-NLS-1$
+        "repository-benchmark-override.spring.xml" }); //$NON-NLS-1$
+    TestPrincipalProvider.userRoleDao = (IUserRoleDao) context.getBean("userRoleDao"); //$NON-NLS-1$
+    TestPrincipalProvider.adminCredentialsStrategy = (CredentialsStrategy) context.getBean("jcrAdminCredentialsStrategy"); //$NON-NLS-1$
+    TestPrincipalProvider.repository = (Repository) context.getBean("jcrRepository"); //$NON-NLS-1$
+    adminJcrTemplate = (JcrTemplate) context.getBean("adminJcrTemplate"); //$NON-NLS-1$
+    pathConversionHelper = (IPathConversionHelper) context.getBean("pathConversionHelper"); //$NON-NLS-1$
+    lockHelper = (ILockHelper) context.getBean("lockHelper"); //$NON-NLS-1$
+    metadataCache = (RepositoryFileMetadataCache) context.getBean("repositoryFileMetadataCache"); //$NON-NLS-1$
+    repositoryFileDao = (JcrRepositoryFileDao) context.getBean("benchmarkRepositoryFileDao"); //$NON-NLS-1$
+  }
+
+  public void stop() throws IOException {
+    if (context != null) {
+      context.close();
+      context = null;
+    }
+    FileUtils.deleteDirectory(new File(HOME_DIR));
+  }
+
+  /**
+   * Creates a folder named <code>name</code> under the root holding <code>fileCount</code> files, and under it
+   * <code>depth - 1</code> levels of subfolders with the same number of files each. Returns the folder.
+   */
+  public RepositoryFile createFolder(final String name, final int fileCount, final int depth) {
+    return (RepositoryFile) adminJcrTemplate.execute(new JcrCallback() {
+      public Object doInJcr(final Session session) throws IOException, RepositoryException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
+        Node folderNode = createFolder(session, pentahoJcrConstants, null, name, fileCount, depth);
+        session.save();
+        return JcrRepositoryFileUtils.nodeToFile(session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+            folderNode);
+      }
+    });
+  }
+
+  private Node createFolder(final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Serializable parentFolderId, final String name, final int fileCount, final int depth)
+      throws RepositoryException {
+    Node folderNode = JcrRepositoryFileUtils.createFolderNode(session, pentahoJcrConstants, parentFolderId,
+        new RepositoryFile.Builder(name).folder(true).build());
+    Serializable folderId = folderNode.getIdentifier();
+    SimpleRepositoryFileDataTransformer transformer = new SimpleRepositoryFileDataTransformer();
+    for (int i = 0; i < fileCount; i++) {
+      SimpleRepositoryFileData content = new SimpleRepositoryFileData(new ByteArrayInputStream(CONTENT), "UTF-8", //$NON-NLS-1$
+          "text/xml"); //$NON-NLS-1$
+      JcrRepositoryFileUtils.createFileNode(session, pentahoJcrConstants, folderId, new RepositoryFile.Builder("file" //$NON-NLS-1$
+          + i + ".xml").build(), content, transformer); //$NON-NLS-1$
+    }
+    if (depth > 1) {
+      createFolder(session, pentahoJcrConstants, folderId, "folder", fileCount, depth - 1); //$NON-NLS-1$
+    }
+    return folderNode;
+  }
+
+  /**
+   * Returns the files directly in the folder with the given id.
+   */
+  public List<RepositoryFile> getFiles(final Serializable folderId) {
+    List<RepositoryFile> files = new ArrayList<RepositoryFile>();
+    for (RepositoryFile file : repositoryFileDao.getChildren(folderId, null)) {
+      if (!file.isFolder()) {
+        files.add(file);
+      }
+    }
+    return files;
+  }
+
+  public JcrTemplate getAdminJcrTemplate() {
+    return adminJcrTemplate;
+  }
+
+  public IPathConversionHelper getPathConversionHelper() {
+    return pathConversionHelper;
+  }
+
+  public ILockHelper getLockHelper() {
+    return lockHelper;
+  }
+
+  public RepositoryFileMetadataCache getMetadataCache() {
+    return metadataCache;
+  }
+
+  public JcrRepositoryFileDao getRepositoryFileDao() {
+    return repositoryFileDao;
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.repository;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.security.authorization.acl.ReadPermissionCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Contention on the read permission cache: seven threads reading (and caching what they miss) while one thread
+ * invalidates the subtree of a folder. A single segment behaves like a cache behind one lock.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadPermissionCacheBenchmark {
+
+  private static final int ITEM_COUNT = 4096;
+
+  private static final int FOLDER_COUNT = 64;
+
+  private static final NodeId ROOT = new NodeId(0L, 0L);
+
+  @Param({ "1", "16" })
+  public int segmentCount;
+
+  private ReadPermissionCache cache;
+
+  private NodeId[] items;
+
+  private NodeId[][] paths;
+
+  @Setup
+  public void setUp() {
+    cache = new ReadPermissionCache(ITEM_COUNT, segmentCount);
+    items = new NodeId[ITEM_COUNT];
+    paths = new NodeId[ITEM_COUNT][];
+    for (int i = 0; i < ITEM_COUNT; i++) {
+      NodeId folder = new NodeId(1L, i % FOLDER_COUNT);
+      items[i] = new NodeId(2L, i);
+      paths[i] = new NodeId[] { items[i], folder, ROOT };
+      cache.put(items[i], paths[i], true, cache.getGeneration());
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    int next() {
+      // a stride coprime with the item count visits every item
+      next = (next + 97) % ITEM_COUNT;
+      return next;
+    }
+  }
+
+  @Benchmark
+  @Group("readAndInvalidate")
+  @GroupThreads(7)
+  public Boolean read(final Cursor cursor) {
+    int i = cursor.next();
+    Boolean canRead = cache.get(items[i]);
+    if (canRead == null) {
+      long generation = cache.getGeneration();
+      cache.put(items[i], paths[i], true, generation);
+      canRead = Boolean.TRUE;
+    }
+    return canRead;
+  }
+
+  @Benchmark
+  @Group("readAndInvalidate")
+  @GroupThreads(1)
+  public void invalidate(final Cursor cursor) {
+    cache.invalidate(new NodeId(1L, cursor.next() % FOLDER_COUNT));
+  }
+
+}
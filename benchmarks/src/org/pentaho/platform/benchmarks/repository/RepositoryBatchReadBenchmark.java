@@ -0,0 +1,97 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.repository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileDao;
+
+/**
+ * Per-file cost of reading file content one file at a time and in one batch, for batches of 1, 100 and 1000 files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryBatchReadBenchmark {
+
+  private static final int FILE_COUNT = 1000;
+
+  @Param({ "1", "100", "1000" })
+  public int batchSize;
+
+  private JcrRepositoryFixture fixture;
+
+  private JcrRepositoryFileDao repositoryFileDao;
+
+  private List<RepositoryFile> files;
+
+  @Setup
+  public void setUp() throws IOException {
+    fixture = new JcrRepositoryFixture();
+    fixture.start();
+    RepositoryFile folder = fixture.createFolder("benchmark", FILE_COUNT, 1); //$NON-NLS-1$
+    files = new ArrayList<RepositoryFile>(fixture.getFiles(folder.getId()).subList(0, batchSize));
+    repositoryFileDao = fixture.getRepositoryFileDao();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    fixture.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(FILE_COUNT)
+  public List<SimpleRepositoryFileData> readOneByOne() {
+    List<SimpleRepositoryFileData> data = new ArrayList<SimpleRepositoryFileData>(FILE_COUNT);
+    for (int read = 0; read < FILE_COUNT; read += batchSize) {
+      for (RepositoryFile file : files) {
+        data.add(repositoryFileDao.getData(file.getId(), null, SimpleRepositoryFileData.class));
+      }
+    }
+    return data;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(FILE_COUNT)
+  public List<SimpleRepositoryFileData> readInBatch() {
+    List<SimpleRepositoryFileData> data = new ArrayList<SimpleRepositoryFileData>(FILE_COUNT);
+    for (int read = 0; read < FILE_COUNT; read += batchSize) {
+      data.addAll(repositoryFileDao.getDataInBatch(files, SimpleRepositoryFileData.class));
+    }
+    return data;
+  }
+
+}
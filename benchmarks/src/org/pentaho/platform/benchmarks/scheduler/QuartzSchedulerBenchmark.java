@@ -0,0 +1,99 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+
+package org.pentaho.platform.benchmarks.scheduler;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.SchedulerException;
+import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
+import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
+import org.quartz.impl.StdSchedulerFactory;
+
+/**
+ * Lists the jobs of a Quartz scheduler holding its jobs in memory, as the scheduler resource does for every refresh of
+ * the schedules perspective. The scheduler is never started, so none of the jobs fire.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QuartzSchedulerBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int jobCount;
+
+  private QuartzScheduler scheduler;
+
+  private List<String> jobIds;
+
+  @Setup
+  public void setUp() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty("org.quartz.scheduler.instanceName", "BenchmarkScheduler"); //$NON-NLS-1$ //$NON-NLS-2$
+    properties.setProperty("org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool"); //$NON-NLS-1$ //$NON-NLS-2$
+    properties.setProperty("org.quartz.threadPool.threadCount", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+    properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore"); //$NON-NLS-1$ //$NON-NLS-2$
+    scheduler = new QuartzScheduler(new StdSchedulerFactory(properties)) {
+      @Override
+      protected String getCurrentUser() {
+        return "benchmark"; //$NON-NLS-1$
+      }
+    };
+    Date start = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+    jobIds = new ArrayList<String>(jobCount);
+    for (int i = 0; i < jobCount; i++) {
+      HashMap<String, Serializable> params = new HashMap<String, Serializable>();
+      params.put("index", Integer.valueOf(i)); //$NON-NLS-1$
+      Job job = scheduler.createJob("job" + i, "benchmarkAction", params, //$NON-NLS-1$ //$NON-NLS-2$
+          new SimpleJobTrigger(start, null, -1, 3600L));
+      jobIds.add(job.getJobId());
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws SchedulerException {
+    for (String jobId : jobIds) {
+      scheduler.removeJob(jobId);
+    }
+    scheduler.shutdown();
+  }
+
+  @Benchmark
+  public List<Job> getJobs() throws SchedulerException {
+    return scheduler.getJobs(null);
+  }
+
+}
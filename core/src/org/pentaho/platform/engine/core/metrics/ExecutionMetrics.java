@@ -0,0 +1,191 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency histograms and counters of the platform, kept over the life of the server for monitoring. Times are kept
+ * per timer, such as {@link #COMPONENT}, and per label within it, such as the name of the component. They are usually
+ * recorded by ending an {@link ExecutionSpan}.
+ * <p>
+ * A timer keeps at most {@value #MAX_LABELS} labels; times for further labels are kept under {@link #OTHER_LABEL}, so
+ * that labels taken from paths cannot grow the registry without bound.
+ */
+public class ExecutionMetrics {
+
+  /** Execution of an action sequence, labelled by its path. */
+  public static final String ACTION_SEQUENCE = "action_sequence"; //$NON-NLS-1$
+
+  /** Execution of one component of an action sequence, labelled by the component name. */
+  public static final String COMPONENT = "component"; //$NON-NLS-1$
+
+  /** Content creation by a content generator, labelled by its class. */
+  public static final String CONTENT_GENERATOR = "content_generator"; //$NON-NLS-1$
+
+  /** A call to a REST resource, labelled by the first segment of its path. */
+  public static final String REST_RESOURCE = "rest_resource"; //$NON-NLS-1$
+
+  /** An HTTP request, labelled by the first segment of its path. */
+  public static final String HTTP_REQUEST = "http_request"; //$NON-NLS-1$
+
+  /** A call to the unified repository, labelled by the method called. */
+  public static final String REPOSITORY = "repository"; //$NON-NLS-1$
+
+  /** A JDBC statement execution, labelled by the kind of statement. */
+  public static final String JDBC = "jdbc"; //$NON-NLS-1$
+
+  /** Number of calls to the unified repository. */
+  public static final String REPOSITORY_CALLS = "repository_calls"; //$NON-NLS-1$
+
+  /** Number of calls to the unified repository that failed. */
+  public static final String REPOSITORY_ERRORS = "repository_errors"; //$NON-NLS-1$
+
+  /** Number of JDBC statements executed. */
+  public static final String JDBC_STATEMENTS = "jdbc_statements"; //$NON-NLS-1$
+
+  /** Time spent executing JDBC statements, in microseconds. */
+  public static final String JDBC_TIME_MICROS = "jdbc_time_micros"; //$NON-NLS-1$
+
+  public static final String OTHER_LABEL = "other"; //$NON-NLS-1$
+
+  private static final int MAX_LABELS = 200;
+
+  private static final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> timers = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
+
+  private static final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+  private static volatile boolean enabled = true;
+
+  /**
+   * Records that something labelled <code>label</code> took <code>nanos</code> nanoseconds.
+   */
+  public static void recordTime(final String timer, final String label, final long nanos) {
+    if (!ExecutionMetrics.enabled) {
+      return;
+    }
+    ConcurrentMap<String, LatencyHistogram> histograms = ExecutionMetrics.timers.get(timer);
+    if (histograms == null) {
+      histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+      ConcurrentMap<String, LatencyHistogram> existing = ExecutionMetrics.timers.putIfAbsent(timer, histograms);
+      if (existing != null) {
+        histograms = existing;
+      }
+    }
+    String key = (label == null) ? "" : label; //$NON-NLS-1$
+    LatencyHistogram histogram = histograms.get(key);
+    if (histogram == null) {
+      if (histograms.size() >= ExecutionMetrics.MAX_LABELS) {
+        key = ExecutionMetrics.OTHER_LABEL;
+        histogram = histograms.get(key);
+      }
+      if (histogram == null) {
+        histogram = new LatencyHistogram();
+        LatencyHistogram existing = histograms.putIfAbsent(key, histogram);
+        if (existing != null) {
+          histogram = existing;
+        }
+      }
+    }
+    histogram.record(nanos);
+  }
+
+  /**
+   * Adds one to <code>counter</code>, such as {@link #REPOSITORY_CALLS}.
+   */
+  public static void increment(final String counter) {
+    ExecutionMetrics.add(counter, 1);
+  }
+
+  public static void add(final String counter, final long delta) {
+    if (!ExecutionMetrics.enabled) {
+      return;
+    }
+    AtomicLong value = ExecutionMetrics.counters.get(counter);
+    if (value == null) {
+      value = new AtomicLong();
+      AtomicLong existing = ExecutionMetrics.counters.putIfAbsent(counter, value);
+      if (existing != null) {
+        value = existing;
+      }
+    }
+    value.addAndGet(delta);
+  }
+
+  /**
+   * Returns the first segment of <code>path</code>, such as <code>/repos</code> for
+   * <code>/repos/:public/content</code>, to label a request by with few distinct labels.
+   */
+  public static String getPathLabel(final String path) {
+    if (path == null || path.length() <= 1) {
+      return "/"; //$NON-NLS-1$
+    }
+    int end = path.indexOf('/', 1);
+    return (end < 0) ? path : path.substring(0, end);
+  }
+
+  /**
+   * Returns the histograms by timer and label, sorted by name.
+   */
+  public static Map<String, Map<String, LatencyHistogram>> getTimers() {
+    Map<String, Map<String, LatencyHistogram>> snapshot = new TreeMap<String, Map<String, LatencyHistogram>>();
+    for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> timer : ExecutionMetrics.timers.entrySet()) {
+      snapshot.put(timer.getKey(), Collections.unmodifiableMap(new TreeMap<String, LatencyHistogram>(timer
+          .getValue())));
+    }
+    return Collections.unmodifiableMap(snapshot);
+  }
+
+  /**
+   * Returns the value of every counter, sorted by name.
+   */
+  public static Map<String, Long> getCounters() {
+    Map<String, Long> snapshot = new TreeMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> counter : ExecutionMetrics.counters.entrySet()) {
+      snapshot.put(counter.getKey(), counter.getValue().get());
+    }
+    return Collections.unmodifiableMap(snapshot);
+  }
+
+  /**
+   * Forgets every time and counter.
+   */
+  public static void reset() {
+    ExecutionMetrics.timers.clear();
+    ExecutionMetrics.counters.clear();
+  }
+
+  public static boolean isEnabled() {
+    return ExecutionMetrics.enabled;
+  }
+
+  /**
+   * Turns recording on or off. When off, spans are not timed and nothing is recorded.
+   */
+  public static void setEnabled(final boolean enabled) {
+    ExecutionMetrics.enabled = enabled;
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the current {@link ExecutionMetrics}, and any counters and gauges the caller adds such as cache hits and
+ * sizes, as JSON or in the Prometheus text exposition format.
+ */
+public class ExecutionMetricsFormatter {
+
+  private static final String PROMETHEUS_PREFIX = "pentaho_"; //$NON-NLS-1$
+
+  /**
+   * Returns the metrics as a JSON object with <code>timers</code>, <code>counters</code> and <code>gauges</code>
+   * members. Times are in milliseconds; bucket counts are keyed by the upper bound of their bucket.
+   */
+  public static String toJson(final Map<String, ? extends Number> gauges) {
+    return toJson(null, gauges);
+  }
+
+  /**
+   * Returns the metrics as JSON like {@link #toJson(Map)}, listing <code>counters</code>, which only ever grow, with
+   * the counters of {@link ExecutionMetrics}.
+   */
+  public static String toJson(final Map<String, ? extends Number> counters,
+      final Map<String, ? extends Number> gauges) {
+    StringBuilder json = new StringBuilder();
+    json.append("{\"timers\":{"); //$NON-NLS-1$
+    long[] bounds = LatencyHistogram.getBucketBounds();
+    boolean firstTimer = true;
+    for (Map.Entry<String, Map<String, LatencyHistogram>> timer : ExecutionMetrics.getTimers().entrySet()) {
+      if (!firstTimer) {
+        json.append(',');
+      }
+      firstTimer = false;
+      appendJsonString(json, timer.getKey());
+      json.append(":{"); //$NON-NLS-1$
+      boolean firstLabel = true;
+      for (Map.Entry<String, LatencyHistogram> label : timer.getValue().entrySet()) {
+        if (!firstLabel) {
+          json.append(',');
+        }
+        firstLabel = false;
+        LatencyHistogram histogram = label.getValue();
+        appendJsonString(json, label.getKey());
+        json.append(":{\"count\":").append(histogram.getCount()); //$NON-NLS-1$
+        json.append(",\"sumMillis\":").append(histogram.getSumMillis()); //$NON-NLS-1$
+        json.append(",\"maxMillis\":").append(histogram.getMaxMillis()); //$NON-NLS-1$
+        json.append(",\"p50Millis\":").append(histogram.getPercentileMillis(50)); //$NON-NLS-1$
+        json.append(",\"p95Millis\":").append(histogram.getPercentileMillis(95)); //$NON-NLS-1$
+        json.append(",\"p99Millis\":").append(histogram.getPercentileMillis(99)); //$NON-NLS-1$
+        json.append(",\"buckets\":{"); //$NON-NLS-1$
+        long[] counts = histogram.getBucketCounts();
+        for (int i = 0; i < counts.length; i++) {
+          if (i > 0) {
+            json.append(',');
+          }
+          appendJsonString(json, (i < bounds.length) ? String.valueOf(bounds[i]) : "+Inf"); //$NON-NLS-1$
+          json.append(':').append(counts[i]);
+        }
+        json.append("}}"); //$NON-NLS-1$
+      }
+      json.append('}');
+    }
+    json.append("},\"counters\":"); //$NON-NLS-1$
+    appendJsonNumbers(json, getCounters(counters));
+    json.append(",\"gauges\":"); //$NON-NLS-1$
+    appendJsonNumbers(json, gauges);
+    json.append('}');
+    return json.toString();
+  }
+
+  private static Map<String, Number> getCounters(final Map<String, ? extends Number> counters) {
+    Map<String, Number> allCounters = new TreeMap<String, Number>(ExecutionMetrics.getCounters());
+    if (counters != null) {
+      allCounters.putAll(counters);
+    }
+    return allCounters;
+  }
+
+  private static void appendJsonNumbers(final StringBuilder json, final Map<String, ? extends Number> numbers) {
+    json.append('{');
+    if (numbers != null) {
+      boolean first = true;
+      for (Map.Entry<String, ? extends Number> number : numbers.entrySet()) {
+        if (!first) {
+          json.append(',');
+        }
+        first = false;
+        appendJsonString(json, number.getKey());
+        json.append(':').append(number.getValue());
+      }
+    }
+    json.append('}');
+  }
+
+  private static void appendJsonString(final StringBuilder json, final String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c)); //$NON-NLS-1$
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+
+  /**
+   * Returns the metrics in the Prometheus text exposition format, version 0.0.4. Timers become histograms in seconds
+   * named <code>pentaho_&lt;timer&gt;_seconds</code> with a <code>name</code> label, counters become
+   * <code>pentaho_&lt;counter&gt;_total</code> and gauges <code>pentaho_&lt;gauge&gt;</code>.
+   */
+  public static String toPrometheus(final Map<String, ? extends Number> gauges) {
+    return toPrometheus(null, gauges);
+  }
+
+  /**
+   * Returns the metrics in the Prometheus text format like {@link #toPrometheus(Map)}, exporting
+   * <code>counters</code>, which only ever grow, as counters along with those of {@link ExecutionMetrics}.
+   */
+  public static String toPrometheus(final Map<String, ? extends Number> counters,
+      final Map<String, ? extends Number> gauges) {
+    StringBuilder text = new StringBuilder();
+    long[] bounds = LatencyHistogram.getBucketBounds();
+    for (Map.Entry<String, Map<String, LatencyHistogram>> timer : ExecutionMetrics.getTimers().entrySet()) {
+      String name = ExecutionMetricsFormatter.PROMETHEUS_PREFIX + toMetricName(timer.getKey()) + "_seconds"; //$NON-NLS-1$
+      text.append("# TYPE ").append(name).append(" histogram\n"); //$NON-NLS-1$ //$NON-NLS-2$
+      for (Map.Entry<String, LatencyHistogram> label : timer.getValue().entrySet()) {
+        LatencyHistogram histogram = label.getValue();
+        String labelValue = toLabelValue(label.getKey());
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+          cumulative += counts[i];
+          String le = (i < bounds.length) ? String.valueOf(bounds[i] / 1000.0) : "+Inf"; //$NON-NLS-1$
+          text.append(name).append("_bucket{name=\"").append(labelValue).append("\",le=\"").append(le) //$NON-NLS-1$ //$NON-NLS-2$
+              .append("\"} ").append(cumulative).append('\n'); //$NON-NLS-1$
+        }
+        text.append(name).append("_sum{name=\"").append(labelValue).append("\"} ") //$NON-NLS-1$ //$NON-NLS-2$
+            .append(histogram.getSumMillis() / 1000.0).append('\n');
+        text.append(name).append("_count{name=\"").append(labelValue).append("\"} ") //$NON-NLS-1$ //$NON-NLS-2$
+            .append(cumulative).append('\n');
+      }
+    }
+    for (Map.Entry<String, Number> counter : getCounters(counters).entrySet()) {
+      String name = ExecutionMetricsFormatter.PROMETHEUS_PREFIX + toMetricName(counter.getKey()) + "_total"; //$NON-NLS-1$
+      text.append("# TYPE ").append(name).append(" counter\n"); //$NON-NLS-1$ //$NON-NLS-2$
+      text.append(name).append(' ').append(counter.getValue()).append('\n');
+    }
+    if (gauges != null) {
+      for (Map.Entry<String, ? extends Number> gauge : gauges.entrySet()) {
+        String name = ExecutionMetricsFormatter.PROMETHEUS_PREFIX + toMetricName(gauge.getKey());
+        text.append("# TYPE ").append(name).append(" gauge\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        text.append(name).append(' ').append(gauge.getValue()).append('\n');
+      }
+    }
+    return text.toString();
+  }
+
+  private static String toMetricName(final String name) {
+    StringBuilder metricName = new StringBuilder(name.length());
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      metricName.append(((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) ? c : '_');
+    }
+    return metricName.toString();
+  }
+
+  private static String toLabelValue(final String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+  }
+
+}
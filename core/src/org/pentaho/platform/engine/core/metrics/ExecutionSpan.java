@@ -0,0 +1,212 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.engine.core.messages.Messages;
+
+/**
+ * Times one step of an execution, such as a request, an action sequence or a component, and records the time in
+ * {@link ExecutionMetrics} when it ends. Spans started on a thread while another span is open on it become children
+ * of that span, so that the span opened first, usually by a servlet filter, holds the breakdown of everything that
+ * happened in the request. When such a root span takes longer than the
+ * {@link #setSlowExecutionThreshold(long) slow execution threshold}, its breakdown is logged.
+ * <p>
+ * Spans must be ended on the thread that started them, in reverse order, with <code>try/finally</code>:
+ * 
+ * <pre>
+ * ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.COMPONENT, componentName);
+ * try {
+ *   ...
+ * } finally {
+ *   span.end();
+ * }
+ * </pre>
+ */
+public class ExecutionSpan {
+
+  private static final Log logger = LogFactory.getLog(ExecutionSpan.class);
+
+  /**
+   * A span keeps at most this many children for its breakdown; the time of the others is summed up.
+   */
+  private static final int MAX_CHILDREN = 50;
+
+  private static final ThreadLocal<ExecutionSpan> currentSpan = new ThreadLocal<ExecutionSpan>();
+
+  private static final ExecutionSpan DISABLED = new ExecutionSpan(null, null, null);
+
+  private static volatile long slowExecutionThreshold = 10000;
+
+  private final String timer;
+
+  private final String label;
+
+  private final ExecutionSpan parent;
+
+  private final long startNanos;
+
+  private long durationNanos = -1;
+
+  private List<ExecutionSpan> children;
+
+  private int omittedChildren;
+
+  private long omittedNanos;
+
+  private ExecutionSpan(final String timer, final String label, final ExecutionSpan parent) {
+    this.timer = timer;
+    this.label = label;
+    this.parent = parent;
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Starts timing a step of the current execution, as a child of the span open on this thread, if any.
+   * 
+   * @param timer
+   *          the timer to record the time in, such as {@link ExecutionMetrics#COMPONENT}
+   * @param label
+   *          what is timed, such as the name of the component
+   */
+  public static ExecutionSpan start(final String timer, final String label) {
+    if (!ExecutionMetrics.isEnabled()) {
+      return ExecutionSpan.DISABLED;
+    }
+    ExecutionSpan span = new ExecutionSpan(timer, label, ExecutionSpan.currentSpan.get());
+    ExecutionSpan.currentSpan.set(span);
+    return span;
+  }
+
+  /**
+   * Returns the innermost span open on this thread, or <code>null</code> if there is none.
+   */
+  public static ExecutionSpan current() {
+    return ExecutionSpan.currentSpan.get();
+  }
+
+  /**
+   * Ends the span and records its time. Logs the breakdown of a root span that was slow. Ending a span twice does
+   * nothing.
+   * 
+   * @return the time the span took, in nanoseconds
+   */
+  public long end() {
+    if (this == ExecutionSpan.DISABLED || durationNanos >= 0) {
+      return Math.max(0, durationNanos);
+    }
+    durationNanos = System.nanoTime() - startNanos;
+    ExecutionMetrics.recordTime(timer, label, durationNanos);
+    if (ExecutionSpan.currentSpan.get() == this) {
+      if (parent != null) {
+        ExecutionSpan.currentSpan.set(parent);
+      } else {
+        ExecutionSpan.currentSpan.remove();
+      }
+    }
+    if (parent != null) {
+      parent.addChild(this);
+    } else if (ExecutionSpan.slowExecutionThreshold > 0
+        && durationNanos >= ExecutionSpan.slowExecutionThreshold * 1000000L && ExecutionSpan.logger.isWarnEnabled()) {
+      ExecutionSpan.logger.warn(Messages.getInstance().getString("ExecutionSpan.WARN_SLOW_EXECUTION", //$NON-NLS-1$
+          getName(), String.valueOf(getDurationMillis()), getBreakdown()));
+    }
+    return durationNanos;
+  }
+
+  private void addChild(final ExecutionSpan child) {
+    if (children == null) {
+      children = new ArrayList<ExecutionSpan>();
+    }
+    if (children.size() < ExecutionSpan.MAX_CHILDREN) {
+      children.add(child);
+    } else {
+      omittedChildren++;
+      omittedNanos += child.durationNanos;
+    }
+  }
+
+  public String getTimer() {
+    return timer;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  private String getName() {
+    return (label == null) ? timer : timer + " " + label; //$NON-NLS-1$
+  }
+
+  /**
+   * Returns the time the span took, in milliseconds, or the time since it started if it has not ended.
+   */
+  public long getDurationMillis() {
+    long nanos = (durationNanos >= 0) ? durationNanos : System.nanoTime() - startNanos;
+    return nanos / 1000000L;
+  }
+
+  /**
+   * Returns the span and the spans it contained, one per line, indented by nesting, each with the time it took.
+   */
+  public String getBreakdown() {
+    StringBuilder breakdown = new StringBuilder();
+    appendBreakdown(breakdown, 0);
+    return breakdown.toString();
+  }
+
+  private void appendBreakdown(final StringBuilder breakdown, final int depth) {
+    indent(breakdown, depth);
+    breakdown.append(getName()).append(' ').append(getDurationMillis()).append(" ms\n"); //$NON-NLS-1$
+    if (children != null) {
+      for (ExecutionSpan child : children) {
+        child.appendBreakdown(breakdown, depth + 1);
+      }
+    }
+    if (omittedChildren > 0) {
+      indent(breakdown, depth + 1);
+      breakdown.append(Messages.getInstance().getString("ExecutionSpan.OMITTED_SPANS", //$NON-NLS-1$
+          String.valueOf(omittedChildren), String.valueOf(omittedNanos / 1000000L))).append('\n');
+    }
+  }
+
+  private static void indent(final StringBuilder breakdown, final int depth) {
+    for (int i = 0; i < depth; i++) {
+      breakdown.append("  "); //$NON-NLS-1$
+    }
+  }
+
+  public static long getSlowExecutionThreshold() {
+    return ExecutionSpan.slowExecutionThreshold;
+  }
+
+  /**
+   * Sets how long, in milliseconds, a root span may take before its breakdown is logged; 0 or less logs nothing.
+   * Default 10000.
+   */
+  public static void setSlowExecutionThreshold(final long slowExecutionThreshold) {
+    ExecutionSpan.slowExecutionThreshold = slowExecutionThreshold;
+  }
+
+}
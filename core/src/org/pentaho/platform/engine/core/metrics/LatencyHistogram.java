@@ -0,0 +1,117 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long something took in fixed buckets, from one millisecond to a minute. Recording is lock free and takes
+ * a few atomic increments, so that it can be done on every execution.
+ */
+public class LatencyHistogram {
+
+  /**
+   * Upper bounds of the buckets, in milliseconds. Times above the last bound are counted in an extra bucket.
+   */
+  private static final long[] BUCKET_BOUNDS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000,
+      60000 };
+
+  private final AtomicLongArray buckets = new AtomicLongArray(LatencyHistogram.BUCKET_BOUNDS.length + 1);
+
+  private final AtomicLong count = new AtomicLong();
+
+  private final AtomicLong sumNanos = new AtomicLong();
+
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  public void record(final long nanos) {
+    long millis = nanos / 1000000L;
+    int bucket = 0;
+    while (bucket < LatencyHistogram.BUCKET_BOUNDS.length && millis >= LatencyHistogram.BUCKET_BOUNDS[bucket]) {
+      bucket++;
+    }
+    buckets.incrementAndGet(bucket);
+    count.incrementAndGet();
+    sumNanos.addAndGet(nanos);
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+      max = maxNanos.get();
+    }
+  }
+
+  /**
+   * Returns the upper bounds of the buckets, in milliseconds, without the unbounded last bucket.
+   */
+  public static long[] getBucketBounds() {
+    return LatencyHistogram.BUCKET_BOUNDS.clone();
+  }
+
+  /**
+   * Returns how many times fell in each bucket; the last element counts the times above the last bound.
+   */
+  public long[] getBucketCounts() {
+    long[] counts = new long[buckets.length()];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets.get(i);
+    }
+    return counts;
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public double getSumMillis() {
+    return sumNanos.get() / 1000000.0;
+  }
+
+  public double getMaxMillis() {
+    return maxNanos.get() / 1000000.0;
+  }
+
+  /**
+   * Returns the upper bound, in milliseconds, of the bucket holding the given percentile, or the largest time recorded
+   * if it lies in the last bucket. Returns 0 if nothing was recorded.
+   * 
+   * @param percentile
+   *          between 0 and 100
+   */
+  public double getPercentileMillis(final double percentile) {
+    long[] counts = getBucketCounts();
+    long total = 0;
+    for (long bucketCount : counts) {
+      total += bucketCount;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(total * percentile / 100.0);
+    long seen = 0;
+    for (int i = 0; i < LatencyHistogram.BUCKET_BOUNDS.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(LatencyHistogram.BUCKET_BOUNDS[i], getMaxMillis());
+      }
+    }
+    return getMaxMillis();
+  }
+
+}
@@ -28,17 +28,23 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
+import org.dom4j.Element;
 import org.dom4j.Node;
+import org.pentaho.platform.api.engine.ILogger;
 import org.pentaho.platform.api.engine.ISystemSettings;
 import org.pentaho.platform.engine.core.messages.Messages;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
@@ -49,6 +55,12 @@ import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
  * are hardcoded to exist in <repository>/system/pentaho.xml. Provides a settings
  * cache so that settings are read from the file once, and the associated DOM
  * document is cached in memory for future lookups.
+ * <p>
+ * Each file is also flattened once into an index from element path to text, so that
+ * looking up a setting named by a plain element path such as <code>smtp-email/mail.userid</code>
+ * is a map lookup instead of an XPath query. Other setting names are still evaluated as
+ * XPath expressions. A file that changes on disk is read again on the first lookup after
+ * the reload check interval, and its new settings replace the old ones at once.
  * 
  * @author unknown
  *
@@ -64,11 +76,18 @@ public class SystemSettings extends PentahoBase implements ISystemSettings {
    */
   public static final String PENTAHOSETTINGSFILENAME = "pentaho.xml"; //$NON-NLS-1$
 
+  /**
+   * Default time, in milliseconds, between checks of a settings file for changes.
+   */
+  public static final long DEFAULT_RELOAD_CHECK_INTERVAL = 5000L;
+
   private static final String LOG_NAME = Messages.getInstance().getString("SYSTEMSETTINGS.CODE_LOG_NAME"); //$NON-NLS-1$
 
   private static final Log logger = LogFactory.getLog(SystemSettings.class);
 
-  private final Map settingsDocumentMap = Collections.synchronizedMap(new HashMap());
+  private final ConcurrentMap<String, SettingsFile> settingsFiles = new ConcurrentHashMap<String, SettingsFile>();
+
+  private volatile long reloadCheckInterval = SystemSettings.DEFAULT_RELOAD_CHECK_INTERVAL;
 
   String logId;
 
@@ -82,17 +101,32 @@ public class SystemSettings extends PentahoBase implements ISystemSettings {
     //      }
   }
 
+  /**
+   * Sets the time, in milliseconds, between checks of a settings file for changes. A
+   * changed file is read again on the first lookup after the interval has passed. Zero
+   * checks on every lookup; a negative interval never reloads a file.
+   */
+  public void setReloadCheckInterval(final long reloadCheckInterval) {
+    this.reloadCheckInterval = reloadCheckInterval;
+  }
+
+  public long getReloadCheckInterval() {
+    return reloadCheckInterval;
+  }
+
   public String getSystemSetting(final String path, final String settingName, final String defaultValue) {
-    debug(Messages.getInstance().getString("SYSTEMSETTINGS.DEBUG_GET_SYSTEM_SETTING_PATH", File.separator + path)); //$NON-NLS-1$
-    Document doc = getSystemSettingsDocument(path);
-    if (doc == null) {
+    if (loggingLevel <= ILogger.DEBUG) {
+      debug(Messages.getInstance().getString("SYSTEMSETTINGS.DEBUG_GET_SYSTEM_SETTING_PATH", File.separator + path)); //$NON-NLS-1$
+    }
+    SettingsFile settingsFile = getSettingsFile(path);
+    if (settingsFile == null) {
       return defaultValue;
     }
-    Node node = doc.selectSingleNode("//" + settingName); //$NON-NLS-1$
-    if (node == null) {
+    String value = settingsFile.getSetting(settingName);
+    if (value == null) {
       return defaultValue;
     }
-    return node.getText();
+    return value;
   }
 
   public String getSystemSetting(final String settingName, final String defaultValue) {
@@ -100,17 +134,11 @@ public class SystemSettings extends PentahoBase implements ISystemSettings {
   }
 
   public List getSystemSettings(final String path, final String settingName) {
-    List settings = (List)settingsDocumentMap.get(path + settingName);
-    if (settings != null) {
-      return settings;
-    }
-    Document doc = getSystemSettingsDocument(path);
-    if (doc == null) {
+    SettingsFile settingsFile = getSettingsFile(path);
+    if (settingsFile == null) {
       return null;
     }
-    settings = doc.selectNodes("//" + settingName); //$NON-NLS-1$
-    settingsDocumentMap.put(path + settingName, settings);
-    return settings;
+    return settingsFile.getSettings(settingName);
   }
 
   public List getSystemSettings(final String settingName) {
@@ -125,29 +153,60 @@ public class SystemSettings extends PentahoBase implements ISystemSettings {
    * Get the DOM document initialized by the file specified in the <code>actionPath</code>
    * parameter. If this is the first time the document associated with <code>actionPath</code>
    * has been requested, cache the DOM document. If this is not the first time the document
-   * has been requested, return the document from the cache.
+   * has been requested, return the document from the cache, unless the file has changed since.
    */
   public Document getSystemSettingsDocument(final String actionPath) {
     // S logId =
     // runtimeContext.getInstanceId()+":"+LOG_NAME+":"+runtimeContext.getActionName(); //$NON-NLS-1$ //$NON-NLS-2$
-    Document systemSettingsDocument = (Document) settingsDocumentMap.get(actionPath);
-    if (systemSettingsDocument == null) {
-      File f = getFile(actionPath);
-      if (f == null) {
-        return null;
+    SettingsFile settingsFile = getSettingsFile(actionPath);
+    return (settingsFile != null) ? settingsFile.document : null;
+  }
+
+  /**
+   * Returns the settings of the file at <code>path</code>, reading the file the first
+   * time it is asked for and again when it has changed.
+   */
+  private SettingsFile getSettingsFile(final String path) {
+    SettingsFile settingsFile = settingsFiles.get(path);
+    if (settingsFile == null) {
+      settingsFile = readSettingsFile(path);
+      if (settingsFile != null) {
+        SettingsFile existing = settingsFiles.putIfAbsent(path, settingsFile);
+        if (existing != null) {
+          settingsFile = existing;
+        }
       }
-      try {
-        systemSettingsDocument = getSettingsDocumentFromFile(f);
-        settingsDocumentMap.put(actionPath, systemSettingsDocument);
-      } catch (DocumentException e) {
-        // todo log this
-        e.printStackTrace();
-      } catch (IOException e) {
-        // todo log this
-        e.printStackTrace();
+    } else if (settingsFile.isCheckDue(reloadCheckInterval) && settingsFile.hasChanged()) {
+      SettingsFile reloaded = readSettingsFile(path);
+      // keep the settings we have if the changed file cannot be read
+      if (reloaded != null) {
+        if (loggingLevel <= ILogger.DEBUG) {
+          debug(Messages.getInstance().getString("SYSTEMSETTINGS.DEBUG_RELOADED_FILE", settingsFile.file.getAbsolutePath())); //$NON-NLS-1$
+        }
+        settingsFiles.replace(path, settingsFile, reloaded);
+        settingsFile = reloaded;
       }
     }
-    return systemSettingsDocument;
+    return settingsFile;
+  }
+
+  private SettingsFile readSettingsFile(final String path) {
+    File f = getFile(path);
+    if (f == null) {
+      return null;
+    }
+    // read the time stamp first, so that a change made while the file is read is seen on the next check
+    long lastModified = f.lastModified();
+    long length = f.length();
+    try {
+      Document document = getSettingsDocumentFromFile(f);
+      return new SettingsFile(f, lastModified, length, document, reloadCheckInterval);
+    } catch (DocumentException e) {
+      error(Messages.getInstance().getErrorString("SYSTEMSETTINGS.ERROR_0004_INVALID_FILE", f.getAbsolutePath()), e); //$NON-NLS-1$
+    } catch (IOException e) {
+      error(Messages.getInstance().getErrorString("SYSTEMSETTINGS.ERROR_0004_INVALID_FILE", f.getAbsolutePath()), e); //$NON-NLS-1$
+    }
+    return null;
   }
 
   /**
@@ -188,7 +247,7 @@ public class SystemSettings extends PentahoBase implements ISystemSettings {
   }
 
   public void resetSettingsCache() {
-    settingsDocumentMap.clear();
+    settingsFiles.clear();
   }
 
   //TODO sbarkdull, this props could be cached in a map similar to how the xml docs are cached
@@ -218,4 +277,153 @@ public class SystemSettings extends PentahoBase implements ISystemSettings {
   public String getSystemCfgSourceName() {
     return getAbsolutePath(SystemSettings.PENTAHOSETTINGSFILENAME);
   }
+
+  /**
+   * Returns <code>true</code> if <code>settingName</code> is a plain path of element
+   * names, which selects the same elements as an XPath expression as it does in the index.
+   */
+  static boolean isElementPath(final String settingName) {
+    if ((settingName.length() == 0) || settingName.startsWith("/") || settingName.endsWith("/") //$NON-NLS-1$ //$NON-NLS-2$
+        || (settingName.indexOf("//") != -1)) { //$NON-NLS-1$
+      return false;
+    }
+    boolean nameStart = true;
+    for (int i = 0; i < settingName.length(); i++) {
+      char c = settingName.charAt(i);
+      if (c == '/') {
+        nameStart = true;
+      } else if (nameStart) {
+        // each name starts with a letter or underscore, which also rules out . and ..
+        if (!Character.isLetter(c) && (c != '_')) {
+          return false;
+        }
+        nameStart = false;
+      } else if (!Character.isLetterOrDigit(c) && (c != '-') && (c != '_') && (c != '.')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A settings file as it was read: its document, and the index of the text of its
+   * elements by every trailing part of their element path. The index holds the first
+   * element in document order for each path, as <code>selectSingleNode("//" + path)</code>
+   * would return. A settings file is never changed once read; a changed file is read
+   * into a new one.
+   */
+  private static class SettingsFile {
+    private static final String NOT_FOUND = new String();
+
+    private final File file;
+
+    private final long lastModified;
+
+    private final long length;
+
+    private final Document document;
+
+    private final Map<String, String> index;
+
+    /**
+     * Values of the setting names that are not plain element paths. Names with a predicate are not kept, as callers
+     * build those from values such as file paths and there is no bound on how many there are.
+     */
+    private final ConcurrentMap<String, String> queries = new ConcurrentHashMap<String, String>();
+
+    private final ConcurrentMap<String, List> settingLists = new ConcurrentHashMap<String, List>();
+
+    private volatile long nextCheck;
+
+    SettingsFile(final File file, final long lastModified, final long length, final Document document,
+        final long reloadCheckInterval) {
+      this.file = file;
+      this.lastModified = lastModified;
+      this.length = length;
+      this.document = document;
+      Map<String, String> elements = new HashMap<String, String>();
+      Element root = document.getRootElement();
+      if (root != null) {
+        SettingsFile.index(root, new ArrayList<String>(), elements);
+      }
+      this.index = Collections.unmodifiableMap(elements);
+      this.nextCheck = System.currentTimeMillis() + reloadCheckInterval;
+    }
+
+    private static void index(final Element element, final List<String> parentPath, final Map<String, String> index) {
+      List<String> path;
+      if (element.getNamespaceURI().length() == 0) {
+        path = new ArrayList<String>(parentPath);
+        path.add(element.getName());
+        String text = element.getText();
+        StringBuilder key = new StringBuilder();
+        for (int i = path.size() - 1; i >= 0; i--) {
+          key.insert(0, path.get(i));
+          String setting = key.toString();
+          if (!index.containsKey(setting)) {
+            index.put(setting, text);
+          }
+          key.insert(0, '/');
+        }
+      } else {
+        // names in a namespace are not matched by plain names; such an element breaks the paths through it
+        path = new ArrayList<String>();
+      }
+      for (Iterator<?> iter = element.elementIterator(); iter.hasNext();) {
+        SettingsFile.index((Element) iter.next(), path, index);
+      }
+    }
+
+    String getSetting(final String settingName) {
+      // every key of the index is an element path, so a hit needs no further checks
+      String value = index.get(settingName);
+      if ((value != null) || SystemSettings.isElementPath(settingName)) {
+        return value;
+      }
+      value = queries.get(settingName);
+      if (value == null) {
+        Node node = document.selectSingleNode("//" + settingName); //$NON-NLS-1$
+        value = (node != null) ? node.getText() : SettingsFile.NOT_FOUND;
+        if (SettingsFile.isCacheable(settingName)) {
+          queries.put(settingName, value);
+        }
+      }
+      return (value != SettingsFile.NOT_FOUND) ? value : null;
+    }
+
+    /**
+     * Returns the nodes the setting name selects. The list is shared between callers, so it cannot be changed.
+     */
+    List getSettings(final String settingName) {
+      List settings = settingLists.get(settingName);
+      if (settings == null) {
+        settings = Collections.unmodifiableList(document.selectNodes("//" + settingName)); //$NON-NLS-1$
+        if (SettingsFile.isCacheable(settingName)) {
+          settingLists.put(settingName, settings);
+        }
+      }
+      return settings;
+    }
+
+    private static boolean isCacheable(final String settingName) {
+      return settingName.indexOf('[') < 0;
+    }
+
+    boolean isCheckDue(final long reloadCheckInterval) {
+      if (reloadCheckInterval < 0) {
+        return false;
+      }
+      long now = System.currentTimeMillis();
+      if (now < nextCheck) {
+        return false;
+      }
+      // two threads checking at once is harmless
+      nextCheck = now + reloadCheckInterval;
+      return true;
+    }
+
+    boolean hasChanged() {
+      return (file.lastModified() != lastModified) || (file.length() != length);
+    }
+  }
 }
@@ -7,34 +7,84 @@ import org.slf4j.LoggerFactory;
 
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * AggregateObectFactory holds a collection of IPentahoObjectFactory implementations, delegating calls to each and
  * collecting the results. Results are ordered by "priority" attribute if present, with the highest priority object
  * returned in the calls to retrieve a single object.
  *
+ * Lookups are resolved once and cached: which factories define an interface or key, and which factory holds the
+ * highest priority object for an interface and set of properties. Only the resolution is cached, never the objects,
+ * so every lookup still gets its object from the winning factory, in its singleton, session or prototype scope.
+ * Resolutions are dropped when a factory is registered or when any factory's definitions change, see
+ * {@link #definitionsChanged()}. They are only cached while all registered factories are Spring or standalone
+ * factories, which report their changes.
+ *
  * {@inheritDoc}
  *
  * User: nbaker
  * Date: 1/15/13
  */
 public class AggregateObjectFactory implements IPentahoObjectFactory {
-  protected Set<IPentahoObjectFactory> factories = Collections.synchronizedSet(new HashSet<IPentahoObjectFactory>());
+  // registrations are rare and lookups are frequent; copy-on-write lets lookups iterate without locking
+  protected Set<IPentahoObjectFactory> factories = new CopyOnWriteArraySet<IPentahoObjectFactory>();
   protected IPentahoObjectFactory primaryFactory;
   private Logger logger = LoggerFactory.getLogger(AggregateObjectFactory.class);
 
+  /**
+   * Incremented whenever a factory is registered or the definitions of a factory change. Resolutions made at an older
+   * version are stale.
+   */
+  private static final AtomicLong definitionsVersion = new AtomicLong();
+
+  /**
+   * Resolutions are forgotten when this many have been made, so that lookups by ever new keys or properties cannot
+   * grow the cache without bound.
+   */
+  private static final int MAX_RESOLUTIONS = 5000;
+
+  private final ConcurrentMap<Object, Resolution> resolutions = new ConcurrentHashMap<Object, Resolution>();
+
+  private volatile long resolutionsVersion = -1;
+
+  private volatile boolean cacheResolutions = true;
+
   public AggregateObjectFactory(){
 
   }
 
+  /**
+   * Tells every aggregate factory that objects have been defined in, or removed from, a registered factory, so that
+   * lookups are resolved again.
+   */
+  public static void definitionsChanged() {
+    definitionsVersion.incrementAndGet();
+  }
+
   public void registerObjectFactory(IPentahoObjectFactory fact, boolean primary){
     factories.add(fact);
     if(primary){
       primaryFactory = fact;
     }
+    updateCacheResolutions();
+    definitionsChanged();
     logger.debug("New IPentahoObjectFactory registered: "+fact.getName());
   }
 
+  private void updateCacheResolutions() {
+    boolean cacheable = true;
+    for(IPentahoObjectFactory fact : factories){
+      if(!(fact instanceof AbstractSpringPentahoObjectFactory) && !(fact instanceof StandaloneObjectFactory)){
+        cacheable = false;
+      }
+    }
+    cacheResolutions = cacheable;
+  }
+
   public void registerObjectFactory(IPentahoObjectFactory fact){
     registerObjectFactory(fact, false);
   }
@@ -51,12 +101,13 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public <T> T get(Class<T> interfaceClass, String key, IPentahoSession session) throws ObjectFactoryException {
     // if they want it by id, check for that first
     if(key != null){
-      for(IPentahoObjectFactory fact : factories){
-        if(fact.objectDefined(key)){
-          T object = fact.get(interfaceClass, key, session);
+      IPentahoObjectFactory fact = getDefiningFactory(key);
+      if(fact != null){
+        T object = fact.get(interfaceClass, key, session);
+        if(logger.isDebugEnabled()){
           logger.debug(MessageFormat.format("Found object for key: {0} in factory: {1}", key, fact.getName()));
-          return object;
         }
+        return object;
       }
     }
 
@@ -96,11 +147,12 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
   @Override
   public boolean objectDefined(String key) {
-    for(IPentahoObjectFactory fact : factories){
-      if(fact.objectDefined(key)){
+    IPentahoObjectFactory fact = getDefiningFactory(key);
+    if(fact != null){
+      if(logger.isDebugEnabled()){
         logger.debug(MessageFormat.format("Object defined for key: {0} in factory: {1}", key, fact.getName()));
-        return true;
       }
+      return true;
     }
     return false;
   }
@@ -112,11 +164,12 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
    */
   @Override
   public Class<?> getImplementingClass(String key) {
-    for(IPentahoObjectFactory fact : factories){
-      if(fact.objectDefined(key)){
+    IPentahoObjectFactory fact = getDefiningFactory(key);
+    if(fact != null){
+      if(logger.isDebugEnabled()){
         logger.debug(MessageFormat.format("Found implementing class for key: {0} in factory: {1}", key, fact.getName()));
-        return fact.getImplementingClass(key);
       }
+      return fact.getImplementingClass(key);
     }
     return null;
   }
@@ -137,12 +190,10 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
     List<IPentahoObjectReference<T>> referenceList = new ArrayList<IPentahoObjectReference<T>>();
 
-    for(IPentahoObjectFactory fact : factories){
-      if(fact.objectDefined(interfaceClass)){
-        List<IPentahoObjectReference<T>> refs = fact.getObjectReferences(interfaceClass, curSession, properties);
-        if(refs != null){
-          referenceList.addAll(refs);
-        }
+    for(IPentahoObjectFactory fact : getDefiningFactories(interfaceClass)){
+      List<IPentahoObjectReference<T>> refs = fact.getObjectReferences(interfaceClass, curSession, properties);
+      if(refs != null){
+        referenceList.addAll(refs);
       }
     }
 
@@ -159,29 +210,7 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
   @Override
   public <T> IPentahoObjectReference<T> getObjectReference(Class<T> clazz, IPentahoSession curSession) throws ObjectFactoryException{
-
-    Set<IPentahoObjectReference<T>> references = new HashSet<IPentahoObjectReference<T>>();
-
-    for(IPentahoObjectFactory fact : factories){
-      if(fact.objectDefined(clazz)){
-        IPentahoObjectReference<T> found = fact.getObjectReference(clazz, curSession);
-        if(found != null){
-          references.add(found);
-        }
-
-      }
-    }
-    IPentahoObjectReference<T> highestRef = null;
-    int highestRefPriority = -1;
-    for(IPentahoObjectReference<T> ref : references){
-      int pri = computePriority(ref);
-      if(pri  > highestRefPriority){
-        highestRef = ref;
-        highestRefPriority = pri;
-      }
-    }
-
-    return highestRef;
+    return getObjectReference(clazz, curSession, null);
   }
 
   @Override
@@ -193,11 +222,10 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
       return highestRef.getObject();
     }
 
-    for(IPentahoObjectFactory fact : factories){
-      if(fact.objectDefined(clazz.getSimpleName())){
-        T object = fact.get(clazz, clazz.getSimpleName(), session);
-        return object;
-      }
+    IPentahoObjectFactory fact = getDefiningFactory(clazz.getSimpleName());
+    if(fact != null){
+      T object = fact.get(clazz, clazz.getSimpleName(), session);
+      return object;
     }
     String msg = Messages.getInstance().getString("AbstractSpringPentahoObjectFactory.WARN_FAILED_TO_RETRIEVE_OBJECT", clazz.getSimpleName());
     throw new ObjectFactoryException(msg);
@@ -206,12 +234,12 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
   @Override
   public boolean objectDefined(Class<?> clazz) {
-    for(IPentahoObjectFactory fact : factories){
-      if(fact.objectDefined(clazz)){
-
-        logger.debug(MessageFormat.format("Found object for class: {0} in factory: {1}", clazz.getName(), fact.getName()));
-        return true;
+    List<IPentahoObjectFactory> defining = getDefiningFactories(clazz);
+    if(!defining.isEmpty()){
+      if(logger.isDebugEnabled()){
+        logger.debug(MessageFormat.format("Found object for class: {0} in factory: {1}", clazz.getName(), defining.get(0).getName()));
       }
+      return true;
     }
     return false;
   }
@@ -219,31 +247,151 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   @Override
   public <T> IPentahoObjectReference<T> getObjectReference(Class<T> interfaceClass, IPentahoSession curSession, Map<String, String> properties) throws ObjectFactoryException{
 
-    Set<IPentahoObjectReference<T>> references = new HashSet<IPentahoObjectReference<T>>();
-
-    for(IPentahoObjectFactory fact : factories){
-      if(fact.objectDefined(interfaceClass)){
-        IPentahoObjectReference<T> found = fact.getObjectReference(interfaceClass, curSession, properties);
-        if(found != null){
-          references.add(found);
-        }
-      }
+    ReferenceKey key = new ReferenceKey(interfaceClass, properties);
+    Resolution resolution = getResolution(key);
+    if(resolution != null){
+      IPentahoObjectFactory winner = resolution.factory;
+      return (winner != null) ? winner.getObjectReference(interfaceClass, curSession, properties) : null;
     }
+
+    long version = definitionsVersion.get();
     IPentahoObjectReference<T> highestRef = null;
+    IPentahoObjectFactory highestRefFactory = null;
     int highestRefPriority = -1;
-    for(IPentahoObjectReference<T> ref : references){
-      int pri = computePriority(ref);
-      if(pri  > highestRefPriority){
-        highestRef = ref;
-        highestRefPriority = pri;
+    Set<IPentahoObjectReference<T>> references = new HashSet<IPentahoObjectReference<T>>();
+
+    for(IPentahoObjectFactory fact : getDefiningFactories(interfaceClass)){
+      IPentahoObjectReference<T> found = fact.getObjectReference(interfaceClass, curSession, properties);
+      // a reference that another factory also returned has been ranked already
+      if(found != null && references.add(found)){
+        int pri = computePriority(found);
+        if(pri  > highestRefPriority){
+          highestRef = found;
+          highestRefFactory = fact;
+          highestRefPriority = pri;
+        }
       }
     }
+    putResolution(key, new Resolution(version, highestRefFactory, null));
 
     return highestRef;
   }
 
   public void clear() {
     this.factories.clear();
+    updateCacheResolutions();
+    definitionsChanged();
+  }
+
+  /**
+   * Returns the first factory defining an object for <code>key</code>, or <code>null</code> if none does.
+   */
+  private IPentahoObjectFactory getDefiningFactory(String key) {
+    Resolution resolution = getResolution(key);
+    if(resolution != null){
+      return resolution.factory;
+    }
+    long version = definitionsVersion.get();
+    IPentahoObjectFactory defining = null;
+    for(IPentahoObjectFactory fact : factories){
+      if(fact.objectDefined(key)){
+        defining = fact;
+        break;
+      }
+    }
+    putResolution(key, new Resolution(version, defining, null));
+    return defining;
+  }
+
+  /**
+   * Returns the factories defining objects of type <code>clazz</code>.
+   */
+  private List<IPentahoObjectFactory> getDefiningFactories(Class<?> clazz) {
+    Resolution resolution = getResolution(clazz);
+    if(resolution != null){
+      return resolution.factories;
+    }
+    long version = definitionsVersion.get();
+    List<IPentahoObjectFactory> defining = new ArrayList<IPentahoObjectFactory>();
+    for(IPentahoObjectFactory fact : factories){
+      if(fact.objectDefined(clazz)){
+        defining.add(fact);
+      }
+    }
+    defining = Collections.unmodifiableList(defining);
+    putResolution(clazz, new Resolution(version, null, defining));
+    return defining;
+  }
+
+  private Resolution getResolution(Object key) {
+    if(!cacheResolutions){
+      return null;
+    }
+    Resolution resolution = resolutions.get(key);
+    if(resolution == null || resolution.version != definitionsVersion.get()){
+      return null;
+    }
+    return resolution;
+  }
+
+  private void putResolution(Object key, Resolution resolution) {
+    if(!cacheResolutions){
+      return;
+    }
+    if(resolution.version != definitionsVersion.get()){
+      // definitions changed while resolving; the resolution may be stale already
+      return;
+    }
+    if(resolutionsVersion != resolution.version || resolutions.size() >= MAX_RESOLUTIONS){
+      // drop the stale resolutions at once rather than one by one
+      resolutions.clear();
+      resolutionsVersion = resolution.version;
+    }
+    resolutions.put(key, resolution);
+  }
+
+  /**
+   * The factory, or factories, a lookup resolved to at a version of the definitions.
+   */
+  private static class Resolution {
+    private final long version;
+
+    private final IPentahoObjectFactory factory;
+
+    private final List<IPentahoObjectFactory> factories;
+
+    private Resolution(long version, IPentahoObjectFactory factory, List<IPentahoObjectFactory> factories) {
+      this.version = version;
+      this.factory = factory;
+      this.factories = factories;
+    }
+  }
+
+  private static class ReferenceKey {
+    private final Class<?> interfaceClass;
+
+    private final Map<String, String> properties;
+
+    private ReferenceKey(Class<?> interfaceClass, Map<String, String> properties) {
+      this.interfaceClass = interfaceClass;
+      // copied, as callers may change their map after the lookup
+      this.properties = (properties == null || properties.isEmpty()) ? Collections.<String, String>emptyMap()
+          : new HashMap<String, String>(properties);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * interfaceClass.hashCode() + properties.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if(!(obj instanceof ReferenceKey)){
+        return false;
+      }
+      ReferenceKey other = (ReferenceKey) obj;
+      return interfaceClass.equals(other.interfaceClass) && properties.equals(other.properties);
+    }
   }
 
   private static ReferencePriorityComparitor referencePriorityComparitor = new ReferencePriorityComparitor();
@@ -290,12 +438,10 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
     // Use a set to avoid duplicates
     Set<IPentahoObjectReference<T>> referenceSet = new TreeSet<IPentahoObjectReference<T>>();
 
-    for(IPentahoObjectFactory fact : factories){
-      if(fact.objectDefined(interfaceClass)){
-        IPentahoObjectReference<T> found = fact.getObjectReference(interfaceClass, curSession, properties);
-        if(found != null){
-          referenceSet.add(found);
-        }
+    for(IPentahoObjectFactory fact : getDefiningFactories(interfaceClass)){
+      IPentahoObjectReference<T> found = fact.getObjectReference(interfaceClass, curSession, properties);
+      if(found != null){
+        referenceSet.add(found);
       }
     }
 
@@ -62,6 +62,7 @@ public class StandaloneObjectFactory implements IPentahoDefinableObjectFactory {
 
   public void init(String arg0, Object arg1) { 
     creators.clear();
+    AggregateObjectFactory.definitionsChanged();
   }
 
   public boolean objectDefined(String key) {
@@ -77,6 +78,7 @@ public class StandaloneObjectFactory implements IPentahoDefinableObjectFactory {
     
     ObjectCreator creator = new ObjectCreator( className, scope, loader );
     creators.put( key, creator );
+    AggregateObjectFactory.definitionsChanged();
   }
   
   protected Object retreiveObject( String key, IPentahoSession session ) throws ObjectFactoryException {
@@ -210,6 +212,7 @@ public class StandaloneObjectFactory implements IPentahoDefinableObjectFactory {
 
   public void defineInstance(String key, Object instance) {
     instanceMap.put(key, instance);
+    AggregateObjectFactory.definitionsChanged();
   }
 
 
@@ -1,5 +1,6 @@
 package org.pentaho.platform.engine.core.system.objfac.spring;
 
+import org.pentaho.platform.engine.core.system.objfac.AggregateObjectFactory;
 import org.springframework.beans.factory.HierarchicalBeanFactory;
 import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
@@ -42,6 +43,7 @@ public class PublishedBeanRegistry {
       registryMap.put(clazz, beansImplementingType);
     }
     beansImplementingType.add(beanName);
+    AggregateObjectFactory.definitionsChanged();
   }
 
   public static String[] getBeanNamesForType(ListableBeanFactory registry, Class<?> type) {
@@ -46,6 +46,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.services.actionsequence.ActionSequenceCache;
 import org.pentaho.platform.engine.services.actionsequence.SequenceDefinition;
 import org.pentaho.platform.engine.services.messages.Messages;
 import org.pentaho.platform.util.messages.LocaleHelper;
@@ -79,24 +80,44 @@ public class ActionSequenceJCRHelper {
     }
   }
 
+  /**
+   * Returns a new instance of the action sequence at {@code actionPath}. Sequences are parsed and localized once per
+   * file version and locale and then copied from the {@link ActionSequenceCache}.
+   */
   public IActionSequence getActionSequence(String actionPath, int loggingLevel, int actionOperation) {
-    Document actionSequenceDocument = getSolutionDocument(actionPath, actionOperation);
-    if (actionSequenceDocument == null) {
-      return null;
+    RepositoryFile file = repository.getFile(actionPath);
+    if (file == null) {
+      // fails as getSolutionDocument does
+      return getActionSequence(getSolutionDocument(actionPath, actionOperation), actionPath, loggingLevel);
+    }
+    ActionSequenceCache cache = new ActionSequenceCache(PentahoSystem.getCacheManager(pentahoSession));
+    Locale locale = getLocale();
+    IActionSequence actionSequence = cache.get(file, locale, loggingLevel);
+    if (actionSequence != null) {
+      return actionSequence;
     }
-    IActionSequence actionSequence = SequenceDefinition.ActionSequenceFactory(actionSequenceDocument,
-        actionPath, pentahoSession, PentahoSystem.getApplicationContext(), loggingLevel);
+    long start = System.nanoTime();
+    actionSequence = getActionSequence(getSolutionDocument(file, actionPath), actionPath, loggingLevel);
     if (actionSequence == null) {
       return null;
     }
+    return cache.put(file, locale, actionSequence, loggingLevel, System.nanoTime() - start);
+  }
 
-    return actionSequence;
+  private IActionSequence getActionSequence(final Document actionSequenceDocument, final String actionPath,
+      final int loggingLevel) {
+    if (actionSequenceDocument == null) {
+      return null;
+    }
+    return SequenceDefinition.ActionSequenceFactory(actionSequenceDocument, actionPath, pentahoSession,
+        PentahoSystem.getApplicationContext(), loggingLevel);
   }
   
   public Document getSolutionDocument(final String documentPath, final int actionOperation) {
-    
-    RepositoryFile file = repository.getFile(documentPath);
-    
+    return getSolutionDocument(repository.getFile(documentPath), documentPath);
+  }
+
+  private Document getSolutionDocument(final RepositoryFile file, final String documentPath) {
     Document document = null;
     SimpleRepositoryFileData data = null;
       
@@ -105,4 +105,18 @@ public class SolutionURIResolver implements URIResolver, IDocumentResourceLoader
     return xslIS;
   }
 
+  /**
+   * Every solution resolver resolves from the solution repository, so stylesheets compiled with one can be reused with
+   * another.
+   */
+  @Override
+  public boolean equals(final Object obj) {
+    return (obj != null) && (obj.getClass() == getClass());
+  }
+
+  @Override
+  public int hashCode() {
+    return getClass().hashCode();
+  }
+
 }
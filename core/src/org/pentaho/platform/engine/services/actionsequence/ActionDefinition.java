@@ -117,6 +117,36 @@ public class ActionDefinition implements ISolutionActionDefinition {
     // TODO populate preExecuteAuditList and postExecuteAuditList
   }
 
+  /**
+   * Copy constructor for {@link #copy(int)}; the nodes and mappings parsed from the document are shared.
+   */
+  private ActionDefinition(final ActionDefinition other, final int loggingLevel) {
+    this.errorCode = other.errorCode;
+    this.loggingLevel = loggingLevel;
+    this.preExecuteAuditList = other.preExecuteAuditList;
+    this.postExecuteAuditList = other.postExecuteAuditList;
+    this.description = other.description;
+    this.author = other.author;
+    this.help = other.help;
+    this.iconUrl = other.iconUrl;
+    this.componentNode = other.componentNode;
+    this.actionRootNode = other.actionRootNode;
+    this.componentName = other.componentName;
+    this.actionInputDefinitions = SequenceDefinition.copyParameters(other.actionInputDefinitions);
+    this.actionInputMapping = other.actionInputMapping;
+    this.actionOutputDefinitions = SequenceDefinition.copyParameters(other.actionOutputDefinitions);
+    this.actionOutputMapping = other.actionOutputMapping;
+    this.actionResourceMapping = other.actionResourceMapping;
+    this.hasActionResources = other.hasActionResources;
+  }
+
+  /**
+   * Returns a copy of this definition for another execution: it has no component and its parameters have no values.
+   */
+  ActionDefinition copy(final int loggingLevel) {
+    return new ActionDefinition(this, loggingLevel);
+  }
+
   public int getErrorCode() {
     return errorCode;
   }
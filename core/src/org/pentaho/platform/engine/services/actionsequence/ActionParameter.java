@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.collections.map.ListOrderedMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.commons.connection.IDisposable;
@@ -53,6 +54,8 @@ public class ActionParameter implements IActionParameter {
   
   private boolean isOutputParameter = true;
 
+  private boolean valueShared;
+
 	private static final Log logger = LogFactory.getLog(ActionParameter.class);
 
   // should we force this to String for serialization?
@@ -104,6 +107,55 @@ public class ActionParameter implements IActionParameter {
     }
   }
 
+  /**
+   * Returns a new parameter with the definition of this one and no value, for use by another execution. Mutable
+   * default values are copied.
+   */
+  ActionParameter copy() {
+    ActionParameter copy = new ActionParameter(name, type, null, variables, ActionParameter.copyDefaultValue(defaultValue));
+    copy.setOutputParameter(isOutputParameter);
+    return copy;
+  }
+
+  /**
+   * Returns a new parameter with the definition and the value of this one, for one iteration of a parallel loop. The
+   * new parameter does not own the value: disposing it leaves the value alone until a value of its own is set.
+   */
+  public ActionParameter shareValue() {
+    ActionParameter copy = new ActionParameter(name, type, value, variables, defaultValue);
+    copy.setOutputParameter(isOutputParameter);
+    copy.promptType = promptType;
+    copy.paramSelections = paramSelections;
+    copy.saveLocations = saveLocations;
+    copy.valueShared = true;
+    return copy;
+  }
+
+  /**
+   * Returns <code>true</code> if the value of this parameter is still the one it was {@link #shareValue() shared}
+   * with.
+   */
+  public boolean isValueShared() {
+    return valueShared;
+  }
+
+  private static Object copyDefaultValue(final Object defaultValue) {
+    if (defaultValue instanceof IPentahoResultSet) {
+      return ((IPentahoResultSet) defaultValue).memoryCopy();
+    } else if (defaultValue instanceof Map) {
+      Map copy = new ListOrderedMap();
+      copy.putAll((Map) defaultValue);
+      return copy;
+    } else if (defaultValue instanceof List) {
+      List copy = new ArrayList();
+      for (Object item : (List) defaultValue) {
+        copy.add(ActionParameter.copyDefaultValue(item));
+      }
+      return copy;
+    }
+    return defaultValue;
+  }
+
   public List getSaveLocations() {
     return (saveLocations == null) ? new ArrayList() : saveLocations;
   }
@@ -170,6 +222,7 @@ public class ActionParameter implements IActionParameter {
     if (this.value != value) {
       dispose();
       this.value = value;
+      valueShared = false;
     }
   }
 
@@ -190,7 +243,7 @@ public class ActionParameter implements IActionParameter {
   }
 
   public void dispose() {
-    if ((value != null) && (value instanceof IDisposable)) {
+    if (!valueShared && (value != null) && (value instanceof IDisposable)) {
       ((IDisposable) value).dispose();
     }
   }
@@ -21,12 +21,14 @@
  */
 package org.pentaho.platform.engine.services.actionsequence;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.pentaho.platform.api.engine.IActionSequence;
 import org.pentaho.platform.api.engine.IConditionalExecution;
 import org.pentaho.platform.api.engine.ISequenceDefinition;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 public class ActionSequence implements IActionSequence {
   private ISequenceDefinition sequenceDefinition;
@@ -39,6 +41,12 @@ public class ActionSequence implements IActionSequence {
 
   private boolean loopUsingPeek;
 
+  private int loopMaxThreads = 1;
+
+  private boolean loopOrdered = true;
+
+  private boolean loopFailFast = true;
+
   protected ActionSequence(final String loopParameter, final ISequenceDefinition sequenceDefinition,
       final List actionDefinitions, boolean loopUsingPeek) {
     this.loopParameter = loopParameter;
@@ -47,6 +55,50 @@ public class ActionSequence implements IActionSequence {
     this.loopUsingPeek = loopUsingPeek;
   }
 
+  /**
+   * Returns a copy of this sequence that can be executed independently of it and of any other copy. Everything that
+   * an execution changes (parameter values, components, logging level, conditions) is new; the definitions parsed from
+   * the document are shared. This lets {@link ActionSequenceCache} parse and localize a document once for many
+   * executions.
+   */
+  public ActionSequence copy(final int loggingLevel) {
+    ISequenceDefinition definition = sequenceDefinition;
+    if (sequenceDefinition instanceof SequenceDefinition) {
+      definition = ((SequenceDefinition) sequenceDefinition).copy();
+    }
+    return copy(definition, loggingLevel);
+  }
+
+  /**
+   * Returns a copy of the actions of this sequence that shares its sequence definition, for one iteration of a
+   * parallel loop.
+   */
+  public ActionSequence copyActions(final int loggingLevel) {
+    return copy(sequenceDefinition, loggingLevel);
+  }
+
+  private ActionSequence copy(final ISequenceDefinition definition, final int loggingLevel) {
+    List actionDefinitionsCopy = new ArrayList(actionDefinitions.size());
+    for (Object actionDefinition : actionDefinitions) {
+      if (actionDefinition instanceof ActionSequence) {
+        // a nested loop group shares the sequence definition of its parent
+        actionDefinitionsCopy.add(((ActionSequence) actionDefinition).copy(definition, loggingLevel));
+      } else if (actionDefinition instanceof ActionDefinition) {
+        actionDefinitionsCopy.add(((ActionDefinition) actionDefinition).copy(loggingLevel));
+      } else {
+        actionDefinitionsCopy.add(actionDefinition);
+      }
+    }
+    ActionSequence copy = new ActionSequence(loopParameter, definition, actionDefinitionsCopy, loopUsingPeek);
+    copy.setLoopExecution(loopMaxThreads, loopOrdered, loopFailFast);
+    if (conditionalExecution != null) {
+      IConditionalExecution conditionalExecutionCopy = PentahoSystem.get(IConditionalExecution.class, null);
+      conditionalExecutionCopy.setScript(conditionalExecution.getScript());
+      copy.setConditionalExecution(conditionalExecutionCopy);
+    }
+    return copy;
+  }
+
   public List getActionDefinitions() {
     return actionDefinitions;
   }
@@ -131,4 +183,22 @@ public class ActionSequence implements IActionSequence {
     return loopUsingPeek;
   }
 
+  public int getLoopMaxThreads() {
+    return loopMaxThreads;
+  }
+
+  public boolean getLoopOrdered() {
+    return loopOrdered;
+  }
+
+  public boolean getLoopFailFast() {
+    return loopFailFast;
+  }
+
+  void setLoopExecution(final int maxThreads, final boolean ordered, final boolean failFast) {
+    this.loopMaxThreads = Math.max(1, maxThreads);
+    this.loopOrdered = ordered;
+    this.loopFailFast = failFast;
+  }
+
 }
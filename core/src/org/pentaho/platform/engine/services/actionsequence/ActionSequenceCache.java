@@ -0,0 +1,199 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.actionsequence;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pentaho.platform.api.engine.IActionSequence;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+/**
+ * Caches parsed and localized action sequences in the {@link #CACHE_REGION} region of the {@link ICacheManager}, so
+ * that an xaction that is run again is neither read, parsed nor localized again.
+ *
+ * <p>
+ * Entries are keyed by file id and locale, and stamped with the version id and last modified date of the file they
+ * were parsed from. An entry whose file has been updated since is replaced on the next lookup. The cached sequences are
+ * never executed: {@link #get} and {@link #put} hand out a {@link ActionSequence#copy(int) copy} for each execution.
+ * Changes to the message bundles that localize a sequence are seen once its entry is evicted or the region is
+ * cleared.
+ * </p>
+ *
+ * <p>
+ * Hit and miss counts and the parse time spent and saved are kept over all instances, for monitoring.
+ * </p>
+ */
+public class ActionSequenceCache {
+
+  public static final String CACHE_REGION = "action-sequence-cache"; //$NON-NLS-1$
+
+  private static final AtomicLong hitCount = new AtomicLong();
+
+  private static final AtomicLong missCount = new AtomicLong();
+
+  private static final AtomicLong parseTimeNanos = new AtomicLong();
+
+  private static final AtomicLong savedParseTimeNanos = new AtomicLong();
+
+  private final ICacheManager cacheManager;
+
+  /**
+   * @param cacheManager
+   *          the cache manager holding the region; if {@code null} or disabled nothing is cached
+   */
+  public ActionSequenceCache(final ICacheManager cacheManager) {
+    if (cacheManager != null && cacheManager.cacheEnabled()) {
+      if (!cacheManager.cacheEnabled(CACHE_REGION)) {
+        cacheManager.addCacheRegion(CACHE_REGION);
+      }
+      this.cacheManager = cacheManager;
+    } else {
+      this.cacheManager = null;
+    }
+  }
+
+  /**
+   * Returns a copy of the sequence cached for the current version of {@code file} in {@code locale}, or {@code null}
+   * if there is none.
+   */
+  public IActionSequence get(final RepositoryFile file, final Locale locale, final int loggingLevel) {
+    if (cacheManager == null) {
+      return null;
+    }
+    Key key = new Key(file.getId(), locale);
+    Entry entry = (Entry) cacheManager.getFromRegionCache(CACHE_REGION, key);
+    if (entry == null || !entry.version.equals(getVersion(file))) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    savedParseTimeNanos.addAndGet(entry.parseTimeNanos);
+    return entry.actionSequence.copy(loggingLevel);
+  }
+
+  /**
+   * Caches {@code actionSequence}, parsed from the current version of {@code file} in {@code locale}, and returns a
+   * copy of it to execute. {@code actionSequence} must not be used by the caller after this.
+   *
+   * @param parseTimeNanos
+   *          time it took to read, parse and localize the sequence
+   */
+  public IActionSequence put(final RepositoryFile file, final Locale locale, final IActionSequence actionSequence,
+      final int loggingLevel, final long parseTimeNanos) {
+    ActionSequenceCache.parseTimeNanos.addAndGet(parseTimeNanos);
+    if (!(actionSequence instanceof ActionSequence)) {
+      return actionSequence;
+    }
+    ActionSequence cachedSequence = (ActionSequence) actionSequence;
+    if (cacheManager == null) {
+      return cachedSequence;
+    }
+    cacheManager.putInRegionCache(CACHE_REGION, new Key(file.getId(), locale), new Entry(getVersion(file),
+        cachedSequence, parseTimeNanos));
+    return cachedSequence.copy(loggingLevel);
+  }
+
+  private static String getVersion(final RepositoryFile file) {
+    Date lastModifiedDate = file.getLastModifiedDate();
+    return file.getVersionId() + "@" + (lastModifiedDate != null ? lastModifiedDate.getTime() : 0L); //$NON-NLS-1$
+  }
+
+  /**
+   * Returns the number of lookups that found the current version of a sequence.
+   */
+  public static long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of lookups that found no sequence or an outdated one.
+   */
+  public static long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Returns the total time, in milliseconds, spent reading, parsing and localizing sequences on misses.
+   */
+  public static long getParseTimeMillis() {
+    return parseTimeNanos.get() / 1000000L;
+  }
+
+  /**
+   * Returns the total time, in milliseconds, that parsing the sequences found on hits would have taken.
+   */
+  public static long getSavedParseTimeMillis() {
+    return savedParseTimeNanos.get() / 1000000L;
+  }
+
+  private static class Key implements Serializable {
+    private static final long serialVersionUID = -3014850466253867442L;
+
+    private final Serializable fileId;
+
+    private final String locale;
+
+    private Key(final Serializable fileId, final Locale locale) {
+      this.fileId = fileId;
+      this.locale = String.valueOf(locale);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * fileId.hashCode() + locale.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return fileId.equals(other.fileId) && locale.equals(other.locale);
+    }
+
+    @Override
+    public String toString() {
+      return fileId + "_" + locale; //$NON-NLS-1$
+    }
+  }
+
+  private static class Entry {
+    private final String version;
+
+    private final ActionSequence actionSequence;
+
+    private final long parseTimeNanos;
+
+    private Entry(final String version, final ActionSequence actionSequence, final long parseTimeNanos) {
+      this.version = version;
+      this.actionSequence = actionSequence;
+      this.parseTimeNanos = parseTimeNanos;
+    }
+  }
+
+}
@@ -133,11 +133,34 @@ public class SequenceDefinition implements ISequenceDefinition {
         "condition"); //$NON-NLS-1$
 
     ActionSequence sequence = new ActionSequence(loopParameterName, seqDef, actionDefinitionList, loopUsingPeek);
+    sequence.setLoopExecution(SequenceDefinition.parseLoopMaxThreads(actionsNode, logger),
+        !"false".equalsIgnoreCase(XmlDom4JHelper.getNodeText("@ordered", actionsNode)), //$NON-NLS-1$ //$NON-NLS-2$
+        !"continue".equalsIgnoreCase(XmlDom4JHelper.getNodeText("@on-error", actionsNode))); //$NON-NLS-1$ //$NON-NLS-2$
 
     sequence.setConditionalExecution(conditionalExecution);
     return sequence;
   }
 
+  /**
+   * Returns the number of iterations of a loop that may run at once: 1 unless the loop has
+   * <code>parallel="true"</code>, in which case <code>max-threads</code> or else the number of processors.
+   */
+  static int parseLoopMaxThreads(final Node actionsNode, final ILogger logger) {
+    if (!"true".equalsIgnoreCase(XmlDom4JHelper.getNodeText("@parallel", actionsNode))) { //$NON-NLS-1$ //$NON-NLS-2$
+      return 1;
+    }
+    String maxThreads = XmlDom4JHelper.getNodeText("@max-threads", actionsNode); //$NON-NLS-1$
+    if (maxThreads == null) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    try {
+      return Math.max(1, Integer.parseInt(maxThreads.trim()));
+    } catch (NumberFormatException e) {
+      logger.warn(Messages.getInstance().getString("SequenceDefinition.WARN_INVALID_MAX_THREADS", maxThreads)); //$NON-NLS-1$
+      return 1;
+    }
+  }
+
   private SequenceDefinition(final Node sequenceRootNode, final String solutionPath, final ILogger logger, final IApplicationContext applicationContext) {
 
     // initialize this object from the contents of the xml
@@ -176,6 +199,51 @@ public class SequenceDefinition implements ISequenceDefinition {
     }
   }
 
+  /**
+   * Copy constructor for {@link #copy()}.
+   */
+  private SequenceDefinition(final SequenceDefinition other) {
+    this.errorCode = other.errorCode;
+    this.xactionPath = other.xactionPath;
+    this.version = other.version;
+    this.title = other.title;
+    this.isWebService = other.isWebService;
+    this.cacheLevel = other.cacheLevel;
+    this.loggingLevel = other.loggingLevel;
+    this.description = other.description;
+    this.author = other.author;
+    this.help = other.help;
+    this.resultType = other.resultType;
+    this.iconPath = other.iconPath;
+    this.outputDefinitions = SequenceDefinition.copyParameters(other.outputDefinitions);
+    this.inputDefinitions = SequenceDefinition.copyParameters(other.inputDefinitions);
+    this.resourceDefinitions = new ListOrderedMap();
+    this.resourceDefinitions.putAll(other.resourceDefinitions);
+    this.applicationContext = other.applicationContext;
+    this.actionDefinitions = other.actionDefinitions;
+  }
+
+  /**
+   * Returns a copy of this definition for another execution, with new instances of the parameters.
+   */
+  SequenceDefinition copy() {
+    return new SequenceDefinition(this);
+  }
+
+  /**
+   * Returns an ordered map with a copy of each {@link ActionParameter} in {@code parameters}.
+   */
+  static Map copyParameters(final Map parameters) {
+    Map copy = new ListOrderedMap();
+    for (Iterator it = parameters.entrySet().iterator(); it.hasNext();) {
+      Map.Entry entry = (Map.Entry) it.next();
+      Object parameter = entry.getValue();
+      copy.put(entry.getKey(), (parameter instanceof ActionParameter) ? ((ActionParameter) parameter).copy()
+          : parameter);
+    }
+    return copy;
+  }
+
   public String getVersion() {
     return version;
   }
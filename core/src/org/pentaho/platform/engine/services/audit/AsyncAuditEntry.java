@@ -0,0 +1,424 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the 
+ * terms of the GNU General Public License, version 2 as published by the Free Software 
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this 
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html 
+ * or from the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved. 
+ */
+package org.pentaho.platform.engine.services.audit;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.api.engine.IAuditEntry;
+import org.pentaho.platform.engine.core.messages.Messages;
+import org.pentaho.platform.util.logging.Logger;
+
+/**
+ * Records audit entries in the background, so that the time it takes to write them is not spent on the request
+ * thread. Entries are put on a bounded queue and written by a single writer thread to the wrapped
+ * {@link IAuditEntry}, in batches of up to {@link #setBatchSize(int) batchSize} entries. A batch is written when it is
+ * full, or {@link #setFlushInterval(long) flushInterval} milliseconds after its first entry was queued. Targets that
+ * implement {@link IBatchAuditEntry}, such as {@link AuditSQLEntry} and {@link AuditFileEntry}, write a batch at once
+ * and record every entry with the time it was made; other targets are called once per entry.
+ * <p>
+ * What happens when the queue is full is decided by the {@link OverflowPolicy}. Entries still queued are written when
+ * the entry is {@link #shutdown() shut down}, which Spring does as its destroy method and a JVM shutdown hook does as a
+ * last resort. Entries made after shutdown are written directly.
+ * <p>
+ * Configured in pentahoObjects.spring.xml by wrapping the actual target:
+ * 
+ * <pre>
+ * &lt;bean id="IAuditEntry" class="org.pentaho.platform.engine.services.audit.AsyncAuditEntry" scope="singleton" destroy-method="shutdown"&gt;
+ *   &lt;constructor-arg&gt;&lt;bean class="org.pentaho.platform.engine.services.audit.AuditSQLEntry"/&gt;&lt;/constructor-arg&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ */
+public class AsyncAuditEntry implements IAuditEntry {
+
+  /**
+   * What to do with an entry when the queue is full.
+   */
+  public enum OverflowPolicy {
+    /** Wait on the request thread until the writer has made room. No entry is lost. */
+    BLOCK,
+    /** Discard the entry and count it as dropped. The request thread never waits. */
+    DROP,
+    /** Write the entry directly on the request thread, as if the entry were synchronous. No entry is lost. */
+    SPILL
+  }
+
+  public static final int DEFAULT_CAPACITY = 10000;
+
+  /**
+   * The writer waits for entries at most this many milliseconds at a time, so that it notices a shutdown promptly.
+   */
+  private static final long MAX_WAIT = 100;
+
+  private final IAuditEntry target;
+
+  private final BlockingQueue<AuditRecord> queue;
+
+  private volatile int batchSize = 100;
+
+  private volatile long flushInterval = 1000;
+
+  private volatile long shutdownTimeout = 30000;
+
+  private volatile OverflowPolicy overflowPolicy = OverflowPolicy.SPILL;
+
+  private volatile Thread writer;
+
+  private Thread shutdownHook;
+
+  private volatile boolean shutdown;
+
+  private volatile long lastLagMillis;
+
+  private final AtomicLong writtenCount = new AtomicLong();
+
+  private final AtomicLong batchCount = new AtomicLong();
+
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  private final AtomicLong spilledCount = new AtomicLong();
+
+  private final AtomicLong failedCount = new AtomicLong();
+
+  public AsyncAuditEntry(final IAuditEntry target) {
+    this(target, AsyncAuditEntry.DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param target
+   *          where the entries are written
+   * @param capacity
+   *          how many entries may wait to be written
+   */
+  public AsyncAuditEntry(final IAuditEntry target, final int capacity) {
+    if (target == null) {
+      throw new IllegalArgumentException("target cannot be null"); //$NON-NLS-1$
+    }
+    this.target = target;
+    this.queue = new ArrayBlockingQueue<AuditRecord>(capacity);
+  }
+
+  public void auditAll(final String jobId, final String instId, final String objId, final String objType,
+      final String actor, final String messageType, final String messageName, final String messageTxtValue,
+      final BigDecimal messageNumValue, final double duration) throws AuditException {
+    AuditRecord record = new AuditRecord(jobId, instId, objId, objType, actor, messageType, messageName,
+        messageTxtValue, messageNumValue, duration);
+    if (shutdown) {
+      writeDirectly(record);
+      return;
+    }
+    startWriter();
+    switch (overflowPolicy) {
+      case BLOCK:
+        try {
+          queue.put(record);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new AuditException(e);
+        }
+        break;
+      case DROP:
+        if (!queue.offer(record)) {
+          // warn on the first of every thousand, so that a full queue does not flood the log as well
+          if (droppedCount.incrementAndGet() % 1000 == 1) {
+            Logger.warn(getClass().getName(), Messages.getInstance().getString(
+                "AUDASYNC.WARN_0001_QUEUE_FULL", String.valueOf(droppedCount.get()))); //$NON-NLS-1$
+          }
+        }
+        break;
+      default:
+        if (!queue.offer(record)) {
+          spilledCount.incrementAndGet();
+          writeDirectly(record);
+        }
+    }
+    if (shutdown) {
+      // shut down while this entry was being queued: the final drain may have missed it, so write what is left here
+      writeRemaining();
+    }
+  }
+
+  private void writeDirectly(final AuditRecord record) throws AuditException {
+    if (target instanceof IBatchAuditEntry) {
+      ((IBatchAuditEntry) target).auditBatch(Collections.singletonList(record));
+    } else {
+      write(target, record);
+    }
+  }
+
+  private static void write(final IAuditEntry target, final AuditRecord record) throws AuditException {
+    target.auditAll(record.getJobId(), record.getInstId(), record.getObjId(), record.getObjType(),
+        record.getActor(), record.getMessageType(), record.getMessageName(), record.getMessageTxtValue(),
+        record.getMessageNumValue(), record.getDuration());
+  }
+
+  private void startWriter() {
+    if (writer != null) {
+      return;
+    }
+    synchronized (this) {
+      if (writer != null || shutdown) {
+        return;
+      }
+      Thread thread = new Thread(new Runnable() {
+        public void run() {
+          writeQueued();
+        }
+      }, "Audit writer"); //$NON-NLS-1$
+      thread.setDaemon(true);
+      thread.start();
+      shutdownHook = new Thread(new Runnable() {
+        public void run() {
+          shutdown();
+        }
+      }, "Audit writer shutdown"); //$NON-NLS-1$
+      try {
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // the JVM is shutting down already
+        shutdownHook = null;
+      }
+      writer = thread;
+    }
+  }
+
+  private void writeQueued() {
+    List<AuditRecord> batch = new ArrayList<AuditRecord>();
+    while (true) {
+      try {
+        fillBatch(batch);
+      } catch (InterruptedException e) {
+        // write what has been gathered and carry on until shut down
+      }
+      if (!batch.isEmpty()) {
+        writeBatch(batch);
+        batch.clear();
+      } else if (shutdown) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Gathers the next batch: waits briefly for its first entry, then until the batch is full, the flush interval has
+   * passed since that entry was queued, or the entry is shut down.
+   */
+  private void fillBatch(final List<AuditRecord> batch) throws InterruptedException {
+    int size = Math.max(1, batchSize);
+    if (shutdown) {
+      queue.drainTo(batch, size);
+      return;
+    }
+    AuditRecord first = queue.poll(AsyncAuditEntry.MAX_WAIT, TimeUnit.MILLISECONDS);
+    if (first == null) {
+      return;
+    }
+    batch.add(first);
+    long deadline = first.getTimestamp() + flushInterval;
+    while (batch.size() < size) {
+      queue.drainTo(batch, size - batch.size());
+      long wait = deadline - System.currentTimeMillis();
+      if (batch.size() >= size || wait <= 0 || shutdown) {
+        return;
+      }
+      AuditRecord next = queue.poll(Math.min(wait, AsyncAuditEntry.MAX_WAIT), TimeUnit.MILLISECONDS);
+      if (next != null) {
+        batch.add(next);
+      }
+    }
+  }
+
+  private void writeBatch(final List<AuditRecord> batch) {
+    lastLagMillis = System.currentTimeMillis() - batch.get(0).getTimestamp();
+    try {
+      if (target instanceof IBatchAuditEntry) {
+        ((IBatchAuditEntry) target).auditBatch(batch);
+      } else {
+        for (AuditRecord record : batch) {
+          AsyncAuditEntry.write(target, record);
+        }
+      }
+      writtenCount.addAndGet(batch.size());
+      batchCount.incrementAndGet();
+    } catch (Exception e) {
+      // the writer must outlive a failing target, as nothing else would empty the queue
+      failedCount.addAndGet(batch.size());
+      Logger.error(getClass().getName(), Messages.getInstance().getErrorString(
+          "AUDASYNC.ERROR_0001_WRITE_FAILED", String.valueOf(batch.size())), e); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Writes the entries still queued and stops the writer. Waits up to the shutdown timeout for the writer to finish,
+   * then writes whatever is left on the calling thread. Entries made after this are written directly.
+   */
+  public void shutdown() {
+    Thread thread;
+    synchronized (this) {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+      thread = writer;
+      if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+        try {
+          Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+          // the JVM is shutting down already; the hook is running or will find the entry shut down
+        }
+      }
+    }
+    if (thread != null) {
+      try {
+        thread.join(shutdownTimeout);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (thread.isAlive()) {
+        Logger.warn(getClass().getName(), Messages.getInstance().getString(
+            "AUDASYNC.WARN_0002_SHUTDOWN_TIMEOUT", String.valueOf(shutdownTimeout))); //$NON-NLS-1$
+      }
+    }
+    writeRemaining();
+  }
+
+  /**
+   * Writes whatever is still queued on the calling thread. Called once the entry is shut down, by {@link #shutdown()}
+   * and by any request that queued its entry while the entry was being shut down.
+   */
+  private void writeRemaining() {
+    List<AuditRecord> rest = new ArrayList<AuditRecord>();
+    queue.drainTo(rest);
+    if (!rest.isEmpty()) {
+      writeBatch(rest);
+    }
+  }
+
+  public IAuditEntry getTarget() {
+    return target;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Sets the largest number of entries written at once. Default 100.
+   */
+  public void setBatchSize(final int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public long getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+   * Sets the longest time, in milliseconds, an entry waits for its batch to fill before it is written. Default 1000.
+   */
+  public void setFlushInterval(final long flushInterval) {
+    this.flushInterval = flushInterval;
+  }
+
+  public long getShutdownTimeout() {
+    return shutdownTimeout;
+  }
+
+  /**
+   * Sets how long, in milliseconds, {@link #shutdown()} waits for the writer to finish. Default 30000.
+   */
+  public void setShutdownTimeout(final long shutdownTimeout) {
+    this.shutdownTimeout = shutdownTimeout;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /**
+   * Sets what happens to an entry when the queue is full. Default {@link OverflowPolicy#SPILL}.
+   */
+  public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  /**
+   * Returns the number of entries waiting to be written.
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  public int getCapacity() {
+    return queue.size() + queue.remainingCapacity();
+  }
+
+  /**
+   * Returns how long, in milliseconds, the oldest entry still queued has been waiting, or 0 if none is.
+   */
+  public long getOldestPendingAgeMillis() {
+    AuditRecord oldest = queue.peek();
+    return (oldest == null) ? 0 : Math.max(0, System.currentTimeMillis() - oldest.getTimestamp());
+  }
+
+  /**
+   * Returns how long, in milliseconds, the first entry of the last batch written waited to be written.
+   */
+  public long getLastLagMillis() {
+    return lastLagMillis;
+  }
+
+  /**
+   * Returns the number of queued entries written.
+   */
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  public long getBatchCount() {
+    return batchCount.get();
+  }
+
+  /**
+   * Returns the number of entries discarded because the queue was full.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Returns the number of entries written on the request thread because the queue was full.
+   */
+  public long getSpilledCount() {
+    return spilledCount.get();
+  }
+
+  /**
+   * Returns the number of queued entries that could not be written.
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+}
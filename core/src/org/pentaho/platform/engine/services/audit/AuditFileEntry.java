@@ -28,10 +28,11 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import org.pentaho.platform.api.engine.AuditException;
-import org.pentaho.platform.api.engine.IAuditEntry;
 import org.pentaho.platform.engine.core.messages.Messages;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.util.logging.Logger;
@@ -42,7 +43,7 @@ import org.pentaho.platform.util.logging.Logger;
  * TODO To change the template for this generated type comment go to Window -
  * Preferences - Java - Code Style - Code Templates
  */
-public class AuditFileEntry implements IAuditEntry {
+public class AuditFileEntry implements IBatchAuditEntry {
   private static final String auditDirPath = "system/logs/audit"; //$NON-NLS-1$
 
   private static final String auditFileName = PentahoSystem.getSystemSetting(
@@ -70,39 +71,48 @@ public class AuditFileEntry implements IAuditEntry {
     }
   }
 
-  public synchronized void auditAll(final String jobId, final String instId, final String objId, final String objType,
+  public void auditAll(final String jobId, final String instId, final String objId, final String objType,
       final String actor, final String messageType, final String messageName, final String messageTxtValue,
       final BigDecimal messageNumValue, final double duration) throws AuditException {
+    auditBatch(Collections.singletonList(new AuditRecord(jobId, instId, objId, objType, actor, messageType,
+        messageName, messageTxtValue, messageNumValue, duration)));
+  }
+
+  /**
+   * Appends a line for each of <code>records</code>, opening the audit file once for all of them.
+   */
+  public synchronized void auditBatch(final List<AuditRecord> records) throws AuditException {
 
-    if (AuditFileEntry.auditFile == null) {
+    if (AuditFileEntry.auditFile == null || records.isEmpty()) {
       return;
     }
     try {
       BufferedWriter fw = new BufferedWriter(new FileWriter(AuditFileEntry.auditFile, true));
       try {
-        Date dt = new Date();
-        fw.write(AuditFileEntry.auditDateFormat.format(dt));
-        fw.write(AuditFileEntry.ID_SEPARATOR);
-        fw.write(getWritable(jobId));
-        fw.write(AuditFileEntry.ID_SEPARATOR);
-        fw.write(getWritable(instId));
-        fw.write(AuditFileEntry.ID_SEPARATOR);
-        fw.write(getWritable(objId));
-        fw.write(AuditFileEntry.ID_SEPARATOR);
-        fw.write(getWritable(objType));
-        fw.write(AuditFileEntry.ID_SEPARATOR);
-        fw.write(getWritable(actor));
-        fw.write(AuditFileEntry.ID_SEPARATOR);
-        fw.write(getWritable(messageType));
-        fw.write(AuditFileEntry.ID_SEPARATOR);
-        fw.write(getWritable(messageName));
-        fw.write(AuditFileEntry.ID_SEPARATOR);
-        fw.write(getWritable(messageTxtValue));
-        fw.write(AuditFileEntry.ID_SEPARATOR);
-        fw.write(getWritable(messageNumValue));
-        fw.write(AuditFileEntry.ID_SEPARATOR);
-        fw.write(getWritable(duration));
-        fw.newLine();
+        for (AuditRecord record : records) {
+          fw.write(AuditFileEntry.auditDateFormat.format(new Date(record.getTimestamp())));
+          fw.write(AuditFileEntry.ID_SEPARATOR);
+          fw.write(getWritable(record.getJobId()));
+          fw.write(AuditFileEntry.ID_SEPARATOR);
+          fw.write(getWritable(record.getInstId()));
+          fw.write(AuditFileEntry.ID_SEPARATOR);
+          fw.write(getWritable(record.getObjId()));
+          fw.write(AuditFileEntry.ID_SEPARATOR);
+          fw.write(getWritable(record.getObjType()));
+          fw.write(AuditFileEntry.ID_SEPARATOR);
+          fw.write(getWritable(record.getActor()));
+          fw.write(AuditFileEntry.ID_SEPARATOR);
+          fw.write(getWritable(record.getMessageType()));
+          fw.write(AuditFileEntry.ID_SEPARATOR);
+          fw.write(getWritable(record.getMessageName()));
+          fw.write(AuditFileEntry.ID_SEPARATOR);
+          fw.write(getWritable(record.getMessageTxtValue()));
+          fw.write(AuditFileEntry.ID_SEPARATOR);
+          fw.write(getWritable(record.getMessageNumValue()));
+          fw.write(AuditFileEntry.ID_SEPARATOR);
+          fw.write(getWritable(record.getDuration()));
+          fw.newLine();
+        }
       } finally {
         fw.flush();
         fw.close();
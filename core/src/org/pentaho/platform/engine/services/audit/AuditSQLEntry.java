@@ -26,9 +26,10 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
 
 import org.pentaho.platform.api.engine.AuditException;
-import org.pentaho.platform.api.engine.IAuditEntry;
 import org.pentaho.platform.engine.core.audit.AuditHelper;
 import org.pentaho.platform.engine.core.messages.Messages;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
@@ -38,7 +39,7 @@ import org.pentaho.platform.util.logging.Logger;
  * @author mbatchel
  * 
  */
-public class AuditSQLEntry implements IAuditEntry {
+public class AuditSQLEntry implements IBatchAuditEntry {
   private static AuditConnection audc;
 
   /**
@@ -66,24 +67,6 @@ public class AuditSQLEntry implements IAuditEntry {
     }
   }
 
-  public AuditSQLEntry() {
-    retrieveParameters();
-  }
-  
-  /**
-   * This ugliness exists because of bug http://jira.pentaho.com/browse/BISERVER-3478. Once this 
-   * is fixed, we can move this initialization into a one liner for each setting in the class construction. 
-   * 
-   * The logic needs to be that if the config file does not exist, we can fall over to the
-   * pentaho.xml file for the attribute value (for backward compatibility). 
-   */
-  private void retrieveParameters(){
-    
-    String tmp = PentahoSystem.getSystemSetting("audit_sql.xml", "auditConnection/insertSQL", null);//$NON-NLS-1$ //$NON-NLS-2$
-    INSERT_STMT = (tmp !=null) ? tmp:
-      PentahoSystem.getSystemSetting("auditConnection/insertSQL", Messages.getInstance().getString("AUDSQLENT.CODE_AUDIT_INSERT_STATEMENT"));//$NON-NLS-1$ //$NON-NLS-2$
-  }
-
 
   private void setString(final PreparedStatement stmt, final int num, final String val) throws SQLException {
     if (val != null) {
@@ -109,6 +92,20 @@ public class AuditSQLEntry implements IAuditEntry {
     }
   }
 
+  private void setParameters(final PreparedStatement stmt, final AuditRecord record) throws SQLException {
+    setString(stmt, 1, record.getJobId());
+    setString(stmt, 2, record.getInstId());
+    setString(stmt, 3, record.getObjId());
+    setString(stmt, 4, record.getObjType());
+    setString(stmt, 5, record.getActor());
+    setString(stmt, 6, record.getMessageType());
+    setString(stmt, 7, record.getMessageName());
+    setObject(stmt, 8, record.getMessageTxtValue());
+    setBigDec(stmt, 9, record.getMessageNumValue());
+    setBigDec(stmt, 10, new BigDecimal(record.getDuration()));
+    stmt.setTimestamp(11, new Timestamp(record.getTimestamp()));
+  }
+
   /*
    * private void setInteger(PreparedStatement stmt, int num, Integer val)
    * throws SQLException{ if (val != null) { stmt.setInt(num, val.intValue()); }
@@ -117,25 +114,33 @@ public class AuditSQLEntry implements IAuditEntry {
   public void auditAll(final String jobId, final String instId, final String objId, final String objType,
       final String actor, final String messageType, final String messageName, final String messageTxtValue,
       final BigDecimal messageNumValue, final double duration) throws AuditException {
+    auditBatch(Collections.singletonList(new AuditRecord(jobId, instId, objId, objType, actor, messageType,
+        messageName, messageTxtValue, messageNumValue, duration)));
+  }
 
+  /**
+   * Inserts all of <code>records</code> through one statement, as a single JDBC batch when there is more than one.
+   */
+  public void auditBatch(final List<AuditRecord> records) throws AuditException {
+    if (records.isEmpty()) {
+      return;
+    }
     Connection con = null;
     try {
       con = AuditSQLEntry.audc.getAuditConnection();
       try {
         PreparedStatement stmt = con.prepareStatement(AuditSQLEntry.INSERT_STMT);
         try {
-          setString(stmt, 1, jobId);
-          setString(stmt, 2, instId);
-          setString(stmt, 3, objId);
-          setString(stmt, 4, objType);
-          setString(stmt, 5, actor);
-          setString(stmt, 6, messageType);
-          setString(stmt, 7, messageName);
-          setObject(stmt, 8, messageTxtValue);
-          setBigDec(stmt, 9, messageNumValue);
-          setBigDec(stmt, 10, new BigDecimal(duration));
-          stmt.setTimestamp(11, new Timestamp(System.currentTimeMillis()));
-          stmt.executeUpdate();
+          if (records.size() == 1) {
+            setParameters(stmt, records.get(0));
+            stmt.executeUpdate();
+          } else {
+            for (AuditRecord record : records) {
+              setParameters(stmt, record);
+              stmt.addBatch();
+            }
+            stmt.executeBatch();
+          }
         } catch (SQLException ex) {
           Logger.error(this.getClass().getName(), ex.getMessage(), ex);
           try {
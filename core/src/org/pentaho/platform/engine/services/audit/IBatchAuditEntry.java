@@ -0,0 +1,40 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the 
+ * terms of the GNU General Public License, version 2 as published by the Free Software 
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this 
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html 
+ * or from the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved. 
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import java.util.List;
+
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.api.engine.IAuditEntry;
+
+/**
+ * An {@link IAuditEntry} that can record many entries at once, such as in a single database batch or file append.
+ * {@link AsyncAuditEntry} writes through this when its target supports it.
+ */
+public interface IBatchAuditEntry extends IAuditEntry {
+
+  /**
+   * Saves <code>records</code> to the audit storage location, each with its own
+   * {@link AuditRecord#getTimestamp() time}.
+   * 
+   * @throws AuditException
+   *           if the records could not be saved; some of them may have been
+   */
+  public void auditBatch(List<AuditRecord> records) throws AuditException;
+
+}
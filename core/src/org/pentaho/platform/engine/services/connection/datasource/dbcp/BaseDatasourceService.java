@@ -43,6 +43,9 @@ public abstract class BaseDatasourceService implements IDBDatasourceService {
    */
   public void clearCache() {
       cacheManager.removeRegionCache(IDBDatasourceService.JDBC_DATASOURCE);
+      if (cacheManager.cacheEnabled(IDBDatasourceService.RESULT_CACHE)) {
+        cacheManager.clearRegionCache(IDBDatasourceService.RESULT_CACHE);
+      }
   }
 
   /**
@@ -52,6 +55,10 @@ public abstract class BaseDatasourceService implements IDBDatasourceService {
    */
   public void clearDataSource(String dsName) {
      cacheManager.removeFromRegionCache(IDBDatasourceService.JDBC_DATASOURCE, dsName);
+     if (cacheManager.cacheEnabled(IDBDatasourceService.RESULT_CACHE)) {
+       // drops the generation of the results of the datasource, leaving them to be evicted
+       cacheManager.removeFromRegionCache(IDBDatasourceService.RESULT_CACHE, dsName);
+     }
   }
   
   protected DataSource getJndiDataSource(final String dsName) throws DBDatasourceServiceException {
@@ -53,24 +53,6 @@ public class PooledDatasourceService extends BaseDatasourceService {
 		return ds;
 	}
 
-	/**
-	 * This method clears the JNDI DS cache.  The need exists because after a JNDI
-	 * connection edit the old DS must be removed from the cache.
-	 *
-	 */
-	public void clearCache() {
-		cacheManager.removeRegionCache(IDBDatasourceService.JDBC_DATASOURCE);
-	}
-
-	/**
-	 * This method clears the JNDI DS cache.  The need exists because after a JNDI
-	 * connection edit the old DS must be removed from the cache.
-	 *
-	 */
-	public void clearDataSource(String dsName) {
-		cacheManager.removeFromRegionCache(IDBDatasourceService.JDBC_DATASOURCE, dsName);
-	}
-
 	/**
 	 * Since JNDI is supported different ways in different app servers, it's
 	 * nearly impossible to have a ubiquitous way to look up a datasource. This
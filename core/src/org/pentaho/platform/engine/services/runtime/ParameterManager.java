@@ -18,6 +18,7 @@
 package org.pentaho.platform.engine.services.runtime;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +27,8 @@ import java.util.Set;
 import org.apache.commons.collections.map.ListOrderedMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
 import org.pentaho.platform.api.engine.IActionParameter;
 import org.pentaho.platform.api.engine.IActionSequence;
 import org.pentaho.platform.api.engine.IActionSequenceResource;
@@ -60,6 +63,12 @@ public class ParameterManager implements IParameterManager {
 
   private Map sequenceOutputDefs;
 
+  /**
+   * Values of the parameters when this manager was created for an iteration of a parallel loop; <code>null</code>
+   * otherwise.
+   */
+  private Map<String, Object> initialValues;
+
   ParameterManager() {
     allParams = new ListOrderedMap();
     allResources = new ListOrderedMap();
@@ -87,6 +96,65 @@ public class ParameterManager implements IParameterManager {
     sequenceOutputDefs.putAll(actionSequence.getOutputDefinitions());
   }
 
+  /**
+   * Creates the parameter manager of one iteration of a parallel loop over <code>loopParameterName</code>. It starts
+   * with the parameters of <code>other</code>, sharing their values but not their definitions, so that the iteration
+   * can set parameters without affecting other iterations. Result sets are read through cursors, so the iteration gets
+   * its own cursor over the memory copy in <code>resultSetCopies</code> of each one, taken once for the whole loop by
+   * {@link #copyResultSets(String)}.
+   */
+  ParameterManager(final ParameterManager other, final String loopParameterName,
+      final Map<String, IPentahoResultSet> resultSetCopies) {
+    this();
+    initialValues = new HashMap<String, Object>();
+    for (Object key : other.allParams.keyList()) {
+      String name = (String) key;
+      ActionParameter param = (ActionParameter) other.allParams.get(name);
+      if (param != null) {
+        param = param.shareValue();
+        IPentahoResultSet resultSetCopy = resultSetCopies.get(name);
+        if (resultSetCopy != null) {
+          param.setValue(ParameterManager.newCursor(resultSetCopy));
+        }
+        initialValues.put(name, param.getValue());
+      }
+      allParams.put(name, param);
+    }
+    allResources.putAll(other.allResources);
+    sequenceInputNames = other.sequenceInputNames;
+    sequenceResourceNames = other.sequenceResourceNames;
+    // the output definitions are only read once the manager is created
+    sequenceOutputDefs = other.sequenceOutputDefs;
+  }
+
+  /**
+   * Returns a memory copy of the value of every parameter that is a result set, except <code>loopParameterName</code>,
+   * by parameter name. Taken once before a parallel loop starts and handed to the parameter manager of each iteration.
+   */
+  Map<String, IPentahoResultSet> copyResultSets(final String loopParameterName) {
+    Map<String, IPentahoResultSet> copies = new HashMap<String, IPentahoResultSet>();
+    for (Object key : allParams.keyList()) {
+      String name = (String) key;
+      ActionParameter param = (ActionParameter) allParams.get(name);
+      if ((param != null) && (param.getValue() instanceof IPentahoResultSet) && !name.equals(loopParameterName)) {
+        copies.put(name, ((IPentahoResultSet) param.getValue()).memoryCopy());
+      }
+    }
+    return copies;
+  }
+
+  /**
+   * Returns a result set with its own cursor over the rows of <code>rows</code>, sharing the rows themselves.
+   */
+  private static IPentahoResultSet newCursor(final IPentahoResultSet rows) {
+    MemoryResultSet cursor = new MemoryResultSet(rows.getMetaData());
+    int rowCount = rows.getRowCount();
+    for (int row = 0; row < rowCount; row++) {
+      cursor.addRow(rows.getDataRow(row));
+    }
+    return cursor;
+  }
+
   public Map getAllParameters() {
     return (allParams);
   }
@@ -272,6 +340,31 @@ public class ParameterManager implements IParameterManager {
     return (true);
   }
 
+  /**
+   * Adds the parameters that an iteration of a parallel loop set to this manager, replacing the parameters with the
+   * same names as the iteration's outputs would have replaced them. The replaced parameters are disposed with this
+   * manager rather than now, since other iterations may still share their values.
+   * 
+   * @param iteration the parameter manager of the iteration
+   * 
+   * @return the values added, which must not be disposed with the iteration
+   */
+  List mergeParameters(final ParameterManager iteration) {
+    List<Object> merged = new ArrayList<Object>();
+    for (Iterator it = iteration.allParams.entrySet().iterator(); it.hasNext();) {
+      Map.Entry entry = (Map.Entry) it.next();
+      String name = (String) entry.getKey();
+      IActionParameter param = (IActionParameter) entry.getValue();
+      if ((param == null)
+          || (iteration.initialValues.containsKey(name) && (iteration.initialValues.get(name) == param.getValue()))) {
+        continue;
+      }
+      addToAllInputs(name, param);
+      merged.add(param.getValue());
+    }
+    return merged;
+  }
+
   /**
    * Returns a mapping of output parameters and the value and destination.  
    *  
@@ -27,6 +27,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -36,13 +38,27 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.collections.map.ListOrderedMap;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -70,6 +86,7 @@ import org.pentaho.platform.api.engine.IContentOutputHandler;
 import org.pentaho.platform.api.engine.ICreateFeedbackParameterCallback;
 import org.pentaho.platform.api.engine.IExecutionListener;
 import org.pentaho.platform.api.engine.ILogger;
+import org.pentaho.platform.api.engine.ILoopExecutionListener;
 import org.pentaho.platform.api.engine.IOutputHandler;
 import org.pentaho.platform.api.engine.IParameterManager;
 import org.pentaho.platform.api.engine.IParameterProvider;
@@ -91,24 +108,31 @@ import org.pentaho.platform.api.repository.ISolutionRepository;
 import org.pentaho.platform.api.util.XmlParseException;
 import org.pentaho.platform.engine.core.audit.AuditHelper;
 import org.pentaho.platform.engine.core.audit.MessageTypes;
+import org.pentaho.platform.engine.core.metrics.ExecutionMetrics;
+import org.pentaho.platform.engine.core.metrics.ExecutionSpan;
 import org.pentaho.platform.engine.core.output.MultiContentItem;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.engine.services.PentahoMessenger;
 import org.pentaho.platform.engine.services.SolutionURIResolver;
 import org.pentaho.platform.engine.services.actionsequence.ActionParameter;
 import org.pentaho.platform.engine.services.actionsequence.ActionParameterSource;
+import org.pentaho.platform.engine.services.actionsequence.ActionSequence;
 import org.pentaho.platform.engine.services.actionsequence.ActionSequenceParameterMgr;
 import org.pentaho.platform.engine.services.actionsequence.ActionSequenceResource;
 import org.pentaho.platform.engine.services.actionsequence.ActionSequenceResourceWrapper;
 import org.pentaho.platform.engine.services.messages.Messages;
 import org.pentaho.platform.engine.services.solution.ActionDelegate;
 import org.pentaho.platform.engine.services.solution.PojoComponent;
+import org.pentaho.platform.util.beans.ComponentMetadata;
 import org.pentaho.platform.util.logging.Logger;
 import org.pentaho.platform.util.messages.LocaleHelper;
 import org.pentaho.platform.util.xml.XForm;
 import org.pentaho.platform.util.xml.XmlHelper;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
+import org.springframework.security.context.SecurityContext;
+import org.springframework.security.context.SecurityContextHolder;
 
 /**
  * @author James Dixon
@@ -184,17 +208,35 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
 
   private int contentSequenceNumber; // = 0
 
-  // Normally shouldn't need to synchronize. But, a bug in
-  // pattern compilation results in the need to synchronize
-  // a small block of code. If/when this problem is fixed, we
-  // can remove this synchronization lock.
-  private static final byte[] PATTERN_COMPILE_LOCK = new byte[0];
-
   private static final Log logger = LogFactory.getLog(RuntimeContext.class);
 
   private ICreateFeedbackParameterCallback createFeedbackParameterCallback;
   
   private IPluginManager pluginManager;
+
+  private static final AtomicInteger loopThreadCount = new AtomicInteger();
+
+  /**
+   * The system setting with the number of threads that the iterations of all parallel loops share.
+   */
+  public static final String LOOP_THREADS_SETTING = "action-sequence-loop-threads"; //$NON-NLS-1$
+
+  private static ExecutorService loopExecutor;
+
+  /**
+   * Set while a thread runs an iteration of a parallel loop, whose nested action sequences loop sequentially.
+   */
+  private static final ThreadLocal<Boolean> inLoopIteration = new ThreadLocal<Boolean>();
+
+  /**
+   * The context of the loop that this context runs one iteration of, or <code>null</code>.
+   */
+  private RuntimeContext loopParent;
+
+  /**
+   * Outputs set by an iteration of a parallel loop, added to the runtime data once the loop is done.
+   */
+  private ListOrderedMap loopOutputs;
   
   static {
     RuntimeContext.getComponentClassMap();
@@ -262,6 +304,47 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     
   }
 
+  /**
+   * Creates the context of one iteration of a parallel loop over <code>loopParameterName</code>. It shares the
+   * session, output handler, providers and action sequence of <code>parent</code> and has its own parameters, messages
+   * and outputs, which the parent merges once the iteration is done. Its result sets are read from
+   * <code>resultSetCopies</code>, copied once for the whole loop.
+   */
+  private RuntimeContext(final RuntimeContext parent, final String loopParameterName, final int loopIndex,
+      final Map<String, IPentahoResultSet> resultSetCopies) {
+    this.loopParent = parent;
+    this.createFeedbackParameterCallback = parent.createFeedbackParameterCallback;
+    this.instanceId = parent.instanceId;
+    this.solutionEngine = parent.solutionEngine;
+    this.session = parent.session;
+    this.outputHandler = parent.outputHandler;
+    this.processId = parent.processId;
+    this.urlFactory = parent.urlFactory;
+    this.parameterProviders = parent.parameterProviders;
+    this.pluginManager = parent.pluginManager;
+    this.actionSequence = parent.actionSequence;
+    this.audit = parent.audit;
+    this.parameterXsl = parent.parameterXsl;
+    this.parameterTemplate = parent.parameterTemplate;
+    this.parameterTarget = parent.parameterTarget;
+    // the runtime data is only read while the loop runs
+    this.runtimeData = parent.runtimeData;
+    setLoggingLevel(parent.getLoggingLevel());
+    setMessages(new ArrayList());
+    xformHeader = new StringBuffer();
+    xformBody = new StringBuffer();
+    xformFields = new HashMap<String,String>();
+
+    this.currentComponent = ""; //$NON-NLS-1$
+    status = IRuntimeContext.RUNTIME_STATUS_RUNNING;
+    loopOutputs = new ListOrderedMap();
+
+    handle = parent.handle + "-" + loopIndex; //$NON-NLS-1$
+    logId = parent.logId.trim() + "[" + loopIndex + "] "; //$NON-NLS-1$ //$NON-NLS-2$
+
+    paramManager = new ParameterManager((ParameterManager) parent.paramManager, loopParameterName, resultSetCopies);
+  }
+
   private IRuntimeElement createChild(boolean persisted) {
     IRuntimeElement childRuntimeData = null;
     IRuntimeRepository runtimeRepository = PentahoSystem.get(IRuntimeRepository.class, session);
@@ -358,7 +441,16 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
   }
 
   public IContentItem getFeedbackContentItem() {
-    return outputHandler.getFeedbackContentItem();
+    synchronized (getOutputLock()) {
+      return outputHandler.getFeedbackContentItem();
+    }
+  }
+
+  /**
+   * Returns the lock guarding the output handler, which the iterations of a parallel loop share.
+   */
+  private Object getOutputLock() {
+    return (loopParent != null) ? loopParent.getOutputLock() : this;
   }
 
   private int getContentSequenceNumber() {
@@ -405,7 +497,9 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
 
   public IContentItem getOutputContentItem(final String mimeType) {
     // TODO check the sequence definition to see where this should come from
-    return outputHandler.getOutputContentItem(IOutputHandler.RESPONSE, IOutputHandler.CONTENT, instanceId, mimeType);
+    synchronized (getOutputLock()) {
+      return outputHandler.getOutputContentItem(IOutputHandler.RESPONSE, IOutputHandler.CONTENT, instanceId, mimeType);
+    }
   }
 
   public IContentItem getOutputContentItem(final String outputName, final String mimeType) {
@@ -427,7 +521,10 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
         String objectName = destination.getSourceName();
         String contentName = destination.getValue();
         contentName = TemplateUtil.applyTemplate(contentName, this);
-        IContentItem tmpContentItem = outputHandler.getOutputContentItem(objectName, contentName, instanceId, mimeType);
+        IContentItem tmpContentItem;
+        synchronized (getOutputLock()) {
+          tmpContentItem = outputHandler.getOutputContentItem(objectName, contentName, instanceId, mimeType);
+        }
         if (contentItem instanceof MultiContentItem) {
           ((MultiContentItem)contentItem).addContentItem(tmpContentItem);
         } else {
@@ -497,6 +594,16 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
   }
 
   private void validateComponents(final IActionSequence sequence, final IExecutionListener execListener) throws ActionValidationException {
+    validateComponents(sequence, execListener, true);
+  }
+
+  /**
+   * @param addOutputs
+   *          <code>false</code> to leave the parameters alone, when validating the copied actions of an iteration of a
+   *          parallel loop
+   */
+  private void validateComponents(final IActionSequence sequence, final IExecutionListener execListener,
+      final boolean addOutputs) throws ActionValidationException {
     List defList = sequence.getActionDefinitionsAndSequences();
 
     Object listItem;
@@ -504,7 +611,7 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
       listItem = it.next();
 
       if (listItem instanceof IActionSequence) {
-        validateComponents((IActionSequence) listItem, execListener);
+        validateComponents((IActionSequence) listItem, execListener, addOutputs);
       } else if (listItem instanceof ISolutionActionDefinition) {
 
         ISolutionActionDefinition actionDef = (ISolutionActionDefinition) listItem;
@@ -565,7 +672,9 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
               );
         }
         
-        paramManager.addOutputParameters(actionDef);
+        if (addOutputs) {
+          paramManager.addOutputParameters(actionDef);
+        }
         setCurrentComponent(""); //$NON-NLS-1$
         setCurrentActionDef(null);
       }
@@ -812,7 +921,7 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     }
     // Ok - the plugin didn't load - try the old route
     if (componentTmp == null) {
-      componentClass = Class.forName(componentClassName);
+      componentClass = ComponentMetadata.loadClass(componentClassName, RuntimeContext.class.getClassLoader());
       componentTmp = componentClass.newInstance();
     }
     if (componentTmp instanceof IComponent) {
@@ -1001,13 +1110,25 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
 
     }
 
+    // iterations of a parallel loop run their own nested loops one iteration after another
+    boolean parallel = (loopParm != null) && (sequence.getLoopMaxThreads() > 1) && (loopParent == null)
+        && (sequence instanceof ActionSequence) && (RuntimeContext.inLoopIteration.get() == null);
+
     if (loopList instanceof List) {
-      executeLoop(loopParm, (List) loopList, sequence, doneListener, execListener, async);
+      if (parallel) {
+        executeParallelLoop(loopParm, loopList, (ActionSequence) sequence, doneListener, execListener, async, false);
+      } else {
+        executeLoop(loopParm, (List) loopList, sequence, doneListener, execListener, async);
+      }
       if (loopParm != null) {
         addInputParameter(loopParm.getName(), loopParm); // replace the loop param in case the last loop muggled it
       }
     } else if (loopList instanceof IPentahoResultSet) {
-      executeLoop(loopParm, (IPentahoResultSet) loopList, sequence, doneListener, execListener, async, peekOnly);
+      if (parallel) {
+        executeParallelLoop(loopParm, loopList, (ActionSequence) sequence, doneListener, execListener, async, peekOnly);
+      } else {
+        executeLoop(loopParm, (IPentahoResultSet) loopList, sequence, doneListener, execListener, async, peekOnly);
+      }
     }
   }
 
@@ -1017,6 +1138,8 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
 
     // execute the actions
     int loopCount = -1;
+    ActionSequenceException firstFailure = null;
+    int failureCount = 0;
 
     // TODO handle results sets directly instead of using Properties maps
     
@@ -1025,15 +1148,7 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     if (loopSet.isScrollable()) {
       loopSet.beforeFirst();
     }    
-    if( peekOnly && !(loopSet instanceof IPeekable) ) {
-      throw new ActionExecutionException(
-          Messages.getInstance().getErrorString("RuntimeContext.ERROR_0033_NOT_PEEKABLE"), //$NON-NLS-1$
-          session.getName(),
-          instanceId,
-          getActionSequence().getSequenceName(),
-          null
-          );
-    }
+    checkPeekable(loopSet, peekOnly);
     Object row[] = peekOnly ? ((IPeekable) loopSet).peek() : loopSet.next();
     Object headerSet[][] = loopSet.getMetaData().getColumnHeaders();
     // TODO handle OLAP result sets
@@ -1048,49 +1163,26 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
         execListener.loop(this, loopCount);
       }
       if (loopParm != null) {
-        IActionParameter ap;
-        for (int columnNo = 0; columnNo < headers.length; columnNo++) {
-          String name = headers[columnNo].toString();
-          Object value = row[columnNo];
-          String type = null;
-          if (value instanceof String) {
-            type = IActionParameter.TYPE_STRING;
-          } else if (value instanceof Date) {
-            type = IActionParameter.TYPE_DATE;
-          } else if ((value instanceof Long) || (value instanceof Integer)) {
-            type = IActionParameter.TYPE_INTEGER;
-          } else if ((value instanceof BigDecimal) || (value instanceof Double) || (value instanceof Float)) {
-            type = IActionParameter.TYPE_DECIMAL;
-          } else if (value instanceof String[]) {
-            type = IActionParameter.TYPE_STRING;
-          } else if (value == null) {
-            warn(Messages.getInstance().getString("RuntimeContext.WARN_VARIABLE_IN_LOOP_IS_NULL", name)); //$NON-NLS-1$
-          } else {
-            type = IActionParameter.TYPE_OBJECT;
-            warn(Messages.getInstance().getString(
-                "RuntimeContext.WARN_VARIABLE_IN_LOOP_NOT_RECOGNIZED", name, value.getClass().toString())); //$NON-NLS-1$
-          }
-          // TODO make sure any previous loop values are removed
-          ap = paramManager.getInput(name);
-          if (ap == null) {
-            ap = new ActionParameter(name, type, value, null, null);
-            addInputParameter(name, ap);
-          } else {
-            ap.dispose();
-            ap.setValue(value);
-          }
-        }
+        setRowParameters(headers, row);
       }
+      long start = System.currentTimeMillis();
       try {
         performActions(sequence, doneListener, execListener, async);
+        loopIterationComplete(execListener, loopCount, System.currentTimeMillis() - start, null);
       } catch (ActionSequenceException e) {
         e.setLoopIndex(loopCount);
-        throw e;
+        loopIterationComplete(execListener, loopCount, System.currentTimeMillis() - start, e);
+        if (sequence.getLoopFailFast()) {
+          throw e;
+        }
+        loopIterationFailed(loopCount, e);
+        firstFailure = (firstFailure == null) ? e : firstFailure;
+        failureCount++;
       }
       row = peekOnly ? ((IPeekable) loopSet).peek() : loopSet.next();
     }
 
-    status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
+    loopDone(firstFailure, failureCount, loopCount + 1);
   }
 
   private void executeLoop(final IActionParameter loopParm, final List loopList, final IActionSequence sequence,
@@ -1098,6 +1190,8 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
 
     // execute the actions
     int loopCount = -1;
+    ActionSequenceException firstFailure = null;
+    int failureCount = 0;
     for (Iterator it = loopList.iterator(); it.hasNext();) {
       loopCount++;
       if (RuntimeContext.debug) {
@@ -1109,29 +1203,369 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
       }
       Object loopVar = it.next();
       if (loopParm != null) {
-        IActionParameter ap;
-        if (loopVar instanceof Map) {
-          ap = new ActionParameter(loopParm.getName(), "property-map", loopVar, null, null); //$NON-NLS-1$
-        } else {
-          ap = new ActionParameter(loopParm.getName(), "string", loopVar, null, null); //$NON-NLS-1$
-        }
-
-        addInputParameter(loopParm.getName(), ap);
+        setListItemParameter(loopParm, loopVar);
       }
 
+      long start = System.currentTimeMillis();
       try {
         performActions(sequence, doneListener, execListener, async);
+        loopIterationComplete(execListener, loopCount, System.currentTimeMillis() - start, null);
       } catch (ActionSequenceException e) {
         e.setLoopIndex(loopCount);
-        throw e;
+        loopIterationComplete(execListener, loopCount, System.currentTimeMillis() - start, e);
+        if (sequence.getLoopFailFast()) {
+          throw e;
+        }
+        loopIterationFailed(loopCount, e);
+        firstFailure = (firstFailure == null) ? e : firstFailure;
+        failureCount++;
       }
       if (promptStatus == IRuntimeContext.PROMPT_NOW) {
         return;
       }
     }
+    loopDone(firstFailure, failureCount, loopCount + 1);
+  }
+
+  /**
+   * Runs at most {@link IActionSequence#getLoopMaxThreads()} iterations of a loop at a time on the pool that all
+   * parallel loops share (see {@link #LOOP_THREADS_SETTING}). Each iteration runs in a context of its own (see {@link #RuntimeContext(RuntimeContext, String, int)}) with its own
+   * copy of the actions. The parameters, messages and outputs of an iteration are merged into this context on the
+   * calling thread, in loop order unless the loop is not {@link IActionSequence#getLoopOrdered() ordered}, so the last
+   * iteration's outputs win as they would in a sequential loop. Content that the actions write to the response is not
+   * reordered. The iterations must not depend on each other's outputs, and cannot prompt.
+   */
+  private void executeParallelLoop(final IActionParameter loopParm, final Object loopValues,
+      final ActionSequence sequence, final IActionCompleteListener doneListener,
+      final IExecutionListener execListener, final boolean async, final boolean peekOnly) throws ActionSequenceException {
+
+    Iterator loopIterator = null;
+    IPentahoResultSet loopSet = null;
+    Object headers[] = null;
+    if (loopValues instanceof List) {
+      loopIterator = ((List) loopValues).iterator();
+    } else {
+      loopSet = (IPentahoResultSet) loopValues;
+      if (loopSet.isScrollable()) {
+        loopSet.beforeFirst();
+      }
+      checkPeekable(loopSet, peekOnly);
+      headers = loopSet.getMetaData().getColumnHeaders()[0];
+    }
+
+    final int maxThreads = sequence.getLoopMaxThreads();
+    final Map<String, IPentahoResultSet> resultSetCopies = ((ParameterManager) paramManager).copyResultSets(loopParm
+        .getName());
+    final IPentahoSession currentSession = PentahoSessionHolder.getSession();
+    final SecurityContext securityContext = SecurityContextHolder.getContext();
+    final Locale locale = LocaleHelper.getLocale();
+    final LoopListener listener = new LoopListener(doneListener, execListener);
+    CompletionService<LoopIteration> completionService = new ExecutorCompletionService<LoopIteration>(
+        RuntimeContext.getLoopExecutor());
+    // iterations that were submitted and not yet taken, by index
+    TreeMap<Integer, LoopIteration> submitted = new TreeMap<Integer, LoopIteration>();
+    TreeMap<Integer, LoopIteration> completed = new TreeMap<Integer, LoopIteration>();
+    List<Map.Entry> outputs = new ArrayList<Map.Entry>();
+    ActionSequenceException firstFailure = null;
+    int failureCount = 0;
+    int loopCount = 0;
+    int mergeCount = 0;
+    int running = 0;
+    boolean stop = false;
+    try {
+      while (true) {
+        // at most maxThreads iterations of this loop are queued or running on the shared pool
+        while (!stop && (running < maxThreads)) {
+          Object value;
+          if (loopIterator != null) {
+            if (!loopIterator.hasNext()) {
+              break;
+            }
+            value = loopIterator.next();
+          } else {
+            value = peekOnly ? ((IPeekable) loopSet).peek() : loopSet.next();
+            if (value == null) {
+              break;
+            }
+          }
+          if (RuntimeContext.debug) {
+            debug(Messages.getInstance().getString("RuntimeContext.DEBUG_EXECUTING_ACTION", Integer.toString(loopCount))); //$NON-NLS-1$
+          }
+          if (execListener != null) {
+            execListener.loop(this, loopCount);
+          }
+          final RuntimeContext context = new RuntimeContext(this, loopParm.getName(), loopCount, resultSetCopies);
+          if (headers != null) {
+            context.setRowParameters(headers, (Object[]) value);
+          } else {
+            context.setListItemParameter(loopParm, value);
+          }
+          final LoopIteration pendingIteration = new LoopIteration(loopCount++, context);
+          pendingIteration.future = completionService.submit(new Callable<LoopIteration>() {
+            public LoopIteration call() throws Exception {
+              PentahoSessionHolder.setSession(currentSession);
+              SecurityContextHolder.setContext(securityContext);
+              LocaleHelper.setLocale(locale);
+              RuntimeContext.inLoopIteration.set(Boolean.TRUE);
+              try {
+                return context.performLoopIteration(pendingIteration, sequence, listener, async);
+              } finally {
+                PentahoSessionHolder.removeSession();
+                SecurityContextHolder.clearContext();
+                LocaleHelper.setLocale(null);
+                RuntimeContext.inLoopIteration.remove();
+              }
+            }
+          });
+          submitted.put(pendingIteration.index, pendingIteration);
+          running++;
+        }
+        if (running == 0) {
+          break;
+        }
+
+        Future<LoopIteration> future = completionService.take();
+        if (future.isCancelled()) {
+          // counted and disposed of when it was cancelled
+          continue;
+        }
+        LoopIteration iteration = future.get();
+        submitted.remove(iteration.index);
+        running--;
+        if (iteration.failure != null && sequence.getLoopFailFast()) {
+          stop = true;
+          // iterations after the failure that have not started yet never will; running ones are left to finish
+          for (Iterator<LoopIteration> it = submitted.tailMap(iteration.index).values().iterator(); it.hasNext();) {
+            LoopIteration pending = it.next();
+            if (pending.future.cancel(false)) {
+              pending.context.paramManager.dispose();
+              it.remove();
+              running--;
+            }
+          }
+        }
+        completed.put(iteration.index, iteration);
+        while (!completed.isEmpty()
+            && (!sequence.getLoopOrdered() || (completed.firstKey().intValue() == mergeCount))) {
+          iteration = completed.remove(completed.firstKey());
+          mergeCount++;
+          if ((firstFailure != null) && sequence.getLoopFailFast()) {
+            // a sequential loop would not have run the iterations after a failure
+            iteration.context.paramManager.dispose();
+            continue;
+          }
+          if (iteration.failure != null) {
+            iteration.failure.setLoopIndex(iteration.index);
+            if (!sequence.getLoopFailFast()) {
+              loopIterationFailed(iteration.index, iteration.failure);
+            }
+            firstFailure = (firstFailure == null) ? iteration.failure : firstFailure;
+            failureCount++;
+          }
+          mergeLoopIteration(iteration, outputs);
+          loopIterationComplete(execListener, iteration.index, iteration.durationMillis, iteration.failure);
+          if (promptStatus == IRuntimeContext.PROMPT_NOW) {
+            stop = true;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      status = IRuntimeContext.RUNTIME_STATUS_FAILURE;
+      throw new ActionExecutionException(
+          Messages.getInstance().getErrorString("RuntimeContext.ERROR_0038_LOOP_INTERRUPTED"), e, //$NON-NLS-1$
+          session.getName(),
+          instanceId,
+          getActionSequence().getSequenceName(),
+          null
+          );
+    } catch (ExecutionException e) {
+      // performLoopIteration catches everything
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      // only left over when the loop ends early; running components are not interrupted
+      for (LoopIteration pending : submitted.values()) {
+        if (pending.future.cancel(false)) {
+          pending.context.paramManager.dispose();
+        }
+      }
+      // iterations after a failure that wait behind a cancelled one are never merged
+      for (LoopIteration unmerged : completed.values()) {
+        unmerged.context.paramManager.dispose();
+      }
+    }
+
+    for (Map.Entry output : outputs) {
+      setRuntimeDataProperty((String) output.getKey(), output.getValue());
+    }
+    if ((firstFailure != null) && sequence.getLoopFailFast()) {
+      status = IRuntimeContext.RUNTIME_STATUS_FAILURE;
+      throw firstFailure;
+    }
+    loopDone(firstFailure, failureCount, loopCount);
+  }
+
+  /**
+   * Returns the pool that the iterations of all parallel loops share, so that the number of loop threads is bounded
+   * however many loops run at once. It has {@link #LOOP_THREADS_SETTING} threads, by default as many as there are
+   * processors, which stop when idle.
+   */
+  private static synchronized ExecutorService getLoopExecutor() {
+    if (RuntimeContext.loopExecutor == null) {
+      int threads = Runtime.getRuntime().availableProcessors();
+      String setting = PentahoSystem.getSystemSetting(RuntimeContext.LOOP_THREADS_SETTING, null);
+      if (setting != null) {
+        try {
+          threads = Math.max(1, Integer.parseInt(setting.trim()));
+        } catch (NumberFormatException e) {
+          RuntimeContext.logger.warn(Messages.getInstance().getString(
+              "RuntimeContext.WARN_INVALID_LOOP_THREADS", setting)); //$NON-NLS-1$
+        }
+      }
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+              Thread t = new Thread(r, "ActionSequenceLoop-" + RuntimeContext.loopThreadCount.incrementAndGet()); //$NON-NLS-1$
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      executor.allowCoreThreadTimeOut(true);
+      RuntimeContext.loopExecutor = executor;
+    }
+    return RuntimeContext.loopExecutor;
+  }
+
+  /**
+   * Runs the actions of <code>sequence</code> for one iteration of a parallel loop, in this iteration's context.
+   */
+  private LoopIteration performLoopIteration(final LoopIteration iteration, final ActionSequence sequence,
+      final LoopListener listener, final boolean async) {
+    long start = System.currentTimeMillis();
+    try {
+      ActionSequence actions = sequence.copyActions(getLoggingLevel());
+      validateComponents(actions, null, false);
+      performActions(actions, listener, listener, async);
+    } catch (ActionSequenceException e) {
+      iteration.failure = e;
+    } catch (Throwable t) {
+      iteration.failure = new ActionExecutionException(
+          Messages.getInstance().getErrorString("RuntimeContext.ERROR_0017_COMPONENT_EXECUTE_FAILED"), t, //$NON-NLS-1$
+          session.getName(),
+          instanceId,
+          getActionSequence().getSequenceName(),
+          null
+          );
+    }
+    iteration.durationMillis = System.currentTimeMillis() - start;
+    return iteration;
+  }
+
+  /**
+   * Merges the parameters, messages and prompt status of a finished iteration of a parallel loop into this context,
+   * and adds its outputs to <code>outputs</code>.
+   */
+  private void mergeLoopIteration(final LoopIteration iteration, final List<Map.Entry> outputs) {
+    RuntimeContext context = iteration.context;
+    List merged = null;
+    if (iteration.failure == null) {
+      merged = ((ParameterManager) paramManager).mergeParameters((ParameterManager) context.paramManager);
+      outputs.addAll(context.loopOutputs.entrySet());
+    }
+    context.paramManager.dispose(merged);
+    List messages = getMessages();
+    if (messages != null) {
+      messages.addAll(context.getMessages());
+    }
+    if (context.promptStatus > promptStatus) {
+      promptStatus = context.promptStatus;
+    }
+  }
+
+  private void loopIterationFailed(final int loopCount, final ActionSequenceException failure) {
+    error(Messages.getInstance().getErrorString(
+        "RuntimeContext.ERROR_0036_LOOP_ITERATION_FAILED", Integer.toString(loopCount), failure.getMessage()), failure); //$NON-NLS-1$
+  }
+
+  private void loopIterationComplete(final IExecutionListener execListener, final int loopCount,
+      final long durationMillis, final ActionSequenceException failure) {
+    if (execListener instanceof ILoopExecutionListener) {
+      ((ILoopExecutionListener) execListener).loopIterationComplete(this, loopCount, durationMillis, failure);
+    }
+  }
+
+  /**
+   * Ends a loop whose iterations all ran, throwing the first failure of a loop that continues on errors.
+   */
+  private void loopDone(final ActionSequenceException firstFailure, final int failureCount, final int iterationCount)
+      throws ActionSequenceException {
+    if (firstFailure != null) {
+      error(Messages.getInstance().getErrorString(
+          "RuntimeContext.ERROR_0037_LOOP_ITERATIONS_FAILED", Integer.toString(failureCount), Integer.toString(iterationCount))); //$NON-NLS-1$
+      status = IRuntimeContext.RUNTIME_STATUS_FAILURE;
+      throw firstFailure;
+    }
     status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
   }
 
+  private void checkPeekable(final IPentahoResultSet loopSet, final boolean peekOnly) throws ActionExecutionException {
+    if( peekOnly && !(loopSet instanceof IPeekable) ) {
+      throw new ActionExecutionException(
+          Messages.getInstance().getErrorString("RuntimeContext.ERROR_0033_NOT_PEEKABLE"), //$NON-NLS-1$
+          session.getName(),
+          instanceId,
+          getActionSequence().getSequenceName(),
+          null
+          );
+    }
+  }
+
+  private void setRowParameters(final Object headers[], final Object row[]) {
+    IActionParameter ap;
+    for (int columnNo = 0; columnNo < headers.length; columnNo++) {
+      String name = headers[columnNo].toString();
+      Object value = row[columnNo];
+      String type = null;
+      if (value instanceof String) {
+        type = IActionParameter.TYPE_STRING;
+      } else if (value instanceof Date) {
+        type = IActionParameter.TYPE_DATE;
+      } else if ((value instanceof Long) || (value instanceof Integer)) {
+        type = IActionParameter.TYPE_INTEGER;
+      } else if ((value instanceof BigDecimal) || (value instanceof Double) || (value instanceof Float)) {
+        type = IActionParameter.TYPE_DECIMAL;
+      } else if (value instanceof String[]) {
+        type = IActionParameter.TYPE_STRING;
+      } else if (value == null) {
+        warn(Messages.getInstance().getString("RuntimeContext.WARN_VARIABLE_IN_LOOP_IS_NULL", name)); //$NON-NLS-1$
+      } else {
+        type = IActionParameter.TYPE_OBJECT;
+        warn(Messages.getInstance().getString(
+            "RuntimeContext.WARN_VARIABLE_IN_LOOP_NOT_RECOGNIZED", name, value.getClass().toString())); //$NON-NLS-1$
+      }
+      // TODO make sure any previous loop values are removed
+      ap = paramManager.getInput(name);
+      if (ap == null) {
+        ap = new ActionParameter(name, type, value, null, null);
+        addInputParameter(name, ap);
+      } else {
+        ap.dispose();
+        ap.setValue(value);
+      }
+    }
+  }
+
+  private void setListItemParameter(final IActionParameter loopParm, final Object loopVar) {
+    IActionParameter ap;
+    if (loopVar instanceof Map) {
+      ap = new ActionParameter(loopParm.getName(), "property-map", loopVar, null, null); //$NON-NLS-1$
+    } else {
+      ap = new ActionParameter(loopParm.getName(), "string", loopVar, null, null); //$NON-NLS-1$
+    }
+
+    addInputParameter(loopParm.getName(), ap);
+  }
+
   private void performActions(final IActionSequence sequence, final IActionCompleteListener doneListener,
       final IExecutionListener execListener, final boolean async) throws ActionSequenceException {
     IConditionalExecution conditional = sequence.getConditionalExecution();
@@ -1304,6 +1738,15 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
   }
 
   protected void executeComponent(final ISolutionActionDefinition actionDefinition) throws ActionExecutionException{
+    ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.COMPONENT, actionDefinition.getComponentName());
+    try {
+      runComponent(actionDefinition);
+    } finally {
+      span.end();
+    }
+  }
+
+  private void runComponent(final ISolutionActionDefinition actionDefinition) throws ActionExecutionException{
     if (RuntimeContext.debug) {
       debug(Messages.getInstance().getString("RuntimeContext.DEBUG_STARTING_COMPONENT_EXECUTE")); //$NON-NLS-1$
     }
@@ -1547,7 +1990,14 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
       throw new InvalidParameterException(Messages.getInstance().getErrorString("RuntimeContext.ERROR_0021_INVALID_OUTPUT_REQUEST", name, actionSequence.getSequenceName())); //$NON-NLS-1$
     }
     actionParameter.setValue(output);
+    setRuntimeDataProperty(name, output);
+  }
 
+  private void setRuntimeDataProperty(final String name, final Object output) {
+    if (loopParent != null) {
+      loopOutputs.put(name, output);
+      return;
+    }
     if (output instanceof String) {
       runtimeData.setStringProperty(name, (String) output);
     } else if (output instanceof Date) {
@@ -1561,7 +2011,6 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     } else if (output instanceof IContentItem) {
       runtimeData.setStringProperty(name, ((IContentItem) output).getPath());
     }
-
   }
 
   public InputStream getInputStream(final String parameterName) {
@@ -1791,13 +2240,14 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
         parameters.put("displayUrl", this.getUrlFactory().getDisplayUrlBuilder().getUrl()); //$NON-NLS-1$
         // Uncomment this line for troubleshooting the XSL.
         // System .out.println( document.asXML() );
-        StringBuffer content = XmlHelper.transformXml(parameterXsl, getSolutionPath(), document.asXML(), parameters, resolver);
-
         IContentItem contentItem = outputHandler.getFeedbackContentItem();
         contentItem.setMimeType("text/html"); //$NON-NLS-1$ 
         OutputStream os = contentItem.getOutputStream(getActionName());
         try {
-          os.write(content.toString().getBytes(LocaleHelper.getSystemEncoding()));
+          // transform straight into the response
+          Writer writer = new OutputStreamWriter(os, LocaleHelper.getSystemEncoding());
+          XmlHelper.transformXml(parameterXsl, getSolutionPath(), document.asXML(), parameters, resolver, writer);
+          writer.flush();
         } finally {
           if (os != null) {
             os.close();
@@ -1977,15 +2427,8 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
       return false;
     }
     String regex = "[iI][dD]=[\'\"]" + fieldName + "[\'\"]"; //$NON-NLS-1$ //$NON-NLS-2$
-    Pattern pattern = null;
-    // Normally shouldn't need to synchronize. But, a Java bug in
-    // pattern compilation on multi-processor machines results in the 
-    // need to synchronize a small block of code. If/when this problem 
-    // is fixed, we can remove this synchronization lock.
-    // See: http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6238699
-    synchronized (RuntimeContext.PATTERN_COMPILE_LOCK) {
-      pattern = Pattern.compile(regex);
-    }
+    // Pattern compilation is thread safe on the supported JREs (bug 6238699 is fixed in Java 6)
+    Pattern pattern = Pattern.compile(regex);
     Matcher matcher = pattern.matcher(parameterTemplate);
     if (matcher.find()) {
       return true;
@@ -2118,7 +2561,7 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
    * persistence, this works out to a call to HibernateUtil.flush().
    */
   public void forceSaveRuntimeData() {
-    if (runtimeData != null) {
+    if ((runtimeData != null) && (loopParent == null)) {
       runtimeData.forceSave();
     }
   }
@@ -2158,4 +2601,68 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
   public void setCreateFeedbackParameterCallback(ICreateFeedbackParameterCallback callback) {
     createFeedbackParameterCallback = callback;    
   }
+
+  /**
+   * The result of one iteration of a parallel loop.
+   */
+  private static class LoopIteration {
+    private final int index;
+
+    private final RuntimeContext context;
+
+    private long durationMillis;
+
+    private ActionSequenceException failure;
+
+    private Future<LoopIteration> future;
+
+    private LoopIteration(final int index, final RuntimeContext context) {
+      this.index = index;
+      this.context = context;
+    }
+  }
+
+  /**
+   * Passes the events of the iterations of a parallel loop to the listeners of the loop one at a time.
+   */
+  private static class LoopListener implements IActionCompleteListener, IExecutionListener {
+    private final IActionCompleteListener doneListener;
+
+    private final IExecutionListener execListener;
+
+    private LoopListener(final IActionCompleteListener doneListener, final IExecutionListener execListener) {
+      this.doneListener = doneListener;
+      this.execListener = execListener;
+    }
+
+    public synchronized void actionComplete(final IRuntimeContext runtimeContext) {
+      if (doneListener != null) {
+        doneListener.actionComplete(runtimeContext);
+      }
+    }
+
+    public synchronized void loaded(final IRuntimeContext runtime) {
+      if (execListener != null) {
+        execListener.loaded(runtime);
+      }
+    }
+
+    public synchronized void validated(final IRuntimeContext runtime) {
+      if (execListener != null) {
+        execListener.validated(runtime);
+      }
+    }
+
+    public synchronized void action(final IRuntimeContext runtime, final ISolutionActionDefinition actionDefinition) {
+      if (execListener != null) {
+        execListener.action(runtime, actionDefinition);
+      }
+    }
+
+    public synchronized void loop(final IRuntimeContext runtime, final long count) {
+      if (execListener != null) {
+        execListener.loop(runtime, count);
+      }
+    }
+  }
 }
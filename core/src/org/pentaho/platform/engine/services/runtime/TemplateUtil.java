@@ -30,6 +30,8 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -70,6 +72,20 @@ public class TemplateUtil {
 
   private static final Pattern datePattern = Pattern.compile(TemplateUtil.DATE_PATTERN);
 
+  /**
+   * Templates longer than this are parsed on each use instead of being cached.
+   */
+  private static final int MAX_CACHED_TEMPLATE_LENGTH = 64 * 1024;
+
+  /**
+   * The caches of parsed templates and parameter patterns are emptied when they grow past this many entries.
+   */
+  private static final int MAX_CACHED_TEMPLATES = 1000;
+
+  private static final ConcurrentMap<TemplateKey, ParsedTemplate> parsedTemplates = new ConcurrentHashMap<TemplateKey, ParsedTemplate>();
+
+  private static final ConcurrentMap<String, Pattern> parameterPatterns = new ConcurrentHashMap<String, Pattern>();
+
   private static final List<String> SystemInputs = new ArrayList<String>();
 
   private static final Log logger = LogFactory.getLog(TemplateUtil.class);
@@ -110,7 +126,14 @@ public class TemplateUtil {
 
   public static String applyTemplate(final String template, final IRuntimeContext context,
       final String parameterPatternStr) {
-    Pattern pattern = Pattern.compile(parameterPatternStr);
+    Pattern pattern = TemplateUtil.parameterPatterns.get(parameterPatternStr);
+    if (pattern == null) {
+      pattern = Pattern.compile(parameterPatternStr);
+      if (TemplateUtil.parameterPatterns.size() >= TemplateUtil.MAX_CACHED_TEMPLATES) {
+        TemplateUtil.parameterPatterns.clear();
+      }
+      TemplateUtil.parameterPatterns.putIfAbsent(parameterPatternStr, pattern);
+    }
     return TemplateUtil.applyTemplate(template, new InputProperties(context), pattern, null);
   }
 
@@ -124,6 +147,9 @@ public class TemplateUtil {
    * Parameters can be the input values (as specified by the name of the input
    * value) or date expressions. Parameters that can not be processed are left
    * in the template.
+   * <p>
+   * A template is parsed into its parameters once and the parsed form is cached by template text and parameter
+   * pattern, so that applying the same template again only looks up the parameter values.
    * 
    * @param template
    *            the template specification.
@@ -142,79 +168,22 @@ public class TemplateUtil {
    */
   public static String applyTemplate(final String template, final Properties inputs, final Pattern parameterPattern,
       final IParameterResolver resolver) {
-    StringBuffer results = new StringBuffer();
-    Matcher parameterMatcher = parameterPattern.matcher(template);
-    int copyStart = 0;
-
-    while (parameterMatcher.find()) {
-      int start = parameterMatcher.start();
-      String parameter = parameterMatcher.group(1);
-      String value = null;
-      int colonPosition = parameter.indexOf(':');
-      boolean hasSpaces = parameter.indexOf(' ') != -1;
-      boolean isTableTemplate = !hasSpaces && parameter.indexOf(":col:") != -1; //$NON-NLS-1$
-      boolean isComponentResoved = !hasSpaces && colonPosition != -1;
-      boolean isNamedParameter = !hasSpaces;
-      boolean isDateParamter = hasSpaces;
-      if (isTableTemplate) {
-        TemplateUtil.applyTableTemplate(template, inputs, parameterPattern, results);
-        return results.toString();
-      }
-      if( isComponentResoved ) {
-        // Allow alternate parameter resolution to be provided by the
-        // component.
-        if (resolver != null) {
-          int newCopyStart = resolver.resolveParameter(template, parameter, parameterMatcher, copyStart, results);
-          if (newCopyStart >= 0) {
-            copyStart = newCopyStart;
-            continue;
-          }
-        }
-        StringTokenizer tokenizer = new StringTokenizer(parameter, ":"); //$NON-NLS-1$
-        if (tokenizer.countTokens() >= 5) {
-          // this looks like a data table key
-          parameter = tokenizer.nextToken();
-          String keyColumn = tokenizer.nextToken();
-          String keyValue = tokenizer.nextToken();
-          String valueColumn = tokenizer.nextToken();
-          StringBuffer defaultValue = new StringBuffer();
-          defaultValue.append(tokenizer.nextToken());
-          while (tokenizer.hasMoreTokens()) {
-            defaultValue.append(':').append(tokenizer.nextToken());
-          }
-          // see if we can find this in the data
-          if (inputs instanceof InputProperties) {
-            value = ((InputProperties) inputs).getProperty(parameter, keyColumn, keyValue, valueColumn, defaultValue
-                .toString());
-          }
+    ParsedTemplate parsedTemplate;
+    if (template.length() > TemplateUtil.MAX_CACHED_TEMPLATE_LENGTH) {
+      parsedTemplate = new ParsedTemplate(template, parameterPattern);
+    } else {
+      TemplateKey key = new TemplateKey(template, parameterPattern);
+      parsedTemplate = TemplateUtil.parsedTemplates.get(key);
+      if (parsedTemplate == null) {
+        // parsing a template twice when two threads race is harmless
+        parsedTemplate = new ParsedTemplate(template, parameterPattern);
+        if (TemplateUtil.parsedTemplates.size() >= TemplateUtil.MAX_CACHED_TEMPLATES) {
+          TemplateUtil.parsedTemplates.clear();
         }
+        TemplateUtil.parsedTemplates.putIfAbsent(key, parsedTemplate);
       }
-      else if (isNamedParameter) {
-        // TODO support type conversion
-        value = inputs.getProperty(parameter);
-        if (value == null) {
-          TemplateUtil.logger.warn(Messages.getInstance().getString("TemplateUtil.NOT_FOUND", parameter)); //$NON-NLS-1$
-        }        
-      }
-
-      results.append(template.substring(copyStart, start));
-      copyStart = parameterMatcher.end();
-      if (isDateParamter || value == null) {
-        value = TemplateUtil.matchDateRegex( parameter, inputs );
-      }
-
-      if (value == null) {
-        results.append(parameterMatcher.group());
-      } else {
-        results.append(value);
-      }
-    }
-
-    if (copyStart < template.length()) {
-      results.append(template.substring(copyStart));
     }
-
-    return results.toString();
+    return parsedTemplate.apply(inputs, resolver);
   }
 
   public static void applyTableTemplate(final String template, final Properties inputs, final Pattern parameterPattern,
@@ -435,6 +404,233 @@ public class TemplateUtil {
     
   }
   
+  /**
+   * Key of a parsed template: the template text and the pattern its parameters were found with.
+   */
+  private static class TemplateKey {
+    private final String template;
+
+    private final String pattern;
+
+    private final int flags;
+
+    TemplateKey(final String template, final Pattern parameterPattern) {
+      this.template = template;
+      this.pattern = parameterPattern.pattern();
+      this.flags = parameterPattern.flags();
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * template.hashCode() + pattern.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof TemplateKey)) {
+        return false;
+      }
+      TemplateKey other = (TemplateKey) obj;
+      return template.equals(other.template) && pattern.equals(other.pattern) && (flags == other.flags);
+    }
+  }
+
+  /**
+   * A template split into its parameters. Everything that does not depend on the input values is worked out when the
+   * template is parsed: the kind of each parameter, the parts of data table keys and which date expression, if any,
+   * a parameter is. Parsed templates are immutable and are shared by all threads applying the same template.
+   */
+  private static class ParsedTemplate {
+    private final String template;
+
+    private final Pattern parameterPattern;
+
+    private final TemplateParameter[] parameters;
+
+    ParsedTemplate(final String template, final Pattern parameterPattern) {
+      this.template = template;
+      this.parameterPattern = parameterPattern;
+      List<TemplateParameter> parameterList = new ArrayList<TemplateParameter>();
+      Matcher parameterMatcher = parameterPattern.matcher(template);
+      while (parameterMatcher.find()) {
+        TemplateParameter parameter = new TemplateParameter(parameterMatcher.group(1), parameterMatcher.start(),
+            parameterMatcher.end());
+        parameterList.add(parameter);
+        if (parameter.kind == TemplateParameter.TABLE) {
+          // the table template takes over the whole template from here
+          break;
+        }
+      }
+      parameters = parameterList.toArray(new TemplateParameter[parameterList.size()]);
+    }
+
+    String apply(final Properties inputs, final IParameterResolver resolver) {
+      if (parameters.length == 0) {
+        return template;
+      }
+      StringBuffer results = new StringBuffer(template.length() + 16 * parameters.length);
+      Matcher parameterMatcher = null;
+      int copyStart = 0;
+
+      for (TemplateParameter parameter : parameters) {
+        String value = null;
+        if (parameter.kind == TemplateParameter.TABLE) {
+          TemplateUtil.applyTableTemplate(template, inputs, parameterPattern, results);
+          return results.toString();
+        }
+        if (parameter.kind == TemplateParameter.COMPONENT_RESOLVED) {
+          // Allow alternate parameter resolution to be provided by the
+          // component.
+          if (resolver != null) {
+            // resolvers read the position of the parameter from a matcher
+            if (parameterMatcher == null) {
+              parameterMatcher = parameterPattern.matcher(template);
+            }
+            parameterMatcher.find(parameter.start);
+            int newCopyStart = resolver.resolveParameter(template, parameter.name, parameterMatcher, copyStart, results);
+            if (newCopyStart >= 0) {
+              copyStart = newCopyStart;
+              continue;
+            }
+          }
+          if ((parameter.dataTableKey != null) && (inputs instanceof InputProperties)) {
+            // see if we can find this in the data
+            String[] key = parameter.dataTableKey;
+            value = ((InputProperties) inputs).getProperty(key[0], key[1], key[2], key[3], key[4]);
+          }
+        } else if (parameter.kind == TemplateParameter.NAMED) {
+          // TODO support type conversion
+          value = inputs.getProperty(parameter.name);
+          if (value == null) {
+            TemplateUtil.logger.warn(Messages.getInstance().getString("TemplateUtil.NOT_FOUND", parameter.name)); //$NON-NLS-1$
+          }
+        }
+
+        results.append(template, copyStart, parameter.start);
+        copyStart = parameter.end;
+        if ((parameter.kind == TemplateParameter.DATE) || (value == null)) {
+          value = parameter.getDateValue(inputs);
+        }
+
+        if (value == null) {
+          results.append(template, parameter.start, parameter.end);
+        } else {
+          results.append(value);
+        }
+      }
+
+      if (copyStart < template.length()) {
+        results.append(template, copyStart, template.length());
+      }
+
+      return results.toString();
+    }
+  }
+
+  private static class TemplateParameter {
+    static final int NAMED = 0;
+
+    static final int COMPONENT_RESOLVED = 1;
+
+    static final int DATE = 2;
+
+    static final int TABLE = 3;
+
+    static final int NO_DATE = 0;
+
+    static final int DATE_EXPRESSION = 1;
+
+    static final int DATE_LITERAL = 2;
+
+    static final int DATE_OTHER = 3;
+
+    final String name;
+
+    final int start;
+
+    final int end;
+
+    final int kind;
+
+    /**
+     * Parameter, key column, key value, value column and default value of a data table key, or <code>null</code>.
+     */
+    final String[] dataTableKey;
+
+    final int dateKind;
+
+    /**
+     * The date expression with its format, for {@link #DATE_EXPRESSION}.
+     */
+    final String dateExpression;
+
+    TemplateParameter(final String name, final int start, final int end) {
+      this.name = name;
+      this.start = start;
+      this.end = end;
+      boolean hasSpaces = name.indexOf(' ') != -1;
+      String[] tableKey = null;
+      if (hasSpaces) {
+        kind = TemplateParameter.DATE;
+      } else if (name.indexOf(":col:") != -1) { //$NON-NLS-1$
+        kind = TemplateParameter.TABLE;
+      } else if (name.indexOf(':') != -1) {
+        kind = TemplateParameter.COMPONENT_RESOLVED;
+        StringTokenizer tokenizer = new StringTokenizer(name, ":"); //$NON-NLS-1$
+        if (tokenizer.countTokens() >= 5) {
+          // this looks like a data table key
+          tableKey = new String[5];
+          for (int i = 0; i < 4; i++) {
+            tableKey[i] = tokenizer.nextToken();
+          }
+          StringBuffer defaultValue = new StringBuffer();
+          defaultValue.append(tokenizer.nextToken());
+          while (tokenizer.hasMoreTokens()) {
+            defaultValue.append(':').append(tokenizer.nextToken());
+          }
+          tableKey[4] = defaultValue.toString();
+        }
+      } else {
+        kind = TemplateParameter.NAMED;
+      }
+      dataTableKey = tableKey;
+
+      // the date expression patterns exclude each other, see matchDateRegex
+      if (TemplateUtil.dateExpressionPattern.matcher(name).matches()) {
+        dateKind = TemplateParameter.DATE_EXPRESSION;
+        // default to yyyy-MM-dd format for date strings
+        dateExpression = (name.indexOf(';') != -1) ? name : name + ";yyyy-MM-dd"; //$NON-NLS-1$
+      } else if (TemplateUtil.dateMathExpressionPattern.matcher(name).matches()
+          || TemplateUtil.dateMathVarPattern.matcher(name).matches()) {
+        dateKind = TemplateParameter.DATE_OTHER;
+        dateExpression = null;
+      } else if (TemplateUtil.datePattern.matcher(name).matches()) {
+        dateKind = TemplateParameter.DATE_LITERAL;
+        dateExpression = null;
+      } else {
+        dateKind = TemplateParameter.NO_DATE;
+        dateExpression = null;
+      }
+    }
+
+    /**
+     * Returns the same value as {@link TemplateUtil#matchDateRegex(String, Properties)} for the name of this
+     * parameter.
+     */
+    String getDateValue(final Properties inputs) {
+      switch (dateKind) {
+        case DATE_EXPRESSION:
+          return DateMath.calculateDateString(null, dateExpression);
+        case DATE_LITERAL:
+          return name;
+        case DATE_OTHER:
+          return TemplateUtil.matchDateRegex(name, inputs);
+        default:
+          return null;
+      }
+    }
+  }
+
   /**
    * Acts as a facade for a {@link IRuntimeContext} to access the input values
    * as from a {@link java.util.Properties Properties}. The class only
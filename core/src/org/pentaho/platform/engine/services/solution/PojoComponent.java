@@ -23,7 +23,6 @@ import java.io.OutputStream;
 import java.lang.reflect.GenericSignatureFormatError;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -50,6 +49,7 @@ import org.pentaho.platform.engine.core.output.SimpleContentItem;
 import org.pentaho.platform.engine.core.solution.SystemSettingsParameterProvider;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.messages.Messages;
+import org.pentaho.platform.util.beans.ComponentMetadata;
 import org.pentaho.platform.util.messages.LocaleHelper;
 /**
  * This class interfaces with a plain old Java object and makes it
@@ -517,7 +517,7 @@ public class PojoComponent extends ComponentBase {
       if (pojo == null){
         try {
           // TODO support loading classes from the solution repository
-          Class<?> aClass = getClass().getClassLoader().loadClass(className);
+          Class<?> aClass = ComponentMetadata.loadClass(className, getClass().getClassLoader());
           pojo = aClass.newInstance();
         } catch (Exception ex) {
           error( "Could not load bean class" , ex); //$NON-NLS-1$
@@ -528,59 +528,21 @@ public class PojoComponent extends ComponentBase {
     if( pojo != null ) {
       // By the time we get here, we've got our class
       try {
-        Method methods[] = pojo.getClass().getMethods();
-        // create a method map
-        for( Method method : methods ) {
-          String name = method.getName();
-          Class<?>[] paramTypes = method.getParameterTypes();
-          if( name.equals( "getOutputs" ) ) { //$NON-NLS-1$
-            runtimeOutputsMethod = method;
-          }
-          else if( name.equals( "setInputs" ) ) { //$NON-NLS-1$
-            runtimeInputsMethod = method;
-          }
-          else if( name.equals( "setResources" ) ) { //$NON-NLS-1$
-            resourcesMethod = method;
-          }
-          else if( name.equals( "setLogger" ) ) { //$NON-NLS-1$
-            if( paramTypes.length == 1 && paramTypes[0] == Log.class ) {
-              loggerMethod = method;
-            }
-          }
-          else if( name.equals( "setSession" ) ) { //$NON-NLS-1$
-            if( paramTypes.length == 1 && paramTypes[0] == IPentahoSession.class ) {
-              sessionMethod = method;
-            }
-          }
-          else if( name.equalsIgnoreCase( "configure" ) ) { //$NON-NLS-1$
-            configureMethod = method;
-          }
-          else if( name.startsWith( "set" ) ) { //$NON-NLS-1$
-            name = name.substring( 3 ).toUpperCase();
-            if (name.equals("CLASS")) { //$NON-NLS-1$
-              warn(Messages.getInstance().getString("PojoComponent.CANNOT_USE_SETCLASS")); //$NON-NLS-1$
-            } else {
-              if(!setMethods.containsKey(name)){
-                setMethods.put(name, new ArrayList<Method>());
-              }
-            
-              setMethods.get(name).add(method);
-            }
-          }
-          else if( name.startsWith( "get" ) ) { //$NON-NLS-1$
-            name = name.substring( 3 ).toUpperCase();
-            
-            getMethods.put(name, method );
-          }
-          else if( name.equalsIgnoreCase( "execute" ) ) { //$NON-NLS-1$
-            executeMethod = method;
-          }
-          else if( name.equalsIgnoreCase( "validate" ) ) { //$NON-NLS-1$
-            validateMethod = method;
-          }
-          else if( name.equalsIgnoreCase( "done" ) ) { //$NON-NLS-1$
-            doneMethod = method;
-          }
+        // the methods of each class are found once and shared by all its instances
+        ComponentMetadata metadata = ComponentMetadata.forClass(pojo.getClass());
+        getMethods = metadata.getGetMethods();
+        setMethods = metadata.getSetMethods();
+        executeMethod = metadata.getExecuteMethod();
+        validateMethod = metadata.getValidateMethod();
+        doneMethod = metadata.getDoneMethod();
+        resourcesMethod = metadata.getResourcesMethod();
+        runtimeInputsMethod = metadata.getRuntimeInputsMethod();
+        runtimeOutputsMethod = metadata.getRuntimeOutputsMethod();
+        loggerMethod = metadata.getLoggerMethod();
+        sessionMethod = metadata.getSessionMethod();
+        configureMethod = metadata.getConfigureMethod();
+        if (metadata.hasClassSetter()) {
+          warn(Messages.getInstance().getString("PojoComponent.CANNOT_USE_SETCLASS")); //$NON-NLS-1$
         }
 
         ok = true;
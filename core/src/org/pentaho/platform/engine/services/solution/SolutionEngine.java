@@ -47,6 +47,8 @@ import org.pentaho.platform.api.repository.IRuntimeRepository;
 import org.pentaho.platform.api.repository.ISolutionRepository;
 import org.pentaho.platform.engine.core.audit.AuditHelper;
 import org.pentaho.platform.engine.core.audit.MessageTypes;
+import org.pentaho.platform.engine.core.metrics.ExecutionMetrics;
+import org.pentaho.platform.engine.core.metrics.ExecutionSpan;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityParameterProvider;
 import org.pentaho.platform.engine.services.ActionSequenceJCRHelper;
@@ -331,9 +333,19 @@ public class SolutionEngine extends PentahoMessenger implements ISolutionEngine,
         parameterProviderMap, null);
   }
 
-  @SuppressWarnings({"unchecked"})
   protected IRuntimeContext executeInternal(final String sequencePath, final String processId, final boolean async, final boolean instanceEnds,
       final Map parameterProviderMap, final String actionSequenceXML) {
+    ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.ACTION_SEQUENCE, (actionSequenceXML != null) ? "xml" : sequencePath); //$NON-NLS-1$
+    try {
+      return executeSequence(sequencePath, processId, async, instanceEnds, parameterProviderMap, actionSequenceXML);
+    } finally {
+      span.end();
+    }
+  }
+
+  @SuppressWarnings({"unchecked"})
+  private IRuntimeContext executeSequence(final String sequencePath, final String processId, final boolean async, final boolean instanceEnds,
+      final Map parameterProviderMap, final String actionSequenceXML) {
 
     long start = System.currentTimeMillis();
 
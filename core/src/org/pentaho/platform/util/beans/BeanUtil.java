@@ -46,9 +46,26 @@ public class BeanUtil {
 
   private static final Log logger = LogFactory.getLog(BeanUtil.class);
 
-  private PropertyUtilsBean propUtil = new PropertyUtilsBean();
+  /**
+   * Shared by all instances, so that the properties of a bean class are introspected once rather than once per bean.
+   * Cleared by {@link ComponentMetadata#clear()}.
+   */
+  private static final PropertyUtilsBean sharedPropUtil = new PropertyUtilsBean();
+
+  /**
+   * Shared by all instances; a bean util that throws exceptions during type conversion.
+   */
+  private static final BeanUtilsBean sharedTypeConvertingBeanUtil;
+
+  static {
+    ConvertUtilsBean convertUtil = new ConvertUtilsBean();
+    convertUtil.register(true, true, 0);
+    sharedTypeConvertingBeanUtil = new BeanUtilsBean(convertUtil, sharedPropUtil);
+  }
 
-  private BeanUtilsBean typeConvertingBeanUtil;
+  private PropertyUtilsBean propUtil = sharedPropUtil;
+
+  private BeanUtilsBean typeConvertingBeanUtil = sharedTypeConvertingBeanUtil;
 
   protected Object bean;
 
@@ -64,16 +81,16 @@ public class BeanUtil {
    */
   public BeanUtil(final Object targetBean) {
     this.bean = targetBean;
-    //
-    //Configure a bean util that throws exceptions during type conversion
-    //
-    ConvertUtilsBean convertUtil = new ConvertUtilsBean();
-    convertUtil.register(true, true, 0);
-
-    typeConvertingBeanUtil = new BeanUtilsBean(convertUtil);
     setDefaultCallback(new EagerFailingCallback());
   }
 
+  /**
+   * Forgets the bean properties described so far, so that the classes they belong to can be unloaded.
+   */
+  static void clearDescriptors() {
+    sharedPropUtil.clearDescriptors();
+  }
+
   public boolean isReadable(String propertyName) {
     return propUtil.isReadable(bean, propertyName);
   }
@@ -0,0 +1,237 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.util.beans;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+/**
+ * Registry of what the platform needs to know about the classes of its components, built once per class and reused
+ * by every execution: the component classes found by name, and the methods through which the platform drives a
+ * pojo component. Bean properties are described by the property utilities that {@link BeanUtil} shares.
+ * <p>
+ * Classes are keyed by the class itself, so that classes with the same name from different class loaders (such as
+ * two versions of a plugin) are described separately. {@link #clear()} must be called when plugins are reloaded, so
+ * that the classes of unloaded plugins are not kept alive.
+ */
+public class ComponentMetadata {
+
+  private static final ConcurrentMap<Class<?>, ComponentMetadata> metadataByClass = new ConcurrentHashMap<Class<?>, ComponentMetadata>();
+
+  private static final ConcurrentMap<ClassKey, Class<?>> classesByName = new ConcurrentHashMap<ClassKey, Class<?>>();
+
+  private final Map<String, Method> getMethods = new HashMap<String, Method>();
+
+  private final Map<String, List<Method>> setMethods = new HashMap<String, List<Method>>();
+
+  private Method executeMethod;
+
+  private Method validateMethod;
+
+  private Method doneMethod;
+
+  private Method resourcesMethod;
+
+  private Method runtimeInputsMethod;
+
+  private Method runtimeOutputsMethod;
+
+  private Method loggerMethod;
+
+  private Method sessionMethod;
+
+  private Method configureMethod;
+
+  private boolean classSetter;
+
+  private ComponentMetadata(final Class<?> componentClass) {
+    for (Method method : componentClass.getMethods()) {
+      String name = method.getName();
+      Class<?>[] paramTypes = method.getParameterTypes();
+      if (name.equals("getOutputs")) { //$NON-NLS-1$
+        runtimeOutputsMethod = method;
+      } else if (name.equals("setInputs")) { //$NON-NLS-1$
+        runtimeInputsMethod = method;
+      } else if (name.equals("setResources")) { //$NON-NLS-1$
+        resourcesMethod = method;
+      } else if (name.equals("setLogger")) { //$NON-NLS-1$
+        if (paramTypes.length == 1 && paramTypes[0] == Log.class) {
+          loggerMethod = method;
+        }
+      } else if (name.equals("setSession")) { //$NON-NLS-1$
+        if (paramTypes.length == 1 && paramTypes[0] == IPentahoSession.class) {
+          sessionMethod = method;
+        }
+      } else if (name.equalsIgnoreCase("configure")) { //$NON-NLS-1$
+        configureMethod = method;
+      } else if (name.startsWith("set")) { //$NON-NLS-1$
+        name = name.substring(3).toUpperCase();
+        if (name.equals("CLASS")) { //$NON-NLS-1$
+          classSetter = true;
+        } else {
+          if (!setMethods.containsKey(name)) {
+            setMethods.put(name, new ArrayList<Method>());
+          }
+          setMethods.get(name).add(method);
+        }
+      } else if (name.startsWith("get")) { //$NON-NLS-1$
+        getMethods.put(name.substring(3).toUpperCase(), method);
+      } else if (name.equalsIgnoreCase("execute")) { //$NON-NLS-1$
+        executeMethod = method;
+      } else if (name.equalsIgnoreCase("validate")) { //$NON-NLS-1$
+        validateMethod = method;
+      } else if (name.equalsIgnoreCase("done")) { //$NON-NLS-1$
+        doneMethod = method;
+      }
+    }
+    for (Map.Entry<String, List<Method>> entry : setMethods.entrySet()) {
+      entry.setValue(Collections.unmodifiableList(entry.getValue()));
+    }
+  }
+
+  /**
+   * Returns the metadata of <code>componentClass</code>, describing it the first time it is asked for.
+   */
+  public static ComponentMetadata forClass(final Class<?> componentClass) {
+    ComponentMetadata metadata = metadataByClass.get(componentClass);
+    if (metadata == null) {
+      // describing a class twice when two threads race is harmless
+      metadata = new ComponentMetadata(componentClass);
+      ComponentMetadata existing = metadataByClass.putIfAbsent(componentClass, metadata);
+      if (existing != null) {
+        metadata = existing;
+      }
+    }
+    return metadata;
+  }
+
+  /**
+   * Returns the class named <code>className</code> from <code>classLoader</code>, like
+   * {@link Class#forName(String, boolean, ClassLoader)}, looking it up only the first time it is asked for.
+   */
+  public static Class<?> loadClass(final String className, final ClassLoader classLoader)
+      throws ClassNotFoundException {
+    ClassKey key = new ClassKey(className, classLoader);
+    Class<?> componentClass = classesByName.get(key);
+    if (componentClass == null) {
+      componentClass = Class.forName(className, true, classLoader);
+      classesByName.put(key, componentClass);
+    }
+    return componentClass;
+  }
+
+  /**
+   * Forgets every class, and the bean properties described by {@link BeanUtil}. Call when plugins are reloaded.
+   */
+  public static void clear() {
+    metadataByClass.clear();
+    classesByName.clear();
+    BeanUtil.clearDescriptors();
+  }
+
+  /**
+   * Returns the getters of the pojo by property name in upper case.
+   */
+  public Map<String, Method> getGetMethods() {
+    return Collections.unmodifiableMap(getMethods);
+  }
+
+  /**
+   * Returns the setters of the pojo by property name in upper case; a property may have setters for several types.
+   */
+  public Map<String, List<Method>> getSetMethods() {
+    return Collections.unmodifiableMap(setMethods);
+  }
+
+  public Method getExecuteMethod() {
+    return executeMethod;
+  }
+
+  public Method getValidateMethod() {
+    return validateMethod;
+  }
+
+  public Method getDoneMethod() {
+    return doneMethod;
+  }
+
+  public Method getResourcesMethod() {
+    return resourcesMethod;
+  }
+
+  public Method getRuntimeInputsMethod() {
+    return runtimeInputsMethod;
+  }
+
+  public Method getRuntimeOutputsMethod() {
+    return runtimeOutputsMethod;
+  }
+
+  public Method getLoggerMethod() {
+    return loggerMethod;
+  }
+
+  public Method getSessionMethod() {
+    return sessionMethod;
+  }
+
+  public Method getConfigureMethod() {
+    return configureMethod;
+  }
+
+  /**
+   * Returns <code>true</code> if the pojo has a <code>setClass</code> method, which cannot be used as an input.
+   */
+  public boolean hasClassSetter() {
+    return classSetter;
+  }
+
+  private static class ClassKey {
+    private final String className;
+
+    private final ClassLoader classLoader;
+
+    private ClassKey(final String className, final ClassLoader classLoader) {
+      this.className = className;
+      this.classLoader = classLoader;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * className.hashCode() + System.identityHashCode(classLoader);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof ClassKey)) {
+        return false;
+      }
+      ClassKey other = (ClassKey) obj;
+      return className.equals(other.className) && (classLoader == other.classLoader);
+    }
+  }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.util.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.io.IOUtils;
+import org.pentaho.platform.util.messages.LocaleHelper;
+
+/**
+ * Shared cache of compiled XSL stylesheets, so that a stylesheet is compiled once and not on every transform.
+ * <p>
+ * Stylesheets are keyed by an id naming where they were loaded from, such as their path and locale, and by the resolver
+ * their includes and imports are resolved with. Stylesheets without an id are keyed by their content. Resolvers are
+ * compared with <code>equals</code>, so a stylesheet compiled with one resolver is only reused with that same resolver,
+ * or with one that declares itself equal because it resolves from the same place.
+ * The stylesheet is still read on every lookup and compiled again when its content has changed, so that a changed
+ * file is picked up on its next use. Changes to the stylesheets it includes or imports are seen once the cache is
+ * {@link #clear() cleared}.
+ * <p>
+ * {@link Templates} are thread safe; each transform gets its own transformer from them.
+ */
+public class TemplatesCache {
+
+  /**
+   * The cache is emptied when it grows past this many stylesheets.
+   */
+  private static final int MAX_TEMPLATES = 500;
+
+  private static final ConcurrentMap<TemplatesKey, CachedTemplates> templatesByKey = new ConcurrentHashMap<TemplatesKey, CachedTemplates>();
+
+  private static final AtomicLong hitCount = new AtomicLong();
+
+  private static final AtomicLong missCount = new AtomicLong();
+
+  private static final AtomicLong compileTimeNanos = new AtomicLong();
+
+  /**
+   * Returns the compiled form of the stylesheet read from <code>xslInStream</code>, compiling it only if it was not
+   * compiled before or has changed since. The stream is read but not closed.
+   *
+   * @param stylesheetId
+   *          names where the stylesheet was loaded from, or <code>null</code> to key the stylesheet by its content
+   * @param xslInStream
+   *          InputStream containing the xsl transform
+   * @param resolver
+   *          URIResolver instance to resolve the includes and imports of the stylesheet, may be <code>null</code>
+   * @throws TransformerConfigurationException
+   *           if the stylesheet cannot be compiled
+   * @throws IOException
+   *           if the stylesheet cannot be read
+   */
+  public static Templates getTemplates(final String stylesheetId, final InputStream xslInStream,
+      final URIResolver resolver) throws TransformerConfigurationException, IOException {
+    return TemplatesCache.getTemplates(stylesheetId, null, xslInStream, resolver);
+  }
+
+  private static Templates getTemplates(final String stylesheetId, final Locale locale,
+      final InputStream xslInStream, final URIResolver resolver) throws TransformerConfigurationException,
+    IOException {
+    byte[] xsl = IOUtils.toByteArray(xslInStream);
+    TemplatesKey key = new TemplatesKey(stylesheetId, locale, xsl, resolver);
+    CachedTemplates cached = TemplatesCache.templatesByKey.get(key);
+    if ((cached != null) && Arrays.equals(cached.xsl, xsl)) {
+      TemplatesCache.hitCount.incrementAndGet();
+      return cached.templates;
+    }
+    TemplatesCache.missCount.incrementAndGet();
+    long start = System.nanoTime();
+    // factories are not thread safe; compiling a stylesheet takes far longer than creating one
+    TransformerFactory tf = TransformerFactory.newInstance();
+    if (null != resolver) {
+      tf.setURIResolver(resolver);
+    }
+    Templates templates = tf.newTemplates(new StreamSource(new ByteArrayInputStream(xsl)));
+    TemplatesCache.compileTimeNanos.addAndGet(System.nanoTime() - start);
+    if (TemplatesCache.templatesByKey.size() >= TemplatesCache.MAX_TEMPLATES) {
+      TemplatesCache.templatesByKey.clear();
+    }
+    TemplatesCache.templatesByKey.put(key, new CachedTemplates(xsl, templates));
+    return templates;
+  }
+
+  /**
+   * Returns the compiled form of the stylesheet in <code>xslSrc</code>. Stylesheets read from an input stream are
+   * cached under their system id, or their content if they have none, and the current locale, since resolvers such as
+   * the solution resolver include the stylesheets localized for it; others are compiled on every call.
+   *
+   * @see #getTemplates(String, InputStream, URIResolver)
+   */
+  public static Templates getTemplates(final StreamSource xslSrc, final URIResolver resolver)
+      throws TransformerConfigurationException {
+    if (xslSrc.getInputStream() == null) {
+      TemplatesCache.missCount.incrementAndGet();
+      TransformerFactory tf = TransformerFactory.newInstance();
+      if (null != resolver) {
+        tf.setURIResolver(resolver);
+      }
+      return tf.newTemplates(xslSrc);
+    }
+    try {
+      return TemplatesCache.getTemplates(xslSrc.getSystemId(), LocaleHelper.getLocale(), xslSrc.getInputStream(),
+          resolver);
+    } catch (IOException e) {
+      throw new TransformerConfigurationException(e);
+    }
+  }
+
+  /**
+   * Forgets every compiled stylesheet.
+   */
+  public static void clear() {
+    TemplatesCache.templatesByKey.clear();
+  }
+
+  public static int size() {
+    return TemplatesCache.templatesByKey.size();
+  }
+
+  /**
+   * Returns the number of lookups that found the current version of a stylesheet compiled.
+   */
+  public static long getHitCount() {
+    return TemplatesCache.hitCount.get();
+  }
+
+  /**
+   * Returns the number of lookups that compiled a stylesheet.
+   */
+  public static long getMissCount() {
+    return TemplatesCache.missCount.get();
+  }
+
+  /**
+   * Returns the total time, in milliseconds, spent compiling stylesheets.
+   */
+  public static long getCompileTimeMillis() {
+    return TemplatesCache.compileTimeNanos.get() / 1000000L;
+  }
+
+  private static class TemplatesKey {
+    private final String stylesheetId;
+
+    private final Locale locale;
+
+    private final byte[] xsl;
+
+    private final URIResolver resolver;
+
+    private final int hashCode;
+
+    TemplatesKey(final String stylesheetId, final Locale locale, final byte[] xsl, final URIResolver resolver) {
+      this.stylesheetId = stylesheetId;
+      this.locale = locale;
+      this.xsl = (stylesheetId == null) ? xsl : null;
+      this.resolver = resolver;
+      int hash = (stylesheetId == null) ? Arrays.hashCode(xsl) : stylesheetId.hashCode();
+      hash = 31 * hash + ((locale == null) ? 0 : locale.hashCode());
+      this.hashCode = 31 * hash + ((resolver == null) ? 0 : resolver.hashCode());
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof TemplatesKey)) {
+        return false;
+      }
+      TemplatesKey other = (TemplatesKey) obj;
+      return (hashCode == other.hashCode)
+          && ((locale == null) ? (other.locale == null) : locale.equals(other.locale))
+          && ((resolver == null) ? (other.resolver == null) : resolver.equals(other.resolver))
+          && ((stylesheetId == null) ? (other.stylesheetId == null) && Arrays.equals(xsl, other.xsl) : stylesheetId
+              .equals(other.stylesheetId));
+    }
+  }
+
+  private static class CachedTemplates {
+    private final byte[] xsl;
+
+    private final Templates templates;
+
+    CachedTemplates(final byte[] xsl, final Templates templates) {
+      this.xsl = xsl;
+      this.templates = templates;
+    }
+  }
+
+}
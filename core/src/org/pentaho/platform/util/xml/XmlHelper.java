@@ -26,9 +26,11 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -41,10 +43,11 @@ import java.util.Set;
 import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.xml.transform.Result;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.URIResolver;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
@@ -304,20 +307,45 @@ public class XmlHelper {
    */
   public static final StringBuffer transformXml(final String xslName, final String xslPath, final String strDocument,
       final Map params, final IDocumentResourceLoader loader) throws TransformerException {
-    InputStream inStrm = null;
+    InputStream inStrm = XmlHelper.getDocumentStream(strDocument);
+    StringBuffer result = XmlHelper.transformXml(xslName, xslPath, inStrm, params, loader);
+    FileHelper.closeInputStream(inStrm);
+
+    return result;
+  }
+
+  /**
+   * Use the transform specified by xslName and transform the document specified
+   * by strDocument, writing the resulting document to <code>out</code> as it is produced
+   * instead of buffering it. If the transform fails, part of the document may have been written.
+   * 
+   * @param out Writer receiving the results of the transform
+   * 
+   * @return false if there was an error before the transform started, true otherwise.
+   * @throws TransformerException If attempt to transform the document fails.
+   * @see #transformXml(String, String, String, Map, IDocumentResourceLoader)
+   */
+  public static final boolean transformXml(final String xslName, final String xslPath, final String strDocument,
+      final Map params, final IDocumentResourceLoader loader, final Writer out) throws TransformerException {
+    InputStream inStrm = XmlHelper.getDocumentStream(strDocument);
+    try {
+      return XmlHelper.transformXml(xslName, xslPath, inStrm, params, loader, new StreamResult(out));
+    } finally {
+      FileHelper.closeInputStream(inStrm);
+    }
+  }
+
+  private static InputStream getDocumentStream(final String strDocument) {
     try {
       // Read the encoding from the XML file - see BISERVER-895
       String encoding = XmlHelper.getEncoding(strDocument, null);
-      inStrm = new ByteArrayInputStream(strDocument.getBytes(encoding));
+      return new ByteArrayInputStream(strDocument.getBytes(encoding));
     } catch (UnsupportedEncodingException e) {
       if (XmlHelper.logger.isErrorEnabled()) {
         XmlHelper.logger.error(e);
       }
     }
-    StringBuffer result = XmlHelper.transformXml(xslName, xslPath, inStrm, params, loader);
-    FileHelper.closeInputStream(inStrm);
-
-    return result;
+    return null;
   }
 
   /**
@@ -332,16 +360,57 @@ public class XmlHelper {
    * @return StringBuffer containing the XML results of the transform. Null if there was an error.
    * @throws TransformerException If attempt to transform the document fails.
    */
-  @SuppressWarnings({"unchecked"})
   public static final StringBuffer transformXml(final String xslName, final String xslPath,
-      final InputStream docInStrm, Map params, final IDocumentResourceLoader loader) throws TransformerException {
-    StringBuffer result = null;
+      final InputStream docInStrm, final Map params, final IDocumentResourceLoader loader) throws TransformerException {
+    StringWriter writer = new StringWriter();
+    if (XmlHelper.transformXml(xslName, xslPath, docInStrm, params, loader, new StreamResult(writer))) {
+      return writer.getBuffer();
+    }
+    return null;
+  }
 
+  /**
+   * Use the transform specified by xslPath and xslName and transform the document specified
+   * by docInStrm, writing the resulting document to <code>out</code> as it is produced instead
+   * of buffering it. If the transform fails, part of the document may have been written.
+   * 
+   * @param out Writer receiving the results of the transform
+   * 
+   * @return false if there was an error before the transform started, true otherwise.
+   * @throws TransformerException If attempt to transform the document fails.
+   * @see #transformXml(String, String, InputStream, Map, IDocumentResourceLoader)
+   */
+  public static final boolean transformXml(final String xslName, final String xslPath, final InputStream docInStrm,
+      final Map params, final IDocumentResourceLoader loader, final Writer out) throws TransformerException {
+    return XmlHelper.transformXml(xslName, xslPath, docInStrm, params, loader, new StreamResult(out));
+  }
+
+  /**
+   * Use the transform specified by xslPath and xslName and transform the document specified
+   * by docInStrm, writing the resulting document to <code>out</code> as it is produced instead
+   * of buffering it. The document is written in the encoding set by the xsl transform. If the
+   * transform fails, part of the document may have been written.
+   * 
+   * @param out OutputStream receiving the results of the transform
+   * 
+   * @return false if there was an error before the transform started, true otherwise.
+   * @throws TransformerException If attempt to transform the document fails.
+   * @see #transformXml(String, String, InputStream, Map, IDocumentResourceLoader)
+   */
+  public static final boolean transformXml(final String xslName, final String xslPath, final InputStream docInStrm,
+      final Map params, final IDocumentResourceLoader loader, final OutputStream out) throws TransformerException {
+    return XmlHelper.transformXml(xslName, xslPath, docInStrm, params, loader, new StreamResult(out));
+  }
+
+  @SuppressWarnings({"unchecked"})
+  private static boolean transformXml(final String xslName, final String xslPath, final InputStream docInStrm,
+      Map params, final IDocumentResourceLoader loader, final Result result) throws TransformerException {
     InputStream xslInStrm = XmlHelper.getLocalizedXsl(xslPath, xslName, loader);
     if (null == xslInStrm) {
       Logger.error(XmlHelper.class.getName(), Messages.getInstance().getErrorString("XmlHelper.ERROR_0003_NULL_XSL_SOURCE")); //$NON-NLS-1$
     } else if (null == docInStrm) {
       Logger.error(XmlHelper.class.getName(), Messages.getInstance().getErrorString("XmlHelper.ERROR_0004_NULL_DOCUMENT")); //$NON-NLS-1$
+      FileHelper.closeInputStream(xslInStrm);
     } else {
 
       // at this point, we have both of our InputStreams
@@ -353,7 +422,16 @@ public class XmlHelper {
       params.put("output-encoding", LocaleHelper.getSystemEncoding()); //$NON-NLS-1$
 
       try {
-        result = XmlHelper.transformXml(xslInStrm, docInStrm, params, loader);
+        // the path, name and locale decide which localized stylesheet is loaded
+        String stylesheetId = xslPath + "|" + xslName + "|" + LocaleHelper.getLocale(); //$NON-NLS-1$ //$NON-NLS-2$
+        Templates templates;
+        try {
+          templates = TemplatesCache.getTemplates(stylesheetId, xslInStrm, loader);
+        } catch (IOException e) {
+          throw new TransformerConfigurationException(e);
+        }
+        XmlHelper.transform(templates, new StreamSource(docInStrm), params, loader, result);
+        return true;
       } catch (TransformerException e) {
         Logger.error(XmlHelper.class.getName(), Messages.getInstance().getErrorString(
             "XmlHelper.ERROR_0006_TRANSFORM_XML_ERROR", e.getMessage(), xslName), e); //$NON-NLS-1$
@@ -362,7 +440,7 @@ public class XmlHelper {
         FileHelper.closeInputStream(xslInStrm);
       }
     }
-    return result;
+    return false;
   }
 
   /**
@@ -414,16 +492,19 @@ public class XmlHelper {
   protected static final StringBuffer transformXml(final StreamSource xslSrc, final StreamSource docSrc,
       final Map params, final URIResolver resolver) throws TransformerConfigurationException, TransformerException {
 
-    StringBuffer sb = null;
     StringWriter writer = new StringWriter();
+    Templates templates = TemplatesCache.getTemplates(xslSrc, resolver); // can throw
+    // TransformerConfigurationException
+    XmlHelper.transform(templates, docSrc, params, resolver, new StreamResult(writer));
+    return writer.getBuffer();
+  }
 
-    TransformerFactory tf = TransformerFactory.newInstance();
+  private static void transform(final Templates templates, final StreamSource docSrc, final Map params,
+      final URIResolver resolver, final Result result) throws TransformerException {
+    Transformer t = templates.newTransformer();
     if (null != resolver) {
-      tf.setURIResolver(resolver);
+      t.setURIResolver(resolver);
     }
-    // TODO need to look into compiling the XSLs...
-    Transformer t = tf.newTransformer(xslSrc); // can throw
-    // TransformerConfigurationException
     // Start the transformation
     if (params != null) {
       Set keys = params.keySet();
@@ -437,11 +518,8 @@ public class XmlHelper {
         }
       }
     }
-    t.transform(docSrc, new StreamResult(writer)); // can throw
+    t.transform(docSrc, result); // can throw
     // TransformerException
-    sb = writer.getBuffer();
-
-    return sb;
   }
 
   /**
@@ -26,6 +26,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -47,6 +48,7 @@ import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 import org.pentaho.platform.api.util.XmlParseException;
 import org.pentaho.platform.util.messages.Messages;
+import org.pentaho.platform.util.xml.TemplatesCache;
 import org.xml.sax.EntityResolver;
 
 // TODO sbarkdull, exernalize strings, comment methods
@@ -176,13 +178,12 @@ public class XmlDom4JHelper {
     StringBuffer sb = null;
     StringWriter writer = new StringWriter();
 
-    TransformerFactory tf = TransformerFactory.newInstance();
+    Templates templates = TemplatesCache.getTemplates(xslSrc, resolver); // can throw
+    // TransformerConfigurationException
+    Transformer t = templates.newTransformer();
     if (null != resolver) {
-      tf.setURIResolver(resolver);
+      t.setURIResolver(resolver);
     }
-    // TODO need to look into compiling the XSLs...
-    Transformer t = tf.newTransformer(xslSrc); // can throw
-    // TransformerConfigurationException
     // Start the transformation
     if (params != null) {
       Set<?> keys = params.keySet();
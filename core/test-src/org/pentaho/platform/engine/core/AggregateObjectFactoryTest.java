@@ -68,4 +68,47 @@ public class AggregateObjectFactoryTest {
     assertEquals(11, mimes.size());
 
   }
+
+  @Test
+  public void testResolutionSeesNewDefinitions() throws Exception{
+
+    StandaloneSession session = new StandaloneSession();
+    StandaloneObjectFactory factory = new StandaloneObjectFactory( );
+    factory.init(null, null );
+
+    AggregateObjectFactory aggFactory = new AggregateObjectFactory();
+    aggFactory.registerObjectFactory(factory);
+
+    assertFalse(aggFactory.objectDefined("GoodObject"));
+    assertFalse(aggFactory.objectDefined(GoodObject.class));
+
+    GoodObject good = new GoodObject();
+    factory.defineInstance("GoodObject", good);
+    assertTrue(aggFactory.objectDefined("GoodObject"));
+    assertTrue(aggFactory.objectDefined(GoodObject.class));
+    assertSame(good, aggFactory.get(GoodObject.class, session));
+    assertSame(good, aggFactory.get(GoodObject.class, session));
+  }
+
+  @Test
+  public void testResolutionSeesNewFactories() throws Exception{
+
+    StandaloneSession session = new StandaloneSession();
+    StandaloneObjectFactory factory = new StandaloneObjectFactory( );
+    factory.init(null, null );
+
+    AggregateObjectFactory aggFactory = new AggregateObjectFactory();
+    aggFactory.registerObjectFactory(factory);
+    assertFalse(aggFactory.objectDefined("GoodObject"));
+
+    StandaloneSpringPentahoObjectFactory factory2 = new StandaloneSpringPentahoObjectFactory( );
+    factory2.init("test-res/solution/system/pentahoObjects.spring.xml", null );
+    aggFactory.registerObjectFactory(factory2);
+
+    assertTrue(aggFactory.objectDefined("GoodObject"));
+    assertNotNull(aggFactory.get(GoodObject.class, "GoodObject", session));
+
+    aggFactory.clear();
+    assertFalse(aggFactory.objectDefined("GoodObject"));
+  }
 }
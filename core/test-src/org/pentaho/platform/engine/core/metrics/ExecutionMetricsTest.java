@@ -0,0 +1,124 @@
+package org.pentaho.platform.engine.core.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class ExecutionMetricsTest extends TestCase {
+
+  @Override
+  protected void setUp() throws Exception {
+    ExecutionMetrics.reset();
+    ExecutionMetrics.setEnabled(true);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    ExecutionMetrics.reset();
+    ExecutionMetrics.setEnabled(true);
+  }
+
+  public void testHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0.0, histogram.getPercentileMillis(50));
+    for (int i = 0; i < 9; i++) {
+      histogram.record(3000000L);
+    }
+    histogram.record(70000000000L);
+    assertEquals(10, histogram.getCount());
+    assertEquals(70000.0, histogram.getMaxMillis());
+    assertEquals(5.0, histogram.getPercentileMillis(50));
+    assertEquals(70000.0, histogram.getPercentileMillis(99));
+    long[] counts = histogram.getBucketCounts();
+    assertEquals(9, counts[2]);
+    assertEquals(1, counts[counts.length - 1]);
+  }
+
+  public void testNestedSpans() {
+    ExecutionSpan request = ExecutionSpan.start(ExecutionMetrics.HTTP_REQUEST, "/api");
+    ExecutionSpan sequence = ExecutionSpan.start(ExecutionMetrics.ACTION_SEQUENCE, "/public/test.xaction");
+    assertSame(sequence, ExecutionSpan.current());
+    ExecutionSpan.start(ExecutionMetrics.COMPONENT, "SQLLookupRule").end();
+    ExecutionSpan.start(ExecutionMetrics.COMPONENT, "SQLLookupRule").end();
+    sequence.end();
+    assertSame(request, ExecutionSpan.current());
+    request.end();
+    assertNull(ExecutionSpan.current());
+
+    Map<String, Map<String, LatencyHistogram>> timers = ExecutionMetrics.getTimers();
+    assertEquals(2, timers.get(ExecutionMetrics.COMPONENT).get("SQLLookupRule").getCount());
+    assertEquals(1, timers.get(ExecutionMetrics.ACTION_SEQUENCE).get("/public/test.xaction").getCount());
+
+    String breakdown = request.getBreakdown();
+    assertTrue(breakdown, breakdown.startsWith("http_request /api "));
+    assertTrue(breakdown, breakdown.contains("\n  action_sequence /public/test.xaction "));
+    assertTrue(breakdown, breakdown.contains("\n    component SQLLookupRule "));
+
+    // ending twice records once
+    request.end();
+    assertEquals(1, ExecutionMetrics.getTimers().get(ExecutionMetrics.HTTP_REQUEST).get("/api").getCount());
+  }
+
+  public void testDisabled() {
+    ExecutionMetrics.setEnabled(false);
+    ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.COMPONENT, "SQLLookupRule");
+    assertNull(ExecutionSpan.current());
+    span.end();
+    ExecutionMetrics.increment("queries");
+    assertTrue(ExecutionMetrics.getTimers().isEmpty());
+    assertTrue(ExecutionMetrics.getCounters().isEmpty());
+  }
+
+  public void testLabelsAreBounded() {
+    for (int i = 0; i < 300; i++) {
+      ExecutionMetrics.recordTime(ExecutionMetrics.ACTION_SEQUENCE, "/public/report" + i + ".xaction", 1000L);
+    }
+    Map<String, LatencyHistogram> histograms = ExecutionMetrics.getTimers().get(ExecutionMetrics.ACTION_SEQUENCE);
+    assertEquals(201, histograms.size());
+    assertEquals(100, histograms.get(ExecutionMetrics.OTHER_LABEL).getCount());
+  }
+
+  public void testPathLabel() {
+    assertEquals("/", ExecutionMetrics.getPathLabel(null));
+    assertEquals("/", ExecutionMetrics.getPathLabel("/"));
+    assertEquals("/api", ExecutionMetrics.getPathLabel("/api"));
+    assertEquals("/repos", ExecutionMetrics.getPathLabel("/repos/:public:test.xaction/content"));
+  }
+
+  public void testFormats() {
+    ExecutionMetrics.recordTime(ExecutionMetrics.COMPONENT, "Say \"hi\"", 2000000L);
+    ExecutionMetrics.add("jdbc.rows", 5);
+    Map<String, Integer> gauges = Collections.singletonMap("cache_size", 3);
+
+    String json = ExecutionMetricsFormatter.toJson(gauges);
+    assertTrue(json, json.startsWith("{\"timers\":{\"component\":{\"Say \\\"hi\\\"\":{\"count\":1,"));
+    assertTrue(json, json.contains("\"counters\":{\"jdbc.rows\":5}"));
+    assertTrue(json, json.endsWith("\"gauges\":{\"cache_size\":3}}"));
+
+    String text = ExecutionMetricsFormatter.toPrometheus(gauges);
+    assertTrue(text, text.contains("# TYPE pentaho_component_seconds histogram\n"));
+    assertTrue(text, text.contains("pentaho_component_seconds_bucket{name=\"Say \\\"hi\\\"\",le=\"0.001\"} 0\n"));
+    assertTrue(text, text.contains("pentaho_component_seconds_bucket{name=\"Say \\\"hi\\\"\",le=\"0.005\"} 1\n"));
+    assertTrue(text, text.contains("pentaho_component_seconds_bucket{name=\"Say \\\"hi\\\"\",le=\"+Inf\"} 1\n"));
+    assertTrue(text, text.contains("pentaho_component_seconds_count{name=\"Say \\\"hi\\\"\"} 1\n"));
+    assertTrue(text, text.contains("pentaho_jdbc_rows_total 5\n"));
+    assertTrue(text, text.contains("pentaho_cache_size 3\n"));
+  }
+
+  public void testCallerCountersAreExportedAsCounters() {
+    ExecutionMetrics.increment(ExecutionMetrics.JDBC_STATEMENTS);
+    Map<String, Long> counters = Collections.singletonMap("cache_hits", 7L);
+    Map<String, Integer> gauges = Collections.singletonMap("cache_size", 3);
+
+    String json = ExecutionMetricsFormatter.toJson(counters, gauges);
+    assertTrue(json, json.contains("\"counters\":{\"cache_hits\":7,\"jdbc_statements\":1}"));
+
+    String text = ExecutionMetricsFormatter.toPrometheus(counters, gauges);
+    assertTrue(text, text.contains("# TYPE pentaho_cache_hits_total counter\npentaho_cache_hits_total 7\n"));
+    assertTrue(text, text.contains("# TYPE pentaho_jdbc_statements_total counter\n"));
+    assertTrue(text, text.contains("# TYPE pentaho_cache_size gauge\n"));
+  }
+
+}
@@ -0,0 +1,125 @@
+package org.pentaho.platform.engine.core.system;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.dom4j.Document;
+import org.dom4j.Node;
+
+@SuppressWarnings("nls")
+public class SystemSettingsIndexTest extends TestCase {
+
+  private static final String SETTINGS = "<pentaho-system>"
+      + "<log-level>DEBUG</log-level>"
+      + "<smtp-email><mail.userid>user</mail.userid><empty/></smtp-email>"
+      + "<sampledata-datasource><name>SampleData</name><host>localhost</host></sampledata-datasource>"
+      + "<other><name>Other</name></other>"
+      + "<x:ns xmlns:x=\"urn:test\"><name>Namespaced</name></x:ns>"
+      + "</pentaho-system>";
+
+  private File dir;
+
+  private File file;
+
+  private SystemSettings settings;
+
+  @Override
+  protected void setUp() throws Exception {
+    file = File.createTempFile("settings", ".xml");
+    dir = file.getParentFile();
+    write(SETTINGS);
+    settings = new SystemSettings() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected String getAbsolutePath(final String path) {
+        return new File(dir, path).getAbsolutePath();
+      }
+    };
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+  }
+
+  public void testLookupsMatchXPath() {
+    String path = file.getName();
+    Document document = settings.getSystemSettingsDocument(path);
+    String[] names = { "log-level", "mail.userid", "smtp-email/mail.userid", "empty", "name",
+        "sampledata-datasource/name", "other/name", "pentaho-system/other/name", "pentaho-system", "missing",
+        "other/host", "name[2]", "*/host", "smtp-email/@none" };
+    for (String name : names) {
+      Node node = document.selectSingleNode("//" + name);
+      String expected = (node != null) ? node.getText() : "default";
+      assertEquals(name, expected, settings.getSystemSetting(path, name, "default"));
+    }
+    assertEquals("SampleData", settings.getSystemSetting(path, "name", null));
+    assertEquals("Other", settings.getSystemSetting(path, "name[2]", null));
+    assertEquals(3, settings.getSystemSettings(path, "name").size());
+  }
+
+  public void testSettingListsCannotBeChanged() {
+    String path = file.getName();
+    List names = settings.getSystemSettings(path, "name");
+    try {
+      names.clear();
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // the list is shared by every caller
+    }
+    assertEquals(3, settings.getSystemSettings(path, "name").size());
+    // names with a predicate are not cached, but still answered
+    assertEquals(1, settings.getSystemSettings(path, "*[host]/name").size());
+    assertEquals(1, settings.getSystemSettings(path, "*[host]/name").size());
+  }
+
+  public void testElementPath() {
+    assertTrue(SystemSettings.isElementPath("smtp-email/mail.userid"));
+    assertTrue(SystemSettings.isElementPath("log_level"));
+    assertFalse(SystemSettings.isElementPath("/pentaho-system"));
+    assertFalse(SystemSettings.isElementPath("a//b"));
+    assertFalse(SystemSettings.isElementPath("a/.."));
+    assertFalse(SystemSettings.isElementPath("a/./b"));
+    assertFalse(SystemSettings.isElementPath("a/1b"));
+    assertFalse(SystemSettings.isElementPath("name[2]"));
+    assertFalse(SystemSettings.isElementPath("x:name"));
+    assertFalse(SystemSettings.isElementPath("@name"));
+  }
+
+  public void testChangedFileIsReloaded() throws Exception {
+    String path = file.getName();
+    settings.setReloadCheckInterval(0L);
+    assertEquals("DEBUG", settings.getSystemSetting(path, "log-level", null));
+    write(SETTINGS.replace("DEBUG", "ERROR-AND-MORE"));
+    assertEquals("ERROR-AND-MORE", settings.getSystemSetting(path, "log-level", null));
+
+    // a file that cannot be read leaves the settings in place
+    write("<pentaho-system>");
+    assertEquals("ERROR-AND-MORE", settings.getSystemSetting(path, "log-level", null));
+  }
+
+  public void testReloadCanBeTurnedOff() throws Exception {
+    String path = file.getName();
+    settings.setReloadCheckInterval(-1L);
+    assertEquals("DEBUG", settings.getSystemSetting(path, "log-level", null));
+    write(SETTINGS.replace("DEBUG", "ERROR-AND-MORE"));
+    assertEquals("DEBUG", settings.getSystemSetting(path, "log-level", null));
+    settings.resetSettingsCache();
+    assertEquals("ERROR-AND-MORE", settings.getSystemSetting(path, "log-level", null));
+  }
+
+  private void write(final String content) throws IOException {
+    FileWriter writer = new FileWriter(file);
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+package org.pentaho.platform.engine.services;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.api.engine.IAuditEntry;
+import org.pentaho.platform.engine.services.audit.AsyncAuditEntry;
+import org.pentaho.platform.engine.services.audit.AuditRecord;
+import org.pentaho.platform.engine.services.audit.IBatchAuditEntry;
+
+@SuppressWarnings("nls")
+public class AsyncAuditEntryTest extends TestCase {
+
+  public void testBatchesAreWrittenOnShutdown() throws Exception {
+    RecordingAuditEntry target = new RecordingAuditEntry();
+    AsyncAuditEntry entry = new AsyncAuditEntry(target, 100);
+    entry.setBatchSize(10);
+    entry.setFlushInterval(60000);
+    for (int i = 0; i < 25; i++) {
+      audit(entry, "job" + i);
+    }
+    entry.shutdown();
+
+    assertEquals(25, target.records.size());
+    assertEquals("job0", target.records.get(0).getJobId());
+    assertEquals("job24", target.records.get(24).getJobId());
+    for (Integer size : target.batchSizes) {
+      assertTrue(size.intValue() <= 10);
+    }
+    assertEquals(25, entry.getWrittenCount());
+    assertEquals(0, entry.getQueueDepth());
+
+    // entries made after shutdown are written directly
+    audit(entry, "late");
+    assertEquals(26, target.records.size());
+  }
+
+  public void testFlushInterval() throws Exception {
+    RecordingAuditEntry target = new RecordingAuditEntry();
+    AsyncAuditEntry entry = new AsyncAuditEntry(target, 100);
+    entry.setBatchSize(1000);
+    entry.setFlushInterval(50);
+    audit(entry, "job");
+    long deadline = System.currentTimeMillis() + 5000;
+    while (target.size() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, target.size());
+    entry.shutdown();
+  }
+
+  public void testOverflowPolicies() throws Exception {
+    BlockedAuditEntry target = new BlockedAuditEntry();
+    AsyncAuditEntry entry = new AsyncAuditEntry(target, 2);
+    entry.setBatchSize(1);
+    entry.setOverflowPolicy(AsyncAuditEntry.OverflowPolicy.DROP);
+    audit(entry, "taken");
+    target.writing.await();
+    // the writer is stuck on the first entry; two fit in the queue, the rest overflow
+    audit(entry, "queued1");
+    audit(entry, "queued2");
+    audit(entry, "dropped");
+    assertEquals(1, entry.getDroppedCount());
+    assertEquals(2, entry.getQueueDepth());
+
+    entry.setOverflowPolicy(AsyncAuditEntry.OverflowPolicy.SPILL);
+    audit(entry, "spilled");
+    assertEquals(1, entry.getSpilledCount());
+    assertEquals(1, target.direct.size());
+    assertEquals("spilled", target.direct.get(0));
+
+    target.release.countDown();
+    entry.shutdown();
+    assertEquals(3, entry.getWrittenCount());
+  }
+
+  public void testPlainTargetIsCalledPerEntry() throws Exception {
+    final List<String> jobIds = new ArrayList<String>();
+    AsyncAuditEntry entry = new AsyncAuditEntry(new IAuditEntry() {
+      public void auditAll(String jobId, String instId, String objId, String objType, String actor,
+          String messageType, String messageName, String messageTxtValue, BigDecimal messageNumValue, double duration) {
+        jobIds.add(jobId);
+      }
+    });
+    audit(entry, "job1");
+    audit(entry, "job2");
+    entry.shutdown();
+    assertEquals(2, jobIds.size());
+  }
+
+  private static void audit(AsyncAuditEntry entry, String jobId) throws AuditException {
+    entry.auditAll(jobId, "inst", "obj", "type", "actor", "message_type", "name", "text", null, 1.5);
+  }
+
+  private static class RecordingAuditEntry implements IBatchAuditEntry {
+    final List<AuditRecord> records = new ArrayList<AuditRecord>();
+
+    final List<Integer> batchSizes = new ArrayList<Integer>();
+
+    public synchronized void auditBatch(List<AuditRecord> batch) {
+      records.addAll(batch);
+      batchSizes.add(batch.size());
+    }
+
+    public synchronized int size() {
+      return records.size();
+    }
+
+    public void auditAll(String jobId, String instId, String objId, String objType, String actor,
+        String messageType, String messageName, String messageTxtValue, BigDecimal messageNumValue, double duration) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class BlockedAuditEntry implements IBatchAuditEntry {
+    final CountDownLatch writing = new CountDownLatch(1);
+
+    final CountDownLatch release = new CountDownLatch(1);
+
+    final List<String> direct = new ArrayList<String>();
+
+    public void auditBatch(List<AuditRecord> batch) throws AuditException {
+      if (Thread.currentThread().getName().equals("Audit writer")) {
+        writing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new AuditException(e);
+        }
+      } else {
+        for (AuditRecord record : batch) {
+          direct.add(record.getJobId());
+        }
+      }
+    }
+
+    public void auditAll(String jobId, String instId, String objId, String objType, String actor,
+        String messageType, String messageName, String messageTxtValue, BigDecimal messageNumValue, double duration) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
@@ -35,6 +35,49 @@ public class TemplateUtilTest extends TestCase implements IParameterResolver {
     
   }
 
+  public void testRepeatedTemplate() {
+
+    Properties props = new Properties();
+    props.put( "name1", "value1" );
+    props.put( "name2", "value2" );
+
+    String template = "select * from t where a = '{name1}' and b = {name2} and c = {missing}";
+    String expected = "select * from t where a = 'value1' and b = value2 and c = {missing}";
+    assertEquals( expected, TemplateUtil.applyTemplate( template, props, (IParameterResolver) null) );
+    // the second time the template is expanded from its parsed form
+    assertEquals( expected, TemplateUtil.applyTemplate( template, props, (IParameterResolver) null) );
+
+    props.put( "name1", "other" );
+    assertEquals( "select * from t where a = 'other' and b = value2 and c = {missing}",
+        TemplateUtil.applyTemplate( template, props, (IParameterResolver) null) );
+
+    assertEquals( "no parameters", TemplateUtil.applyTemplate( "no parameters", props, (IParameterResolver) null) );
+
+  }
+
+  public void testResolverSeesParameterPosition() {
+
+    Properties props = new Properties();
+    props.put( "name2", "value2" );
+
+    String template = "a {PREPARE:name1} b {name2} c {PREPARE:name1}";
+    final StringBuffer positions = new StringBuffer();
+    IParameterResolver resolver = new IParameterResolver() {
+      public int resolveParameter(String template, String parameter, Matcher parameterMatcher, int copyStart, StringBuffer results) {
+        positions.append( parameterMatcher.start() ).append( ',' );
+        results.append( template.substring( copyStart, parameterMatcher.start() ) );
+        results.append( "?" );
+        return parameterMatcher.end();
+      }
+    };
+    for (int i = 0; i < 2; i++) {
+      positions.setLength( 0 );
+      assertEquals( "a ? b value2 c ?", TemplateUtil.applyTemplate( template, props, resolver) );
+      assertEquals( "2,30,", positions.toString() );
+    }
+
+  }
+
   public void testDateRegexSimple() {
 
     doCompare( "+1:MS" );
@@ -0,0 +1,130 @@
+package org.pentaho.platform.engine.services.actionsequence;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+import org.pentaho.platform.api.engine.IActionParameter;
+import org.pentaho.platform.api.engine.IActionSequence;
+import org.pentaho.platform.api.engine.ILogger;
+import org.pentaho.platform.api.engine.ISolutionActionDefinition;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
+import org.pentaho.platform.util.logging.SimpleLogger;
+import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
+
+@SuppressWarnings("nls")
+public class ActionSequenceCacheTest extends TestCase {
+
+  private static final String XACTION = "<action-sequence><title>Test</title>"
+      + "<inputs><region type=\"string\"><default-value>east</default-value><sources><request>region</request></sources></region>"
+      + "<items type=\"string-list\"><default-value><list-item>a</list-item><list-item>b</list-item></default-value></items></inputs>"
+      + "<outputs><result type=\"string\"/></outputs>"
+      + "<actions loop-on=\"items\">"
+      + "<action-definition><component-name>TestComponent</component-name>"
+      + "<action-inputs><region type=\"string\"/></action-inputs><action-outputs><result type=\"string\"/></action-outputs>"
+      + "</action-definition>"
+      + "<actions><action-definition><component-name>NestedComponent</component-name></action-definition></actions>"
+      + "</actions></action-sequence>";
+
+  private ActionSequenceCache cache;
+
+  private RepositoryFile file;
+
+  @Override
+  protected void setUp() throws Exception {
+    cache = new ActionSequenceCache(new SimpleMapCacheManager());
+    file = new RepositoryFile.Builder("file1", "test.xaction").path("/public/test.xaction").versionId("1.0")
+        .lastModificationDate(new Date(1000L)).build();
+  }
+
+  public void testCopiesAreIndependent() throws Exception {
+    ActionSequence template = parse();
+    ActionSequence copy1 = template.copy(ILogger.DEBUG);
+    ActionSequence copy2 = template.copy(ILogger.ERROR);
+
+    IActionParameter region1 = (IActionParameter) copy1.getInputDefinitions().get("region");
+    IActionParameter region2 = (IActionParameter) copy2.getInputDefinitions().get("region");
+    assertNotSame(region1, region2);
+    region1.setValue("west");
+    assertEquals("west", region1.getValue());
+    assertEquals("east", region2.getValue());
+    assertEquals("east", ((IActionParameter) template.getInputDefinitions().get("region")).getValue());
+
+    List items1 = ((IActionParameter) copy1.getInputDefinitions().get("items")).getValueAsList();
+    List items2 = ((IActionParameter) copy2.getInputDefinitions().get("items")).getValueAsList();
+    assertNotSame(items1, items2);
+    assertEquals(items1, items2);
+
+    ISolutionActionDefinition action1 = (ISolutionActionDefinition) copy1.getActionDefinitions().get(0);
+    ISolutionActionDefinition action2 = (ISolutionActionDefinition) copy2.getActionDefinitions().get(0);
+    assertNotSame(action1, action2);
+    assertSame(action1.getComponentSection(), action2.getComponentSection());
+    assertNotSame(action1.getActionInputDefinitions().get("region"), action2.getActionInputDefinitions().get("region"));
+    assertEquals(ILogger.DEBUG, action1.getLoggingLevel());
+    assertEquals(ILogger.ERROR, action2.getLoggingLevel());
+
+    assertEquals("items", copy1.getLoopParameter());
+    assertEquals("Test", copy1.getTitle());
+    IActionSequence nested = (IActionSequence) copy1.getActionDefinitions().get(1);
+    assertSame(copy1.getInputDefinitions(), nested.getInputDefinitions());
+  }
+
+  public void testHitAndMiss() throws Exception {
+    long hits = ActionSequenceCache.getHitCount();
+    long misses = ActionSequenceCache.getMissCount();
+    assertNull(cache.get(file, Locale.US, ILogger.ERROR));
+    ActionSequence template = parse();
+    IActionSequence first = cache.put(file, Locale.US, template, ILogger.ERROR, 5000000L);
+    assertNotSame(template, first);
+
+    IActionSequence second = cache.get(file, Locale.US, ILogger.ERROR);
+    assertNotNull(second);
+    assertNotSame(first, second);
+    assertNull(cache.get(file, Locale.FRANCE, ILogger.ERROR));
+
+    assertEquals(1, ActionSequenceCache.getHitCount() - hits);
+    assertEquals(2, ActionSequenceCache.getMissCount() - misses);
+  }
+
+  public void testUpdatedFileIsNotServed() throws Exception {
+    cache.put(file, Locale.US, parse(), ILogger.ERROR, 0L);
+    RepositoryFile newVersion = new RepositoryFile.Builder(file).versionId("1.1").build();
+    assertNull(cache.get(newVersion, Locale.US, ILogger.ERROR));
+    RepositoryFile modified = new RepositoryFile.Builder(file).lastModificationDate(new Date(2000L)).build();
+    assertNull(cache.get(modified, Locale.US, ILogger.ERROR));
+    assertNotNull(cache.get(file, Locale.US, ILogger.ERROR));
+  }
+
+  public void testLoopExecutionSettingsAreCopied() throws Exception {
+    String xaction = XACTION.replace("<actions loop-on=\"items\">",
+        "<actions loop-on=\"items\" parallel=\"true\" max-threads=\"4\" ordered=\"false\" on-error=\"continue\">");
+    ActionSequence template = (ActionSequence) SequenceDefinition.ActionSequenceFactory(XmlDom4JHelper
+        .getDocFromString(xaction, null), "/public/test.xaction", new SimpleLogger(this), null, ILogger.ERROR);
+    ActionSequence copy = template.copy(ILogger.ERROR);
+    assertEquals(4, copy.getLoopMaxThreads());
+    assertFalse(copy.getLoopOrdered());
+    assertFalse(copy.getLoopFailFast());
+
+    // loops run sequentially and fail fast unless they ask otherwise
+    ActionSequence sequential = parse();
+    assertEquals(1, sequential.getLoopMaxThreads());
+    assertTrue(sequential.getLoopOrdered());
+    assertTrue(sequential.getLoopFailFast());
+  }
+
+  public void testWithoutCacheManager() throws Exception {
+    ActionSequenceCache disabled = new ActionSequenceCache(null);
+    ActionSequence template = parse();
+    assertSame(template, disabled.put(file, Locale.US, template, ILogger.ERROR, 0L));
+    assertNull(disabled.get(file, Locale.US, ILogger.ERROR));
+  }
+
+  private ActionSequence parse() throws Exception {
+    return (ActionSequence) SequenceDefinition.ActionSequenceFactory(XmlDom4JHelper.getDocFromString(XACTION, null),
+        "/public/test.xaction", new SimpleLogger(this), null, ILogger.ERROR);
+  }
+
+}
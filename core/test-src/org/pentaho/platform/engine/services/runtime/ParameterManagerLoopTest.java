@@ -0,0 +1,92 @@
+package org.pentaho.platform.engine.services.runtime;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+import org.pentaho.platform.api.engine.IActionParameter;
+import org.pentaho.platform.engine.services.actionsequence.ActionParameter;
+
+@SuppressWarnings("nls")
+public class ParameterManagerLoopTest extends TestCase {
+
+  private ParameterManager parent;
+
+  private MemoryResultSet lookup;
+
+  private MemoryResultSet loopSet;
+
+  @Override
+  protected void setUp() throws Exception {
+    parent = new ParameterManager();
+    lookup = new MemoryResultSet(new MemoryMetaData(new String[][] { { "code" } }, null));
+    lookup.addRow(new Object[] { "a" });
+    loopSet = new MemoryResultSet(new MemoryMetaData(new String[][] { { "region" } }, null));
+    loopSet.addRow(new Object[] { "east" });
+    parent.addToAllInputs("name", new ActionParameter("name", "string", "before", null, null));
+    parent.addToAllInputs("lookup", new ActionParameter("lookup", "result-set", lookup, null, null));
+    parent.addToAllInputs("regions", new ActionParameter("regions", "result-set", loopSet, null, null));
+  }
+
+  public void testIterationDoesNotChangeParent() {
+    ParameterManager iteration = newIteration();
+    IActionParameter name = iteration.getInput("name");
+    assertNotSame(parent.getInput("name"), name);
+    assertEquals("before", name.getValue());
+
+    name.setValue("after");
+    assertEquals("before", parent.getInput("name").getValue());
+
+    // result sets are copied, except the one being looped over
+    Object lookupCopy = iteration.getInput("lookup").getValue();
+    assertNotSame(lookup, lookupCopy);
+    assertTrue(lookupCopy instanceof IPentahoResultSet);
+    assertSame(loopSet, iteration.getInput("regions").getValue());
+  }
+
+  public void testIterationsHaveTheirOwnCursors() {
+    Map<String, IPentahoResultSet> copies = parent.copyResultSets("regions");
+    assertEquals(1, copies.size());
+    IPentahoResultSet first = (IPentahoResultSet) new ParameterManager(parent, "regions", copies).getInput("lookup")
+        .getValue();
+    IPentahoResultSet second = (IPentahoResultSet) new ParameterManager(parent, "regions", copies).getInput("lookup")
+        .getValue();
+    assertNotSame(first, second);
+    assertEquals("a", first.next()[0]);
+    assertNull(first.next());
+    assertEquals("a", second.next()[0]);
+  }
+
+  public void testDisposingIterationKeepsSharedValues() {
+    ParameterManager iteration = newIteration();
+    iteration.dispose();
+    assertEquals(1, loopSet.getRowCount());
+    assertNotNull(loopSet.next());
+  }
+
+  public void testMergeAddsChangedParametersOnly() {
+    ParameterManager iteration = newIteration();
+    iteration.getInput("name").setValue("after");
+    IActionParameter output = new ActionParameter("total", "string", "42", null, null);
+    iteration.addToAllInputs("total", output);
+
+    List merged = parent.mergeParameters(iteration);
+    assertEquals(2, merged.size());
+    assertTrue(merged.containsAll(Arrays.asList(new Object[] { "after", "42" })));
+    assertEquals("after", parent.getInput("name").getValue());
+    assertSame(output, parent.getInput("total"));
+    // unchanged parameters, including copied result sets, are not merged
+    assertSame(lookup, parent.getInput("lookup").getValue());
+    assertSame(loopSet, parent.getInput("regions").getValue());
+  }
+
+  private ParameterManager newIteration() {
+    return new ParameterManager(parent, "regions", parent.copyResultSets("regions"));
+  }
+
+}
@@ -24,10 +24,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
 
 import org.apache.commons.lang.StringUtils;
 import org.dom4j.Document;
@@ -36,6 +39,7 @@ import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 import org.dom4j.tree.DefaultElement;
 import org.pentaho.platform.util.messages.LocaleHelper;
+import org.pentaho.platform.util.xml.TemplatesCache;
 import org.pentaho.platform.util.xml.XmlHelper;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
 import org.pentaho.platform.util.xml.w3c.XmlW3CHelper;
@@ -137,6 +141,54 @@ public class XmlHelperTest extends TestCase {
     }
   }
 
+  public void testCompiledXslIsReused() throws Exception {
+    String xslName = "CustomReportParametersForPortlet.xsl"; //$NON-NLS-1$
+    String xslPath = "test-res/solution/system/custom/xsl"; //$NON-NLS-1$
+
+    InputStream inStrm = new FileInputStream("test-res/solution/test/xml/XmlHelperTest1.xml"); //$NON-NLS-1$
+    TestEntityResolver resolver = new TestEntityResolver();
+    StringBuffer b = XmlHelper.transformXml(xslName, xslPath, inStrm, null, resolver);
+    inStrm.close();
+
+    long hits = TemplatesCache.getHitCount();
+    long misses = TemplatesCache.getMissCount();
+    inStrm = new FileInputStream("test-res/solution/test/xml/XmlHelperTest1.xml"); //$NON-NLS-1$
+    StringWriter writer = new StringWriter();
+    Assert.assertTrue(XmlHelper.transformXml(xslName, xslPath, inStrm, null, resolver, writer));
+    inStrm.close();
+
+    Assert.assertEquals(b.toString(), writer.toString());
+    Assert.assertEquals(1, TemplatesCache.getHitCount() - hits);
+    Assert.assertEquals(0, TemplatesCache.getMissCount() - misses);
+
+    // another resolver may resolve the includes of the stylesheet from somewhere else
+    inStrm = new FileInputStream("test-res/solution/test/xml/XmlHelperTest1.xml"); //$NON-NLS-1$
+    Assert.assertTrue(XmlHelper.transformXml(xslName, xslPath, inStrm, null, new TestEntityResolver(),
+        new StringWriter()));
+    inStrm.close();
+    Assert.assertEquals(1, TemplatesCache.getMissCount() - misses);
+  }
+
+  public void testCompiledXslIsKeyedByLocale() throws Exception {
+    String xsl = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\"/>"; //$NON-NLS-1$
+    String systemId = "test-res/solution/system/custom/xsl/keyed-by-locale.xsl"; //$NON-NLS-1$
+    Locale locale = LocaleHelper.getLocale();
+    try {
+      LocaleHelper.setLocale(Locale.ENGLISH);
+      TemplatesCache.getTemplates(new StreamSource(new ByteArrayInputStream(xsl.getBytes()), systemId), null);
+      long misses = TemplatesCache.getMissCount();
+      TemplatesCache.getTemplates(new StreamSource(new ByteArrayInputStream(xsl.getBytes()), systemId), null);
+      Assert.assertEquals(0, TemplatesCache.getMissCount() - misses);
+
+      // the includes of the stylesheet may be localized for another locale
+      LocaleHelper.setLocale(Locale.GERMAN);
+      TemplatesCache.getTemplates(new StreamSource(new ByteArrayInputStream(xsl.getBytes()), systemId), null);
+      Assert.assertEquals(1, TemplatesCache.getMissCount() - misses);
+    } finally {
+      LocaleHelper.setLocale(locale);
+    }
+  }
+
   public void testFailureGetDocFromString() {
     try {
       Document doc = XmlDom4JHelper.getDocFromString("1231231231231", null); //$NON-NLS-1$
@@ -0,0 +1,51 @@
+package org.pentaho.platform.util.bean;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.pentaho.platform.engine.services.TestPojo1;
+import org.pentaho.platform.util.beans.ComponentMetadata;
+
+@SuppressWarnings("nls")
+public class ComponentMetadataTest {
+
+  @Test
+  public void testDescribesPojoMethods() throws Exception {
+    ComponentMetadata metadata = ComponentMetadata.forClass(TestPojo1.class);
+    Assert.assertEquals("execute", metadata.getExecuteMethod().getName());
+    Assert.assertEquals("validate", metadata.getValidateMethod().getName());
+    Assert.assertEquals("done", metadata.getDoneMethod().getName());
+    Assert.assertEquals("setLogger", metadata.getLoggerMethod().getName());
+    Assert.assertEquals("setSession", metadata.getSessionMethod().getName());
+    Assert.assertEquals("configure", metadata.getConfigureMethod().getName());
+    Assert.assertNotNull(metadata.getGetMethods().get("OUTPUT1"));
+    Assert.assertEquals(1, metadata.getSetMethods().get("INPUT1").size());
+    Assert.assertFalse(metadata.hasClassSetter());
+  }
+
+  @Test
+  public void testMetadataIsSharedUntilCleared() throws Exception {
+    ComponentMetadata metadata = ComponentMetadata.forClass(TestPojo1.class);
+    Assert.assertSame(metadata, ComponentMetadata.forClass(TestPojo1.class));
+    ComponentMetadata.clear();
+    Assert.assertNotSame(metadata, ComponentMetadata.forClass(TestPojo1.class));
+  }
+
+  @Test
+  public void testClassesAreKeyedByClassLoader() throws Exception {
+    ClassLoader loader = getClass().getClassLoader();
+    Assert.assertSame(TestPojo1.class, ComponentMetadata.loadClass(TestPojo1.class.getName(), loader));
+    ClassLoader other = new URLClassLoader(new URL[0], loader);
+    Assert.assertSame(TestPojo1.class, ComponentMetadata.loadClass(TestPojo1.class.getName(), other));
+    try {
+      ComponentMetadata.loadClass("org.pentaho.NoSuchComponent", loader);
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      // expected
+    }
+  }
+
+}
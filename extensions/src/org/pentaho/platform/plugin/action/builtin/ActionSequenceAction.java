@@ -69,7 +69,7 @@ public class ActionSequenceAction implements IStreamProcessingAction, IStreaming
           	RepositoryFileOutputStream repositoryFileOutputStream = (RepositoryFileOutputStream) xactionResultsOutputStream;
           	isFlushed = repositoryFileOutputStream.isFlushed();
           	isEmpty = repositoryFileOutputStream.size() > 0 ? false : true;
-          	if (RepositoryFilenameUtils.getExtension(repositoryFileOutputStream.getFilePath()).isEmpty() && xactionResultsOutputStream.toString().isEmpty()) {
+          	if (RepositoryFilenameUtils.getExtension(repositoryFileOutputStream.getFilePath()).isEmpty() && isEmpty) {
           		repositoryFileOutputStream.setFilePath(repositoryFileOutputStream.getFilePath() + ".html");
           	}
           } else {
@@ -98,6 +98,10 @@ public class ActionSequenceAction implements IStreamProcessingAction, IStreaming
       if (rt != null) {
         rt.dispose();
       }
+      if (xactionResultsOutputStream instanceof RepositoryFileOutputStream) {
+        // content that was not stored by now never will be; drop it along with its temporary file
+        ((RepositoryFileOutputStream) xactionResultsOutputStream).reset();
+      }
     }
   }
 
@@ -42,6 +42,7 @@ import org.pentaho.commons.connection.memory.MemoryMetaData;
 import org.pentaho.platform.api.data.IDataComponent;
 import org.pentaho.platform.api.data.IPreparedComponent;
 import org.pentaho.platform.api.engine.IParameterResolver;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.connection.PentahoConnectionFactory;
 import org.pentaho.platform.engine.services.runtime.TemplateUtil;
 import org.pentaho.platform.engine.services.solution.ComponentBase;
@@ -61,6 +62,12 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
 
   public static final String PREPARE_PARAMETER_PREFIX = "PREPARE"; //$NON-NLS-1$
 
+  /** input asking for the results of the query to be cached, or not, whatever the datasource */
+  public static final String CACHE_RESULTS = "cache-results"; //$NON-NLS-1$
+
+  /** input giving how long, in seconds, the results of the query are cached */
+  public static final String CACHE_TTL = "cache-ttl"; //$NON-NLS-1$
+
   /** stores the prepared query for later use */
   protected String preparedQuery = null;
 
@@ -76,6 +83,12 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
   /** reference to connection object */
   protected IPentahoConnection connection;
 
+  /** name of the datasource of the connection, if it was looked up by name */
+  private String datasourceName;
+
+  /** result cache, built on first use from the sql-result-cache settings */
+  private SQLResultSetCache sqlResultSetCache;
+
   //Added by Arijit Chatterjee.Takes the value of timeout
   private int timeout = -1;
   private int maxRows = -1; // Add ability to set this as an input
@@ -164,6 +177,7 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
    * transform - transform a result set based on additional inputs
    * prepared_component - if available, use existing connection from prepared component
    * max_rows - sets the number of rows that should be returned in result sets
+   * cache-results, cache-ttl - cache in memory results for later executions; see SQLResultSetCache
    * 
    * The specified output also impacts the state of the execution.  If prepared_component is defined
    * as an output, setup the query but delay execution.
@@ -196,6 +210,8 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
         
         if (sharedConnection != null) {
           connectionOwner = false;
+          datasourceName = (sharedConnection instanceof SQLBaseComponent) ? ((SQLBaseComponent) sharedConnection)
+              .getDatasourceName() : null;
           IPentahoConnection conn = sharedConnection.shareConnection();
           if (conn == null) {
             error(Messages.getInstance().getErrorString("IPreparedComponent.ERROR_0002_CONNECTION_NOT_AVAILABLE", getActionName())); //$NON-NLS-1$
@@ -450,6 +466,28 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
         dumpQuery(query);
       }
 
+      boolean live = true;
+      IActionDefinition actionDefinition = getActionDefinition();
+      if (actionDefinition instanceof AbstractRelationalDbAction) {
+        AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) actionDefinition;
+        live = relationalDbAction.getLive().getBooleanValue(false);
+      }
+
+      SQLResultSetCache resultCache = live ? null : getResultCache();
+      long cacheGeneration = 0L;
+      if (resultCache != null) {
+        cacheGeneration = resultCache.getGeneration(datasourceName);
+        IPentahoResultSet cachedResultSet = resultCache.get(datasourceName, cacheGeneration, query,
+            copyOfPreparedParameters, getMaxRows(), getSession());
+        if (cachedResultSet != null) {
+          if (ComponentBase.debug) {
+            debug(Messages.getInstance().getString("SQLBaseComponent.DEBUG_RESULT_CACHE_HIT", datasourceName)); //$NON-NLS-1$
+          }
+          rSet = cachedResultSet;
+          return cachedResultSet;
+        }
+      }
+
       // evaluate 
       IPentahoResultSet resultSet = null;
       if (preparedParameters.size() > 0) {
@@ -464,18 +502,15 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
         }
       }
 
-      boolean live = true;
-      IActionDefinition actionDefinition = getActionDefinition();
-      if (actionDefinition instanceof AbstractRelationalDbAction) {
-        AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) actionDefinition;
-        live = relationalDbAction.getLive().getBooleanValue(false);
-      }
-
       IPentahoResultSet rs = resultSet;
 
       // BISERVER-5915, BISERVER-5875 - if the live setting is false, return an in memory resultset.
       if (!live) {
         rs = resultSet.memoryCopy();
+        if (resultCache != null) {
+          resultCache.put(datasourceName, cacheGeneration, query, copyOfPreparedParameters, getMaxRows(), getSession(),
+              rs, getResultCacheTtl(resultCache));
+        }
       }
 
       rSet = rs;
@@ -553,6 +588,30 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
       
       AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) getActionDefinition();
 
+      SQLResultSetCache resultCache = live ? null : getResultCache();
+      long cacheGeneration = 0L;
+      if (resultCache != null) {
+        cacheGeneration = resultCache.getGeneration(datasourceName);
+        IPentahoResultSet cachedResultSet = resultCache.get(datasourceName, cacheGeneration, query,
+            preparedParameters, getMaxRows(), getSession());
+        if (cachedResultSet != null) {
+          if (ComponentBase.debug) {
+            debug(Messages.getInstance().getString("SQLBaseComponent.DEBUG_RESULT_CACHE_HIT", datasourceName)); //$NON-NLS-1$
+          }
+          preparedParameters.clear();
+          rSet = cachedResultSet;
+          IActionOutput actionOutput = relationalDbAction.getOutputResultSet();
+          if (actionOutput != null) {
+            actionOutput.setValue(cachedResultSet);
+          }
+          if (connectionOwner) {
+            connection.close();
+            connection = null;
+          }
+          return true;
+        }
+      }
+
       IPentahoResultSet resultSet = null;
       boolean isForwardOnly = relationalDbAction.getUseForwardOnlyResultSet().getBooleanValue(false);
       
@@ -591,11 +650,16 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
       } else {
         // execute the query, read the results and cache them
         try {
+          IPentahoResultSet cachedResultSet = resultSet.memoryCopy();
+          if (resultCache != null) {
+            resultCache.put(datasourceName, cacheGeneration, query, preparedParameters, getMaxRows(), getSession(),
+                cachedResultSet, getResultCacheTtl(resultCache));
+          }
+
           // After preparation and execution, we need to clear out the
           // prepared parameters.
           preparedParameters.clear();
-          
-          IPentahoResultSet cachedResultSet = resultSet.memoryCopy();
+
           rSet = cachedResultSet;
 
           IActionOutput actionOutput = relationalDbAction.getOutputResultSet();
@@ -868,6 +932,7 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
    */
   protected IPentahoConnection getConnection(final IPentahoConnection defaultConnection) {
     IPentahoConnection localConnection = null;
+    datasourceName = null;
     try {
       String jndiName = null;
       String driver = null;
@@ -892,6 +957,9 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
       if (jndiName != null) {
         localConnection = PentahoConnectionFactory.getConnection(IPentahoConnection.SQL_DATASOURCE, jndiName,
             getSession(), this);
+        if (localConnection != null) {
+          datasourceName = jndiName;
+        }
       }
       if (localConnection == null) {
         if ((driver == null) && (connectionInfo == null)) {
@@ -941,6 +1009,43 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
   public int getMaxRows() {
     return this.maxRows;
   }
+
+  /**
+   * Returns the name of the datasource the connection was looked up by, or <code>null</code> if it was made from a
+   * driver and url.
+   */
+  public String getDatasourceName() {
+    return this.datasourceName;
+  }
+
+  /**
+   * Returns the result cache if the in memory results of the queries of this action are cached, or <code>null</code>.
+   * Only the results of datasources looked up by name are cached.
+   */
+  protected SQLResultSetCache getResultCache() {
+    if (datasourceName == null) {
+      return null;
+    }
+    if (sqlResultSetCache == null) {
+      sqlResultSetCache = new SQLResultSetCache(PentahoSystem.getCacheManager(getSession()));
+    }
+    return (getResultCacheTtl(sqlResultSetCache) > 0) ? sqlResultSetCache : null;
+  }
+
+  /**
+   * Returns how long, in seconds, the results of the queries of this action are cached: the cache-ttl input or the
+   * default of the cache, when the cache-results input is true or, if it is not given, when the results of the
+   * datasource are always cached. Returns 0 if they are not cached.
+   */
+  protected long getResultCacheTtl(final SQLResultSetCache resultCache) {
+    boolean cached = isDefinedInput(CACHE_RESULTS) ? getInputBooleanValue(CACHE_RESULTS, false) : resultCache
+        .isCachedDatasource(datasourceName);
+    if (!cached) {
+      return 0;
+    }
+    return isDefinedInput(CACHE_TTL) ? getInputLongValue(CACHE_TTL, resultCache.getDefaultTtlSeconds()) : resultCache
+        .getDefaultTtlSeconds();
+  }
   
   public void setMaxRows(final int value) {
     this.maxRows = value;
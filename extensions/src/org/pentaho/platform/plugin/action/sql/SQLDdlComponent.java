@@ -45,6 +45,14 @@ public class SQLDdlComponent extends SQLLookupRule {
 		return action;
 	}
 	
+	/**
+	 * DDL statements are run every time; their results are never cached.
+	 */
+	@Override
+	protected SQLResultSetCache getResultCache() {
+		return null;
+	}
+
 	@Override 
 	public IPentahoResultSet doQuery( final SQLConnection sqlConnection, final String query, boolean forwardOnlyResultset) throws Exception {
 
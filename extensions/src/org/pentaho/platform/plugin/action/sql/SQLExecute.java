@@ -56,6 +56,14 @@ public class SQLExecute extends SQLLookupRule {
     return result;
   }
 
+  /**
+   * Statements that change the database are run every time; their results are never cached.
+   */
+  @Override
+  protected SQLResultSetCache getResultCache() {
+    return null;
+  }
+
   @Override
   protected boolean runQuery(final String rawQuery, final boolean live) {
     SQLConnection conn = (SQLConnection) connection;
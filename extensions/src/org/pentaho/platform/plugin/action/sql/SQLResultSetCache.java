@@ -0,0 +1,579 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.action.sql;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pentaho.commons.connection.IPentahoMetaData;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+import org.pentaho.platform.api.data.IDBDatasourceService;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.platform.plugin.services.cache.BoundedCacheProvider;
+import org.pentaho.platform.plugin.services.cache.DefaultCacheWeigher;
+import org.springframework.security.Authentication;
+import org.springframework.security.GrantedAuthority;
+
+/**
+ * Caches the in-memory results of SQL queries in the {@link #CACHE_REGION} region of the {@link ICacheManager}, so that
+ * a query run again with the same parameters within its time to live is not sent to the database again.
+ *
+ * <p>
+ * Results are cached for the datasources named in the <code>sql-result-cache/datasources</code> setting of
+ * <code>pentaho.xml</code>, and for the actions that ask for it; see {@link SQLBaseComponent}. Entries are keyed by the
+ * query with its whitespace normalized, the values of its prepared parameters, the maximum number of rows, the name of
+ * the datasource, and the name and roles of the user, so that no user is handed rows that the query or the database
+ * would have filtered out for them. They expire after their time to live, by default the
+ * <code>sql-result-cache/ttl-seconds</code> setting.
+ * </p>
+ *
+ * <p>
+ * The region is bounded by the estimated size of the rows it holds, <code>sql-result-cache/maximum-weight</code>
+ * bytes, whatever the cache provider. The entries of a datasource are stamped with a generation kept in the region under
+ * the datasource name: {@link #invalidate(String)} and {@link IDBDatasourceService#clearDataSource(String)} remove it,
+ * which leaves the entries of the old generation unreachable until they are evicted.
+ * </p>
+ *
+ * <p>
+ * The generation is captured with {@link #getGeneration(String)} before the query runs, and {@link #put} stores
+ * nothing if the datasource was invalidated in the meantime, so results read before an invalidation never outlive it.
+ * </p>
+ *
+ * <p>
+ * Cached rows are never handed out themselves; each lookup gets its own copy, down to the dates and byte arrays in it.
+ * Other values are shared, which is safe for the strings, numbers and booleans JDBC drivers return but not for
+ * mutable objects of other types. Hit, miss and invalidation counts are kept per datasource over all instances, for
+ * monitoring.
+ * </p>
+ */
+public class SQLResultSetCache {
+
+  public static final String CACHE_REGION = IDBDatasourceService.RESULT_CACHE;
+
+  public static final long DEFAULT_TTL_SECONDS = 300L;
+
+  public static final long DEFAULT_MAXIMUM_WEIGHT = 64L * 1024L * 1024L;
+
+  private static final AtomicLong generations = new AtomicLong();
+
+  private static final ConcurrentMap<String, Counters> countersByDatasource = new ConcurrentHashMap<String, Counters>();
+
+  private static final Weigher weigher = new Weigher();
+
+  private final ICacheManager cacheManager;
+
+  private final Set<String> cachedDatasources;
+
+  private final long defaultTtlSeconds;
+
+  /**
+   * Creates a cache configured by the <code>sql-result-cache</code> settings of <code>pentaho.xml</code>.
+   *
+   * @param cacheManager
+   *          the cache manager holding the region; if {@code null} or disabled nothing is cached
+   */
+  public SQLResultSetCache(final ICacheManager cacheManager) {
+    this(cacheManager, PentahoSystem.getSystemSetting("sql-result-cache/datasources", ""), //$NON-NLS-1$ //$NON-NLS-2$
+        parseLong(PentahoSystem.getSystemSetting("sql-result-cache/ttl-seconds", null), DEFAULT_TTL_SECONDS), //$NON-NLS-1$
+        parseLong(PentahoSystem.getSystemSetting("sql-result-cache/maximum-weight", null), DEFAULT_MAXIMUM_WEIGHT)); //$NON-NLS-1$
+  }
+
+  /**
+   * @param cacheManager
+   *          the cache manager holding the region; if {@code null} or disabled nothing is cached
+   * @param cachedDatasources
+   *          comma separated names of the datasources whose results are cached for every query
+   * @param defaultTtlSeconds
+   *          how long results are cached when the query does not say
+   * @param maximumWeight
+   *          estimated size, in bytes, of the results the region holds; used when the region is added
+   */
+  public SQLResultSetCache(final ICacheManager cacheManager, final String cachedDatasources,
+      final long defaultTtlSeconds, final long maximumWeight) {
+    if (cacheManager != null && cacheManager.cacheEnabled()) {
+      if (!cacheManager.cacheEnabled(CACHE_REGION)) {
+        Properties properties = new Properties();
+        properties.setProperty(ICacheManager.MAXIMUM_WEIGHT, String.valueOf(maximumWeight));
+        properties.setProperty(BoundedCacheProvider.WEIGHER, Weigher.class.getName());
+        cacheManager.addCacheRegion(CACHE_REGION, properties);
+      }
+      this.cacheManager = cacheManager;
+    } else {
+      this.cacheManager = null;
+    }
+    Set<String> names = new HashSet<String>();
+    if (cachedDatasources != null) {
+      for (String name : cachedDatasources.split(",")) { //$NON-NLS-1$
+        if (name.trim().length() > 0) {
+          names.add(name.trim());
+        }
+      }
+    }
+    this.cachedDatasources = names;
+    this.defaultTtlSeconds = defaultTtlSeconds;
+  }
+
+  /**
+   * Returns <code>true</code> if the results of every query of the datasource are cached.
+   */
+  public boolean isCachedDatasource(final String datasourceName) {
+    return cacheManager != null && datasourceName != null && cachedDatasources.contains(datasourceName);
+  }
+
+  public long getDefaultTtlSeconds() {
+    return defaultTtlSeconds;
+  }
+
+  /**
+   * Returns the generation the results of the datasource are cached under, starting one if there is none. Capture
+   * this before running the query and pass it to {@link #get} and {@link #put}.
+   */
+  public long getGeneration(final String datasourceName) {
+    if (cacheManager == null || datasourceName == null) {
+      return 0L;
+    }
+    Object generation = cacheManager.getFromRegionCache(CACHE_REGION, datasourceName);
+    if (!(generation instanceof Long)) {
+      // two queries starting a generation at once leave the results of one uncached, which is harmless
+      generation = Long.valueOf(generations.incrementAndGet());
+      cacheManager.putInRegionCache(CACHE_REGION, datasourceName, generation);
+    }
+    return ((Long) generation).longValue();
+  }
+
+  /**
+   * Returns a copy of the results cached for the query, or {@code null} if there are none or they have expired.
+   *
+   * @param generation
+   *          the generation returned by {@link #getGeneration(String)}
+   * @param session
+   *          the session running the query, whose user the results were read for
+   */
+  public IPentahoResultSet get(final String datasourceName, final long generation, final String query,
+      final List parameters, final int maxRows, final IPentahoSession session) {
+    if (cacheManager == null || datasourceName == null) {
+      return null;
+    }
+    Counters counters = getCounters(datasourceName);
+    Key key = new Key(datasourceName, generation, query, parameters, maxRows, getSecurityContext(session));
+    Entry entry = (Entry) cacheManager.getFromRegionCache(CACHE_REGION, key);
+    if (entry == null) {
+      counters.misses.incrementAndGet();
+      return null;
+    }
+    if (entry.expires < System.currentTimeMillis()) {
+      cacheManager.removeFromRegionCache(CACHE_REGION, key);
+      counters.misses.incrementAndGet();
+      return null;
+    }
+    counters.hits.incrementAndGet();
+    return entry.newResultSet();
+  }
+
+  /**
+   * Caches a copy of the results of the query, read from the database into memory, for {@code ttlSeconds}. Results
+   * that are not held in memory are not cached, nor are results of a datasource invalidated since {@code generation}
+   * was captured.
+   *
+   * @param generation
+   *          the generation returned by {@link #getGeneration(String)} before the query was run
+   * @param session
+   *          the session running the query, whose user the results were read for
+   */
+  public void put(final String datasourceName, final long generation, final String query, final List parameters,
+      final int maxRows, final IPentahoSession session, final IPentahoResultSet resultSet, final long ttlSeconds) {
+    if (cacheManager == null || datasourceName == null || !(resultSet instanceof MemoryResultSet) || ttlSeconds <= 0) {
+      return;
+    }
+    Object currentGeneration = cacheManager.getFromRegionCache(CACHE_REGION, datasourceName);
+    if (!(currentGeneration instanceof Long) || ((Long) currentGeneration).longValue() != generation) {
+      return;
+    }
+    Key key = new Key(datasourceName, generation, query, parameters, maxRows, getSecurityContext(session));
+    cacheManager.putInRegionCache(CACHE_REGION, key, new Entry((MemoryResultSet) resultSet, System.currentTimeMillis()
+        + ttlSeconds * 1000L));
+    getCounters(datasourceName).puts.incrementAndGet();
+  }
+
+  /**
+   * Invalidates the results cached for the datasource, here and, when the cache manager shares its invalidations, on
+   * the other nodes of the cluster.
+   */
+  public void invalidate(final String datasourceName) {
+    if (cacheManager != null) {
+      cacheManager.removeFromRegionCache(CACHE_REGION, datasourceName);
+    }
+    getCounters(datasourceName).invalidations.incrementAndGet();
+  }
+
+  /**
+   * Invalidates the results cached for every datasource.
+   */
+  public void invalidateAll() {
+    if (cacheManager != null) {
+      cacheManager.clearRegionCache(CACHE_REGION);
+    }
+    for (Counters counters : countersByDatasource.values()) {
+      counters.invalidations.incrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the hit, miss, put and invalidation counts of every datasource that was looked up, by datasource name.
+   */
+  public static List<SQLResultSetCacheStatistics> getStatistics() {
+    List<SQLResultSetCacheStatistics> statistics = new ArrayList<SQLResultSetCacheStatistics>();
+    for (Map.Entry<String, Counters> entry : countersByDatasource.entrySet()) {
+      Counters counters = entry.getValue();
+      statistics.add(new SQLResultSetCacheStatistics(entry.getKey(), counters.hits.get(), counters.misses.get(),
+          counters.puts.get(), counters.invalidations.get()));
+    }
+    Collections.sort(statistics);
+    return statistics;
+  }
+
+  /**
+   * Returns the number of lookups that found results, over all datasources.
+   */
+  public static long getHitCount() {
+    long count = 0;
+    for (Counters counters : countersByDatasource.values()) {
+      count += counters.hits.get();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of lookups that found no results or expired ones, over all datasources.
+   */
+  public static long getMissCount() {
+    long count = 0;
+    for (Counters counters : countersByDatasource.values()) {
+      count += counters.misses.get();
+    }
+    return count;
+  }
+
+  private static Counters getCounters(final String datasourceName) {
+    Counters counters = countersByDatasource.get(datasourceName);
+    if (counters == null) {
+      counters = new Counters();
+      Counters existing = countersByDatasource.putIfAbsent(datasourceName, counters);
+      if (existing != null) {
+        counters = existing;
+      }
+    }
+    return counters;
+  }
+
+  /**
+   * Returns the name and the sorted roles of the user the query runs for, which row level security depends on.
+   */
+  static String getSecurityContext(final IPentahoSession session) {
+    StringBuilder context = new StringBuilder();
+    Authentication auth = SecurityHelper.getInstance().getAuthentication();
+    if (auth != null) {
+      context.append(auth.getName());
+      GrantedAuthority[] authorities = auth.getAuthorities();
+      if (authorities != null) {
+        String[] roles = new String[authorities.length];
+        for (int i = 0; i < authorities.length; i++) {
+          roles[i] = authorities[i].getAuthority();
+        }
+        Arrays.sort(roles);
+        for (String role : roles) {
+          context.append('\n').append(role);
+        }
+      }
+    } else if (session != null) {
+      context.append(session.getName());
+    }
+    return context.toString();
+  }
+
+  /**
+   * Collapses the runs of whitespace outside quoted literals and identifiers into single spaces, so that queries that
+   * differ only in their layout share their results.
+   */
+  static String normalizeQuery(final String query) {
+    StringBuilder normalized = new StringBuilder(query.length());
+    char quote = 0;
+    boolean space = false;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c)) {
+        space = true;
+        continue;
+      }
+      if (space && normalized.length() > 0) {
+        normalized.append(' ');
+      }
+      space = false;
+      if (quote == 0 && (c == '\'' || c == '"')) {
+        quote = c;
+      } else if (c == quote) {
+        // a doubled quote inside a literal closes and reopens it, which leaves the text as is
+        quote = 0;
+      }
+      normalized.append(c);
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Returns a text form of the parameter value telling apart values of different types and the elements of arrays and
+   * collections.
+   */
+  private static String describeParameter(final Object value) {
+    if (value == null) {
+      return "null"; //$NON-NLS-1$
+    }
+    StringBuilder description = new StringBuilder(value.getClass().getName()).append(':');
+    if (value instanceof Date) {
+      description.append(((Date) value).getTime());
+    } else if (value instanceof Object[]) {
+      for (Object element : (Object[]) value) {
+        description.append('[').append(describeParameter(element)).append(']');
+      }
+    } else if (value instanceof Collection) {
+      for (Object element : (Collection<?>) value) {
+        description.append('[').append(describeParameter(element)).append(']');
+      }
+    } else {
+      description.append(value);
+    }
+    return description.toString();
+  }
+
+  private static long parseLong(final String value, final long defaultValue) {
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Weighs result entries by the rows they hold, and other entries as the {@link DefaultCacheWeigher} does.
+   */
+  public static class Weigher extends DefaultCacheWeigher {
+
+    @Override
+    public long weigh(final Object key, final Object value) {
+      if (value instanceof Entry) {
+        return ((Entry) value).weight + ((key instanceof Key) ? ((Key) key).weight : weighObject(key, 0));
+      }
+      return super.weigh(key, value);
+    }
+
+    long weighRow(final Object[] row) {
+      long weight = 16L + 8L * row.length;
+      for (Object value : row) {
+        weight += weighObject(value, 1);
+      }
+      return weight;
+    }
+
+  }
+
+  private static class Counters {
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong puts = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+  }
+
+  private static class Key implements Serializable {
+    private static final long serialVersionUID = 6316209373614766358L;
+
+    private final String datasourceName;
+
+    private final long generation;
+
+    private final String query;
+
+    private final String[] parameters;
+
+    private final int maxRows;
+
+    private final String securityContext;
+
+    private final int hashCode;
+
+    private final long weight;
+
+    private Key(final String datasourceName, final long generation, final String query, final List parameters,
+        final int maxRows, final String securityContext) {
+      this.datasourceName = datasourceName;
+      this.generation = generation;
+      this.query = normalizeQuery(query);
+      int parameterCount = (parameters != null) ? parameters.size() : 0;
+      this.parameters = new String[parameterCount];
+      long parametersLength = 0;
+      for (int i = 0; i < parameterCount; i++) {
+        this.parameters[i] = describeParameter(parameters.get(i));
+        parametersLength += this.parameters[i].length();
+      }
+      this.maxRows = maxRows;
+      this.securityContext = securityContext;
+      int hash = datasourceName.hashCode();
+      hash = 31 * hash + (int) (generation ^ (generation >>> 32));
+      hash = 31 * hash + this.query.hashCode();
+      hash = 31 * hash + Arrays.hashCode(this.parameters);
+      hash = 31 * hash + maxRows;
+      this.hashCode = 31 * hash + securityContext.hashCode();
+      this.weight = 128L + 40L * parameterCount
+          + 2L * (datasourceName.length() + this.query.length() + parametersLength + securityContext.length());
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hashCode == other.hashCode && generation == other.generation && maxRows == other.maxRows
+          && datasourceName.equals(other.datasourceName) && query.equals(other.query)
+          && Arrays.equals(parameters, other.parameters) && securityContext.equals(other.securityContext);
+    }
+
+    /**
+     * Spells out everything the key is made of, each text prefixed by its length, as some cache managers key their
+     * entries by it.
+     */
+    @Override
+    public String toString() {
+      StringBuilder text = new StringBuilder();
+      text.append(generation).append('_').append(maxRows).append('_').append(parameters.length);
+      append(text, datasourceName);
+      append(text, securityContext);
+      for (String parameter : parameters) {
+        append(text, parameter);
+      }
+      append(text, query);
+      return text.toString();
+    }
+
+    private static void append(final StringBuilder text, final String value) {
+      text.append('_').append(value.length()).append(':').append(value);
+    }
+  }
+
+  private static class Entry implements Serializable {
+    private static final long serialVersionUID = -2404716406364316447L;
+
+    private final Object[][] columnHeaders;
+
+    private final String[] columnTypes;
+
+    private final List<Object[]> rows;
+
+    private final long expires;
+
+    private final long weight;
+
+    private Entry(final MemoryResultSet resultSet, final long expires) {
+      IPentahoMetaData metaData = resultSet.getMetaData();
+      this.columnHeaders = copy(metaData.getColumnHeaders());
+      String[] types = (metaData instanceof MemoryMetaData) ? ((MemoryMetaData) metaData).getColumnTypes() : null;
+      this.columnTypes = (types != null) ? types.clone() : null;
+      int rowCount = resultSet.getRowCount();
+      this.rows = new ArrayList<Object[]>(rowCount);
+      long rowsWeight = 0;
+      for (int i = 0; i < rowCount; i++) {
+        Object[] row = copyRow(resultSet.getDataRow(i));
+        rows.add(row);
+        rowsWeight += weigher.weighRow(row);
+      }
+      this.expires = expires;
+      this.weight = 64L + 24L * rowCount + rowsWeight;
+    }
+
+    private IPentahoResultSet newResultSet() {
+      MemoryMetaData metaData = new MemoryMetaData(copy(columnHeaders), null);
+      if (columnTypes != null) {
+        metaData.setColumnTypes(columnTypes.clone());
+      }
+      MemoryResultSet resultSet = new MemoryResultSet(metaData);
+      for (Object[] row : rows) {
+        resultSet.addRow(copyRow(row));
+      }
+      return resultSet;
+    }
+
+    /**
+     * Copies the row and the dates and byte arrays in it, the mutable values JDBC drivers return.
+     */
+    private static Object[] copyRow(final Object[] row) {
+      Object[] copy = new Object[row.length];
+      for (int i = 0; i < row.length; i++) {
+        Object value = row[i];
+        if (value instanceof Date) {
+          copy[i] = ((Date) value).clone();
+        } else if (value instanceof byte[]) {
+          copy[i] = ((byte[]) value).clone();
+        } else {
+          copy[i] = value;
+        }
+      }
+      return copy;
+    }
+
+    private static Object[][] copy(final Object[][] values) {
+      if (values == null) {
+        return null;
+      }
+      Object[][] copy = new Object[values.length][];
+      for (int i = 0; i < values.length; i++) {
+        copy[i] = (values[i] != null) ? values[i].clone() : null;
+      }
+      return copy;
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.action.sql;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Result cache statistics of a datasource, as reported by {@link SQLResultSetCache#getStatistics()}.
+ */
+@XmlRootElement
+public class SQLResultSetCacheStatistics implements Comparable<SQLResultSetCacheStatistics> {
+
+  private String datasource;
+
+  private long hitCount;
+
+  private long missCount;
+
+  private double hitRate;
+
+  private long putCount;
+
+  private long invalidationCount;
+
+  public SQLResultSetCacheStatistics() {
+  }
+
+  public SQLResultSetCacheStatistics(final String datasource, final long hitCount, final long missCount,
+      final long putCount, final long invalidationCount) {
+    this.datasource = datasource;
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.hitRate = (hitCount + missCount > 0) ? (double) hitCount / (hitCount + missCount) : 0d;
+    this.putCount = putCount;
+    this.invalidationCount = invalidationCount;
+  }
+
+  public String getDatasource() {
+    return datasource;
+  }
+
+  public void setDatasource(final String datasource) {
+    this.datasource = datasource;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public void setHitCount(final long hitCount) {
+    this.hitCount = hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public void setMissCount(final long missCount) {
+    this.missCount = missCount;
+  }
+
+  /**
+   * Returns the share of lookups that found results, between 0 and 1.
+   */
+  public double getHitRate() {
+    return hitRate;
+  }
+
+  public void setHitRate(final double hitRate) {
+    this.hitRate = hitRate;
+  }
+
+  /**
+   * Returns the number of query results that were cached.
+   */
+  public long getPutCount() {
+    return putCount;
+  }
+
+  public void setPutCount(final long putCount) {
+    this.putCount = putCount;
+  }
+
+  /**
+   * Returns the number of times the results were invalidated through the cache; invalidations by the datasource
+   * service are not counted.
+   */
+  public long getInvalidationCount() {
+    return invalidationCount;
+  }
+
+  public void setInvalidationCount(final long invalidationCount) {
+    this.invalidationCount = invalidationCount;
+  }
+
+  public int compareTo(final SQLResultSetCacheStatistics other) {
+    return String.valueOf(datasource).compareTo(String.valueOf(other.datasource));
+  }
+
+}
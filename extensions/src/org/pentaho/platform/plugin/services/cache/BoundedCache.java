@@ -0,0 +1,473 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.Timestamper;
+import org.pentaho.platform.api.cache.ICacheWeigher;
+
+/**
+ * Cache region limited by the total weight of its entries, as estimated by an {@link ICacheWeigher}, rather than by
+ * their count. Entries are admitted and evicted with the W-TinyLFU policy: new entries go to a small LRU window, and an
+ * entry leaving the window only displaces an entry of the main space if a frequency sketch says it has been used more
+ * often recently. Main space entries that are used again are promoted from a probation to a protected segment. This
+ * keeps popular entries cached through bursts of entries that are used only once, such as a crawl of every report.
+ * <p>
+ * Entries may also expire a fixed time after they were put or last read. Expired entries are dropped when they are
+ * read, and swept from the region by the puts that follow half an expiry period.
+ * <p>
+ * Reads do not lock: the value is found in a concurrent map, and the policy learns of the read only if its lock is
+ * free. Puts and removals take the lock.
+ */
+public class BoundedCache implements Cache {
+
+  /**
+   * Share of the maximum weight held by the admission window.
+   */
+  private static final double WINDOW_SHARE = 0.01;
+
+  /**
+   * Share of the main space held by the protected segment.
+   */
+  private static final double PROTECTED_SHARE = 0.8;
+
+  private final String regionName;
+
+  private final long maximumWeight;
+
+  private final long windowMaximum;
+
+  private final long protectedMaximum;
+
+  private final long expireAfterWriteNanos;
+
+  private final long expireAfterAccessNanos;
+
+  private final ICacheWeigher weigher;
+
+  private final ConcurrentMap<Object, Node> data = new ConcurrentHashMap<Object, Node>();
+
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  // the segments, the sketch and the sweep time are guarded by the eviction lock
+
+  private final Segment window = new Segment();
+
+  private final Segment probation = new Segment();
+
+  private final Segment protectedSegment = new Segment();
+
+  private final FrequencySketch sketch = new FrequencySketch(64);
+
+  private long lastSweepNanos = System.nanoTime();
+
+  private volatile long weight;
+
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  private final AtomicLong evictedWeight = new AtomicLong();
+
+  private final AtomicLong expirationCount = new AtomicLong();
+
+  /**
+   * @param regionName
+   *          the name of the region
+   * @param maximumWeight
+   *          the total weight the entries may have
+   * @param expireAfterWriteNanos
+   *          how long after it was put an entry expires, or 0 if it does not
+   * @param expireAfterAccessNanos
+   *          how long after it was last read or put an entry expires, or 0 if it does not
+   * @param weigher
+   *          estimates the weight of each entry
+   */
+  public BoundedCache(final String regionName, final long maximumWeight, final long expireAfterWriteNanos,
+      final long expireAfterAccessNanos, final ICacheWeigher weigher) {
+    this.regionName = regionName;
+    this.maximumWeight = maximumWeight;
+    this.windowMaximum = Math.max(1L, (long) (maximumWeight * WINDOW_SHARE));
+    this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_SHARE);
+    this.expireAfterWriteNanos = expireAfterWriteNanos;
+    this.expireAfterAccessNanos = expireAfterAccessNanos;
+    this.weigher = weigher;
+  }
+
+  public Object get(final Object key) throws CacheException {
+    Node node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    long now = System.nanoTime();
+    if (isExpired(node, now)) {
+      evictionLock.lock();
+      try {
+        if (data.remove(key, node)) {
+          unlink(node);
+          expirationCount.incrementAndGet();
+          updateWeight();
+        }
+      } finally {
+        evictionLock.unlock();
+      }
+      return null;
+    }
+    node.accessTime = now;
+    // the policy may miss some reads under contention; it only needs their approximate frequency
+    if (evictionLock.tryLock()) {
+      try {
+        onAccess(node);
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+    return node.value;
+  }
+
+  public Object read(final Object key) throws CacheException {
+    return get(key);
+  }
+
+  public void put(final Object key, final Object value) throws CacheException {
+    if (value == null) {
+      remove(key);
+      return;
+    }
+    long now = System.nanoTime();
+    Node node = new Node(key, value, weigher.weigh(key, value), now);
+    evictionLock.lock();
+    try {
+      sketch.increment(key);
+      Node old = data.put(key, node);
+      Segment segment = window;
+      if (old != null) {
+        // a replaced entry keeps its standing
+        segment = (old.segment != null) ? old.segment : window;
+        unlink(old);
+      }
+      if (node.weight > maximumWeight) {
+        data.remove(key, node);
+        evictionCount.incrementAndGet();
+        evictedWeight.addAndGet(node.weight);
+      } else {
+        segment.addLast(node);
+        if (data.size() > sketch.capacity()) {
+          sketch.ensureCapacity(2 * data.size());
+        }
+        sweepExpired(now);
+        if (segment == protectedSegment) {
+          demoteProtected();
+        }
+        evict();
+      }
+      updateWeight();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public void update(final Object key, final Object value) throws CacheException {
+    put(key, value);
+  }
+
+  public void remove(final Object key) throws CacheException {
+    evictionLock.lock();
+    try {
+      Node node = data.remove(key);
+      if (node != null) {
+        unlink(node);
+        updateWeight();
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public void clear() throws CacheException {
+    evictionLock.lock();
+    try {
+      for (Node node : data.values()) {
+        unlink(node);
+      }
+      data.clear();
+      updateWeight();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public void destroy() throws CacheException {
+    clear();
+  }
+
+  public void lock(final Object key) throws CacheException {
+    // entries are not locked
+  }
+
+  public void unlock(final Object key) throws CacheException {
+    // entries are not locked
+  }
+
+  public long nextTimestamp() {
+    return Timestamper.next();
+  }
+
+  public int getTimeout() {
+    return Timestamper.ONE_MS * 60000;
+  }
+
+  public String getRegionName() {
+    return regionName;
+  }
+
+  /**
+   * Returns the total weight of the entries.
+   */
+  public long getSizeInMemory() {
+    return weight;
+  }
+
+  public long getElementCountInMemory() {
+    return data.size();
+  }
+
+  public long getElementCountOnDisk() {
+    return 0;
+  }
+
+  public Map toMap() {
+    Map<Object, Object> map = new HashMap<Object, Object>();
+    long now = System.nanoTime();
+    for (Node node : data.values()) {
+      if (!isExpired(node, now)) {
+        map.put(node.key, node.value);
+      }
+    }
+    return map;
+  }
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  /**
+   * Returns the number of entries evicted to keep the region within its maximum weight, including entries too heavy
+   * to be cached at all.
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * Returns the total weight of the entries evicted.
+   */
+  public long getEvictedWeight() {
+    return evictedWeight.get();
+  }
+
+  /**
+   * Returns the number of entries dropped because they expired.
+   */
+  public long getExpirationCount() {
+    return expirationCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return "BoundedCache(" + regionName + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  private boolean isExpired(final Node node, final long now) {
+    return ((expireAfterWriteNanos > 0) && (now - node.writeTime >= expireAfterWriteNanos))
+        || ((expireAfterAccessNanos > 0) && (now - node.accessTime >= expireAfterAccessNanos));
+  }
+
+  private void onAccess(final Node node) {
+    if (node.segment == null) {
+      // removed since it was read
+      return;
+    }
+    sketch.increment(node.key);
+    if (node.segment == probation) {
+      probation.remove(node);
+      protectedSegment.addLast(node);
+      demoteProtected();
+    } else {
+      node.segment.moveToEnd(node);
+    }
+  }
+
+  private void demoteProtected() {
+    while ((protectedSegment.weight > protectedMaximum) && (protectedSegment.head != null)) {
+      Node node = protectedSegment.head;
+      protectedSegment.remove(node);
+      probation.addLast(node);
+    }
+  }
+
+  /**
+   * Moves the entries that overflow the window to the end of probation, then evicts until the region is within its
+   * maximum weight, each time either the least recently used probation entry or the oldest entry that has just left
+   * the window, whichever the sketch says is used less.
+   */
+  private void evict() {
+    Node candidate = null;
+    while ((window.weight > windowMaximum) && (window.head != null)) {
+      Node node = window.head;
+      window.remove(node);
+      probation.addLast(node);
+      if (candidate == null) {
+        candidate = node;
+      }
+    }
+    while (totalWeight() > maximumWeight) {
+      Node victim = (probation.head != null) ? probation.head : (protectedSegment.head != null) ? protectedSegment.head
+          : window.head;
+      if ((candidate == null) || (candidate.segment != probation)) {
+        evict(victim);
+      } else {
+        Node nextCandidate = candidate.next;
+        if ((candidate != victim) && (sketch.frequency(candidate.key) > sketch.frequency(victim.key))) {
+          evict(victim);
+        } else {
+          evict(candidate);
+        }
+        candidate = nextCandidate;
+      }
+    }
+  }
+
+  private void evict(final Node node) {
+    data.remove(node.key, node);
+    unlink(node);
+    evictionCount.incrementAndGet();
+    evictedWeight.addAndGet(node.weight);
+  }
+
+  private void sweepExpired(final long now) {
+    long period = Math.min((expireAfterWriteNanos > 0) ? expireAfterWriteNanos : Long.MAX_VALUE,
+        (expireAfterAccessNanos > 0) ? expireAfterAccessNanos : Long.MAX_VALUE);
+    if ((period == Long.MAX_VALUE) || (now - lastSweepNanos < period / 2)) {
+      return;
+    }
+    lastSweepNanos = now;
+    for (Node node : data.values()) {
+      if (isExpired(node, now) && data.remove(node.key, node)) {
+        unlink(node);
+        expirationCount.incrementAndGet();
+      }
+    }
+  }
+
+  private void unlink(final Node node) {
+    if (node.segment != null) {
+      node.segment.remove(node);
+    }
+  }
+
+  private long totalWeight() {
+    return window.weight + probation.weight + protectedSegment.weight;
+  }
+
+  private void updateWeight() {
+    weight = totalWeight();
+  }
+
+  private static final class Node {
+    private final Object key;
+
+    private final Object value;
+
+    private final long weight;
+
+    private final long writeTime;
+
+    private volatile long accessTime;
+
+    // guarded by the eviction lock
+
+    private Segment segment;
+
+    private Node prev;
+
+    private Node next;
+
+    private Node(final Object key, final Object value, final long weight, final long writeTime) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+      this.writeTime = writeTime;
+      this.accessTime = writeTime;
+    }
+  }
+
+  /**
+   * Entries in least recently used order, with their total weight.
+   */
+  private static final class Segment {
+    private Node head;
+
+    private Node tail;
+
+    private long weight;
+
+    private void addLast(final Node node) {
+      node.segment = this;
+      node.prev = tail;
+      node.next = null;
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+      weight += node.weight;
+    }
+
+    private void remove(final Node node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+      node.segment = null;
+      weight -= node.weight;
+    }
+
+    private void moveToEnd(final Node node) {
+      if (tail != node) {
+        remove(node);
+        addLast(node);
+      }
+    }
+  }
+
+}
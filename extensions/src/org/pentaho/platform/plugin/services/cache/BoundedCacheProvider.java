@@ -0,0 +1,142 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.CacheProvider;
+import org.hibernate.cache.Timestamper;
+import org.pentaho.platform.api.cache.ICacheWeigher;
+import org.pentaho.platform.plugin.services.messages.Messages;
+
+/**
+ * Cache provider building {@link BoundedCache} regions, which are limited by the estimated weight of their entries
+ * and evict with the W-TinyLFU policy. To use it, name it as the cache provider in <code>pentaho.xml</code>:
+ *
+ * <pre>
+ *  &lt;cache-provider&gt;
+ *    &lt;class&gt;org.pentaho.platform.plugin.services.cache.BoundedCacheProvider&lt;/class&gt;
+ *    &lt;region&gt;pentahoCache&lt;/region&gt;
+ *    &lt;properties&gt;
+ *      &lt;property name=&quot;maximumWeight&quot;&gt;33554432&lt;/property&gt;
+ *      &lt;property name=&quot;metadata-domain-repository.maximumWeight&quot;&gt;268435456&lt;/property&gt;
+ *      &lt;property name=&quot;metadata-domain-repository.expireAfterAccessSeconds&quot;&gt;600&lt;/property&gt;
+ *    &lt;/properties&gt;
+ *  &lt;/cache-provider&gt;
+ * </pre>
+ *
+ * <p>
+ * Each setting may be given for all regions, or for one region by prefixing it with the region name and a dot:
+ * <ul>
+ * <li><code>maximumWeight</code>: the total weight, in estimated bytes, of the entries of the region; 32 MB by
+ * default</li>
+ * <li><code>expireAfterWriteSeconds</code>: how long after it was put an entry expires; never by default</li>
+ * <li><code>expireAfterAccessSeconds</code>: how long after it was last read an entry expires; never by default</li>
+ * <li><code>weigher</code>: the class name of the {@link ICacheWeigher} estimating the weight of entries;
+ * {@link DefaultCacheWeigher} by default</li>
+ * </ul>
+ * Properties passed when a region is added override those of <code>pentaho.xml</code>.
+ */
+public class BoundedCacheProvider implements CacheProvider {
+
+  public static final String MAXIMUM_WEIGHT = "maximumWeight"; //$NON-NLS-1$
+
+  public static final String EXPIRE_AFTER_WRITE_SECONDS = "expireAfterWriteSeconds"; //$NON-NLS-1$
+
+  public static final String EXPIRE_AFTER_ACCESS_SECONDS = "expireAfterAccessSeconds"; //$NON-NLS-1$
+
+  public static final String WEIGHER = "weigher"; //$NON-NLS-1$
+
+  public static final long DEFAULT_MAXIMUM_WEIGHT = 32L * 1024L * 1024L;
+
+  private Properties defaults = new Properties();
+
+  public void start(final Properties properties) throws CacheException {
+    defaults = (properties != null) ? properties : new Properties();
+  }
+
+  public void stop() {
+    // regions hold no resources beyond their entries
+  }
+
+  public Cache buildCache(final String regionName, final Properties properties) throws CacheException {
+    long maximumWeight = getLong(regionName, MAXIMUM_WEIGHT, properties, DEFAULT_MAXIMUM_WEIGHT);
+    long expireAfterWrite = getLong(regionName, EXPIRE_AFTER_WRITE_SECONDS, properties, 0L);
+    long expireAfterAccess = getLong(regionName, EXPIRE_AFTER_ACCESS_SECONDS, properties, 0L);
+    return new BoundedCache(regionName, maximumWeight, TimeUnit.SECONDS.toNanos(expireAfterWrite), TimeUnit.SECONDS
+        .toNanos(expireAfterAccess), getWeigher(regionName, properties));
+  }
+
+  public long nextTimestamp() {
+    return Timestamper.next();
+  }
+
+  public boolean isMinimalPutsEnabledByDefault() {
+    return false;
+  }
+
+  private ICacheWeigher getWeigher(final String regionName, final Properties properties) throws CacheException {
+    String className = getProperty(regionName, WEIGHER, properties);
+    if (className == null) {
+      return new DefaultCacheWeigher();
+    }
+    try {
+      return (ICacheWeigher) Class.forName(className, true, Thread.currentThread().getContextClassLoader())
+          .newInstance();
+    } catch (Exception e) {
+      throw new CacheException(Messages.getInstance().getErrorString(
+          "BoundedCacheProvider.ERROR_0002_INVALID_WEIGHER", className, regionName), e); //$NON-NLS-1$
+    }
+  }
+
+  private long getLong(final String regionName, final String name, final Properties properties,
+      final long defaultValue) throws CacheException {
+    String value = getProperty(regionName, name, properties);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new CacheException(Messages.getInstance().getErrorString("BoundedCacheProvider.ERROR_0001_INVALID_PROPERTY", //$NON-NLS-1$
+          name, regionName, value), e);
+    }
+  }
+
+  /**
+   * Looks the setting up for the region before looking it up for all regions, in the properties of the region before
+   * those the provider was started with.
+   */
+  private String getProperty(final String regionName, final String name, final Properties properties) {
+    String regionKey = regionName + "." + name; //$NON-NLS-1$
+    String value = (properties != null) ? properties.getProperty(regionKey) : null;
+    if (value == null) {
+      value = defaults.getProperty(regionKey);
+    }
+    if ((value == null) && (properties != null)) {
+      value = properties.getProperty(name);
+    }
+    if (value == null) {
+      value = defaults.getProperty(name);
+    }
+    return value;
+  }
+
+}
@@ -0,0 +1,694 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.cache.ICacheExpirationRegistry;
+import org.pentaho.platform.api.cache.ICacheInvalidationBus;
+import org.pentaho.platform.api.cache.ICacheInvalidationListener;
+import org.pentaho.platform.api.cache.ILastModifiedCacheItem;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.services.messages.Messages;
+
+/**
+ * Sends the cache invalidations of this node to the other nodes of a cluster through an
+ * {@link ICacheInvalidationTransport}, and applies theirs to this node's {@link ICacheManager}.
+ * <p>
+ * Invalidations are not sent one at a time. They are gathered and sent every {@link #setFlushInterval(long)
+ * flushInterval} milliseconds, coalesced: a key removed twice is sent once, the removals of a region that is also
+ * cleared are dropped, and a region with more than {@link #setMaximumKeysPerRegion(int) maximumKeysPerRegion}
+ * removed keys is sent as a clear. Invalidations received from the other nodes are coalesced the same way and applied
+ * by the bus' own thread on the same interval, never on the thread of the transport. Invalidations that cannot be sent
+ * are sent again with the next ones.
+ * <p>
+ * Keys travel as strings, integers or longs. A removal with any other kind of key clears the whole region on the other
+ * nodes, which is always safe; keys are never deserialized from a message. The {@link ICacheManager#SESSION session}
+ * region, and any other {@link #setLocalRegions(List) local region}, is not shared, as sessions live on one node.
+ * <p>
+ * On each interval the bus also sends the new last modified time of every item of the
+ * {@link ICacheExpirationRegistry} that changed. The other nodes move the time of their item of the same name forward
+ * to it, so that clients checking a node for expired caches see changes made on any node.
+ * <p>
+ * Configured in pentahoObjects.spring.xml with the transport to use:
+ * 
+ * <pre>
+ * &lt;bean id="ICacheInvalidationBus" class="org.pentaho.platform.plugin.services.cache.CacheInvalidationBus" scope="singleton" init-method="start" destroy-method="stop"&gt;
+ *   &lt;constructor-arg&gt;&lt;bean class="org.pentaho.platform.plugin.services.cache.MulticastCacheInvalidationTransport"/&gt;&lt;/constructor-arg&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ */
+public class CacheInvalidationBus implements ICacheInvalidationBus {
+
+  private static final Log logger = LogFactory.getLog(CacheInvalidationBus.class);
+
+  private static final byte VERSION = 1;
+
+  private static final byte CLEAR = 1;
+
+  private static final byte REMOVE = 2;
+
+  private static final byte MODIFIED = 3;
+
+  private static final byte STRING_KEY = 1;
+
+  private static final byte INTEGER_KEY = 2;
+
+  private static final byte LONG_KEY = 3;
+
+  /**
+   * The version and the node id every message starts with.
+   */
+  private static final int HEADER_SIZE = 17;
+
+  private final ICacheInvalidationTransport transport;
+
+  private final UUID nodeId = UUID.randomUUID();
+
+  private final List<ICacheInvalidationListener> listeners = new CopyOnWriteArrayList<ICacheInvalidationListener>();
+
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  private final Invalidations outgoing = new Invalidations(coalescedCount);
+
+  private final Invalidations incoming = new Invalidations(coalescedCount);
+
+  /**
+   * The last modified times last seen of the items of the expiration registry; only used while flushing.
+   */
+  private final Map<String, Long> knownLastModified = new HashMap<String, Long>();
+
+  private final Object flushLock = new Object();
+
+  private final Object wakeUp = new Object();
+
+  private volatile Set<String> localRegions = Collections.singleton(ICacheManager.SESSION);
+
+  private volatile long flushInterval = 200;
+
+  private volatile int maximumKeysPerRegion = 1000;
+
+  private ICacheExpirationRegistry cacheExpirationRegistry;
+
+  private boolean cacheExpirationRegistryLookedUp;
+
+  private Thread flusher;
+
+  private volatile boolean stopped;
+
+  private boolean sendFailing;
+
+  private final AtomicLong sentMessageCount = new AtomicLong();
+
+  private final AtomicLong sentEventCount = new AtomicLong();
+
+  private final AtomicLong receivedMessageCount = new AtomicLong();
+
+  private final AtomicLong appliedEventCount = new AtomicLong();
+
+  private final AtomicLong failedSendCount = new AtomicLong();
+
+  private final AtomicLong rejectedMessageCount = new AtomicLong();
+
+  public CacheInvalidationBus(final ICacheInvalidationTransport transport) {
+    if (transport == null) {
+      throw new IllegalArgumentException("transport cannot be null"); //$NON-NLS-1$
+    }
+    this.transport = transport;
+  }
+
+  /**
+   * Returns the id of this node, which the messages it sends carry so that it can recognize them.
+   */
+  public String getNodeId() {
+    return nodeId.toString();
+  }
+
+  /**
+   * Starts the transport and the thread that sends and applies invalidations.
+   */
+  public synchronized void start() throws IOException {
+    if (flusher != null || stopped) {
+      return;
+    }
+    transport.start(this);
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        flushPeriodically();
+      }
+    }, "Cache invalidation bus"); //$NON-NLS-1$
+    thread.setDaemon(true);
+    thread.start();
+    flusher = thread;
+  }
+
+  /**
+   * Sends the invalidations still pending, then stops the transport. Invalidations published after this are dropped.
+   */
+  public void stop() {
+    Thread thread;
+    synchronized (this) {
+      if (stopped) {
+        return;
+      }
+      stopped = true;
+      thread = flusher;
+    }
+    synchronized (wakeUp) {
+      wakeUp.notifyAll();
+    }
+    if (thread != null) {
+      try {
+        thread.join(10000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    flush();
+    transport.stop();
+  }
+
+  private void flushPeriodically() {
+    while (!stopped) {
+      synchronized (wakeUp) {
+        try {
+          wakeUp.wait(Math.max(1, flushInterval));
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+      if (!stopped) {
+        flush();
+      }
+    }
+  }
+
+  public void publishRemove(final String region, final Object key) {
+    if (region == null || localRegions.contains(region) || stopped) {
+      return;
+    }
+    if ((key instanceof String) || (key instanceof Integer) || (key instanceof Long)) {
+      outgoing.remove(region, key, maximumKeysPerRegion);
+    } else {
+      // the key cannot travel, so the other nodes drop everything the key could have been
+      outgoing.clear(region);
+    }
+  }
+
+  public void publishClear(final String region) {
+    if (region == null || localRegions.contains(region) || stopped) {
+      return;
+    }
+    outgoing.clear(region);
+  }
+
+  public void addListener(final ICacheInvalidationListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(final ICacheInvalidationListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Takes a message sent by another node. Called by the transport; the invalidations the message holds are applied on
+   * the next flush.
+   */
+  public void receive(final byte[] message) {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+    try {
+      if (in.readByte() != VERSION) {
+        throw new IOException("unknown version " + message[0]); //$NON-NLS-1$
+      }
+      long mostSignificantBits = in.readLong();
+      long leastSignificantBits = in.readLong();
+      if (mostSignificantBits == nodeId.getMostSignificantBits()
+          && leastSignificantBits == nodeId.getLeastSignificantBits()) {
+        return;
+      }
+      receivedMessageCount.incrementAndGet();
+      while (in.available() > 0) {
+        readEvent(in);
+      }
+    } catch (IOException e) {
+      // what was read before the error is still applied; invalidating too much is harmless
+      rejectedMessageCount.incrementAndGet();
+      logger.warn(Messages.getInstance().getString("CacheInvalidationBus.WARN_0002_INVALID_MESSAGE", //$NON-NLS-1$
+          e.getMessage()));
+    }
+  }
+
+  private void readEvent(final DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    String region = in.readUTF();
+    switch (type) {
+      case CLEAR:
+        incoming.clear(region);
+        break;
+      case REMOVE:
+        incoming.remove(region, readKey(in), maximumKeysPerRegion);
+        break;
+      case MODIFIED:
+        incoming.modified(region, in.readLong());
+        break;
+      default:
+        throw new IOException("unknown event " + type); //$NON-NLS-1$
+    }
+  }
+
+  private static Object readKey(final DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case STRING_KEY:
+        return in.readUTF();
+      case INTEGER_KEY:
+        return Integer.valueOf(in.readInt());
+      case LONG_KEY:
+        return Long.valueOf(in.readLong());
+      default:
+        throw new IOException("unknown key " + type); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Sends the pending invalidations and applies the received ones now, rather than on the next interval.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      Map<String, ILastModifiedCacheItem> items = findModifiedItems();
+      applyReceived(items);
+      sendPending();
+    }
+  }
+
+  /**
+   * Queues the new last modified times of the items of the expiration registry, and returns the items by name.
+   */
+  private Map<String, ILastModifiedCacheItem> findModifiedItems() {
+    ICacheExpirationRegistry registry = getCacheExpirationRegistry();
+    if (registry == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, ILastModifiedCacheItem> items = new HashMap<String, ILastModifiedCacheItem>();
+    for (ILastModifiedCacheItem item : registry.getCachedItems()) {
+      String name = item.getCacheKey();
+      if (name == null || localRegions.contains(name)) {
+        continue;
+      }
+      items.put(name, item);
+      long lastModified = item.getLastModified();
+      Long known = knownLastModified.put(name, Long.valueOf(lastModified));
+      // an item seen for the first time has no change to tell
+      if (known != null && lastModified > known.longValue()) {
+        outgoing.modified(name, lastModified);
+      }
+    }
+    return items;
+  }
+
+  private void applyReceived(final Map<String, ILastModifiedCacheItem> items) {
+    Invalidations received = incoming.drain();
+    if (received.isEmpty()) {
+      return;
+    }
+    for (String region : received.clearedRegions) {
+      for (ICacheInvalidationListener listener : listeners) {
+        try {
+          listener.onClear(region);
+        } catch (RuntimeException e) {
+          logger.error(Messages.getInstance().getErrorString("CacheInvalidationBus.ERROR_0001_APPLY_FAILED", region), e); //$NON-NLS-1$
+        }
+      }
+      appliedEventCount.incrementAndGet();
+    }
+    for (Map.Entry<String, Set<Object>> entry : received.removedKeys.entrySet()) {
+      for (Object key : entry.getValue()) {
+        for (ICacheInvalidationListener listener : listeners) {
+          try {
+            listener.onRemove(entry.getKey(), key);
+          } catch (RuntimeException e) {
+            logger.error(Messages.getInstance().getErrorString("CacheInvalidationBus.ERROR_0001_APPLY_FAILED", //$NON-NLS-1$
+                entry.getKey()), e);
+          }
+        }
+        appliedEventCount.incrementAndGet();
+      }
+    }
+    for (Map.Entry<String, Long> entry : received.lastModified.entrySet()) {
+      ILastModifiedCacheItem item = items.get(entry.getKey());
+      if (item instanceof LastModifiedCache && item.getLastModified() < entry.getValue().longValue()) {
+        ((LastModifiedCache) item).setLastModified(entry.getValue().longValue());
+      }
+      appliedEventCount.incrementAndGet();
+    }
+    // applying the invalidations moved the last modified times of the regions, which is no news to the other nodes
+    Set<String> names = new HashSet<String>(received.clearedRegions);
+    names.addAll(received.removedKeys.keySet());
+    names.addAll(received.lastModified.keySet());
+    for (String name : names) {
+      ILastModifiedCacheItem item = items.get(name);
+      if (item != null) {
+        knownLastModified.put(name, Long.valueOf(item.getLastModified()));
+      }
+    }
+  }
+
+  private void sendPending() {
+    Invalidations pending = outgoing.drain();
+    if (pending.isEmpty()) {
+      return;
+    }
+    try {
+      int maximumSize = transport.getMaximumMessageSize();
+      List<byte[]> events = encode(pending, maximumSize - HEADER_SIZE);
+      ByteArrayOutputStream message = startMessage();
+      int count = 0;
+      for (byte[] event : events) {
+        if (count > 0 && message.size() + event.length > maximumSize) {
+          send(message, count);
+          message = startMessage();
+          count = 0;
+        }
+        message.write(event);
+        count++;
+      }
+      if (count > 0) {
+        send(message, count);
+      }
+      sendFailing = false;
+    } catch (IOException e) {
+      // sent again with the next ones; invalidations that did go out are applied twice, which is harmless
+      outgoing.addAll(pending, maximumKeysPerRegion);
+      failedSendCount.incrementAndGet();
+      if (!sendFailing) {
+        sendFailing = true;
+        logger.warn(Messages.getInstance().getString("CacheInvalidationBus.WARN_0001_SEND_FAILED", e.getMessage())); //$NON-NLS-1$
+      }
+    }
+  }
+
+  private void send(final ByteArrayOutputStream message, final int eventCount) throws IOException {
+    transport.send(message.toByteArray());
+    sentMessageCount.incrementAndGet();
+    sentEventCount.addAndGet(eventCount);
+  }
+
+  private ByteArrayOutputStream startMessage() throws IOException {
+    ByteArrayOutputStream message = new ByteArrayOutputStream(512);
+    DataOutputStream out = new DataOutputStream(message);
+    out.writeByte(VERSION);
+    out.writeLong(nodeId.getMostSignificantBits());
+    out.writeLong(nodeId.getLeastSignificantBits());
+    out.flush();
+    return message;
+  }
+
+  /**
+   * Encodes each invalidation on its own, so that they can be packed into messages. A removal too large to send clears
+   * its region instead.
+   */
+  private static List<byte[]> encode(final Invalidations invalidations, final int maximumSize) throws IOException {
+    List<byte[]> events = new ArrayList<byte[]>();
+    Set<String> cleared = new LinkedHashSet<String>(invalidations.clearedRegions);
+    for (Map.Entry<String, Set<Object>> entry : invalidations.removedKeys.entrySet()) {
+      List<byte[]> removals = new ArrayList<byte[]>();
+      for (Object key : entry.getValue()) {
+        byte[] event = encodeRemove(entry.getKey(), key);
+        if (event == null || event.length > maximumSize) {
+          cleared.add(entry.getKey());
+          removals = null;
+          break;
+        }
+        removals.add(event);
+      }
+      if (removals != null) {
+        events.addAll(removals);
+      }
+    }
+    for (String region : cleared) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeByte(CLEAR);
+      out.writeUTF(region);
+      out.flush();
+      events.add(bytes.toByteArray());
+    }
+    for (Map.Entry<String, Long> entry : invalidations.lastModified.entrySet()) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeByte(MODIFIED);
+      out.writeUTF(entry.getKey());
+      out.writeLong(entry.getValue().longValue());
+      out.flush();
+      events.add(bytes.toByteArray());
+    }
+    return events;
+  }
+
+  /**
+   * Returns the encoded removal, or <code>null</code> if the key is too long to encode.
+   */
+  private static byte[] encodeRemove(final String region, final Object key) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(REMOVE);
+    out.writeUTF(region);
+    if (key instanceof Integer) {
+      out.writeByte(INTEGER_KEY);
+      out.writeInt(((Integer) key).intValue());
+    } else if (key instanceof Long) {
+      out.writeByte(LONG_KEY);
+      out.writeLong(((Long) key).longValue());
+    } else {
+      String string = (String) key;
+      // writeUTF takes at most 65535 bytes, which three times the length of the string always fits in
+      if (string.length() > 65535 / 3) {
+        return null;
+      }
+      out.writeByte(STRING_KEY);
+      out.writeUTF(string);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private ICacheExpirationRegistry getCacheExpirationRegistry() {
+    if (cacheExpirationRegistry == null && !cacheExpirationRegistryLookedUp) {
+      cacheExpirationRegistryLookedUp = true;
+      cacheExpirationRegistry = PentahoSystem.get(ICacheExpirationRegistry.class, null);
+    }
+    return cacheExpirationRegistry;
+  }
+
+  /**
+   * Sets the registry whose last modified times are shared. By default the one of the {@link PentahoSystem}.
+   */
+  public void setCacheExpirationRegistry(final ICacheExpirationRegistry cacheExpirationRegistry) {
+    synchronized (flushLock) {
+      this.cacheExpirationRegistry = cacheExpirationRegistry;
+    }
+  }
+
+  public long getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+   * Sets how often, in milliseconds, invalidations are sent and applied. Default 200.
+   */
+  public void setFlushInterval(final long flushInterval) {
+    this.flushInterval = flushInterval;
+  }
+
+  public int getMaximumKeysPerRegion() {
+    return maximumKeysPerRegion;
+  }
+
+  /**
+   * Sets how many removed keys of a region are sent or applied at once before the region is cleared instead. Default
+   * 1000.
+   */
+  public void setMaximumKeysPerRegion(final int maximumKeysPerRegion) {
+    this.maximumKeysPerRegion = maximumKeysPerRegion;
+  }
+
+  public List<String> getLocalRegions() {
+    return new ArrayList<String>(localRegions);
+  }
+
+  /**
+   * Sets the regions whose invalidations are not shared. Default the {@link ICacheManager#SESSION session} region.
+   */
+  public void setLocalRegions(final List<String> localRegions) {
+    this.localRegions = Collections.unmodifiableSet(new HashSet<String>(localRegions));
+  }
+
+  /**
+   * Returns the number of messages sent.
+   */
+  public long getSentMessageCount() {
+    return sentMessageCount.get();
+  }
+
+  /**
+   * Returns the number of invalidations sent, after coalescing.
+   */
+  public long getSentEventCount() {
+    return sentEventCount.get();
+  }
+
+  /**
+   * Returns the number of messages received from the other nodes.
+   */
+  public long getReceivedMessageCount() {
+    return receivedMessageCount.get();
+  }
+
+  /**
+   * Returns the number of invalidations of the other nodes applied, after coalescing.
+   */
+  public long getAppliedEventCount() {
+    return appliedEventCount.get();
+  }
+
+  /**
+   * Returns the number of invalidations, sent or received, that coalescing made unnecessary.
+   */
+  public long getCoalescedEventCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * Returns the number of times sending failed.
+   */
+  public long getFailedSendCount() {
+    return failedSendCount.get();
+  }
+
+  /**
+   * Returns the number of messages received that could not be read.
+   */
+  public long getRejectedMessageCount() {
+    return rejectedMessageCount.get();
+  }
+
+  /**
+   * Invalidations waiting to be sent or applied, coalesced as they are added.
+   */
+  private static class Invalidations {
+    private final AtomicLong coalescedCount;
+
+    private Set<String> clearedRegions = new LinkedHashSet<String>();
+
+    private Map<String, Set<Object>> removedKeys = new LinkedHashMap<String, Set<Object>>();
+
+    private Map<String, Long> lastModified = new LinkedHashMap<String, Long>();
+
+    Invalidations(final AtomicLong coalescedCount) {
+      this.coalescedCount = coalescedCount;
+    }
+
+    synchronized void clear(final String region) {
+      Set<Object> keys = removedKeys.remove(region);
+      if (keys != null) {
+        coalescedCount.addAndGet(keys.size());
+      }
+      if (!clearedRegions.add(region)) {
+        coalescedCount.incrementAndGet();
+      }
+    }
+
+    synchronized void remove(final String region, final Object key, final int maximumKeys) {
+      if (clearedRegions.contains(region)) {
+        coalescedCount.incrementAndGet();
+        return;
+      }
+      Set<Object> keys = removedKeys.get(region);
+      if (keys == null) {
+        keys = new LinkedHashSet<Object>();
+        removedKeys.put(region, keys);
+      }
+      if (!keys.add(key)) {
+        coalescedCount.incrementAndGet();
+      } else if (keys.size() > maximumKeys) {
+        clear(region);
+      }
+    }
+
+    synchronized void modified(final String name, final long time) {
+      Long known = lastModified.get(name);
+      if (known != null) {
+        coalescedCount.incrementAndGet();
+      }
+      if (known == null || known.longValue() < time) {
+        lastModified.put(name, Long.valueOf(time));
+      }
+    }
+
+    synchronized void addAll(final Invalidations other, final int maximumKeys) {
+      for (String region : other.clearedRegions) {
+        clear(region);
+      }
+      for (Map.Entry<String, Set<Object>> entry : other.removedKeys.entrySet()) {
+        for (Object key : entry.getValue()) {
+          remove(entry.getKey(), key, maximumKeys);
+        }
+      }
+      for (Map.Entry<String, Long> entry : other.lastModified.entrySet()) {
+        modified(entry.getKey(), entry.getValue().longValue());
+      }
+    }
+
+    /**
+     * Returns the invalidations added so far, and starts over.
+     */
+    synchronized Invalidations drain() {
+      Invalidations drained = new Invalidations(coalescedCount);
+      drained.clearedRegions = clearedRegions;
+      drained.removedKeys = removedKeys;
+      drained.lastModified = lastModified;
+      clearedRegions = new LinkedHashSet<String>();
+      removedKeys = new LinkedHashMap<String, Set<Object>>();
+      lastModified = new LinkedHashMap<String, Long>();
+      return drained;
+    }
+
+    boolean isEmpty() {
+      return clearedRegions.isEmpty() && removedKeys.isEmpty() && lastModified.isEmpty();
+    }
+  }
+
+}
@@ -23,12 +23,15 @@
 package org.pentaho.platform.plugin.services.cache;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,6 +40,8 @@ import org.hibernate.cache.Cache;
 import org.hibernate.cache.CacheException;
 import org.hibernate.cache.CacheProvider;
 import org.pentaho.platform.api.cache.ICacheExpirationRegistry;
+import org.pentaho.platform.api.cache.ICacheInvalidationBus;
+import org.pentaho.platform.api.cache.ICacheInvalidationListener;
 import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.ISystemSettings;
@@ -82,6 +87,30 @@ import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
  * upon the storage type.
  * 
  * <p>
+ * The keys each session stores through <code>putInSessionCache</code> are
+ * indexed by session id, so that ending a session removes just its own entries
+ * rather than scanning the whole session region. Keys of entries the cache
+ * provider evicts on its own stay in the index until their session ends. An
+ * entry put while its session is being killed is removed again rather than
+ * indexed under the ended session.
+ * 
+ * <p>
+ * Regions added with the <code>offHeapMaximumBytes</code> property keep their
+ * binary values outside the Java heap rather than in the cache provider; see
+ * {@link OffHeapCache}.
+ * 
+ * <p>
+ * Regions added with the <code>maximumWeight</code> property are limited by
+ * the estimated weight of their entries even when the cache provider is not
+ * the {@link BoundedCacheProvider}; see {@link BoundedCache}.
+ * 
+ * <p>
+ * When an <code>ICacheInvalidationBus</code> is configured, entries removed
+ * and regions cleared are removed and cleared on the other nodes of the
+ * cluster too, and their invalidations are applied here; see
+ * {@link CacheInvalidationBus}. Session caches stay local.
+ * 
+ * <p>
  * Data that is cached for user sessions require an <code>IPentahoSession</code>
  * object to be passed in. The cache manager uses the
  * <code>IPentahoSession.getId()</code> to classify saved objects underneath a
@@ -126,6 +155,11 @@ import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
 public class CacheManager implements ICacheManager {
 
   protected static final Log logger = LogFactory.getLog(CacheManager.class);
+
+  /**
+   * How long a session's kill is remembered, so that puts still in progress when it ran can find it.
+   */
+  private static final long SESSION_KILL_RETENTION_MILLIS = 60000L;
   // ~ Instance Fields ======================================================
   private CacheProvider cacheProvider;
 
@@ -137,8 +171,36 @@ public class CacheManager implements ICacheManager {
 
   private final Properties cacheProperties = new Properties();
 
+  private final BoundedCacheProvider boundedCacheProvider = new BoundedCacheProvider();
+
   private ICacheExpirationRegistry cacheExpirationRegistry;
 
+  private final ConcurrentMap<String, Set<String>> sessionKeys = new ConcurrentHashMap<String, Set<String>>();
+
+  private final AtomicLong sessionKillCount = new AtomicLong();
+
+  private final ConcurrentMap<String, SessionKill> sessionKills = new ConcurrentHashMap<String, SessionKill>();
+
+  private ICacheInvalidationBus cacheInvalidationBus;
+
+  /**
+   * Applies the invalidations of the other nodes without publishing them again. Regions this node has not added yet
+   * hold nothing to invalidate.
+   */
+  private final ICacheInvalidationListener invalidationListener = new ICacheInvalidationListener() {
+    public void onRemove(String region, Object key) {
+      if (cacheEnabled(region)) {
+        removeFromRegion(region, key);
+      }
+    }
+
+    public void onClear(String region) {
+      if (cacheEnabled(region)) {
+        clearRegion(region);
+      }
+    }
+  };
+
   // ~ Constructors =========================================================
 
   /**
@@ -183,19 +245,27 @@ public class CacheManager implements ICacheManager {
       if (obj instanceof CacheProvider) {
         this.cacheProvider = (CacheProvider) obj;
         cacheProvider.start(cacheProperties);
-        regionCache = new HashMap<String, Cache>();
-        Cache cache = buildCache(SESSION, cacheProperties);
+        this.cacheProperties.putAll(cacheProperties);
+        boundedCacheProvider.start(this.cacheProperties);
+        regionCache = new ConcurrentHashMap<String, Cache>();
+        Cache cache = buildCache(SESSION, this.cacheProperties);
         if (cache == null) {
           CacheManager.logger.error(Messages.getInstance().getString("CacheManager.ERROR_0005_UNABLE_TO_BUILD_CACHE")); //$NON-NLS-1$
         } else {
           regionCache.put(SESSION, cache);
         }
-        cache = buildCache(GLOBAL, cacheProperties);
+        cache = buildCache(GLOBAL, this.cacheProperties);
         if (cache == null) {
           CacheManager.logger.error(Messages.getInstance().getString("CacheManager.ERROR_0005_UNABLE_TO_BUILD_CACHE")); //$NON-NLS-1$
         } else {
           regionCache.put(GLOBAL, cache);
         }
+        if (PentahoSystem.getObjectFactory().objectDefined(ICacheInvalidationBus.class.getSimpleName())) {
+          cacheInvalidationBus = PentahoSystem.get(ICacheInvalidationBus.class, null);
+          if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.addListener(invalidationListener);
+          }
+        }
       } else {
         CacheManager.logger.error(Messages.getInstance().getString("CacheManager.ERROR_0002_NOT_INSTANCE_OF_CACHE_PROVIDER")); //$NON-NLS-1$
       }
@@ -204,7 +274,17 @@ public class CacheManager implements ICacheManager {
 
   public void cacheStop() {
     if (cacheEnabled) {
+      if (cacheInvalidationBus != null) {
+        cacheInvalidationBus.removeListener(invalidationListener);
+      }
+      for (Cache cache : regionCache.values()) {
+        if (cache instanceof LastModifiedCache && ((LastModifiedCache) cache).getCache() instanceof OffHeapCache) {
+          // off-heap regions are not built by the provider, which does not stop them
+          cache.destroy();
+        }
+      }
       regionCache.clear();
+      sessionKeys.clear();
       cacheProvider.stop();
     }
   }
@@ -252,6 +332,7 @@ public class CacheManager implements ICacheManager {
 
   public void onLogout(final IPentahoSession session) {
     removeRegionCache(session.getName());
+    killSessionCache(session);
   }
 
   public boolean addCacheRegion(String region, Properties cacheProperties) {
@@ -296,20 +377,36 @@ public class CacheManager implements ICacheManager {
   }
 
   public void clearRegionCache(String region) {
+    if (clearRegion(region) && cacheInvalidationBus != null) {
+      cacheInvalidationBus.publishClear(region);
+    }
+  }
+
+  /**
+   * Clears the region on this node only.
+   * 
+   * @return <code>true</code> if the region exists
+   */
+  private boolean clearRegion(String region) {
     if (cacheEnabled) {
       Cache cache = regionCache.get(region);
       if(cache != null) {
         try {
+          if (SESSION.equals(region)) {
+            sessionKeys.clear();
+          }
           cache.clear();
         } catch (CacheException e) {
           CacheManager.logger.error(Messages.getInstance().getString("CacheManager.ERROR_0006_CACHE_EXCEPTION", e.getLocalizedMessage())); //$NON-NLS-1$
         }
+        return true;
       } else {
         CacheManager.logger.info(Messages.getInstance().getString("CacheManager.INFO_0001_CACHE_DOES_NOT_EXIST", region)); //$NON-NLS-1$
       }
     } else {
       CacheManager.logger.warn(Messages.getInstance().getString("CacheManager.WARN_0001_CACHE_NOT_ENABLED")); //$NON-NLS-1$
     }
+    return false;
   }
 
   public void removeRegionCache(String region) {
@@ -405,16 +502,29 @@ public class CacheManager implements ICacheManager {
     return set;
   }
   public void removeFromRegionCache(String region, Object key) {
+    if (removeFromRegion(region, key) && cacheInvalidationBus != null) {
+      cacheInvalidationBus.publishRemove(region, key);
+    }
+  }
+
+  /**
+   * Removes the entry from the region on this node only.
+   * 
+   * @return <code>true</code> if the region exists
+   */
+  private boolean removeFromRegion(String region, Object key) {
     if (cacheEnabled) {    
       Cache cache = regionCache.get(region);
       if (cacheEnabled(region)) {
         cache.remove(key);
+        return true;
       } else {
         CacheManager.logger.warn(Messages.getInstance().getString("CacheManager.WARN_0003_REGION_DOES_NOT_EXIST", region)); //$NON-NLS-1$
       }
     } else {
       CacheManager.logger.warn(Messages.getInstance().getString("CacheManager.WARN_0001_CACHE_NOT_ENABLED")); //$NON-NLS-1$
     }
+    return false;
   }
 
   public boolean cacheEnabled() {
@@ -423,6 +533,7 @@ public class CacheManager implements ICacheManager {
 
   public void clearCache() {
     if(cacheEnabled) {
+      sessionKeys.clear();
       Iterator it = regionCache.entrySet().iterator();
       while (it.hasNext()) {
         Map.Entry entry = (Map.Entry) it.next();
@@ -430,6 +541,9 @@ public class CacheManager implements ICacheManager {
         if(key != null) {
           Cache cache = regionCache.get(key); 
           cache.clear();
+          if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.publishClear(key);
+          }
         }
       }
     }
@@ -444,20 +558,21 @@ public class CacheManager implements ICacheManager {
   }
 
   public void killSessionCache(IPentahoSession session) {
-    if(cacheEnabled) {
+    if(cacheEnabled && session.getId() != null) {
+      // recorded before the keys are removed, so that a put racing with this kill sees it
+      long now = System.currentTimeMillis();
+      sessionKills.put(session.getId(), new SessionKill(sessionKillCount.incrementAndGet(), now));
+      for (Iterator<SessionKill> it = sessionKills.values().iterator(); it.hasNext();) {
+        if (now - it.next().time > SESSION_KILL_RETENTION_MILLIS) {
+          it.remove();
+        }
+      }
+      Set<String> keys = sessionKeys.remove(session.getId());
       Cache cache = regionCache.get(SESSION);
-      if(cache != null) {
-       Map cacheMap = cache.toMap();
-       if (cacheMap != null) {
-         Set set = cacheMap.keySet();
-         Iterator it = set.iterator();
-         while (it.hasNext()) {
-           String key = (String) it.next();
-           if(key.indexOf(session.getId()) >= 0) {
-             cache.remove(key);
-           }
-         }
-       }
+      if(cache != null && keys != null) {
+        for (String key : keys) {
+          cache.remove(key);
+        }
       }
     }
   }
@@ -471,7 +586,26 @@ public class CacheManager implements ICacheManager {
   }
 
   public void putInSessionCache(IPentahoSession session, String key, Object value) {
-    putInRegionCache(SESSION, getCorrectedKey(session, key), value);
+    String correctedKey = getCorrectedKey(session, key);
+    long killCount = sessionKillCount.get();
+    putInRegionCache(SESSION, correctedKey, value);
+    if (cacheEnabled) {
+      // indexed after the put, so that a kill that starts after this point finds the entry
+      Set<String> keys = getSessionKeys(session.getId());
+      keys.add(correctedKey);
+      SessionKill kill = sessionKills.get(session.getId());
+      if (kill != null && kill.sequence > killCount) {
+        // the session was killed during the put, which may have missed the entry or left its keys indexed again
+        keys.remove(correctedKey);
+        if (keys.isEmpty()) {
+          sessionKeys.remove(session.getId(), keys);
+        }
+        Cache cache = regionCache.get(SESSION);
+        if (cache != null) {
+          cache.remove(correctedKey);
+        }
+      }
+    }
   }
 
   public void removeFromGlobalCache(Object key) {
@@ -479,7 +613,42 @@ public class CacheManager implements ICacheManager {
   }
 
   public void removeFromSessionCache(IPentahoSession session, String key) {
-    removeFromRegionCache(SESSION, getCorrectedKey(session, key));
+    String correctedKey = getCorrectedKey(session, key);
+    removeFromRegionCache(SESSION, correctedKey);
+    Set<String> keys = sessionKeys.get(session.getId());
+    if (keys != null) {
+      keys.remove(correctedKey);
+    }
+  }
+
+  private Set<String> getSessionKeys(final String sessionId) {
+    Set<String> keys = sessionKeys.get(sessionId);
+    if (keys == null) {
+      keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+      Set<String> existing = sessionKeys.putIfAbsent(sessionId, keys);
+      if (existing != null) {
+        keys = existing;
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Returns the number of sessions that have keys in the session key index.
+   */
+  public int getIndexedSessionCount() {
+    return sessionKeys.size();
+  }
+
+  /**
+   * Returns the number of keys in the session key index, over all sessions.
+   */
+  public long getIndexedSessionKeyCount() {
+    long count = 0;
+    for (Set<String> keys : sessionKeys.values()) {
+      count += keys.size();
+    }
+    return count;
   }
   
   private String getCorrectedKey(final IPentahoSession session, final String key) {
@@ -492,9 +661,50 @@ public class CacheManager implements ICacheManager {
     }
   }
 
+  /**
+   * Returns the off-heap memory asked for the region, or 0 for an ordinary region. The
+   * <code>&lt;region&gt;.offHeapMaximumBytes</code> property of <code>pentaho.xml</code> overrides the
+   * {@link #OFF_HEAP_MAXIMUM_BYTES} property the region was added with; 0 turns an off-heap region into an ordinary one.
+   */
+  private long getOffHeapMaximumBytes(String region, Properties regionProperties) {
+    String value = getRegionProperty(region, OFF_HEAP_MAXIMUM_BYTES, regionProperties);
+    try {
+      return (value != null) ? Long.parseLong(value.trim()) : 0L;
+    } catch (NumberFormatException e) {
+      CacheManager.logger.error(Messages.getInstance().getString("CacheManager.ERROR_0006_CACHE_EXCEPTION", e.getLocalizedMessage())); //$NON-NLS-1$
+      return 0L;
+    }
+  }
+
+  /**
+   * Returns the setting of the region given by the <code>&lt;region&gt;.&lt;name&gt;</code> property of
+   * <code>pentaho.xml</code>, or else by the property the region was added with.
+   */
+  private String getRegionProperty(String region, String name, Properties regionProperties) {
+    String value = this.cacheProperties.getProperty(region + "." + name); //$NON-NLS-1$
+    if (value == null && regionProperties != null && regionProperties != this.cacheProperties) {
+      value = regionProperties.getProperty(name);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the provider building the region: the {@link BoundedCacheProvider} for a region asking for a
+   * {@link #MAXIMUM_WEIGHT}, which the configured provider would not enforce, and the configured provider otherwise.
+   */
+  private CacheProvider getRegionCacheProvider(String region, Properties regionProperties) {
+    CacheProvider provider = getCacheProvider();
+    if (!(provider instanceof BoundedCacheProvider) && getRegionProperty(region, MAXIMUM_WEIGHT, regionProperties) != null) {
+      return boundedCacheProvider;
+    }
+    return provider;
+  }
+
   private LastModifiedCache buildCache(String key, Properties cacheProperties) {
     if(getCacheProvider() != null) {
-      Cache cache = getCacheProvider().buildCache(key, cacheProperties);
+      long offHeapMaximumBytes = getOffHeapMaximumBytes(key, cacheProperties);
+      Cache cache = (offHeapMaximumBytes > 0) ? new OffHeapCache(key, offHeapMaximumBytes) : getRegionCacheProvider(
+          key, cacheProperties).buildCache(key, cacheProperties);
       LastModifiedCache lmCache = new LastModifiedCache(cache);
       if(cacheExpirationRegistry != null) {
         cacheExpirationRegistry.register(lmCache);
@@ -528,6 +738,48 @@ public class CacheManager implements ICacheManager {
     }
   }
   
+  /**
+   * Returns the statistics of every region. Hit and miss counts are kept for all regions; the weight and evictions only
+   * for off-heap regions and regions built by the {@link BoundedCacheProvider}, and expirations only for the latter.
+   */
+  public List<CacheRegionStatistics> getRegionStatistics() {
+    List<CacheRegionStatistics> statistics = new ArrayList<CacheRegionStatistics>();
+    if (cacheEnabled) {
+      for (Map.Entry<String, Cache> entry : regionCache.entrySet()) {
+        CacheRegionStatistics regionStatistics = new CacheRegionStatistics(entry.getKey());
+        regionStatistics.setEntryCount(getElementCountInRegionCache(entry.getKey()));
+        Cache cache = entry.getValue();
+        if (cache instanceof LastModifiedCache) {
+          LastModifiedCache lmCache = (LastModifiedCache) cache;
+          long hits = lmCache.getHitCount();
+          long misses = lmCache.getMissCount();
+          regionStatistics.setHitCount(hits);
+          regionStatistics.setMissCount(misses);
+          regionStatistics.setHitRate((hits + misses > 0) ? (double) hits / (hits + misses) : 0.0);
+          regionStatistics.setLastModified(lmCache.getLastModified());
+          cache = lmCache.getCache();
+        }
+        if (cache instanceof OffHeapCache) {
+          OffHeapCache offHeapCache = (OffHeapCache) cache;
+          regionStatistics.setWeight(offHeapCache.getSizeInMemory());
+          regionStatistics.setMaximumWeight(offHeapCache.getCapacity());
+          regionStatistics.setEvictionCount(offHeapCache.getEvictionCount());
+          regionStatistics.setEvictedWeight(offHeapCache.getEvictedBytes());
+        }
+        if (cache instanceof BoundedCache) {
+          BoundedCache boundedCache = (BoundedCache) cache;
+          regionStatistics.setWeight(boundedCache.getSizeInMemory());
+          regionStatistics.setMaximumWeight(boundedCache.getMaximumWeight());
+          regionStatistics.setEvictionCount(boundedCache.getEvictionCount());
+          regionStatistics.setEvictedWeight(boundedCache.getEvictedWeight());
+          regionStatistics.setExpirationCount(boundedCache.getExpirationCount());
+        }
+        statistics.add(regionStatistics);
+      }
+    }
+    return statistics;
+  }
+
   @Override
   public long getElementCountInSessionCache() {
     return getElementCountInRegionCache(SESSION);
@@ -537,4 +789,15 @@ public class CacheManager implements ICacheManager {
   public long getElementCountInGlobalCache() {
     return getElementCountInRegionCache(GLOBAL);
   }
+
+  private static class SessionKill {
+    private final long sequence;
+
+    private final long time;
+
+    SessionKill(final long sequence, final long time) {
+      this.sequence = sequence;
+      this.time = time;
+    }
+  }
 }
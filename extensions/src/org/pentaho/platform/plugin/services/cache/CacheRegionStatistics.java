@@ -0,0 +1,154 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Statistics of a cache region, as reported by {@link CacheManager#getRegionStatistics()}. Values the cache provider of
+ * the region does not track are -1.
+ */
+@XmlRootElement
+public class CacheRegionStatistics {
+
+  private String region;
+
+  private long entryCount = -1;
+
+  private long weight = -1;
+
+  private long maximumWeight = -1;
+
+  private long hitCount;
+
+  private long missCount;
+
+  private double hitRate;
+
+  private long evictionCount = -1;
+
+  private long evictedWeight = -1;
+
+  private long expirationCount = -1;
+
+  private long lastModified;
+
+  public CacheRegionStatistics() {
+  }
+
+  public CacheRegionStatistics(final String region) {
+    this.region = region;
+  }
+
+  public String getRegion() {
+    return region;
+  }
+
+  public void setRegion(final String region) {
+    this.region = region;
+  }
+
+  public long getEntryCount() {
+    return entryCount;
+  }
+
+  public void setEntryCount(final long entryCount) {
+    this.entryCount = entryCount;
+  }
+
+  /**
+   * Returns the total estimated weight, in bytes, of the entries.
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  public void setWeight(final long weight) {
+    this.weight = weight;
+  }
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  public void setMaximumWeight(final long maximumWeight) {
+    this.maximumWeight = maximumWeight;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public void setHitCount(final long hitCount) {
+    this.hitCount = hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public void setMissCount(final long missCount) {
+    this.missCount = missCount;
+  }
+
+  /**
+   * Returns the share of reads that found an entry, between 0 and 1.
+   */
+  public double getHitRate() {
+    return hitRate;
+  }
+
+  public void setHitRate(final double hitRate) {
+    this.hitRate = hitRate;
+  }
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  public void setEvictionCount(final long evictionCount) {
+    this.evictionCount = evictionCount;
+  }
+
+  public long getEvictedWeight() {
+    return evictedWeight;
+  }
+
+  public void setEvictedWeight(final long evictedWeight) {
+    this.evictedWeight = evictedWeight;
+  }
+
+  public long getExpirationCount() {
+    return expirationCount;
+  }
+
+  public void setExpirationCount(final long expirationCount) {
+    this.expirationCount = expirationCount;
+  }
+
+  /**
+   * Returns when the region last changed, as registered with the cache expiration registry.
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public void setLastModified(final long lastModified) {
+    this.lastModified = lastModified;
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.pentaho.platform.api.cache.ICacheWeigher;
+
+/**
+ * Weighs entries by the type of their key and value: arrays, buffers and strings by their length, collections and maps
+ * by their elements, and other serializable values by the length of their serialized form. Values that cannot be
+ * weighed count as {@link #DEFAULT_WEIGHT} bytes.
+ * <p>
+ * The weights are estimates meant to tell a cached report output from a cached flag; they do not account for object
+ * headers, padding or values shared between entries.
+ */
+public class DefaultCacheWeigher implements ICacheWeigher {
+
+  /**
+   * Weight of a value whose size cannot be estimated.
+   */
+  public static final long DEFAULT_WEIGHT = 1024L;
+
+  /**
+   * Weight of an entry itself, before its key and value.
+   */
+  private static final long ENTRY_OVERHEAD = 64L;
+
+  /**
+   * Collections nested deeper than this are weighed through serialization.
+   */
+  private static final int MAX_DEPTH = 3;
+
+  public long weigh(final Object key, final Object value) {
+    return ENTRY_OVERHEAD + weighObject(key, 0) + weighObject(value, 0);
+  }
+
+  protected long weighObject(final Object object, final int depth) {
+    if (object == null) {
+      return 0L;
+    }
+    if (object instanceof byte[]) {
+      return 16L + ((byte[]) object).length;
+    }
+    if (object instanceof char[]) {
+      return 16L + 2L * ((char[]) object).length;
+    }
+    if (object instanceof ByteArrayOutputStream) {
+      // the buffer may be larger than its content; its capacity is not visible
+      return 32L + ((ByteArrayOutputStream) object).size();
+    }
+    if (object instanceof CharSequence) {
+      return 40L + 2L * ((CharSequence) object).length();
+    }
+    if ((object instanceof Number) || (object instanceof Boolean) || (object instanceof Character)
+        || (object instanceof Date) || (object instanceof Enum)) {
+      return 16L;
+    }
+    try {
+      if (depth < MAX_DEPTH) {
+        if (object instanceof Collection) {
+          long weight = 32L;
+          for (Object element : (Collection<?>) object) {
+            weight += 8L + weighObject(element, depth + 1);
+          }
+          return weight;
+        }
+        if (object instanceof Map) {
+          long weight = 48L;
+          for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+            weight += 32L + weighObject(entry.getKey(), depth + 1) + weighObject(entry.getValue(), depth + 1);
+          }
+          return weight;
+        }
+        if (object instanceof Object[]) {
+          long weight = 16L;
+          for (Object element : (Object[]) object) {
+            weight += 8L + weighObject(element, depth + 1);
+          }
+          return weight;
+        }
+      }
+      if (object instanceof Serializable) {
+        return serializedLength(object);
+      }
+    } catch (RuntimeException e) {
+      // collections changed while they were weighed and values that fail to serialize are not worth failing a put for
+    }
+    return DEFAULT_WEIGHT;
+  }
+
+  private long serializedLength(final Object object) {
+    CountingOutputStream counter = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+    try {
+      ObjectOutputStream out = new ObjectOutputStream(counter);
+      out.writeObject(object);
+      out.close();
+      return counter.getByteCount();
+    } catch (IOException e) {
+      return DEFAULT_WEIGHT;
+    }
+  }
+
+}
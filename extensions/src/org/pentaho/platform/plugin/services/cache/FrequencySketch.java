@@ -0,0 +1,127 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+/**
+ * Count-min sketch of how often keys were used recently, with four 4 bit counters per key. Once the sketch has
+ * counted ten uses for each of its counters, all counters are halved, so that keys that were popular long ago lose
+ * their standing. The sketch may overestimate the frequency of a key, never underestimate it.
+ * <p>
+ * Not thread safe.
+ */
+class FrequencySketch {
+
+  private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+      0xcbf29ce484222325L };
+
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  private static final int MAXIMUM_LENGTH = 1 << 24;
+
+  private long[] table;
+
+  private int sampleSize;
+
+  private int additions;
+
+  FrequencySketch(final int expectedEntries) {
+    ensureCapacity(expectedEntries);
+  }
+
+  /**
+   * Grows the sketch to count <code>expectedEntries</code> keys accurately. Growing forgets every count.
+   */
+  void ensureCapacity(final int expectedEntries) {
+    int length = 16;
+    while ((length < expectedEntries) && (length < MAXIMUM_LENGTH)) {
+      length <<= 1;
+    }
+    if ((table != null) && (table.length >= length)) {
+      return;
+    }
+    table = new long[length];
+    sampleSize = 10 * length;
+    additions = 0;
+  }
+
+  int capacity() {
+    return table.length;
+  }
+
+  /**
+   * Returns the estimated number of recent uses of <code>key</code>, at most 15.
+   */
+  int frequency(final Object key) {
+    int hash = spread(key.hashCode());
+    int frequency = 15;
+    for (int i = 0; i < SEEDS.length; i++) {
+      long h = mix(hash, i);
+      int count = (int) ((table[index(h)] >>> shift(h)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Counts a use of <code>key</code>.
+   */
+  void increment(final Object key) {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int i = 0; i < SEEDS.length; i++) {
+      long h = mix(hash, i);
+      int index = index(h);
+      int shift = shift(h);
+      if (((table[index] >>> shift) & 0xfL) != 0xfL) {
+        table[index] += 1L << shift;
+        added = true;
+      }
+    }
+    if (added && (++additions >= sampleSize)) {
+      reset();
+    }
+  }
+
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    additions >>>= 1;
+  }
+
+  private long mix(final int hash, final int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    return h + (h >>> 32);
+  }
+
+  private int index(final long h) {
+    return (int) h & (table.length - 1);
+  }
+
+  /**
+   * Selects one of the 16 counters of a table slot, using bits of the hash that {@link #index(long)} does not.
+   */
+  private int shift(final long h) {
+    return ((int) (h >>> 48) & 0xf) << 2;
+  }
+
+  private static int spread(final int hashCode) {
+    int h = hashCode * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+import java.io.IOException;
+
+/**
+ * Moves the messages of a {@link CacheInvalidationBus} between the nodes of a cluster. A transport only sends and
+ * receives opaque messages; what they hold is up to the bus. Messages may be lost, duplicated or delivered out of
+ * order, and a node may receive its own messages, which the bus ignores.
+ *
+ * @see JdbcCacheInvalidationTransport
+ * @see MulticastCacheInvalidationTransport
+ */
+public interface ICacheInvalidationTransport {
+
+  /**
+   * Starts delivering the messages sent by the other nodes to {@link CacheInvalidationBus#receive(byte[])}.
+   */
+  public void start(CacheInvalidationBus bus) throws IOException;
+
+  /**
+   * Sends <code>message</code> to the other nodes.
+   */
+  public void send(byte[] message) throws IOException;
+
+  /**
+   * Returns the largest message, in bytes, the transport can send.
+   */
+  public int getMaximumMessageSize();
+
+  public void stop();
+
+}
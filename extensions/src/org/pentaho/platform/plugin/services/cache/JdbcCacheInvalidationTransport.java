@@ -0,0 +1,379 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.data.IDBDatasourceService;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.services.messages.Messages;
+
+/**
+ * Sends cache invalidations to the other nodes through a table of a database they share. Each node inserts its
+ * messages into the table and polls it for the messages of the others every {@link #setPollInterval(long)
+ * pollInterval} milliseconds. Unlike multicast, no message is lost while the database is reachable, and the nodes do
+ * not have to share a network segment.
+ * <p>
+ * The table is created on start if it does not exist, and holds:
+ * 
+ * <pre>
+ * NODE_ID         VARCHAR(36)  the node that sent the message
+ * SEQUENCE_NUMBER BIGINT       the number of the message among those of its node
+ * CREATED         BIGINT       when the message was sent, in milliseconds
+ * MESSAGE         binary       the message
+ * </pre>
+ * 
+ * Messages are read by the time they were sent, looking back {@link #setPollOverlap(long) pollOverlap} milliseconds
+ * before the last poll so that messages committed late, or sent by a node whose clock is slightly behind, are not
+ * missed. Messages older than {@link #setRetention(long) retention} milliseconds are deleted.
+ */
+public class JdbcCacheInvalidationTransport implements ICacheInvalidationTransport {
+
+  private static final Log logger = LogFactory.getLog(JdbcCacheInvalidationTransport.class);
+
+  public static final String DEFAULT_TABLE_NAME = "PENTAHO_CACHE_INVALIDATION"; //$NON-NLS-1$
+
+  private DataSource dataSource;
+
+  private String dataSourceName;
+
+  private String tableName = DEFAULT_TABLE_NAME;
+
+  private String messageColumnType;
+
+  private boolean createTable = true;
+
+  private long pollInterval = 1000;
+
+  private long pollOverlap = 5000;
+
+  private long retention = 600000;
+
+  private int maximumMessageSize = 65536;
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  private String nodeId;
+
+  /**
+   * The messages the next poll may read again, by node and sequence number, with when they were sent; only used by
+   * the poller.
+   */
+  private final Map<String, Long> readMessages = new HashMap<String, Long>();
+
+  private long lastPoll;
+
+  private long lastPurge;
+
+  private volatile Thread poller;
+
+  private volatile boolean stopped;
+
+  public synchronized void start(final CacheInvalidationBus bus) throws IOException {
+    if (poller != null) {
+      return;
+    }
+    nodeId = bus.getNodeId();
+    try {
+      if (createTable) {
+        createTable();
+      }
+    } catch (SQLException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    // only messages sent from now on are news
+    lastPoll = System.currentTimeMillis();
+    lastPurge = lastPoll;
+    stopped = false;
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        pollPeriodically(bus);
+      }
+    }, "Cache invalidation poller"); //$NON-NLS-1$
+    thread.setDaemon(true);
+    thread.start();
+    poller = thread;
+  }
+
+  public synchronized void stop() {
+    stopped = true;
+    Thread thread = poller;
+    poller = null;
+    if (thread != null) {
+      thread.interrupt();
+    }
+  }
+
+  public void send(final byte[] message) throws IOException {
+    try {
+      Connection connection = getDataSource().getConnection();
+      try {
+        PreparedStatement statement = connection.prepareStatement("INSERT INTO " + tableName //$NON-NLS-1$
+            + " (NODE_ID, SEQUENCE_NUMBER, CREATED, MESSAGE) VALUES (?, ?, ?, ?)"); //$NON-NLS-1$
+        try {
+          statement.setString(1, nodeId);
+          statement.setLong(2, sequence.incrementAndGet());
+          statement.setLong(3, System.currentTimeMillis());
+          statement.setBytes(4, message);
+          statement.executeUpdate();
+        } finally {
+          statement.close();
+        }
+      } finally {
+        connection.close();
+      }
+    } catch (SQLException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  public int getMaximumMessageSize() {
+    return maximumMessageSize;
+  }
+
+  private void pollPeriodically(final CacheInvalidationBus bus) {
+    boolean pollFailing = false;
+    while (!stopped) {
+      try {
+        Thread.sleep(Math.max(1, pollInterval));
+      } catch (InterruptedException e) {
+        return;
+      }
+      try {
+        poll(bus);
+        pollFailing = false;
+      } catch (SQLException e) {
+        // warn once until polling works again, so that an unreachable database does not flood the log
+        if (!pollFailing) {
+          pollFailing = true;
+          logger.warn(Messages.getInstance().getString("JdbcCacheInvalidationTransport.WARN_0001_POLL_FAILED", //$NON-NLS-1$
+              tableName, e.getMessage()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Hands the messages the other nodes sent since the last poll to <code>bus</code>, and deletes old messages now and
+   * then. Called by the poller thread; public so that tests can poll without waiting.
+   */
+  public synchronized void poll(final CacheInvalidationBus bus) throws SQLException {
+    long now = System.currentTimeMillis();
+    long since = lastPoll - pollOverlap;
+    Connection connection = getDataSource().getConnection();
+    try {
+      PreparedStatement statement = connection.prepareStatement("SELECT NODE_ID, SEQUENCE_NUMBER, CREATED, MESSAGE FROM " //$NON-NLS-1$
+          + tableName + " WHERE CREATED >= ? AND NODE_ID <> ?"); //$NON-NLS-1$
+      try {
+        statement.setLong(1, since);
+        statement.setString(2, nodeId);
+        ResultSet resultSet = statement.executeQuery();
+        try {
+          while (resultSet.next()) {
+            String id = resultSet.getString(1) + ":" + resultSet.getLong(2); //$NON-NLS-1$
+            long created = resultSet.getLong(3);
+            if (!readMessages.containsKey(id)) {
+              readMessages.put(id, Long.valueOf(created));
+              bus.receive(resultSet.getBytes(4));
+            }
+          }
+        } finally {
+          resultSet.close();
+        }
+      } finally {
+        statement.close();
+      }
+      lastPoll = now;
+      // a message is remembered until the next poll no longer reads it
+      for (Iterator<Long> iterator = readMessages.values().iterator(); iterator.hasNext();) {
+        if (iterator.next().longValue() < now - pollOverlap) {
+          iterator.remove();
+        }
+      }
+      if (now - lastPurge >= Math.min(retention, 60000)) {
+        lastPurge = now;
+        PreparedStatement delete = connection.prepareStatement("DELETE FROM " + tableName + " WHERE CREATED < ?"); //$NON-NLS-1$ //$NON-NLS-2$
+        try {
+          delete.setLong(1, now - retention);
+          delete.executeUpdate();
+        } finally {
+          delete.close();
+        }
+      }
+    } finally {
+      connection.close();
+    }
+  }
+
+  private void createTable() throws SQLException {
+    Connection connection = getDataSource().getConnection();
+    try {
+      DatabaseMetaData metaData = connection.getMetaData();
+      if (tableExists(metaData, tableName) || tableExists(metaData, tableName.toUpperCase())
+          || tableExists(metaData, tableName.toLowerCase())) {
+        return;
+      }
+      String columnType = (messageColumnType != null) ? messageColumnType : getBinaryType(metaData
+          .getDatabaseProductName());
+      Statement statement = connection.createStatement();
+      try {
+        statement.executeUpdate("CREATE TABLE " + tableName //$NON-NLS-1$
+            + " (NODE_ID VARCHAR(36) NOT NULL, SEQUENCE_NUMBER BIGINT NOT NULL, CREATED BIGINT NOT NULL, MESSAGE " //$NON-NLS-1$
+            + columnType + " NOT NULL)"); //$NON-NLS-1$
+      } finally {
+        statement.close();
+      }
+    } finally {
+      connection.close();
+    }
+  }
+
+  private static boolean tableExists(final DatabaseMetaData metaData, final String name) throws SQLException {
+    ResultSet tables = metaData.getTables(null, null, name, null);
+    try {
+      return tables.next();
+    } finally {
+      tables.close();
+    }
+  }
+
+  /**
+   * Returns the type of a column holding up to 64 KB of binary data in the database named <code>productName</code>.
+   */
+  private static String getBinaryType(final String productName) {
+    String name = (productName != null) ? productName.toLowerCase() : ""; //$NON-NLS-1$
+    if (name.contains("postgres")) { //$NON-NLS-1$
+      return "BYTEA"; //$NON-NLS-1$
+    } else if (name.contains("hsql")) { //$NON-NLS-1$
+      return "LONGVARBINARY"; //$NON-NLS-1$
+    } else if (name.contains("microsoft")) { //$NON-NLS-1$
+      return "VARBINARY(MAX)"; //$NON-NLS-1$
+    } else if (name.contains("mysql")) { //$NON-NLS-1$
+      return "MEDIUMBLOB"; //$NON-NLS-1$
+    }
+    return "BLOB"; //$NON-NLS-1$
+  }
+
+  private DataSource getDataSource() throws SQLException {
+    if (dataSource == null) {
+      if (dataSourceName == null) {
+        throw new SQLException(Messages.getInstance().getErrorString(
+            "JdbcCacheInvalidationTransport.ERROR_0001_NO_DATASOURCE")); //$NON-NLS-1$
+      }
+      try {
+        dataSource = PentahoSystem.getObjectFactory().get(IDBDatasourceService.class, null).getDataSource(
+            dataSourceName);
+      } catch (Exception e) {
+        throw new SQLException(e.getMessage(), e);
+      }
+    }
+    return dataSource;
+  }
+
+  /**
+   * Sets the data source of the shared database.
+   */
+  public void setDataSource(final DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  public String getDataSourceName() {
+    return dataSourceName;
+  }
+
+  /**
+   * Sets the name of the data source of the shared database, as known to the {@link IDBDatasourceService}, when no
+   * {@link #setDataSource(DataSource) data source} is set.
+   */
+  public void setDataSourceName(final String dataSourceName) {
+    this.dataSourceName = dataSourceName;
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  /**
+   * Sets the table the messages are kept in. Default {@value #DEFAULT_TABLE_NAME}.
+   */
+  public void setTableName(final String tableName) {
+    this.tableName = tableName;
+  }
+
+  /**
+   * Sets whether the table is created on start if it does not exist. Default <code>true</code>.
+   */
+  public void setCreateTable(final boolean createTable) {
+    this.createTable = createTable;
+  }
+
+  /**
+   * Sets the type of the binary message column of a table created on start. By default a type that suits the
+   * database.
+   */
+  public void setMessageColumnType(final String messageColumnType) {
+    this.messageColumnType = messageColumnType;
+  }
+
+  public long getPollInterval() {
+    return pollInterval;
+  }
+
+  /**
+   * Sets how often, in milliseconds, the table is polled for the messages of the other nodes. Default 1000.
+   */
+  public void setPollInterval(final long pollInterval) {
+    this.pollInterval = pollInterval;
+  }
+
+  /**
+   * Sets how far back before the last poll, in milliseconds, messages are read again; must cover the longest
+   * transaction inserting a message and the largest difference between the nodes' clocks. Default 5000.
+   */
+  public void setPollOverlap(final long pollOverlap) {
+    this.pollOverlap = pollOverlap;
+  }
+
+  /**
+   * Sets how long, in milliseconds, messages are kept in the table. Default 600000.
+   */
+  public void setRetention(final long retention) {
+    this.retention = retention;
+  }
+
+  /**
+   * Sets the largest message sent, in bytes. Default 65536.
+   */
+  public void setMaximumMessageSize(final int maximumMessageSize) {
+    this.maximumMessageSize = maximumMessageSize;
+  }
+
+}
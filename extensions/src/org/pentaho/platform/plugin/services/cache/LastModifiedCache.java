@@ -2,6 +2,7 @@ package org.pentaho.platform.plugin.services.cache;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hibernate.cache.Cache;
 import org.hibernate.cache.CacheException;
@@ -15,6 +16,8 @@ import org.pentaho.platform.api.cache.ILastModifiedCacheItem;
 public class LastModifiedCache implements ILastModifiedCacheItem, Cache {
   private Cache cache;
   private long lastModified;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
 
   public LastModifiedCache(Cache cache) {
     this.cache = cache;
@@ -43,14 +46,44 @@ public class LastModifiedCache implements ILastModifiedCacheItem, Cache {
     return cache.getRegionName();
   }
 
+  /**
+   * Returns the wrapped cache region.
+   */
+  public Cache getCache() {
+    return cache;
+  }
+
+  /**
+   * Returns the number of reads that found an entry.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of reads that found no entry.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  private Object count(Object value) {
+    if (value != null) {
+      hitCount.incrementAndGet();
+    } else {
+      missCount.incrementAndGet();
+    }
+    return value;
+  }
+
   @Override
   public Object read(Object o) throws CacheException {
-    return cache.read(o);
+    return count(cache.read(o));
   }
 
   @Override
   public Object get(Object o) throws CacheException {
-    return cache.get(o);
+    return count(cache.get(o));
   }
 
   @Override
@@ -0,0 +1,189 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.util.Arrays;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.plugin.services.messages.Messages;
+
+/**
+ * Sends cache invalidations to the other nodes as UDP multicast datagrams. Nodes that use the same group and port form
+ * a cluster, including several servers on one host.
+ * <p>
+ * Datagrams are not acknowledged, so an invalidation can be lost and its entries are then only dropped when they
+ * expire; use the {@link JdbcCacheInvalidationTransport} where that matters. The group is not authenticated, so it
+ * must only be reachable from the cluster's own network. The default time to live of 1 keeps datagrams on the local
+ * subnet.
+ */
+public class MulticastCacheInvalidationTransport implements ICacheInvalidationTransport {
+
+  private static final Log logger = LogFactory.getLog(MulticastCacheInvalidationTransport.class);
+
+  public static final String DEFAULT_GROUP = "239.255.43.21"; //$NON-NLS-1$
+
+  public static final int DEFAULT_PORT = 45621;
+
+  /**
+   * The largest UDP payload.
+   */
+  private static final int MAXIMUM_DATAGRAM_SIZE = 65507;
+
+  private String group = DEFAULT_GROUP;
+
+  private int port = DEFAULT_PORT;
+
+  private int timeToLive = 1;
+
+  private String networkInterface;
+
+  private int maximumMessageSize = 8192;
+
+  private InetAddress groupAddress;
+
+  private volatile MulticastSocket socket;
+
+  public synchronized void start(final CacheInvalidationBus bus) throws IOException {
+    if (socket != null) {
+      return;
+    }
+    groupAddress = InetAddress.getByName(group);
+    final MulticastSocket multicastSocket = new MulticastSocket(port);
+    try {
+      multicastSocket.setTimeToLive(timeToLive);
+      if (networkInterface != null && networkInterface.length() > 0) {
+        multicastSocket.setNetworkInterface(NetworkInterface.getByName(networkInterface));
+      }
+      // false enables loopback, so that nodes on the same host receive each other's datagrams
+      multicastSocket.setLoopbackMode(false);
+      multicastSocket.joinGroup(groupAddress);
+    } catch (IOException e) {
+      multicastSocket.close();
+      throw e;
+    }
+    socket = multicastSocket;
+    Thread receiver = new Thread(new Runnable() {
+      public void run() {
+        receive(multicastSocket, bus);
+      }
+    }, "Cache invalidation receiver"); //$NON-NLS-1$
+    receiver.setDaemon(true);
+    receiver.start();
+  }
+
+  private void receive(final MulticastSocket multicastSocket, final CacheInvalidationBus bus) {
+    byte[] buffer = new byte[MAXIMUM_DATAGRAM_SIZE];
+    while (!multicastSocket.isClosed()) {
+      DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+      try {
+        multicastSocket.receive(packet);
+        bus.receive(Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getOffset() + packet.getLength()));
+      } catch (IOException e) {
+        if (!multicastSocket.isClosed()) {
+          logger.warn(Messages.getInstance().getString(
+              "MulticastCacheInvalidationTransport.WARN_0001_RECEIVE_FAILED", e.getMessage())); //$NON-NLS-1$
+        }
+      }
+    }
+  }
+
+  public void send(final byte[] message) throws IOException {
+    MulticastSocket multicastSocket = socket;
+    if (multicastSocket == null) {
+      throw new IOException("not started"); //$NON-NLS-1$
+    }
+    multicastSocket.send(new DatagramPacket(message, message.length, groupAddress, port));
+  }
+
+  public int getMaximumMessageSize() {
+    return Math.min(maximumMessageSize, MAXIMUM_DATAGRAM_SIZE);
+  }
+
+  public synchronized void stop() {
+    MulticastSocket multicastSocket = socket;
+    if (multicastSocket == null) {
+      return;
+    }
+    socket = null;
+    try {
+      multicastSocket.leaveGroup(groupAddress);
+    } catch (IOException e) {
+      // closed below all the same
+    }
+    multicastSocket.close();
+  }
+
+  public String getGroup() {
+    return group;
+  }
+
+  /**
+   * Sets the multicast group the nodes of the cluster join. Default {@value #DEFAULT_GROUP}.
+   */
+  public void setGroup(final String group) {
+    this.group = group;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * Sets the port of the multicast group. Default {@value #DEFAULT_PORT}.
+   */
+  public void setPort(final int port) {
+    this.port = port;
+  }
+
+  public int getTimeToLive() {
+    return timeToLive;
+  }
+
+  /**
+   * Sets how many routers a datagram may cross; 0 keeps datagrams on the host. Default 1.
+   */
+  public void setTimeToLive(final int timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  public String getNetworkInterface() {
+    return networkInterface;
+  }
+
+  /**
+   * Sets the name of the network interface, such as <code>eth0</code>, datagrams are sent on. By default the one the
+   * operating system picks.
+   */
+  public void setNetworkInterface(final String networkInterface) {
+    this.networkInterface = networkInterface;
+  }
+
+  /**
+   * Sets the largest datagram sent, in bytes. Larger datagrams are fragmented, and lost when any fragment is. Default
+   * 8192.
+   */
+  public void setMaximumMessageSize(final int maximumMessageSize) {
+    this.maximumMessageSize = maximumMessageSize;
+  }
+
+}
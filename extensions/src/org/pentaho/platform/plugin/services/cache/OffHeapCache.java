@@ -0,0 +1,419 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.Timestamper;
+import org.pentaho.platform.plugin.services.messages.Messages;
+
+/**
+ * Cache region keeping binary values, such as static files and rendered output, in direct memory outside the Java
+ * heap, so that large cached artifacts do not fill the old generation and lengthen its collections.
+ * <p>
+ * Values put in the region must be byte arrays, <code>ByteBuffer</code>s or <code>ByteArrayOutputStream</code>s;
+ * they are copied into the region and read back as {@link OffHeapValue}s, which stream them straight from off-heap
+ * memory. Other values are not cached.
+ * <p>
+ * The region reserves its memory when it is created, as one direct buffer of the largest power of two not above its
+ * maximum size (and at most 1 GB), and allocates it to values with a buddy allocator, in blocks of a power of two
+ * bytes of at least {@link #MINIMUM_BLOCK_SIZE}. When no block is free for a value, the least recently used values are
+ * evicted until one is. Values larger than the region are not cached.
+ */
+public class OffHeapCache implements Cache {
+
+  public static final int MINIMUM_BLOCK_SIZE = 512;
+
+  private static final long MAXIMUM_CAPACITY = 1L << 30;
+
+  private static final Log logger = LogFactory.getLog(OffHeapCache.class);
+
+  private final String regionName;
+
+  private final int capacity;
+
+  private final int maximumOrder;
+
+  private ByteBuffer arena;
+
+  private final ConcurrentMap<Object, OffHeapValue> values = new ConcurrentHashMap<Object, OffHeapValue>();
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // the free blocks and the usage order are guarded by the lock
+
+  private final List<LinkedHashSet<Integer>> freeBlocks = new ArrayList<LinkedHashSet<Integer>>();
+
+  private final LinkedHashMap<Object, OffHeapValue> usageOrder = new LinkedHashMap<Object, OffHeapValue>(16, 0.75f,
+      true);
+
+  private volatile long storedBytes;
+
+  private volatile long allocatedBytes;
+
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  private final AtomicLong evictedBytes = new AtomicLong();
+
+  private final AtomicLong rejectionCount = new AtomicLong();
+
+  /**
+   * @param regionName
+   *          the name of the region
+   * @param maximumBytes
+   *          the off-heap memory the region may use
+   */
+  public OffHeapCache(final String regionName, final long maximumBytes) {
+    this.regionName = regionName;
+    long size = MINIMUM_BLOCK_SIZE;
+    int order = 0;
+    while ((size * 2 <= maximumBytes) && (size * 2 <= MAXIMUM_CAPACITY)) {
+      size *= 2;
+      order++;
+    }
+    this.capacity = (int) size;
+    this.maximumOrder = order;
+    this.arena = ByteBuffer.allocateDirect(capacity);
+    for (int i = 0; i <= maximumOrder; i++) {
+      freeBlocks.add(new LinkedHashSet<Integer>());
+    }
+    freeBlocks.get(maximumOrder).add(Integer.valueOf(0));
+  }
+
+  /**
+   * Returns the {@link OffHeapValue} cached under <code>key</code>, or <code>null</code>.
+   */
+  public Object get(final Object key) throws CacheException {
+    OffHeapValue value = values.get(key);
+    // the usage order may miss some reads under contention
+    if ((value != null) && lock.tryLock()) {
+      try {
+        usageOrder.get(key);
+      } finally {
+        lock.unlock();
+      }
+    }
+    return value;
+  }
+
+  public Object read(final Object key) throws CacheException {
+    return get(key);
+  }
+
+  /**
+   * Copies <code>value</code>, a byte array, <code>ByteBuffer</code> or <code>ByteArrayOutputStream</code>, into the
+   * region.
+   */
+  public void put(final Object key, final Object value) throws CacheException {
+    int length;
+    if (value instanceof byte[]) {
+      length = ((byte[]) value).length;
+    } else if (value instanceof ByteBuffer) {
+      length = ((ByteBuffer) value).remaining();
+    } else if (value instanceof ByteArrayOutputStream) {
+      length = ((ByteArrayOutputStream) value).size();
+    } else {
+      if (value != null) {
+        logger.warn(Messages.getInstance().getString("OffHeapCache.WARN_0001_VALUE_NOT_BINARY", regionName, //$NON-NLS-1$
+            value.getClass().getName()));
+      }
+      remove(key);
+      return;
+    }
+    lock.lock();
+    try {
+      OffHeapValue old = values.get(key);
+      if (old != null) {
+        evict(old);
+      }
+      if (length > capacity) {
+        rejectionCount.incrementAndGet();
+        return;
+      }
+      int order = orderOf(length);
+      Integer offset = allocate(order);
+      while (offset == null) {
+        Iterator<OffHeapValue> eldest = usageOrder.values().iterator();
+        if (!eldest.hasNext()) {
+          // the memory is held by evicted values that are still being read
+          rejectionCount.incrementAndGet();
+          return;
+        }
+        OffHeapValue victim = eldest.next();
+        evict(victim);
+        evictionCount.incrementAndGet();
+        evictedBytes.addAndGet(victim.getLength());
+        offset = allocate(order);
+      }
+      ByteBuffer block = block(offset.intValue(), order);
+      write(value, block.duplicate());
+      OffHeapValue cached = new OffHeapValue(this, key, offset.intValue(), order, length, block);
+      values.put(key, cached);
+      usageOrder.put(key, cached);
+      storedBytes += length;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void update(final Object key, final Object value) throws CacheException {
+    put(key, value);
+  }
+
+  public void remove(final Object key) throws CacheException {
+    lock.lock();
+    try {
+      OffHeapValue value = values.get(key);
+      if (value != null) {
+        evict(value);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void clear() throws CacheException {
+    lock.lock();
+    try {
+      for (OffHeapValue value : new ArrayList<OffHeapValue>(values.values())) {
+        evict(value);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Clears the region and lets go of its memory, which is returned to the system once the buffer is collected.
+   */
+  public void destroy() throws CacheException {
+    lock.lock();
+    try {
+      clear();
+      for (LinkedHashSet<Integer> blocks : freeBlocks) {
+        blocks.clear();
+      }
+      arena = null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void lock(final Object key) throws CacheException {
+    // entries are not locked
+  }
+
+  public void unlock(final Object key) throws CacheException {
+    // entries are not locked
+  }
+
+  public long nextTimestamp() {
+    return Timestamper.next();
+  }
+
+  public int getTimeout() {
+    return Timestamper.ONE_MS * 60000;
+  }
+
+  public String getRegionName() {
+    return regionName;
+  }
+
+  /**
+   * Returns the number of bytes of the cached values; the values use no heap memory.
+   */
+  public long getSizeInMemory() {
+    return storedBytes;
+  }
+
+  public long getElementCountInMemory() {
+    return values.size();
+  }
+
+  public long getElementCountOnDisk() {
+    return 0;
+  }
+
+  public Map toMap() {
+    return new HashMap<Object, OffHeapValue>(values);
+  }
+
+  /**
+   * Returns the off-heap memory the region reserved.
+   */
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the memory allocated to values, including the rounding of values up to their block size and the blocks of
+   * evicted values that are still being read.
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  public long getEvictedBytes() {
+    return evictedBytes.get();
+  }
+
+  /**
+   * Returns the number of values that were not cached because they were larger than the region, or because the
+   * memory was held by values being read.
+   */
+  public long getRejectionCount() {
+    return rejectionCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return "OffHeapCache(" + regionName + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * Returns the memory of an evicted value to the free blocks, once nobody reads it any more.
+   */
+  void free(final OffHeapValue value) {
+    lock.lock();
+    try {
+      if (arena == null) {
+        // destroyed; the blocks are not reused
+        return;
+      }
+      int offset = value.offset;
+      int order = value.order;
+      allocatedBytes -= blockSize(order);
+      // merge the block with its buddy for as long as the buddy is free too
+      while (order < maximumOrder) {
+        int buddy = offset ^ blockSize(order);
+        if (!freeBlocks.get(order).remove(Integer.valueOf(buddy))) {
+          break;
+        }
+        offset = Math.min(offset, buddy);
+        order++;
+      }
+      freeBlocks.get(order).add(Integer.valueOf(offset));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void evict(final OffHeapValue value) {
+    values.remove(value.key, value);
+    usageOrder.remove(value.key);
+    storedBytes -= value.getLength();
+    if (value.evict()) {
+      free(value);
+    }
+  }
+
+  private Integer allocate(final int order) {
+    if (arena == null) {
+      return null;
+    }
+    for (int i = order; i <= maximumOrder; i++) {
+      LinkedHashSet<Integer> blocks = freeBlocks.get(i);
+      if (!blocks.isEmpty()) {
+        Integer offset = blocks.iterator().next();
+        blocks.remove(offset);
+        // split the block, keeping the lower half each time
+        while (i > order) {
+          i--;
+          freeBlocks.get(i).add(Integer.valueOf(offset.intValue() + blockSize(i)));
+        }
+        allocatedBytes += blockSize(order);
+        return offset;
+      }
+    }
+    return null;
+  }
+
+  private ByteBuffer block(final int offset, final int order) {
+    ByteBuffer block = arena.duplicate();
+    block.position(offset);
+    block.limit(offset + blockSize(order));
+    return block.slice();
+  }
+
+  private int orderOf(final int length) {
+    int order = 0;
+    while (blockSize(order) < length) {
+      order++;
+    }
+    return order;
+  }
+
+  private static int blockSize(final int order) {
+    return MINIMUM_BLOCK_SIZE << order;
+  }
+
+  private static void write(final Object value, final ByteBuffer block) {
+    if (value instanceof byte[]) {
+      block.put((byte[]) value);
+    } else if (value instanceof ByteBuffer) {
+      block.put(((ByteBuffer) value).duplicate());
+    } else {
+      try {
+        // written without the copy toByteArray() would make
+        ((ByteArrayOutputStream) value).writeTo(new ByteBufferOutputStream(block));
+      } catch (IOException e) {
+        throw new CacheException(e);
+      }
+    }
+  }
+
+  private static class ByteBufferOutputStream extends OutputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferOutputStream(final ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      buffer.put(b, off, len);
+    }
+  }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A value of an {@link OffHeapCache} region, read in place from off-heap memory.
+ * <p>
+ * The memory of a value is only reused once the value has been evicted and nobody is reading it: each read pins the
+ * value for its duration. A value evicted before it is read cannot be read any more; {@link #writeTo(OutputStream)},
+ * {@link #openStream()} and {@link #toByteArray()} then report it as missing, and callers should treat it as a cache
+ * miss. Holding on to an <code>OffHeapValue</code> holds no memory.
+ */
+public class OffHeapValue {
+
+  private final OffHeapCache cache;
+
+  final Object key;
+
+  final int offset;
+
+  final int order;
+
+  private final int length;
+
+  private final ByteBuffer block;
+
+  /**
+   * Number of readers, or -1 once the memory has been freed.
+   */
+  private final AtomicInteger pins = new AtomicInteger();
+
+  private volatile boolean evicted;
+
+  OffHeapValue(final OffHeapCache cache, final Object key, final int offset, final int order, final int length,
+      final ByteBuffer block) {
+    this.cache = cache;
+    this.key = key;
+    this.offset = offset;
+    this.order = order;
+    this.length = length;
+    this.block = block;
+  }
+
+  /**
+   * Returns the length of the value in bytes.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Writes the value to <code>out</code>, straight from off-heap memory.
+   *
+   * @return <code>false</code> if the value was evicted and nothing was written
+   */
+  public boolean writeTo(final OutputStream out) throws IOException {
+    if (!pin()) {
+      return false;
+    }
+    try {
+      ByteBuffer view = view();
+      // not closed, as that would close the stream
+      WritableByteChannel channel = Channels.newChannel(out);
+      while (view.hasRemaining()) {
+        channel.write(view);
+      }
+      return true;
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Returns a stream reading the value from off-heap memory. The memory of the value is not reused before the stream
+   * is closed, so the stream must be closed.
+   *
+   * @return the stream, or <code>null</code> if the value was evicted
+   */
+  public InputStream openStream() {
+    if (!pin()) {
+      return null;
+    }
+    return new ValueInputStream(view());
+  }
+
+  /**
+   * Returns a copy of the value on the heap.
+   *
+   * @return the copy, or <code>null</code> if the value was evicted
+   */
+  public byte[] toByteArray() {
+    if (!pin()) {
+      return null;
+    }
+    try {
+      byte[] bytes = new byte[length];
+      view().get(bytes);
+      return bytes;
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Marks the value evicted, and returns <code>true</code> if its memory can be freed now. Otherwise it is freed by
+   * the last reader.
+   */
+  boolean evict() {
+    evicted = true;
+    return pins.compareAndSet(0, -1);
+  }
+
+  private boolean pin() {
+    while (true) {
+      int count = pins.get();
+      if (count < 0) {
+        return false;
+      }
+      if (pins.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private void release() {
+    if ((pins.decrementAndGet() == 0) && evicted && pins.compareAndSet(0, -1)) {
+      cache.free(this);
+    }
+  }
+
+  private ByteBuffer view() {
+    ByteBuffer view = block.duplicate();
+    view.limit(length);
+    return view.asReadOnlyBuffer();
+  }
+
+  private class ValueInputStream extends InputStream {
+    private final ByteBuffer view;
+
+    private boolean closed;
+
+    ValueInputStream(final ByteBuffer view) {
+      this.view = view;
+    }
+
+    @Override
+    public int read() throws IOException {
+      // the memory may be reused once the stream is closed
+      return (!closed && view.hasRemaining()) ? (view.get() & 0xff) : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (closed || !view.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, view.remaining());
+      view.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+      int count = (int) Math.max(0L, Math.min(n, view.remaining()));
+      view.position(view.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return view.remaining();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        release();
+      }
+    }
+  }
+
+}
@@ -40,6 +40,8 @@ import org.pentaho.platform.api.data.IDBDatasourceService;
 import org.pentaho.platform.api.engine.ILogger;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.api.engine.PentahoSystemException;
+import org.pentaho.platform.engine.core.metrics.ExecutionMetrics;
+import org.pentaho.platform.engine.core.metrics.ExecutionSpan;
 import org.pentaho.platform.engine.core.system.IPentahoLoggingConnection;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.services.messages.Messages;
@@ -365,7 +367,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
       if (logger != null && logger.getLoggingLevel() == ILogger.DEBUG) {
         logger.debug("SQLConnection.executeQuery:" + query); //$NON-NLS-1$
       }      
-      resultSet = stmt.executeQuery(query);
+      resultSet = runQuery(stmt, query);
       
     } catch (Exception e) {
       // We're going to assume that the problem MIGHT be that a scrolling resultset isn't supported
@@ -379,7 +381,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
         if (logger != null && logger.getLoggingLevel() == ILogger.DEBUG) {
           logger.debug("SQLConnection.executeQuery(e):" + query); //$NON-NLS-1$
         }
-        resultSet = stmt.executeQuery(query);
+        resultSet = runQuery(stmt, query);
         setForcedForwardOnly(true);
       }
     }
@@ -470,7 +472,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
       for (int i = 0; i < parameters.size(); i++) {
         pStmt.setObject(i + 1, parameters.get(i));
       }
-      resultSet = pStmt.executeQuery();
+      resultSet = runQuery(pStmt);
       
     } catch (Exception e) {
       // attempt to remove the offending statement...
@@ -488,7 +490,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
         for (int i = 0; i < parameters.size(); i++) {
           pStmt.setObject(i + 1, parameters.get(i));
         }
-        resultSet = pStmt.executeQuery();
+        resultSet = runQuery(pStmt);
         setForcedForwardOnly(true);
      }
     }
@@ -500,6 +502,39 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
     return sqlResultSet;
   }
 
+  private static ResultSet runQuery(final Statement stmt, final String query) throws SQLException {
+    ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.JDBC, "executeQuery"); //$NON-NLS-1$
+    try {
+      return stmt.executeQuery(query);
+    } finally {
+      endStatement(span);
+    }
+  }
+
+  private static ResultSet runQuery(final PreparedStatement pStmt) throws SQLException {
+    ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.JDBC, "executePreparedQuery"); //$NON-NLS-1$
+    try {
+      return pStmt.executeQuery();
+    } finally {
+      endStatement(span);
+    }
+  }
+
+  private static int runUpdate(final Statement stmt, final String query) throws SQLException {
+    ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.JDBC, "executeUpdate"); //$NON-NLS-1$
+    try {
+      return stmt.executeUpdate(query);
+    } finally {
+      endStatement(span);
+    }
+  }
+
+  private static void endStatement(final ExecutionSpan span) {
+    long nanos = span.end();
+    ExecutionMetrics.increment(ExecutionMetrics.JDBC_STATEMENTS);
+    ExecutionMetrics.add(ExecutionMetrics.JDBC_TIME_MICROS, nanos / 1000L);
+  }
+
   public boolean preparedQueriesSupported() {
     return true;
   }
@@ -584,7 +619,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
       logger.debug("SQLConnection.execute:" + query); //$NON-NLS-1$
     }
     
-    int result = stmt.executeUpdate(query);
+    int result = runUpdate(stmt, query);
     lastQuery = query;
     return result;
   }
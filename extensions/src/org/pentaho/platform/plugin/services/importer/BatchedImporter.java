@@ -0,0 +1,292 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.plugin.services.importexport.IRepositoryImportLogger;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Hands bundles to an {@link IPlatformImporter} in batches. Each batch runs in one repository transaction, so the
+ * nodes of many files are written by a single JCR session instead of one transaction per file. A batch that fails
+ * for any reason is rolled back and its items are imported again one at a time, outside of the batch transaction, so
+ * that a bad file fails on its own exactly as it would without batching.
+ *
+ * <p>
+ * Only items that write nothing but repository content are batched, since a rollback cannot undo anything else (a
+ * published Mondrian schema or metadata domain, for example). Other items are imported on their own, outside of any
+ * batch.
+ * </p>
+ *
+ * <p>
+ * A logged import is batched as well. The importer normally logs a file that fails and carries on, which would leave
+ * the batch unaware that it has to roll back, so while a batch is being imported it rethrows instead (see
+ * {@link #isImportingBatch()}). The items of a failed batch are then replayed one at a time, outside of the batch,
+ * where each failure is logged on its own and the import carries on.
+ * </p>
+ *
+ * <p>
+ * Keeps throughput counters that are reported every {@code progressInterval} items and by {@link #finish()}, through
+ * the importer's {@link IRepositoryImportLogger} when the import is being logged. Not thread safe; used only by the
+ * thread running the import, which is the thread the repository session, the transaction and the import logger are
+ * bound to.
+ * </p>
+ */
+class BatchedImporter {
+
+  private static final Log log = LogFactory.getLog(BatchedImporter.class);
+
+  private static final ThreadLocal<Boolean> importingBatch = new ThreadLocal<Boolean>();
+
+  private final IPlatformImporter importer;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final int batchSize;
+
+  private final int progressInterval;
+
+  private final List<Item> batch = new ArrayList<Item>();
+
+  private final long startTime = System.currentTimeMillis();
+
+  private long fileCount;
+
+  private long folderCount;
+
+  private long byteCount;
+
+  private long batchCount;
+
+  private long replayedBatchCount;
+
+  private long lastReportedCount;
+
+  /**
+   * @param transactionTemplate
+   *          the template each batch runs in; if {@code null} every item is imported on its own
+   * @param batchSize
+   *          maximum number of items per transaction
+   * @param progressInterval
+   *          number of items between progress reports; {@code 0} reports only when finished
+   */
+  BatchedImporter(final IPlatformImporter importer, final TransactionTemplate transactionTemplate,
+      final int batchSize, final int progressInterval) {
+    this.importer = importer;
+    this.transactionTemplate = transactionTemplate;
+    this.batchSize = Math.max(1, batchSize);
+    this.progressInterval = progressInterval;
+  }
+
+  /**
+   * Queues an item, importing the current batch once it is full. An item that cannot be batched is imported at once,
+   * after the items queued before it.
+   */
+  public void add(final Item item) throws PlatformImportException, IOException {
+    if (!item.isRepositoryOnly()) {
+      flush();
+      batch.add(item);
+      flush();
+      return;
+    }
+    batch.add(item);
+    if (batch.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Imports the queued items. Every queued item is released, whether or not it was imported.
+   */
+  public void flush() throws PlatformImportException, IOException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      if (transactionTemplate == null || batch.size() == 1) {
+        importEach(batch);
+      } else {
+        try {
+          importInTransaction(batch);
+        } catch (RuntimeException e) {
+          // also covers a commit that failed because an import in the batch marked the transaction rollback-only
+          String message = "Batch of " + batch.size() + " files rolled back, importing them one at a time"; //$NON-NLS-1$ //$NON-NLS-2$
+          if (isLoggedImport()) {
+            importer.getRepositoryImportLogger().info(message);
+          }
+          log.debug(message, e);
+          replayedBatchCount++;
+          importEach(batch);
+        }
+      }
+      batchCount++;
+      for (Item item : batch) {
+        if (item.isFolder()) {
+          folderCount++;
+        } else {
+          fileCount++;
+          byteCount += item.getSize();
+        }
+      }
+    } finally {
+      for (Item item : batch) {
+        item.release();
+      }
+      batch.clear();
+    }
+    if (progressInterval > 0 && getItemCount() - lastReportedCount >= progressInterval) {
+      lastReportedCount = getItemCount();
+      report("Imported"); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Imports the remaining items and reports the totals.
+   */
+  public void finish() throws PlatformImportException, IOException {
+    flush();
+    report("Import finished:"); //$NON-NLS-1$
+  }
+
+  /**
+   * Releases queued items without importing them; for use when the import is abandoned.
+   */
+  public void discard() {
+    for (Item item : batch) {
+      item.release();
+    }
+    batch.clear();
+  }
+
+  private void importInTransaction(final List<Item> items) {
+    transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+      @Override
+      protected void doInTransactionWithoutResult(final TransactionStatus status) {
+        importingBatch.set(Boolean.TRUE);
+        try {
+          importEach(items);
+        } catch (PlatformImportException e) {
+          throw new BatchFailedException(e);
+        } catch (IOException e) {
+          throw new BatchFailedException(e);
+        } finally {
+          importingBatch.remove();
+        }
+      }
+    });
+  }
+
+  private void importEach(final List<Item> items) throws PlatformImportException, IOException {
+    for (Item item : items) {
+      importer.importFile(item.createBundle());
+    }
+  }
+
+  /**
+   * Returns whether the current thread is importing a batch, in which case an importer must throw, rather than log,
+   * the failure of a file so that the batch is rolled back. The failed batch is replayed outside of the batch.
+   */
+  static boolean isImportingBatch() {
+    return importingBatch.get() != null;
+  }
+
+  private boolean isLoggedImport() {
+    IRepositoryImportLogger importLogger = importer.getRepositoryImportLogger();
+    return importLogger != null && importLogger.hasLogger();
+  }
+
+  private void report(final String prefix) {
+    long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+    String message = prefix + " " + fileCount + " files (" + byteCount + " bytes) and " + folderCount //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        + " folders in " + elapsed + " ms, " + (fileCount * 1000 / elapsed) + " files/s; " + batchCount //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        + " batches, " + replayedBatchCount + " replayed one file at a time"; //$NON-NLS-1$ //$NON-NLS-2$
+    if (isLoggedImport()) {
+      importer.getRepositoryImportLogger().info(message);
+    } else {
+      log.info(message);
+    }
+  }
+
+  long getItemCount() {
+    return fileCount + folderCount;
+  }
+
+  long getFileCount() {
+    return fileCount;
+  }
+
+  long getFolderCount() {
+    return folderCount;
+  }
+
+  long getByteCount() {
+    return byteCount;
+  }
+
+  long getReplayedBatchCount() {
+    return replayedBatchCount;
+  }
+
+  /**
+   * A file or folder waiting to be imported.
+   */
+  interface Item {
+    /**
+     * Builds a new bundle for this item. Called a second time if the batch containing the item is replayed, so each
+     * call must return a bundle with a fresh input stream.
+     */
+    IPlatformImportBundle createBundle() throws IOException;
+
+    boolean isFolder();
+
+    /**
+     * Returns whether importing this item writes nothing but repository content, so that rolling back the batch
+     * transaction undoes the import entirely. Items for which this is {@code false} are not batched.
+     */
+    boolean isRepositoryOnly();
+
+    /**
+     * Returns the size of the content in bytes, for throughput reporting.
+     */
+    long getSize();
+
+    /**
+     * Releases any resources held by this item once it has been imported or abandoned.
+     */
+    void release();
+  }
+
+  /**
+   * Carries a checked import failure out of the transaction callback so that the batch is rolled back.
+   */
+  private static class BatchFailedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private BatchFailedException(final Throwable cause) {
+      super(cause);
+    }
+  }
+
+}
@@ -50,6 +50,14 @@ public class PentahoPlatformImporter implements IPlatformImporter {
 	  this.importHandlers.put(key, handler);
   }
   
+  /**
+   * Returns whether bundles of the given mime type are imported by a handler of their own rather than by the default
+   * handler.
+   */
+  public boolean hasHandler(String mime) {
+    return importHandlers.containsKey(mime);
+  }
+
   /**
    * this is the main method that uses the mime time (from Spring) to determine which handler to invoke.
    */
@@ -83,8 +91,9 @@ public class PentahoPlatformImporter implements IPlatformImporter {
       }
     } catch (Exception e) {
       //If we are doing a logged import then we do not want to fail on a single file
-      //so log the error and keep going.
-      if (repositoryImportLogger != null && repositoryImportLogger.hasLogger()){
+      //so log the error and keep going. Within a batch the error is thrown so that the batch is rolled back,
+      //its files are then imported one at a time and the error is logged then.
+      if (repositoryImportLogger != null && repositoryImportLogger.hasLogger() && !BatchedImporter.isImportingBatch()){
         repositoryImportLogger.error(e);
       } else {
         if (e instanceof PlatformImportException) {
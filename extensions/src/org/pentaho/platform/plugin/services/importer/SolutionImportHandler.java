@@ -19,16 +19,31 @@
 
 package org.pentaho.platform.plugin.services.importer;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -46,99 +61,44 @@ import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.repository.messages.Messages;
 import org.pentaho.platform.repository2.unified.exportManifest.ExportManifest;
 import org.pentaho.platform.repository2.unified.exportManifest.ExportManifestEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 
+/**
+ * Imports the content of a zip, such as a repository export, as a pipeline:
+ * <ol>
+ * <li>entries are read from the zip one at a time and spooled to temporary files;</li>
+ * <li>up to {@code prepareDepth} entries are prepared ahead on {@code prepareThreads} threads (legacy WAQR conversion,
+ * mime type and ACL resolution, reading locale properties);</li>
+ * <li>prepared entries are taken in zip order and written to the repository in batches of {@code batchSize} files per
+ * transaction, see {@link BatchedImporter}. Missing parent folders are created ahead of the files they contain.</li>
+ * </ol>
+ * Only the entries in flight are held on disk at a time, except when ACLs or owners are imported: the manifest is the
+ * last entry of an export, so then the whole zip is spooled before the first entry is imported.
+ */
 public class SolutionImportHandler implements IPlatformImportHandler {
 
 	private static final Log log = LogFactory.getLog(SolutionImportHandler.class);
+	private static final String MANIFEST_NAME = "exportManifest.xml";
+	private static final int DEFAULT_BATCH_SIZE = 50;
+	private static final int DEFAULT_PREPARE_THREADS = 2;
+	private static final int DEFAULT_PREPARE_DEPTH = 32;
+	private static final int DEFAULT_PROGRESS_INTERVAL = 500;
+	private static final AtomicInteger threadCount = new AtomicInteger();
 	private IPlatformImportMimeResolver mimeResolver;
 	private List<String> blackList;
 	private List<String> whiteList;
-	private ExportManifest manifest;
+	private TransactionTemplate transactionTemplate;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int prepareThreads = DEFAULT_PREPARE_THREADS;
+	private int prepareDepth = DEFAULT_PREPARE_DEPTH;
+	private int progressInterval = DEFAULT_PROGRESS_INTERVAL;
 
 	public SolutionImportHandler(IPlatformImportMimeResolver mimeResolver) {
 		this.mimeResolver = mimeResolver;
 	}
 
 	public void importFile(IPlatformImportBundle bundle) throws PlatformImportException, DomainIdNullException, DomainAlreadyExistsException, DomainStorageException, IOException {
-
-		RepositoryFileImportBundle importBundle = (RepositoryFileImportBundle) bundle;
-		ZipInputStream zipImportStream = new ZipInputStream(bundle.getInputStream());
-		SolutionRepositoryImportSource importSource = new SolutionRepositoryImportSource(zipImportStream);
-		LocaleFilesProcessor localeFilesProcessor = new LocaleFilesProcessor();
-
-		IPlatformImporter importer = PentahoSystem.get(IPlatformImporter.class);
-		for (IRepositoryFileBundle file : importSource.getFiles()) {
-			String fileName = file.getFile().getName();
-			RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
-			String repositoryFilePath = RepositoryFilenameUtils.concat(PentahoPlatformImporter.computeBundlePath(file.getPath()), fileName);
-
-			// Validate against importing system related artifacts.
-			if (isSystemPath(repositoryFilePath)) {
-				log.trace("Skipping [" + repositoryFilePath + "], it is in admin / system folders");
-				continue;
-			}
-
-			InputStream bundleInputStream = null;
-			if (file.getFile().isFolder()) {
-				bundleBuilder.mime("text/directory");
-				bundleBuilder.file(file.getFile());
-				fileName = repositoryFilePath;
-				repositoryFilePath = importBundle.getPath();
-			} else {
-				byte[] bytes = IOUtils.toByteArray(file.getInputStream());
-				bundleInputStream = new ByteArrayInputStream(bytes);
-				// If is locale file store it for later processing.
-				if (localeFilesProcessor.isLocaleFile(file, importBundle.getPath(), bytes)) {
-					continue;
-				}
-				bundleBuilder.input(bundleInputStream);
-				bundleBuilder.mime(mimeResolver.resolveMimeForFileName(fileName));
-				String filePath = (file.getPath().equals("/") || file.getPath().equals("\\")) ? "" : file.getPath();
-				repositoryFilePath = RepositoryFilenameUtils.concat(importBundle.getPath(), filePath);
-			}
-
-			bundleBuilder.name(fileName);
-			bundleBuilder.path(repositoryFilePath);
-			String sourcePath = file.getPath().startsWith("/") ? file.getPath().substring(1) : file.getPath();
-			sourcePath = RepositoryFilenameUtils.concat(sourcePath, fileName);
-
-			bundleBuilder.charSet(bundle.getCharset());
-			bundleBuilder.overwriteFile(bundle.overwriteInRepository());
-			bundleBuilder.hidden(isBlackListed(fileName));
-			bundleBuilder.applyAclSettings(bundle.isApplyAclSettings());
-			bundleBuilder.retainOwnership(bundle.isRetainOwnership());
-			bundleBuilder.overwriteAclSettings(bundle.isOverwriteAclSettings());
-			bundleBuilder.acl(processAclForFile(bundle, sourcePath));
-			IPlatformImportBundle platformImportBundle = bundleBuilder.build();
-			importer.importFile(platformImportBundle);
-
-			if (bundleInputStream != null) {
-				bundleInputStream.close();
-				bundleInputStream = null;
-			}
-		}
-		// Process locale files.
-		localeFilesProcessor.processLocaleFiles(importer);
-	}
-
-	private RepositoryFileAcl processAclForFile(IPlatformImportBundle bundle, String filePath) {
-		// If we are not overwriting ACL's or owners then make sure a null gets in the bundle.
-		// If we are writing ACL's we'll have to check later in RepositoryFileImportHandler whether to overwrite
-		// based on the isOverwriteAcl setting and whether we are creating or updating the RepositoryFile.
-		RepositoryFileAcl acl = null;
-		if (bundle.isApplyAclSettings() || !bundle.isRetainOwnership()) {
-			try {
-				if (manifest != null) {
-					ExportManifestEntity entity = manifest.getExportManifestEntity(filePath);
-					if (entity != null) {
-						acl = entity.getRepositoryFileAcl();
-					}
-				}
-			} catch (Exception e) {
-				log.trace(e);
-			}
-		}
-		return acl;
+		new SolutionImport((RepositoryFileImportBundle) bundle).run();
 	}
 
 	private boolean isSystemPath(final String bundlePath) {
@@ -169,84 +129,478 @@ public class SolutionImportHandler implements IPlatformImportHandler {
 		this.whiteList = whiteList;
 	}
 
-	class SolutionRepositoryImportSource {
-		private ZipInputStream zipInputStream;
-		private List<IRepositoryFileBundle> files;
+	/**
+	 * Sets the template each batch of files is written in. Without one every file is imported in its own transaction.
+	 */
+	public void setTransactionTemplate(TransactionTemplate transactionTemplate) {
+		this.transactionTemplate = transactionTemplate;
+	}
 
-		public SolutionRepositoryImportSource(final ZipInputStream zipInputStream) {
-			this.zipInputStream = zipInputStream;
-			this.files = new ArrayList<IRepositoryFileBundle>();
-			initialize();
+	/**
+	 * Sets the maximum number of files and folders written per transaction. Defaults to {@value #DEFAULT_BATCH_SIZE}.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Sets the number of threads preparing entries ahead of the import; {@code 0} prepares each entry on the importing
+	 * thread. Defaults to {@value #DEFAULT_PREPARE_THREADS}.
+	 */
+	public void setPrepareThreads(int prepareThreads) {
+		this.prepareThreads = prepareThreads;
+	}
+
+	/**
+	 * Sets the maximum number of entries read from the zip ahead of the one being imported. Bounds the temporary disk
+	 * space used by a streaming import. Defaults to {@value #DEFAULT_PREPARE_DEPTH}.
+	 */
+	public void setPrepareDepth(int prepareDepth) {
+		this.prepareDepth = prepareDepth;
+	}
+
+	/**
+	 * Sets the number of imported files and folders between progress messages in the import log; {@code 0} logs only
+	 * the totals. Defaults to {@value #DEFAULT_PROGRESS_INTERVAL}.
+	 */
+	public void setProgressInterval(int progressInterval) {
+		this.progressInterval = progressInterval;
+	}
+
+	/**
+	 * The state of one import. The handler itself is shared by concurrent imports.
+	 */
+	private class SolutionImport {
+		private final RepositoryFileImportBundle importBundle;
+		private final IPlatformImporter importer;
+		private final LocaleFilesProcessor localeFilesProcessor = new LocaleFilesProcessor();
+		private final Set<String> knownFolders = new HashSet<String>();
+		private ExportManifest manifest;
+
+		private SolutionImport(RepositoryFileImportBundle importBundle) {
+			this.importBundle = importBundle;
+			this.importer = PentahoSystem.get(IPlatformImporter.class);
+		}
+
+		private boolean isAclImport() {
+			return importBundle.isApplyAclSettings() || !importBundle.isRetainOwnership();
 		}
 
-		protected void initialize() {
+		private void run() throws PlatformImportException, IOException {
+			ZipInputStream zipImportStream = new ZipInputStream(importBundle.getInputStream());
+			SolutionRepositoryImportSource importSource = new SolutionRepositoryImportSource(zipImportStream, isAclImport());
+			PreparationQueue preparationQueue = new PreparationQueue(prepareThreads, prepareDepth);
+			BatchedImporter batchedImporter = new BatchedImporter(importer, transactionTemplate, batchSize, progressInterval);
 			try {
-				ZipEntry entry = zipInputStream.getNextEntry();
-				while (entry != null) {
-					final String entryName = RepositoryFilenameUtils.separatorsToRepository(entry.getName());
-					File tempFile = null;
-					boolean isDir = entry.isDirectory();
-					if (!isDir) {
-						if (!isWhiteListed(entryName)) {
-							zipInputStream.closeEntry();
-							entry = zipInputStream.getNextEntry();
-							continue;
-						}
-						tempFile = File.createTempFile("zip", null);
-						tempFile.deleteOnExit();
-						FileOutputStream fos = new FileOutputStream(tempFile);
-						if (WAQRFilesMigrationHelper.isOldXWAQRFile(entryName)) {
-							WAQRFilesMigrationHelper.convertToNewXWAQR(zipInputStream, fos);
-						} else if (WAQRFilesMigrationHelper.isOldXreportSpecFile(entryName)) {
-							WAQRFilesMigrationHelper.convertToNewXreportSpec(zipInputStream, fos);
-						} else {
-							IOUtils.copy(zipInputStream, fos);
+				ImportItem item;
+				while ((item = importSource.next()) != null) {
+					// Validate against importing system related artifacts.
+					if (isSystemPath(item.relativePath)) {
+						log.trace("Skipping [" + item.relativePath + "], it is in admin / system folders");
+						item.release();
+						continue;
+					}
+					preparationQueue.add(item);
+					while (preparationQueue.isFull()) {
+						importItem(preparationQueue.take(), batchedImporter);
+					}
+				}
+				while (!preparationQueue.isEmpty()) {
+					importItem(preparationQueue.take(), batchedImporter);
+				}
+				batchedImporter.finish();
+			} finally {
+				preparationQueue.close();
+				batchedImporter.discard();
+				importSource.close();
+			}
+			// Process locale files.
+			localeFilesProcessor.processLocaleFiles(importer);
+		}
+
+		private void importItem(ImportItem item, BatchedImporter batchedImporter) throws PlatformImportException, IOException {
+			// If is locale file store it for later processing.
+			if (item.localeBytes != null && localeFilesProcessor.isLocaleFile(item.file, importBundle.getPath(), item.localeBytes)) {
+				item.release();
+				return;
+			}
+			String parentPath = null;
+			for (String folderName : StringUtils.split(PentahoPlatformImporter.computeBundlePath(item.file.getPath()), RepositoryFile.SEPARATOR)) {
+				String folderPath = parentPath == null ? folderName : RepositoryFilenameUtils.concat(parentPath, folderName);
+				if (knownFolders.add(folderPath)) {
+					// the zip has no entry for this folder, or not before this one
+					RepositoryFile folder = new RepositoryFile.Builder(folderName).folder(true).build();
+					String folderParentDir = parentPath == null ? RepositoryFile.SEPARATOR : parentPath + RepositoryFile.SEPARATOR;
+					ImportItem folderItem = new ImportItem(new RepositoryFileBundle(folder, null, folderParentDir, null, "UTF-8", null), null, null);
+					folderItem.prepare();
+					batchedImporter.add(folderItem);
+				}
+				parentPath = folderPath;
+			}
+			if (item.isFolder() && !knownFolders.add(item.relativePath)) {
+				item.release();
+				return;
+			}
+			batchedImporter.add(item);
+		}
+
+		private RepositoryFileAcl processAclForFile(String filePath) {
+			// If we are not overwriting ACL's or owners then make sure a null gets in the bundle.
+			// If we are writing ACL's we'll have to check later in RepositoryFileImportHandler whether to overwrite
+			// based on the isOverwriteAcl setting and whether we are creating or updating the RepositoryFile.
+			RepositoryFileAcl acl = null;
+			if (isAclImport()) {
+				try {
+					if (manifest != null) {
+						ExportManifestEntity entity = manifest.getExportManifestEntity(filePath);
+						if (entity != null) {
+							acl = entity.getRepositoryFileAcl();
 						}
-						fos.close();
 					}
-					File file = new File(entryName);
-					RepositoryFile repoFile = new RepositoryFile.Builder(WAQRFilesMigrationHelper.convertToNewExtension(file.getName())).folder(isDir).hidden(WAQRFilesMigrationHelper.hideFileCheck(file.getName())).build();
-					String parentDir = new File(entryName).getParent() == null ? RepositoryFile.SEPARATOR : new File(entryName).getParent() + RepositoryFile.SEPARATOR;
-					IRepositoryFileBundle repoFileBundle = new RepositoryFileBundle(repoFile, null, parentDir, tempFile, "UTF-8", null);
+				} catch (Exception e) {
+					log.trace(e);
+				}
+			}
+			return acl;
+		}
+
+		/**
+		 * A zip entry on its way into the repository. {@link #prepare()} runs on a preparation thread; it touches neither
+		 * the repository nor the session.
+		 */
+		private class ImportItem implements BatchedImporter.Item, Callable<ImportItem> {
+			private final IRepositoryFileBundle file;
+			private final String entryName;
+			private final String relativePath;
+			private final String name;
+			private final String path;
+			private final String sourcePath;
+			private final List<InputStream> openStreams = new ArrayList<InputStream>();
+			private File content;
+			private String mimeType;
+			private RepositoryFileAcl acl;
+			private byte[] localeBytes;
+			private FutureTask<ImportItem> preparation;
+
+			/**
+			 * @param file
+			 *          the entry
+			 * @param content
+			 *          the spooled and not yet converted content of the zip entry, or {@code null} for a folder
+			 * @param entryName
+			 *          the name of the entry in the zip, or {@code null} for a folder without one
+			 */
+			private ImportItem(IRepositoryFileBundle file, File content, String entryName) {
+				this.file = file;
+				this.content = content;
+				this.entryName = entryName;
+				String fileName = file.getFile().getName();
+				relativePath = RepositoryFilenameUtils.concat(PentahoPlatformImporter.computeBundlePath(file.getPath()), fileName);
+				if (file.getFile().isFolder()) {
+					name = relativePath;
+					path = importBundle.getPath();
+				} else {
+					name = fileName;
+					String filePath = (file.getPath().equals("/") || file.getPath().equals("\\")) ? "" : file.getPath();
+					path = RepositoryFilenameUtils.concat(importBundle.getPath(), filePath);
+				}
+				String source = file.getPath().startsWith("/") ? file.getPath().substring(1) : file.getPath();
+				sourcePath = RepositoryFilenameUtils.concat(source, name);
+			}
+
+			public ImportItem call() throws IOException {
+				prepare();
+				return this;
+			}
+
+			private void prepare() throws IOException {
+				if (isFolder()) {
+					mimeType = "text/directory";
+				} else {
+					if (WAQRFilesMigrationHelper.isOldXWAQRFile(entryName) || WAQRFilesMigrationHelper.isOldXreportSpecFile(entryName)) {
+						convertLegacyContent();
+					}
+					mimeType = mimeResolver.resolveMimeForFileName(name);
+					if (name.endsWith(".properties")) {
+						localeBytes = FileUtils.readFileToByteArray(content);
+					}
+				}
+				acl = processAclForFile(sourcePath);
+			}
 
-					if (file.getName().equals("exportManifest.xml")) {
-						initializeAclManifest(repoFileBundle);
+			private void convertLegacyContent() throws IOException {
+				File converted = File.createTempFile("zip", null);
+				InputStream in = new FileInputStream(content);
+				OutputStream out = new FileOutputStream(converted);
+				try {
+					if (WAQRFilesMigrationHelper.isOldXWAQRFile(entryName)) {
+						WAQRFilesMigrationHelper.convertToNewXWAQR(in, out);
 					} else {
-						files.add(repoFileBundle);
+						WAQRFilesMigrationHelper.convertToNewXreportSpec(in, out);
 					}
-					zipInputStream.closeEntry();
-					entry = zipInputStream.getNextEntry();
+				} catch (RuntimeException e) {
+					IOUtils.closeQuietly(out);
+					FileUtils.deleteQuietly(converted);
+					throw e;
+				} finally {
+					IOUtils.closeQuietly(in);
+					IOUtils.closeQuietly(out);
 				}
-				zipInputStream.close();
-			} catch (IOException exception) {
-				final String errorMessage = Messages.getInstance().getErrorString("", exception.getLocalizedMessage());
-				log.trace(errorMessage);
+				FileUtils.deleteQuietly(content);
+				content = converted;
 			}
-		}
 
-		private void initializeAclManifest(IRepositoryFileBundle file) {
-			try {
-				byte[] bytes = IOUtils.toByteArray(file.getInputStream());
-				ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-				manifest = ExportManifest.fromXml(in);
-			} catch (Exception e) {
-				log.trace(e);
+			public IPlatformImportBundle createBundle() throws IOException {
+				RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
+				if (isFolder()) {
+					bundleBuilder.file(file.getFile());
+				} else {
+					InputStream bundleInputStream = new BufferedInputStream(new FileInputStream(content));
+					openStreams.add(bundleInputStream);
+					bundleBuilder.input(bundleInputStream);
+				}
+				bundleBuilder.mime(mimeType);
+				bundleBuilder.name(name);
+				bundleBuilder.path(path);
+				bundleBuilder.charSet(importBundle.getCharset());
+				bundleBuilder.overwriteFile(importBundle.overwriteInRepository());
+				bundleBuilder.hidden(isBlackListed(name));
+				bundleBuilder.applyAclSettings(importBundle.isApplyAclSettings());
+				bundleBuilder.retainOwnership(importBundle.isRetainOwnership());
+				bundleBuilder.overwriteAclSettings(importBundle.isOverwriteAclSettings());
+				bundleBuilder.acl(acl);
+				return bundleBuilder.build();
+			}
+
+			public boolean isFolder() {
+				return file.getFile().isFolder();
+			}
+
+			public boolean isRepositoryOnly() {
+				// a file with a handler of its own may publish more than repository content
+				return isFolder() || (mimeType != null && importer instanceof PentahoPlatformImporter
+						&& !((PentahoPlatformImporter) importer).hasHandler(mimeType));
+			}
+
+			public long getSize() {
+				return content != null ? content.length() : 0;
+			}
+
+			public void release() {
+				for (InputStream in : openStreams) {
+					IOUtils.closeQuietly(in);
+				}
+				openStreams.clear();
+				if (content != null) {
+					FileUtils.deleteQuietly(content);
+					content = null;
+				}
 			}
 		}
 
-		private boolean isWhiteListed(String fileName) {
-			boolean isWhiteListed = false;
-			for (String extension : whiteList) {
-				if (fileName.endsWith(extension)) {
-					isWhiteListed = true;
-					break;
+		/**
+		 * Prepares up to {@code depth} items ahead of the importing thread and hands them back in the order they were added.
+		 */
+		private class PreparationQueue {
+			private final ExecutorService executor;
+			private final int depth;
+			private final LinkedList<ImportItem> pending = new LinkedList<ImportItem>();
+
+			private PreparationQueue(int threads, int depth) {
+				this.depth = Math.max(1, depth);
+				if (threads > 0) {
+					executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+						public Thread newThread(final Runnable r) {
+							Thread t = new Thread(r, "SolutionImportHandler-" + threadCount.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+				} else {
+					executor = null;
+				}
+			}
+
+			private void add(ImportItem item) {
+				item.preparation = new FutureTask<ImportItem>(item);
+				pending.addLast(item);
+				if (executor != null) {
+					executor.execute(item.preparation);
+				}
+			}
+
+			private boolean isFull() {
+				return pending.size() >= depth;
+			}
+
+			private boolean isEmpty() {
+				return pending.isEmpty();
+			}
+
+			private ImportItem take() throws IOException {
+				ImportItem item = pending.removeFirst();
+				if (executor == null) {
+					item.preparation.run();
+				}
+				try {
+					return item.preparation.get();
+				} catch (InterruptedException e) {
+					item.release();
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				} catch (ExecutionException e) {
+					item.release();
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					}
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					}
+					if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					IOException ioe = new IOException(cause.getMessage());
+					ioe.initCause(cause);
+					throw ioe;
+				}
+			}
+
+			/**
+			 * Cancels the items that were not taken and releases their content.
+			 */
+			private void close() {
+				for (ImportItem item : pending) {
+					item.preparation.cancel(false);
+				}
+				for (ImportItem item : pending) {
+					try {
+						// an item being prepared is left to finish so that its converted content is not leaked
+						item.preparation.get();
+					} catch (Exception e) {
+						// cancelled or failed
+					}
+					item.release();
+				}
+				pending.clear();
+				if (executor != null) {
+					executor.shutdownNow();
 				}
 			}
-			return isWhiteListed;
 		}
 
-		public List<IRepositoryFileBundle> getFiles() {
-			return this.files;
+		/**
+		 * Reads the zip one entry at a time, spooling the content of each whitelisted entry to a temporary file. When
+		 * {@code readAhead} is set the whole zip is read by the first call to {@link #next()} so that the manifest, which
+		 * is the last entry of an export, is known before any entry is imported.
+		 */
+		class SolutionRepositoryImportSource {
+			private final ZipInputStream zipInputStream;
+			private final boolean readAhead;
+			private LinkedList<ImportItem> spooled;
+			private boolean finished;
+
+			public SolutionRepositoryImportSource(final ZipInputStream zipInputStream, final boolean readAhead) {
+				this.zipInputStream = zipInputStream;
+				this.readAhead = readAhead;
+			}
+
+			/**
+			 * Returns the next entry, or {@code null} at the end of the zip.
+			 */
+			public ImportItem next() throws IOException {
+				if (readAhead && spooled == null) {
+					spooled = new LinkedList<ImportItem>();
+					ImportItem item;
+					while ((item = readNext()) != null) {
+						spooled.add(item);
+					}
+				}
+				if (spooled != null) {
+					return spooled.isEmpty() ? null : spooled.removeFirst();
+				}
+				return readNext();
+			}
+
+			private ImportItem readNext() throws IOException {
+				if (finished) {
+					return null;
+				}
+				try {
+					ZipEntry entry;
+					while ((entry = zipInputStream.getNextEntry()) != null) {
+						final String entryName = RepositoryFilenameUtils.separatorsToRepository(entry.getName());
+						File tempFile = null;
+						boolean isDir = entry.isDirectory();
+						if (!isDir) {
+							if (!isWhiteListed(entryName)) {
+								zipInputStream.closeEntry();
+								continue;
+							}
+							tempFile = File.createTempFile("zip", null);
+							FileOutputStream fos = new FileOutputStream(tempFile);
+							try {
+								IOUtils.copy(zipInputStream, fos);
+							} finally {
+								fos.close();
+							}
+						}
+						zipInputStream.closeEntry();
+						File file = new File(entryName);
+						if (file.getName().equals(MANIFEST_NAME)) {
+							if (readAhead) {
+								initializeAclManifest(tempFile);
+							}
+							FileUtils.deleteQuietly(tempFile);
+							continue;
+						}
+						RepositoryFile repoFile = new RepositoryFile.Builder(WAQRFilesMigrationHelper.convertToNewExtension(file.getName())).folder(isDir).hidden(WAQRFilesMigrationHelper.hideFileCheck(file.getName())).build();
+						String parentDir = new File(entryName).getParent() == null ? RepositoryFile.SEPARATOR : new File(entryName).getParent() + RepositoryFile.SEPARATOR;
+						IRepositoryFileBundle repoFileBundle = new RepositoryFileBundle(repoFile, null, parentDir, tempFile, "UTF-8", null);
+						return new ImportItem(repoFileBundle, tempFile, entryName);
+					}
+				} catch (IOException exception) {
+					final String errorMessage = Messages.getInstance().getErrorString("", exception.getLocalizedMessage());
+					log.trace(errorMessage);
+				}
+				close();
+				return null;
+			}
+
+			private void initializeAclManifest(File file) {
+				try {
+					byte[] bytes = FileUtils.readFileToByteArray(file);
+					ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+					manifest = ExportManifest.fromXml(in);
+				} catch (Exception e) {
+					log.trace(e);
+				}
+			}
+
+			private boolean isWhiteListed(String fileName) {
+				boolean isWhiteListed = false;
+				for (String extension : whiteList) {
+					if (fileName.endsWith(extension)) {
+						isWhiteListed = true;
+						break;
+					}
+				}
+				return isWhiteListed;
+			}
+
+			/**
+			 * Closes the zip and deletes the content of entries that were read ahead but not returned.
+			 */
+			public void close() {
+				finished = true;
+				IOUtils.closeQuietly(zipInputStream);
+				if (spooled != null) {
+					for (ImportItem item : spooled) {
+						item.release();
+					}
+					spooled.clear();
+				}
+			}
 		}
 	}
 }
@@ -27,6 +27,7 @@ import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedReposi
 
 import java.io.*;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -108,53 +109,102 @@ public class Exporter {
     File zipFile = File.createTempFile("repoExport", ".zip");
     zipFile.deleteOnExit();
 
+    OutputStream os = new FileOutputStream(zipFile);
+    try {
+      doExportAsZip(exportRepositoryFile, os);
+    } finally {
+      os.close();
+    }
+    return zipFile;
+  }
+
+  /**
+   * Writes the zip straight to the given output stream while the repository is still being walked; file content is
+   * fetched ahead by a {@link ZipEntryPrefetcher}. The output stream is finished but not closed.
+   *
+   * @param exportRepositoryFile
+   * @param outputStream
+   * @throws java.io.IOException
+   */
+  public void doExportAsZip(RepositoryFile exportRepositoryFile, OutputStream outputStream) throws IOException{
     filePath = new File(repoPath).getParent();
     if (exportRepositoryFile == null) {
       throw new FileNotFoundException(Messages.getInstance().getErrorString("Exporter.ERROR_0001_INVALID_SOURCE_DIRECTORY", repoPath));
     }
 
-    ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile));
-    if (exportRepositoryFile.isFolder()) {  // Handle recursive export
-      ZipEntry entry = new ZipEntry(exportRepositoryFile.getPath().substring(filePath.length() + 1) + "/");
-      zos.putNextEntry(entry);  	
-      exportDirectoryAsZip(exportRepositoryFile, zos);
-    } else {
-      exportFileAsZip(exportRepositoryFile, zos);
+    ZipOutputStream zos = new ZipOutputStream(outputStream);
+    ZipEntryPrefetcher prefetcher = new ZipEntryPrefetcher(zos);
+    try {
+      if (exportRepositoryFile.isFolder()) {  // Handle recursive export
+        addFolderEntry(exportRepositoryFile, prefetcher);
+        exportDirectoryAsZip(exportRepositoryFile, prefetcher);
+      } else {
+        exportFileAsZip(exportRepositoryFile, prefetcher);
+      }
+      prefetcher.flush();
+    } finally {
+      prefetcher.close();
     }
 
-    zos.close();
-    return zipFile;
+    zos.finish();
   }
   
   /**
    * @param repositoryDir
-   * @param zos
+   * @param prefetcher
    */
-  private void exportDirectoryAsZip(RepositoryFile repositoryDir, ZipOutputStream zos) throws IOException {
+  private void exportDirectoryAsZip(RepositoryFile repositoryDir, ZipEntryPrefetcher prefetcher) throws IOException {
     List<RepositoryFile> children = unifiedRepository.getChildren(repositoryDir.getId());
     for (RepositoryFile repoFile : children) {
       if (repoFile.isFolder()) {
-    	ZipEntry entry = new ZipEntry(repoFile.getPath().substring(filePath.length() + 1) + "/");
-    	zos.putNextEntry(entry);  
-        exportDirectoryAsZip(repoFile, zos);
+        addFolderEntry(repoFile, prefetcher);
+        exportDirectoryAsZip(repoFile, prefetcher);
       } else {
-        exportFileAsZip(repoFile, zos);
+        exportFileAsZip(repoFile, prefetcher);
       }
     }
   }
 
+  private void addFolderEntry(RepositoryFile repositoryDir, ZipEntryPrefetcher prefetcher) throws IOException {
+    final String entryName = repositoryDir.getPath().substring(filePath.length() + 1) + "/";
+    prefetcher.add(new ZipEntryPrefetcher.EntryWriter<Void>() {
+      @Override
+      public void write(ZipOutputStream zos, Void content) throws IOException {
+        ZipEntry entry = new ZipEntry(entryName);
+        zos.putNextEntry(entry);
+      }
+    });
+  }
+
   /**
    * @param exportRepositoryFile
-   * @param zos
+   * @param prefetcher
    */
-  private void exportFileAsZip(RepositoryFile exportRepositoryFile, ZipOutputStream zos) throws IOException {
-    ZipEntry entry = new ZipEntry(exportRepositoryFile.getPath().substring(filePath.length() + 1));
-    zos.putNextEntry(entry);
-    SimpleRepositoryFileData repoFileData = unifiedRepository.getDataForRead(exportRepositoryFile.getId(), SimpleRepositoryFileData.class);
-    InputStream is = repoFileData.getStream();
-    IOUtils.copy(is, zos);
-    zos.closeEntry();
-    is.close();
+  private void exportFileAsZip(final RepositoryFile exportRepositoryFile, ZipEntryPrefetcher prefetcher) throws IOException {
+    final String entryName = exportRepositoryFile.getPath().substring(filePath.length() + 1);
+    prefetcher.add(new Callable<InputStream>() {
+      public InputStream call() throws IOException {
+        SimpleRepositoryFileData repoFileData = unifiedRepository.getDataForRead(exportRepositoryFile.getId(), SimpleRepositoryFileData.class);
+        return ZipEntryPrefetcher.buffer(repoFileData.getStream());
+      }
+    }, new ZipEntryPrefetcher.EntryWriter<InputStream>() {
+      @Override
+      public void write(ZipOutputStream zos, InputStream is) throws IOException {
+        try {
+          ZipEntry entry = new ZipEntry(entryName);
+          zos.putNextEntry(entry);
+          IOUtils.copy(is, zos);
+          zos.closeEntry();
+        } finally {
+          is.close();
+        }
+      }
+
+      @Override
+      public void discard(InputStream is) {
+        IOUtils.closeQuietly(is);
+      }
+    });
   }
 
   /**
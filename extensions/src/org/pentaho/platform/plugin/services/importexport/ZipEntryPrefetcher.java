@@ -0,0 +1,337 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.plugin.services.importexport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.springframework.security.context.SecurityContext;
+import org.springframework.security.context.SecurityContextHolder;
+
+/**
+ * Writes zip entries in the order they are added while the content of up to {@code depth} entries is fetched ahead
+ * on a small pool, so that repository latency overlaps with compression and with writing to the client. Fetches run
+ * as the session and authentication of the thread that created this prefetcher. All exports share one pool of
+ * {@value #THREADS_SETTING} threads, so the number of fetching threads does not grow with the number of exports.
+ *
+ * <p>
+ * Not thread safe; all methods except the fetches themselves are called from the thread that walks the tree. Always
+ * {@link #close()} in a {@code finally} block.
+ * </p>
+ */
+class ZipEntryPrefetcher {
+
+  // ~ Static fields/initializers ======================================================================================
+
+  private static final Log logger = LogFactory.getLog(ZipEntryPrefetcher.class);
+
+  public static final String THREADS_SETTING = "export-prefetch-threads"; //$NON-NLS-1$
+
+  public static final String DEPTH_SETTING = "export-prefetch-depth"; //$NON-NLS-1$
+
+  private static final int DEFAULT_THREADS = 4;
+
+  private static final int DEFAULT_DEPTH = 16;
+
+  /**
+   * Content up to this size is read into memory by the fetching thread; larger content keeps streaming from the
+   * repository for the remainder. Bounds memory to {@code depth * MAX_BUFFERED_BYTES} per export.
+   */
+  static final int MAX_BUFFERED_BYTES = 256 * 1024;
+
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  private static Executor sharedExecutor;
+
+  private static boolean sharedExecutorCreated;
+
+  // ~ Instance fields =================================================================================================
+
+  private final ZipOutputStream zos;
+
+  private final int depth;
+
+  private final Executor executor;
+
+  private final IPentahoSession session;
+
+  private final SecurityContext securityContext;
+
+  private final LinkedList<PendingEntry<?>> pending = new LinkedList<PendingEntry<?>>();
+
+  // ~ Constructors ====================================================================================================
+
+  /**
+   * Fetches on the shared pool and uses the {@value #DEPTH_SETTING} system setting.
+   */
+  public ZipEntryPrefetcher(final ZipOutputStream zos) {
+    this(zos, getSharedExecutor(), getIntSetting(DEPTH_SETTING, DEFAULT_DEPTH));
+  }
+
+  /**
+   * @param executor
+   *          runs the fetches; {@code null} fetches each entry on the calling thread just before writing it
+   * @param depth
+   *          maximum number of entries fetched ahead of the one being written
+   */
+  public ZipEntryPrefetcher(final ZipOutputStream zos, final Executor executor, final int depth) {
+    this.zos = zos;
+    this.depth = Math.max(1, depth);
+    this.session = PentahoSessionHolder.getSession();
+    this.securityContext = SecurityContextHolder.getContext();
+    this.executor = executor;
+  }
+
+  // ~ Methods =========================================================================================================
+
+  /**
+   * Queues an entry. {@code fetch} runs on the pool; {@code writer} runs on this thread, in the order entries were
+   * added. Blocks writing earlier entries while more than {@code depth} entries are queued.
+   */
+  public <T> void add(final Callable<T> fetch, final EntryWriter<T> writer) throws IOException {
+    PendingEntry<T> entry = new PendingEntry<T>(executor != null ? asSessionUser(fetch) : fetch, writer);
+    pending.addLast(entry);
+    if (executor != null) {
+      executor.execute(entry);
+    }
+    while (pending.size() > depth) {
+      writeNext();
+    }
+  }
+
+  /**
+   * Queues an entry that needs no content, such as a folder.
+   */
+  public void add(final EntryWriter<Void> writer) throws IOException {
+    add(new Callable<Void>() {
+      public Void call() {
+        return null;
+      }
+    }, writer);
+  }
+
+  /**
+   * Writes every queued entry.
+   */
+  public void flush() throws IOException {
+    while (!pending.isEmpty()) {
+      writeNext();
+    }
+  }
+
+  /**
+   * Cancels entries that were not written and discards their fetched content. Fetches that are already running are
+   * not interrupted, since they may be in the middle of a repository read; their content is discarded when they
+   * finish.
+   */
+  public void close() {
+    for (PendingEntry<?> entry : pending) {
+      entry.discard();
+    }
+    pending.clear();
+  }
+
+  private void writeNext() throws IOException {
+    PendingEntry<?> entry = pending.removeFirst();
+    if (executor == null) {
+      entry.run();
+    }
+    entry.write(zos);
+  }
+
+  private <T> Callable<T> asSessionUser(final Callable<T> fetch) {
+    return new Callable<T>() {
+      public T call() throws Exception {
+        PentahoSessionHolder.setSession(session);
+        SecurityContextHolder.setContext(securityContext);
+        try {
+          return fetch.call();
+        } finally {
+          PentahoSessionHolder.removeSession();
+          SecurityContextHolder.clearContext();
+        }
+      }
+    };
+  }
+
+  /**
+   * Reads up to {@link #MAX_BUFFERED_BYTES} of {@code is} into memory. Returns a stream over the buffered bytes,
+   * followed by the unread remainder of {@code is} if there is any.
+   */
+  public static InputStream buffer(final InputStream is) throws IOException {
+    ByteArrayOutputStream head = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    int remaining = MAX_BUFFERED_BYTES;
+    int n;
+    while (remaining > 0 && (n = is.read(buf, 0, Math.min(buf.length, remaining))) != -1) {
+      head.write(buf, 0, n);
+      remaining -= n;
+    }
+    InputStream buffered = new ByteArrayInputStream(head.toByteArray());
+    if (remaining > 0) {
+      is.close();
+      return buffered;
+    }
+    return new SequenceInputStream(buffered, is);
+  }
+
+  /**
+   * Closes each stream quietly; for use in {@link EntryWriter#discard(Object)}.
+   */
+  static void closeQuietly(final Iterable<? extends InputStream> streams) {
+    if (streams != null) {
+      for (InputStream is : streams) {
+        IOUtils.closeQuietly(is);
+      }
+    }
+  }
+
+  /**
+   * Returns the pool shared by all exports, with {@value #THREADS_SETTING} threads that stop when idle, or {@code null}
+   * if that setting is {@code 0}.
+   */
+  static synchronized Executor getSharedExecutor() {
+    if (!sharedExecutorCreated) {
+      int threads = getIntSetting(THREADS_SETTING, DEFAULT_THREADS);
+      if (threads > 0) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+              public Thread newThread(final Runnable r) {
+                Thread t = new Thread(r, "ZipEntryPrefetcher-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+                t.setDaemon(true);
+                return t;
+              }
+            });
+        executor.allowCoreThreadTimeOut(true);
+        sharedExecutor = executor;
+      }
+      sharedExecutorCreated = true;
+    }
+    return sharedExecutor;
+  }
+
+  private static int getIntSetting(final String name, final int defaultValue) {
+    String value = PentahoSystem.getSystemSetting(name, String.valueOf(defaultValue));
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      logger.warn("invalid value for " + name + ": " + value); //$NON-NLS-1$ //$NON-NLS-2$
+      return defaultValue;
+    }
+  }
+
+  // ~ Inner classes ===================================================================================================
+
+  /**
+   * Writes fetched content to the zip. Called on the thread that walks the tree, in the order entries were added.
+   */
+  public abstract static class EntryWriter<T> {
+    public abstract void write(ZipOutputStream zos, T content) throws IOException;
+
+    /**
+     * Releases content that was fetched but will not be written. Does nothing by default.
+     */
+    public void discard(final T content) {
+    }
+  }
+
+  private static class PendingEntry<T> extends FutureTask<T> {
+    private final EntryWriter<T> writer;
+
+    private volatile boolean discarded;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private PendingEntry(final Callable<T> fetch, final EntryWriter<T> writer) {
+      super(fetch);
+      this.writer = writer;
+    }
+
+    private void write(final ZipOutputStream zos) throws IOException {
+      T content;
+      try {
+        content = get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        IOException ioe = new IOException(cause.getMessage());
+        ioe.initCause(cause);
+        throw ioe;
+      }
+      writer.write(zos, content);
+    }
+
+    private void discard() {
+      discarded = true;
+      // a fetch that is already running is left to finish; done() releases its content then
+      if (!cancel(false) && isDone()) {
+        release();
+      }
+    }
+
+    @Override
+    protected void done() {
+      if (discarded) {
+        release();
+      }
+    }
+
+    private void release() {
+      if (!isCancelled() && released.compareAndSet(false, true)) {
+        try {
+          writer.discard(get());
+        } catch (Exception e) {
+          // failed; nothing to release
+        }
+      }
+    }
+  }
+
+}
@@ -29,6 +29,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -58,6 +59,11 @@ public class ZipExportProcessor extends BaseExportProcessor {
 
   private boolean withManifest = true;
 
+  /**
+   * Set while {@link #performExport(RepositoryFile, OutputStream)} runs.
+   */
+  private ZipEntryPrefetcher prefetcher;
+
   /**
    * Encapsulates the logic of registering import handlers, generating the manifest,
    * and performing the export
@@ -104,6 +110,26 @@ public class ZipExportProcessor extends BaseExportProcessor {
     exportFile = File.createTempFile(EXPORT_TEMP_FILENAME_PREFIX, EXPORT_TEMP_FILENAME_EXT);
     exportFile.deleteOnExit();
 
+    OutputStream os = new FileOutputStream(exportFile);
+    try {
+      performExport(exportRepositoryFile, os);
+    } finally {
+      os.close();
+    }
+
+    return exportFile;
+  }
+
+  /**
+   * Performs the export process, writing the zip straight to the given output stream while the repository is still
+   * being walked. File content and ACLs are fetched ahead by a {@link ZipEntryPrefetcher}. The output stream is
+   * finished but not closed.
+   *
+   * @throws ExportException
+   *          indicates an error in import processing
+   */
+  public void performExport(RepositoryFile exportRepositoryFile, OutputStream outputStream)
+      throws ExportException, IOException {
     // get the file path
     String filePath = new File(this.path).getParent();
 
@@ -113,24 +139,25 @@ public class ZipExportProcessor extends BaseExportProcessor {
       throw new FileNotFoundException("JCR file not found: " + this.path);
     }
 
-    ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(exportFile));
+    ZipOutputStream zos = new ZipOutputStream(outputStream);
 
-    if (exportRepositoryFile.isFolder()) {  // Handle recursive export
-      exportManifest.getManifestInformation().setRootFolder(path.substring(0,path.lastIndexOf("/") + 1));
-
-      ZipEntry entry = new ZipEntry(getZipEntryName(exportRepositoryFile, filePath));
-
-      zos.putNextEntry(entry);
-
-      exportDirectory(exportRepositoryFile, zos, filePath);
-
-    } else {
-      exportManifest.getManifestInformation().setRootFolder(path.substring(0,path.lastIndexOf("/") + 1));
-      exportFile(exportRepositoryFile, zos, filePath);
+    exportManifest.getManifestInformation().setRootFolder(path.substring(0,path.lastIndexOf("/") + 1));
+    prefetcher = new ZipEntryPrefetcher(zos);
+    try {
+      if (exportRepositoryFile.isFolder()) {  // Handle recursive export
+        addFolderEntry(exportRepositoryFile, filePath);
+        exportDirectory(exportRepositoryFile, zos, filePath);
+      } else {
+        exportFile(exportRepositoryFile, zos, filePath);
+      }
+      prefetcher.flush();
+    } finally {
+      prefetcher.close();
+      prefetcher = null;
     }
 
     if(this.withManifest){
-      // write manifest to zip output stream
+      // write manifest to zip output stream; its entities were added as their files were fetched
       ZipEntry entry = new ZipEntry(EXPORT_MANIFEST_FILENAME);
       zos.putNextEntry(entry);
 
@@ -146,13 +173,11 @@ public class ZipExportProcessor extends BaseExportProcessor {
       zos.closeEntry();
     }
 
-    zos.close();
+    zos.finish();
 
     // clean up
     exportManifest = null;
     zos = null;
-
-    return exportFile;
   }
 
   /**
@@ -161,61 +186,132 @@ public class ZipExportProcessor extends BaseExportProcessor {
    * @param outputStream
    * @throws ExportManifestFormatException 
    */
-  public void exportFile(RepositoryFile repositoryFile, OutputStream outputStream, String filePath)
+  public void exportFile(final RepositoryFile repositoryFile, OutputStream outputStream, final String filePath)
       throws ExportException, IOException {
 
     // we need a zip
     ZipOutputStream zos = (ZipOutputStream) outputStream;
 
-    // iterate through handlers to perform export
-    for(ExportHandler exportHandler : exportHandlerList){
-
-      InputStream is = exportHandler.doExport(repositoryFile, filePath);
-
-      // if we don't get a valid input stream back, skip it
-      if(is != null){
-        addToManifest(repositoryFile);
-        ZipEntry entry = new ZipEntry(getZipEntryName(repositoryFile, filePath));
+    if (prefetcher == null) {
+      // called directly rather than from performExport; fetch and write on this thread
+      prefetcher = new ZipEntryPrefetcher(zos, null, 1);
+      try {
+        exportFile(repositoryFile, zos, filePath);
+        prefetcher.flush();
+      } finally {
+        prefetcher.close();
+        prefetcher = null;
+      }
+      return;
+    }
 
-        zos.putNextEntry(entry);
+    final String entryName = getZipEntryName(repositoryFile, filePath);
+    prefetcher.add(new Callable<List<InputStream>>() {
+      public List<InputStream> call() throws Exception {
+        List<InputStream> contents = new ArrayList<InputStream>();
+        try {
+          // iterate through handlers to perform export
+          for (ExportHandler exportHandler : exportHandlerList) {
+            InputStream is = exportHandler.doExport(repositoryFile, filePath);
+
+            // if we don't get a valid input stream back, skip it
+            if (is != null) {
+              contents.add(ZipEntryPrefetcher.buffer(is));
+            }
+          }
+          if (!contents.isEmpty()) {
+            addToManifest(repositoryFile);
+          }
+        } catch (Exception e) {
+          ZipEntryPrefetcher.closeQuietly(contents);
+          throw e;
+        }
+        return contents;
+      }
+    }, new ZipEntryPrefetcher.EntryWriter<List<InputStream>>() {
+      @Override
+      public void write(ZipOutputStream zos, List<InputStream> contents) throws IOException {
+        try {
+          for (InputStream is : contents) {
+            ZipEntry entry = new ZipEntry(entryName);
+            zos.putNextEntry(entry);
+            IOUtils.copy(is, zos);
+            zos.closeEntry();
+          }
+        } finally {
+          ZipEntryPrefetcher.closeQuietly(contents);
+        }
+      }
 
-        IOUtils.copy(is, outputStream);
-        zos.closeEntry();
-        is.close();
+      @Override
+      public void discard(List<InputStream> contents) {
+        ZipEntryPrefetcher.closeQuietly(contents);
       }
-    }
+    });
   }
   
   private void addToManifest(RepositoryFile repositoryFile) throws ExportException {
     if(this.withManifest){
-      // add this entity to the manifest
+      // add this entity to the manifest; called from the prefetching threads
       RepositoryFileAcl fileAcl = unifiedRepository.getAcl(repositoryFile.getId());
       try {
-      exportManifest.add(repositoryFile, fileAcl);
+        synchronized (exportManifest) {
+          exportManifest.add(repositoryFile, fileAcl);
+        }
       } catch (ExportManifestFormatException e){
         throw new ExportException(e.getMessage());
       }
     }
   }
 
+  private void addFolderEntry(RepositoryFile repositoryDir, String filePath) throws IOException {
+    final String entryName = getZipEntryName(repositoryDir, filePath);
+    prefetcher.add(new ZipEntryPrefetcher.EntryWriter<Void>() {
+      @Override
+      public void write(ZipOutputStream zos, Void content) throws IOException {
+        ZipEntry entry = new ZipEntry(entryName);
+        zos.putNextEntry(entry);
+      }
+    });
+  }
+
   /**
    *
    * @param repositoryDir
    * @param outputStream
    */
   @Override
-  public void exportDirectory(RepositoryFile repositoryDir, OutputStream outputStream, String filePath) throws ExportException, IOException{
-    addToManifest(repositoryDir);
+  public void exportDirectory(final RepositoryFile repositoryDir, OutputStream outputStream, String filePath) throws ExportException, IOException{
+    ZipOutputStream zos = (ZipOutputStream) outputStream;
+
+    if (prefetcher == null) {
+      // called directly rather than from performExport; fetch and write on this thread
+      prefetcher = new ZipEntryPrefetcher(zos, null, 1);
+      try {
+        exportDirectory(repositoryDir, zos, filePath);
+        prefetcher.flush();
+      } finally {
+        prefetcher.close();
+        prefetcher = null;
+      }
+      return;
+    }
+
+    prefetcher.add(new Callable<Void>() {
+      public Void call() throws Exception {
+        addToManifest(repositoryDir);
+        return null;
+      }
+    }, new ZipEntryPrefetcher.EntryWriter<Void>() {
+      @Override
+      public void write(ZipOutputStream zos, Void content) {
+        // manifest only
+      }
+    });
     List<RepositoryFile> children = this.unifiedRepository.getChildren(repositoryDir.getId());
     for (RepositoryFile repositoryFile : children) {
       if (repositoryFile.isFolder()) {
-
-        if(outputStream.getClass().isAssignableFrom(ZipOutputStream.class)){
-          ZipOutputStream zos = (ZipOutputStream)outputStream;
-          ZipEntry entry = new ZipEntry(getZipEntryName(repositoryFile, filePath));
-          zos.putNextEntry(entry);
-        }
-
+        addFolderEntry(repositoryFile, filePath);
         exportDirectory(repositoryFile, outputStream, filePath);
       } else {
         exportFile(repositoryFile, outputStream, filePath);
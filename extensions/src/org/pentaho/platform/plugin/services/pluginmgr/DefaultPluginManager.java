@@ -61,6 +61,7 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.objfac.StandaloneSpringPentahoObjectFactory;
 import org.pentaho.platform.plugin.services.messages.Messages;
 import org.pentaho.platform.plugin.services.pluginmgr.servicemgr.ServiceConfig;
+import org.pentaho.platform.util.beans.ComponentMetadata;
 import org.pentaho.platform.util.logging.Logger;
 import org.pentaho.ui.xul.XulOverlay;
 import org.springframework.beans.factory.BeanFactory;
@@ -167,6 +168,8 @@ public class DefaultPluginManager implements IPluginManager {
       synchronized (registeredPlugins) {
         this.unloadPlugins();
       }
+      // forget the component classes of the unloaded plugins
+      ComponentMetadata.clear();
       //the plugin may fail to load during getPlugins without an exception thrown if the provider
       //is capable of discovering the plugin fine but there are structural problems with the plugin
       //itself. In this case a warning should be logged by the provider, but, again, no exception 
@@ -0,0 +1,165 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.web.http.api.resources;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A single byte range of an entity of known length, as requested by an HTTP {@code Range} header. Only the
+ * {@code bytes} unit and a single range are supported; anything else is ignored (which the HTTP spec allows) so
+ * that the whole entity is sent instead.
+ */
+class ByteRange {
+
+  public static final String BYTES_UNIT = "bytes"; //$NON-NLS-1$
+
+  private static final String BYTES_UNIT_PREFIX = BYTES_UNIT + "="; //$NON-NLS-1$
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final long first;
+
+  private final long last;
+
+  private final long entityLength;
+
+  private ByteRange(final long first, final long last, final long entityLength) {
+    this.first = first;
+    this.last = last;
+    this.entityLength = entityLength;
+  }
+
+  /**
+   * Parses a {@code Range} header against an entity of {@code entityLength} bytes.
+   *
+   * @return the requested range; {@code null} if the header is absent, malformed or asks for more than one range
+   *         (send the whole entity); a range for which {@link #isSatisfiable()} is {@code false} if the range lies
+   *         entirely outside the entity (send 416)
+   */
+  public static ByteRange parse(final String rangeHeader, final long entityLength) {
+    if (rangeHeader == null || entityLength < 0) {
+      return null;
+    }
+    String header = rangeHeader.trim();
+    if (!header.regionMatches(true, 0, BYTES_UNIT_PREFIX, 0, BYTES_UNIT_PREFIX.length())) {
+      return null;
+    }
+    String spec = header.substring(BYTES_UNIT_PREFIX.length()).trim();
+    int dashIndex = spec.indexOf('-');
+    if (dashIndex < 0 || spec.indexOf(',') >= 0) {
+      return null;
+    }
+    try {
+      String firstPos = spec.substring(0, dashIndex).trim();
+      String lastPos = spec.substring(dashIndex + 1).trim();
+      if (firstPos.length() == 0) {
+        // suffix range: the final N bytes
+        long suffixLength = parsePosition(lastPos);
+        if (suffixLength == 0 || entityLength == 0) {
+          return unsatisfiable(entityLength);
+        }
+        return new ByteRange(Math.max(0, entityLength - suffixLength), entityLength - 1, entityLength);
+      }
+      long first = parsePosition(firstPos);
+      long last = lastPos.length() == 0 ? Long.MAX_VALUE : parsePosition(lastPos);
+      if (last < first) {
+        return null;
+      }
+      if (first >= entityLength) {
+        return unsatisfiable(entityLength);
+      }
+      return new ByteRange(first, Math.min(last, entityLength - 1), entityLength);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static long parsePosition(final String pos) {
+    for (int i = 0; i < pos.length(); i++) {
+      if (!Character.isDigit(pos.charAt(i))) {
+        throw new NumberFormatException(pos);
+      }
+    }
+    return Long.parseLong(pos);
+  }
+
+  private static ByteRange unsatisfiable(final long entityLength) {
+    return new ByteRange(-1, -1, entityLength);
+  }
+
+  public boolean isSatisfiable() {
+    return first >= 0;
+  }
+
+  public long getFirst() {
+    return first;
+  }
+
+  public long getLast() {
+    return last;
+  }
+
+  /**
+   * Returns the number of bytes in this range; the value of the {@code Content-Length} header of a 206 response.
+   */
+  public long getLength() {
+    return isSatisfiable() ? last - first + 1 : 0;
+  }
+
+  /**
+   * Returns the value of the {@code Content-Range} header: {@code bytes first-last/length} for a partial response or
+   * {@code bytes *}{@code /length} for a 416 response.
+   */
+  public String getContentRange() {
+    StringBuilder buf = new StringBuilder(BYTES_UNIT).append(' ');
+    if (isSatisfiable()) {
+      buf.append(first).append('-').append(last);
+    } else {
+      buf.append('*');
+    }
+    return buf.append('/').append(entityLength).toString();
+  }
+
+  /**
+   * Copies the bytes of this range from {@code in}, which must be positioned at the start of the entity, to
+   * {@code out}.
+   */
+  public void copy(final InputStream in, final OutputStream out) throws IOException {
+    IOUtils.skipFully(in, first);
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long remaining = getLength();
+    while (remaining > 0) {
+      int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (n < 0) {
+        throw new EOFException();
+      }
+      out.write(buffer, 0, n);
+      remaining -= n;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getContentRange();
+  }
+
+}
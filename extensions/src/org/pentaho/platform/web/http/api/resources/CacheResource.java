@@ -0,0 +1,117 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.web.http.api.resources;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_XML;
+
+import java.util.ArrayList;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.action.sql.SQLResultSetCache;
+import org.pentaho.platform.plugin.action.sql.SQLResultSetCacheStatistics;
+import org.pentaho.platform.plugin.services.cache.CacheManager;
+import org.pentaho.platform.plugin.services.cache.CacheRegionStatistics;
+import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
+
+/**
+ * Reports the statistics of the cache regions of the {@link ICacheManager}, and of the SQL result cache per datasource,
+ * for administrators, and invalidates cached SQL results.
+ */
+@Path("/cache")
+public class CacheResource extends AbstractJaxRSResource {
+
+  /**
+   * Returns the hit, miss, eviction and weight statistics of every cache region, with the time each region last
+   * changed as registered with the cache expiration registry. Values the cache provider does not track are -1.
+   *
+   * Response sample:
+   * {"cacheRegionStatistics": [{"region": "metadata-domain-repository", "entryCount": 120, "weight": 20971520,
+   *  "maximumWeight": 268435456, "hitCount": 950, "missCount": 130, "hitRate": 0.879, "evictionCount": 12,
+   *  "evictedWeight": 1048576, "expirationCount": 3, "lastModified": 1381234567890}]}
+   *
+   * @return the statistics of the regions
+   */
+  @GET
+  @Path("/regions")
+  @Produces({ APPLICATION_JSON, APPLICATION_XML })
+  public ArrayList<CacheRegionStatistics> getRegionStatistics() {
+    checkAdministrator();
+    ArrayList<CacheRegionStatistics> statistics = new ArrayList<CacheRegionStatistics>();
+    ICacheManager cacheManager = PentahoSystem.getCacheManager(null);
+    if (cacheManager instanceof CacheManager) {
+      statistics.addAll(((CacheManager) cacheManager).getRegionStatistics());
+    }
+    return statistics;
+  }
+
+  /**
+   * Returns the hit, miss, put and invalidation counts of the SQL result cache for every datasource looked up since
+   * the server started.
+   *
+   * Response sample:
+   * {"sqlResultSetCacheStatistics": [{"datasource": "SampleData", "hitCount": 310, "missCount": 42, "hitRate": 0.881,
+   *  "putCount": 40, "invalidationCount": 1}]}
+   *
+   * @return the statistics of the datasources
+   */
+  @GET
+  @Path("/sql-results")
+  @Produces({ APPLICATION_JSON, APPLICATION_XML })
+  public ArrayList<SQLResultSetCacheStatistics> getSqlResultStatistics() {
+    checkAdministrator();
+    return new ArrayList<SQLResultSetCacheStatistics>(SQLResultSetCache.getStatistics());
+  }
+
+  /**
+   * Invalidates the SQL results cached for a datasource, or for every datasource.
+   *
+   * @param datasource
+   *          the name of the datasource; all datasources if not given
+   * @return 200 once the results are invalidated
+   */
+  @DELETE
+  @Path("/sql-results")
+  public Response invalidateSqlResults(@QueryParam("datasource") String datasource) {
+    checkAdministrator();
+    SQLResultSetCache resultCache = new SQLResultSetCache(PentahoSystem.getCacheManager(null));
+    if (datasource == null || datasource.length() == 0) {
+      resultCache.invalidateAll();
+    } else {
+      resultCache.invalidate(datasource);
+    }
+    return Response.ok().build();
+  }
+
+  private void checkAdministrator() {
+    IAuthorizationPolicy policy = PentahoSystem.get(IAuthorizationPolicy.class);
+    if (policy == null || !policy.isAllowed(AdministerSecurityAction.NAME)) {
+      throw new WebApplicationException(Response.Status.FORBIDDEN);
+    }
+  }
+
+}
@@ -44,6 +44,7 @@ import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.services.importexport.BaseExportProcessor;
 import org.pentaho.platform.plugin.services.importexport.DefaultExportHandler;
+import org.pentaho.platform.plugin.services.importexport.ExportException;
 import org.pentaho.platform.plugin.services.importexport.SimpleExportProcessor;
 import org.pentaho.platform.plugin.services.importexport.ZipExportProcessor;
 import org.pentaho.platform.repository2.locale.PentahoLocale;
@@ -59,9 +60,14 @@ import org.pentaho.platform.util.messages.LocaleHelper;
 import org.pentaho.platform.web.http.messages.Messages;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.*;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.StreamingOutput;
 import java.io.*;
 import java.util.*;
@@ -88,6 +94,23 @@ public class FileResource extends AbstractJaxRSResource {
 
   public static final String APPLICATION_ZIP = "application/zip"; //$NON-NLS-1$
 
+  private static final String RANGE = "Range"; //$NON-NLS-1$
+
+  private static final String IF_RANGE = "If-Range"; //$NON-NLS-1$
+
+  private static final String ACCEPT_RANGES = "Accept-Ranges"; //$NON-NLS-1$
+
+  private static final String CONTENT_RANGE = "Content-Range"; //$NON-NLS-1$
+
+  private static final String WEAK_ENTITY_TAG_PREFIX = "W/"; //$NON-NLS-1$
+
+  /**
+   * System setting; when {@code true} (the default) zip exports are written straight to the response while the
+   * repository is walked instead of to a temporary file first. A failure part way through then truncates the response
+   * rather than producing a 500.
+   */
+  private static final String ZIP_EXPORT_STREAMING_SETTING = "export-zip-streaming"; //$NON-NLS-1$
+
   private static final Log logger = LogFactory.getLog(FileResource.class);
 
   protected IUnifiedRepository repository;
@@ -107,6 +130,11 @@ public class FileResource extends AbstractJaxRSResource {
     this.httpServletResponse = httpServletResponse;
   }
 
+  public FileResource(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) {
+    this(httpServletResponse);
+    this.httpServletRequest = httpServletRequest;
+  }
+
   public static String idToPath(String pathId) {
     String path = null;
     //slashes in pathId are illegal.. we scrub them out so the file will not be found
@@ -180,9 +208,14 @@ public class FileResource extends AbstractJaxRSResource {
   @Consumes({ WILDCARD })
   public Response createFile(@PathParam("pathId") String pathId, InputStream fileContents) throws IOException {
     RepositoryFileOutputStream rfos = new RepositoryFileOutputStream(idToPath(pathId));
-    IOUtils.copy(fileContents, rfos);
-    rfos.close();
-    fileContents.close();
+    try {
+      IOUtils.copy(fileContents, rfos);
+      rfos.close();
+    } finally {
+      // drops a partial upload and its temporary file if the copy failed
+      rfos.reset();
+      fileContents.close();
+    }
     return Response.ok().build();
   }
 
@@ -306,14 +339,159 @@ public class FileResource extends AbstractJaxRSResource {
    * @throws FileNotFoundException
    */
   public Response doGetFileOrDir(RepositoryFile repoFile) throws FileNotFoundException {
+    EntityTag entityTag = getEntityTag(repoFile);
+    Date lastModified = repoFile.getLastModifiedDate();
+    if (isNotModified(entityTag, lastModified)) {
+      // answered from the file metadata alone; the content is never read
+      return withValidators(Response.notModified(), entityTag, lastModified).build();
+    }
+
     final RepositoryFileInputStream is = new RepositoryFileInputStream(repoFile);
+    String mimeType = is.getMimeType();
+    // the size of the stored binary, not pho:fileSize, which is not kept in step with the content; ranges are only
+    // served when it is known
+    long length = is.getSize();
+    ByteRange range = length > 0 ? getRequestedRange(entityTag, lastModified, length) : null;
+    return withValidators(contentResponse(is, range, length > 0), entityTag, lastModified).type(mimeType)
+        .header("Content-Disposition", "inline; filename=\"" + repoFile.getName() + "\"").build();
+  }
+
+  /**
+   * Returns a strong entity tag for the content of the given file built from its id and version id or, for
+   * unversioned files, its last modified date. Returns {@code null} if neither is known.
+   */
+  protected EntityTag getEntityTag(RepositoryFile repoFile) {
+    Object revision = repoFile.getVersionId();
+    if (revision == null && repoFile.getLastModifiedDate() != null) {
+      revision = repoFile.getLastModifiedDate().getTime();
+    }
+    if (repoFile.getId() == null || revision == null) {
+      return null;
+    }
+    return new EntityTag(repoFile.getId() + ":" + revision); //$NON-NLS-1$
+  }
+
+  /**
+   * Returns {@code true} if the {@code If-None-Match} header or, in its absence, the {@code If-Modified-Since} header
+   * of the current request shows that the client already has the current content.
+   */
+  protected boolean isNotModified(EntityTag entityTag, Date lastModified) {
+    if (httpServletRequest == null) {
+      return false;
+    }
+    String ifNoneMatch = httpServletRequest.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      return "*".equals(ifNoneMatch.trim()) || (entityTag != null && matches(ifNoneMatch, entityTag, true)); //$NON-NLS-1$
+    }
+    long ifModifiedSince = getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+    // HTTP dates have a resolution of one second
+    return lastModified != null && ifModifiedSince >= 0 && lastModified.getTime() / 1000 <= ifModifiedSince / 1000;
+  }
+
+  /**
+   * Returns the range requested by the {@code Range} header of the current request or {@code null} if the whole
+   * entity should be sent, either because no range was requested or because the {@code If-Range} validator no longer
+   * matches.
+   */
+  protected ByteRange getRequestedRange(EntityTag entityTag, Date lastModified, long length) {
+    if (httpServletRequest == null) {
+      return null;
+    }
+    String rangeHeader = httpServletRequest.getHeader(RANGE);
+    if (rangeHeader == null) {
+      return null;
+    }
+    String ifRange = httpServletRequest.getHeader(IF_RANGE);
+    if (ifRange != null) {
+      boolean current;
+      if (ifRange.trim().startsWith("\"")) { //$NON-NLS-1$
+        current = entityTag != null && matches(ifRange, entityTag, false);
+      } else {
+        current = lastModified != null && getDateHeader(IF_RANGE) / 1000 == lastModified.getTime() / 1000;
+      }
+      if (!current) {
+        return null;
+      }
+    }
+    return ByteRange.parse(rangeHeader, length);
+  }
+
+  private boolean matches(String entityTagsHeader, EntityTag entityTag, boolean weakComparison) {
+    String quotedValue = "\"" + entityTag.getValue() + "\""; //$NON-NLS-1$ //$NON-NLS-2$
+    for (String candidate : entityTagsHeader.split(",")) { //$NON-NLS-1$
+      candidate = candidate.trim();
+      if (weakComparison && candidate.startsWith(WEAK_ENTITY_TAG_PREFIX)) {
+        candidate = candidate.substring(WEAK_ENTITY_TAG_PREFIX.length());
+      }
+      if (quotedValue.equals(candidate)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private long getDateHeader(String name) {
+    try {
+      return httpServletRequest.getDateHeader(name);
+    } catch (IllegalArgumentException e) {
+      // not a date
+      return -1;
+    }
+  }
+
+  protected boolean isZipExportStreaming() {
+    return Boolean.parseBoolean(PentahoSystem.getSystemSetting(ZIP_EXPORT_STREAMING_SETTING, "true")); //$NON-NLS-1$
+  }
+
+  private ResponseBuilder withValidators(ResponseBuilder builder, EntityTag entityTag, Date lastModified) {
+    if (entityTag != null) {
+      builder.tag(entityTag);
+    }
+    if (lastModified != null) {
+      builder.lastModified(lastModified);
+    }
+    // content is subject to ACLs; let the browser keep it but make it revalidate on every use
+    CacheControl cacheControl = new CacheControl();
+    cacheControl.setPrivate(true);
+    cacheControl.setMustRevalidate(true);
+    cacheControl.setMaxAge(0);
+    return builder.cacheControl(cacheControl);
+  }
+
+  /**
+   * Returns a 200, 206 or 416 response builder for the content in {@code is}, which is closed once written (or
+   * immediately for a 416).
+   */
+  private ResponseBuilder contentResponse(final InputStream is, final ByteRange range, boolean acceptRanges) {
+    if (range != null && !range.isSatisfiable()) {
+      IOUtils.closeQuietly(is);
+      return Response.status(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE).header(CONTENT_RANGE,
+          range.getContentRange());
+    }
     StreamingOutput streamingOutput = new StreamingOutput() {
       public void write(OutputStream output) throws IOException {
-        IOUtils.copy(is, output);
+        try {
+          if (range != null) {
+            range.copy(is, output);
+          } else {
+            IOUtils.copy(is, output);
+          }
+        } finally {
+          is.close();
+        }
       }
     };
-    return Response.ok(streamingOutput, is.getMimeType())
-        .header("Content-Disposition", "inline; filename=\"" + repoFile.getName() + "\"").build();
+    ResponseBuilder builder;
+    if (range != null) {
+      builder = Response.status(HttpServletResponse.SC_PARTIAL_CONTENT).entity(streamingOutput)
+          .header(CONTENT_RANGE, range.getContentRange()).header(HttpHeaders.CONTENT_LENGTH, range.getLength());
+    } else {
+      builder = Response.ok(streamingOutput);
+    }
+    if (acceptRanges) {
+      builder.header(ACCEPT_RANGES, ByteRange.BYTES_UNIT);
+    }
+    return builder;
   }
 
   // Overloaded this method to try and minimize calls to the repo
@@ -343,19 +521,28 @@ public class FileResource extends AbstractJaxRSResource {
    * @param repositoryFile
    * @return
    */
-  public Response doGetDirAsZip(RepositoryFile repositoryFile) {
+  public Response doGetDirAsZip(final RepositoryFile repositoryFile) {
 
     String path = repositoryFile.getPath();
 
     final InputStream is;
     StreamingOutput streamingOutput = null;
 
-    try {
-      org.pentaho.platform.plugin.services.importexport.Exporter exporter = new org.pentaho.platform.plugin.services.importexport.Exporter(
-          repository);
-      exporter.setRepoPath(path);
-      exporter.setRepoWs(repoWs);
+    final org.pentaho.platform.plugin.services.importexport.Exporter exporter = new org.pentaho.platform.plugin.services.importexport.Exporter(
+        repository);
+    exporter.setRepoPath(path);
+    exporter.setRepoWs(repoWs);
 
+    if (isZipExportStreaming()) {
+      streamingOutput = new StreamingOutput() {
+        public void write(OutputStream output) throws IOException {
+          exporter.doExportAsZip(repositoryFile, output);
+        }
+      };
+      return Response.ok(streamingOutput, APPLICATION_ZIP).build();
+    }
+
+    try {
       File zipFile = exporter.doExportAsZip(repositoryFile);
       is = new FileInputStream(zipFile);
     } catch (Exception e) {
@@ -458,17 +645,25 @@ public class FileResource extends AbstractJaxRSResource {
     }
 
     // check if entity exists in repo
-    RepositoryFile repositoryFile = repository.getFile(path);
+    final RepositoryFile repositoryFile = repository.getFile(path);
 
     if (repositoryFile == null) {
       //file does not exist or is not readable but we can't tell at this point
       return Response.status(NOT_FOUND).build();
     }
 
+    // only a single file without manifest has validators; folder and manifest content can change without the
+    // folder or file itself changing
+    boolean singleFile = !repositoryFile.isFolder() && !withManifest;
+    EntityTag entityTag = singleFile ? getEntityTag(repositoryFile) : null;
+    Date lastModified = singleFile ? repositoryFile.getLastModifiedDate() : null;
+    if (singleFile && isNotModified(entityTag, lastModified)) {
+      return withValidators(Response.notModified(), entityTag, lastModified).build();
+    }
+
     try {
       final InputStream is;
-      StreamingOutput streamingOutput;
-      Response response;
+      ResponseBuilder response;
       BaseExportProcessor exportProcessor;
 
       // create processor
@@ -483,22 +678,39 @@ public class FileResource extends AbstractJaxRSResource {
       // add export handlers for each expected file type
       exportProcessor.addExportHandler(PentahoSystem.get(DefaultExportHandler.class));
 
+      if (!singleFile && isZipExportStreaming()) {
+        // write the zip while the repository is walked; no temporary file
+        final ZipExportProcessor zipExportProcessor = (ZipExportProcessor) exportProcessor;
+        final String fileName = quotedFileName;
+        StreamingOutput streamingOutput = new StreamingOutput() {
+          public void write(OutputStream output) throws IOException {
+            try {
+              zipExportProcessor.performExport(repositoryFile, output);
+            } catch (ExportException e) {
+              logger.error(Messages.getInstance()
+                  .getString("FileResource.EXPORT_FAILED", fileName + " " + e.getMessage()), e); //$NON-NLS-1$
+              IOException ioe = new IOException(e.getMessage());
+              ioe.initCause(e);
+              throw ioe;
+            }
+          }
+        };
+        return Response.ok(streamingOutput, APPLICATION_ZIP)
+            .header("Content-Disposition", "attachment; filename=" + quotedFileName).build();
+      }
+
       File zipFile = exportProcessor.performExport(repositoryFile);
       is = new FileInputStream(zipFile);
 
-      // copy streaming output
-      streamingOutput = new StreamingOutput() {
-        public void write(OutputStream output) throws IOException {
-          IOUtils.copy(is, output);
-        }
-      };
-
-      // create response
-
-      response = Response.ok(streamingOutput, APPLICATION_ZIP)
-          .header("Content-Disposition", "attachment; filename=" + quotedFileName).build();
-
-      return response;
+      // create response; the exported file has an exact length so single files can be resumed
+      if (singleFile) {
+        ByteRange range = getRequestedRange(entityTag, lastModified, zipFile.length());
+        response = withValidators(contentResponse(is, range, true), entityTag, lastModified);
+      } else {
+        response = contentResponse(is, null, false);
+      }
+      return response.type(APPLICATION_ZIP).header("Content-Disposition", "attachment; filename=" + quotedFileName)
+          .build();
     } catch (Exception e) {
       logger.error(Messages.getInstance()
           .getString("FileResource.EXPORT_FAILED", quotedFileName + " " + e.getMessage()), e); //$NON-NLS-1$
@@ -693,78 +905,84 @@ public class FileResource extends AbstractJaxRSResource {
     }
   }
 
+  public List<RepositoryFileDto> doGetGeneratedContent(String pathId) {
+    return doGetGeneratedContent(pathId, null, null);
+  }
+
+  /**
+   * Returns the content generated from the given file in the current user's home folder, optionally one page at a
+   * time.
+   */
   @GET
   @Path("{pathId : .+}/generatedContent")
   @Produces({ APPLICATION_XML, APPLICATION_JSON })
-  public List<RepositoryFileDto> doGetGeneratedContent(@PathParam("pathId") String pathId) {
+  public List<RepositoryFileDto> doGetGeneratedContent(@PathParam("pathId") String pathId,
+                                                       @QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit) {
     RepositoryFileDto targetFile = doGetProperties(pathId);
-    List<RepositoryFileDto> content = new ArrayList<RepositoryFileDto>();
-    if (targetFile != null) {
-      String targetFileId = targetFile.getId();
-      SessionResource sessionResource = new SessionResource();
-
-      RepositoryFile workspaceFolder = repository.getFile(sessionResource.doGetCurrentUserDir());
-      if (workspaceFolder != null) {
-        List<RepositoryFile> children = repository.getChildren(workspaceFolder.getId());
-        for (RepositoryFile child : children) {
-          if (!child.isFolder()) {
-            Map<String, Serializable> fileMetadata = repository.getFileMetadata(child.getId());
-            String creatorId = (String) fileMetadata.get(PentahoJcrConstants.PHO_CONTENTCREATOR);
-            if (creatorId != null && creatorId.equals(targetFileId)) {
-              content.add(RepositoryFileAdapter.toFileDto(child));
-            }
-          }
-        }
-      }
+    if (targetFile == null) {
+      return new ArrayList<RepositoryFileDto>();
     }
-    return content;
+    SessionResource sessionResource = new SessionResource();
+    return getGeneratedContent(sessionResource.doGetCurrentUserDir(), PentahoJcrConstants.PHO_CONTENTCREATOR,
+        targetFile.getId(), offset, limit);
   }
 
+  public List<RepositoryFileDto> doGetGeneratedContentForUser(String pathId, String user) {
+    return doGetGeneratedContentForUser(pathId, user, null, null);
+  }
+
+  /**
+   * Returns the content generated from the given file in the given user's home folder, optionally one page at a time.
+   */
   @GET
   @Path("{pathId : .+}/generatedContentForUser")
   @Produces({ APPLICATION_XML, APPLICATION_JSON })
   public List<RepositoryFileDto> doGetGeneratedContentForUser(@PathParam("pathId") String pathId,
-                                                              @QueryParam("user") String user) {
+                                                              @QueryParam("user") String user,
+                                                              @QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit) {
     RepositoryFileDto targetFile = doGetProperties(pathId);
-    List<RepositoryFileDto> content = new ArrayList<RepositoryFileDto>();
-    if (targetFile != null) {
-      String targetFileId = targetFile.getId();
-      SessionResource sessionResource = new SessionResource();
-
-      RepositoryFile workspaceFolder = repository.getFile(sessionResource.doGetUserDir(user));
-      if (workspaceFolder != null) {
-        List<RepositoryFile> children = repository.getChildren(workspaceFolder.getId());
-        for (RepositoryFile child : children) {
-          if (!child.isFolder()) {
-            Map<String, Serializable> fileMetadata = repository.getFileMetadata(child.getId());
-            String creatorId = (String) fileMetadata.get(PentahoJcrConstants.PHO_CONTENTCREATOR);
-            if (creatorId != null && creatorId.equals(targetFileId)) {
-              content.add(RepositoryFileAdapter.toFileDto(child));
-            }
-          }
-        }
-      }
+    if (targetFile == null) {
+      return new ArrayList<RepositoryFileDto>();
     }
-    return content;
+    SessionResource sessionResource = new SessionResource();
+    return getGeneratedContent(sessionResource.doGetUserDir(user), PentahoJcrConstants.PHO_CONTENTCREATOR,
+        targetFile.getId(), offset, limit);
   }
 
+  public List<RepositoryFileDto> doGetGeneratedContentForSchedule(String lineageId) {
+    return doGetGeneratedContentForSchedule(lineageId, null, null);
+  }
+
+  /**
+   * Returns the content generated by the given schedule in the current user's home folder, optionally one page at a
+   * time.
+   */
   @GET
   @Path("/generatedContentForSchedule")
   @Produces({ APPLICATION_XML, APPLICATION_JSON })
-  public List<RepositoryFileDto> doGetGeneratedContentForSchedule(@QueryParam("lineageId") String lineageId) {
-    List<RepositoryFileDto> content = new ArrayList<RepositoryFileDto>();
+  public List<RepositoryFileDto> doGetGeneratedContentForSchedule(@QueryParam("lineageId") String lineageId,
+                                                                  @QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit) {
+    if (lineageId == null) {
+      return new ArrayList<RepositoryFileDto>();
+    }
     SessionResource sessionResource = new SessionResource();
-    RepositoryFile workspaceFolder = repository.getFile(sessionResource.doGetCurrentUserDir());
+    return getGeneratedContent(sessionResource.doGetCurrentUserDir(), QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID,
+        lineageId, offset, limit);
+  }
+
+  /**
+   * Returns the files in the given folder whose metadata value for {@code metadataKey} is {@code value}. This is a
+   * single indexed repository query rather than a metadata read per file in the folder.
+   */
+  private List<RepositoryFileDto> getGeneratedContent(String folderPath, String metadataKey, String value,
+                                                      Integer offset, Integer limit) {
+    List<RepositoryFileDto> content = new ArrayList<RepositoryFileDto>();
+    RepositoryFile workspaceFolder = repository.getFile(folderPath);
     if (workspaceFolder != null) {
-      List<RepositoryFile> children = repository.getChildren(workspaceFolder.getId());
+      List<RepositoryFile> children = repository.getChildrenByMetadata(workspaceFolder.getId(), metadataKey, value,
+          offset != null ? offset : 0, limit != null ? limit : -1);
       for (RepositoryFile child : children) {
-        if (!child.isFolder()) {
-          Map<String, Serializable> fileMetadata = repository.getFileMetadata(child.getId());
-          String lineageIdMeta = (String) fileMetadata.get(QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID);
-          if (lineageIdMeta != null && lineageIdMeta.equals(lineageId)) {
-            content.add(RepositoryFileAdapter.toFileDto(child));
-          }
-        }
+        content.add(RepositoryFileAdapter.toFileDto(child));
       }
     }
     return content;
@@ -773,19 +991,35 @@ public class FileResource extends AbstractJaxRSResource {
   /////////
   // BROWSE
 
+  public RepositoryFileTreeDto doGetRootChildren(Integer depth, String filter, Boolean showHidden) {
+    return doGetRootChildren(depth, filter, showHidden, null, null);
+  }
+
   @GET
   @Path("/children")
   @Produces({ APPLICATION_XML, APPLICATION_JSON })
   public RepositoryFileTreeDto doGetRootChildren(@QueryParam("depth") Integer depth,
-                                                 @QueryParam("filter") String filter, @QueryParam("showHidden") Boolean showHidden) {
-    return doGetChildren(PATH_SEPARATOR, depth, filter, showHidden);
+                                                 @QueryParam("filter") String filter, @QueryParam("showHidden") Boolean showHidden,
+                                                 @QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit) {
+    return doGetChildren(PATH_SEPARATOR, depth, filter, showHidden, offset, limit);
+  }
+
+  public RepositoryFileTreeDto doGetChildren(String pathId, Integer depth, String filter, Boolean showHidden) {
+    return doGetChildren(pathId, depth, filter, showHidden, null, null);
   }
 
+  /**
+   * Returns the tree rooted at the given folder. When {@code offset} or {@code limit} is given only that page of the
+   * folder's (sorted) immediate children is returned, each expanded to {@code depth - 1} levels. Clients that expand
+   * folders on demand should request {@code depth=1} (or 2 to know which child folders are empty) per folder. System
+   * folders are left out before the page is taken, so only the last page holds fewer than {@code limit} children.
+   */
   @GET
   @Path("{pathId : .+}/children")
   @Produces({ APPLICATION_XML, APPLICATION_JSON })
   public RepositoryFileTreeDto doGetChildren(@PathParam("pathId") String pathId, @QueryParam("depth") Integer depth,
-                                             @QueryParam("filter") String filter, @QueryParam("showHidden") Boolean showHidden) {
+                                             @QueryParam("filter") String filter, @QueryParam("showHidden") Boolean showHidden,
+                                             @QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit) {
 
     String path = null;
     if (filter == null) {
@@ -805,19 +1039,76 @@ public class FileResource extends AbstractJaxRSResource {
       showHidden = Boolean.FALSE;
     }
 
-    List<RepositoryFileTreeDto> filteredChildren = new ArrayList<RepositoryFileTreeDto>();
-    RepositoryFileTreeDto tree = repoWs.getTree(path, depth, filter, showHidden.booleanValue());
-    for (RepositoryFileTreeDto child : tree.getChildren()) {
-      RepositoryFileDto file = child.getFile();
-      Map<String, Serializable> fileMeta = repository.getFileMetadata(file.getId());
-      boolean isSystemFolder = fileMeta.containsKey(IUnifiedRepository.SYSTEM_FOLDER) ? (Boolean) fileMeta
-          .get(IUnifiedRepository.SYSTEM_FOLDER) : false;
-      if (!isSystemFolder) {
-        filteredChildren.add(child);
+    return repoWs.getTreePaged(path, depth, filter, showHidden.booleanValue(), false, offset != null ? offset : 0,
+        limit != null ? limit : -1);
+  }
+
+  /**
+   * Searches the repository index below {@code path} (in slash or colon separated form; the root folder by default)
+   * and returns one sorted page of the matching files and folders the user may read. {@code text}, {@code title} and
+   * {@code description} are words that must all be found; {@code name} may contain "*" wildcards; each
+   * {@code metadata} parameter is a {@code key=value} pair the file's metadata must contain. Dates are milliseconds
+   * since the epoch. Non-admin users may not search the system folders, and matches below them are left out.
+   */
+  @GET
+  @Path("/search")
+  @Produces({ APPLICATION_XML, APPLICATION_JSON })
+  public List<RepositoryFileDto> doSearch(@QueryParam("path") String pathId, @QueryParam("text") String text,
+                                          @QueryParam("name") String name, @QueryParam("title") String title,
+                                          @QueryParam("description") String description,
+                                          @QueryParam("creator") String creator, @QueryParam("mimeType") String mimeType,
+                                          @QueryParam("metadata") List<String> metadata,
+                                          @QueryParam("createdAfter") Long createdAfter,
+                                          @QueryParam("createdBefore") Long createdBefore,
+                                          @QueryParam("modifiedAfter") Long modifiedAfter,
+                                          @QueryParam("modifiedBefore") Long modifiedBefore,
+                                          @QueryParam("includeFiles") Boolean includeFiles,
+                                          @QueryParam("includeFolders") Boolean includeFolders,
+                                          @QueryParam("showHidden") Boolean showHidden,
+                                          @QueryParam("locale") String locale,
+                                          @QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit) {
+    String path;
+    if (pathId == null || pathId.equals(PATH_SEPARATOR)) {
+      path = PATH_SEPARATOR;
+    } else {
+      path = pathId.startsWith(PATH_SEPARATOR) ? pathId : idToPath(pathId);
+    }
+    if (!isPathValid(path) && !policy.isAllowed(AdministerSecurityAction.NAME)) {
+      throw new WebApplicationException(Response.Status.FORBIDDEN);
+    }
+    RepositoryQueryDto query = new RepositoryQueryDto();
+    query.setPath(path);
+    query.setText(text);
+    query.setName(name);
+    query.setTitle(title);
+    query.setDescription(description);
+    query.setCreatorId(creator);
+    query.setMimeType(mimeType);
+    if (metadata != null) {
+      List<StringKeyStringValueDto> metadataDtos = new ArrayList<StringKeyStringValueDto>();
+      for (String entry : metadata) {
+        int index = entry.indexOf('=');
+        if (index <= 0) {
+          throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        metadataDtos.add(new StringKeyStringValueDto(entry.substring(0, index), entry.substring(index + 1)));
       }
+      query.setMetadata(metadataDtos);
+    }
+    query.setCreatedAfter(createdAfter != null ? new Date(createdAfter) : null);
+    query.setCreatedBefore(createdBefore != null ? new Date(createdBefore) : null);
+    query.setModifiedAfter(modifiedAfter != null ? new Date(modifiedAfter) : null);
+    query.setModifiedBefore(modifiedBefore != null ? new Date(modifiedBefore) : null);
+    query.setIncludeFiles(includeFiles == null || includeFiles.booleanValue());
+    query.setIncludeFolders(includeFolders == null || includeFolders.booleanValue());
+    query.setShowHidden(showHidden != null && showHidden.booleanValue());
+    query.setLocale(locale);
+    if (offset != null && offset < 0) {
+      throw new WebApplicationException(Response.Status.BAD_REQUEST);
     }
-    tree.setChildren(filteredChildren);
-    return tree;
+    query.setOffset(offset != null ? offset : 0);
+    query.setLimit(limit != null ? limit : -1);
+    return repoWs.search(query);
   }
 
   @GET
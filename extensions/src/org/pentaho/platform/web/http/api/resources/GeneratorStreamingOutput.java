@@ -42,6 +42,8 @@ import org.pentaho.platform.api.engine.IParameterProvider;
 import org.pentaho.platform.api.engine.IPentahoUrlFactory;
 import org.pentaho.platform.api.engine.IPluginManager;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.metrics.ExecutionMetrics;
+import org.pentaho.platform.engine.core.metrics.ExecutionSpan;
 import org.pentaho.platform.engine.core.solution.SimpleParameterProvider;
 import org.pentaho.platform.engine.core.system.PentahoRequestContextHolder;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
@@ -224,7 +226,12 @@ public class GeneratorStreamingOutput {
       if (urlFactory != null) {
         contentGenerator.setUrlFactory(urlFactory);
       }
-      contentGenerator.createContent();
+      ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.CONTENT_GENERATOR, contentGeneratorID);
+      try {
+        contentGenerator.createContent();
+      } finally {
+        span.end();
+      }
     } finally {
       Thread.currentThread().setContextClassLoader(origContextClassloader);
     }
@@ -30,6 +30,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.List;
+import java.util.Properties;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.GET;
@@ -49,6 +50,7 @@ import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.api.engine.IPluginManager;
 import org.pentaho.platform.api.engine.IPluginResourceLoader;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.services.cache.OffHeapValue;
 import org.pentaho.platform.util.web.MimeHelper;
 import org.pentaho.platform.web.http.messages.Messages;
 
@@ -65,6 +67,11 @@ public class PluginResource {
 
   private static final String CACHE_FILE = "file"; //$NON-NLS-1$
 
+  /**
+   * Off-heap memory of the file cache; the <code>file.offHeapMaximumBytes</code> cache property overrides it.
+   */
+  private static final long CACHE_FILE_MAXIMUM_BYTES = 64L * 1024L * 1024L;
+
   private static ICacheManager cache = PentahoSystem.getCacheManager(null);
 
   protected File systemFolder;
@@ -77,7 +84,9 @@ public class PluginResource {
 
   static {
     if (cache != null) {
-      cache.addCacheRegion(CACHE_FILE);
+      Properties cacheProperties = new Properties();
+      cacheProperties.setProperty(ICacheManager.OFF_HEAP_MAXIMUM_BYTES, String.valueOf(CACHE_FILE_MAXIMUM_BYTES));
+      cache.addCacheRegion(CACHE_FILE, cacheProperties);
     }
   }
 
@@ -99,9 +108,9 @@ public class PluginResource {
     final String canonicalPath = pluginId + "/" + path; //$NON-NLS-1$
 
     if (useCache) {
-      ByteArrayOutputStream bos = (ByteArrayOutputStream) cache.getFromRegionCache(CACHE_FILE, canonicalPath);
-      if (bos != null) {
-        inputStream = new ByteArrayInputStream(bos.toByteArray());
+      inputStream = getCachedStream(canonicalPath);
+      if (inputStream != null) {
+        return inputStream;
       }
     }
 
@@ -115,23 +124,59 @@ public class PluginResource {
 
     if (useCache) {
       // store bytes for next time
-      ByteArrayOutputStream bos = null;
+      byte[] bytes;
       try {
-        bos = new ByteArrayOutputStream();
-        IOUtils.copy(inputStream, bos);
-        cache.putInRegionCache(CACHE_FILE, canonicalPath, bos);
+        bytes = IOUtils.toByteArray(inputStream);
       } finally {
-        IOUtils.closeQuietly(bos);
+        IOUtils.closeQuietly(inputStream);
       }
+      cache.putInRegionCache(CACHE_FILE, canonicalPath, bytes);
+      return new ByteArrayInputStream(bytes);
     }
 
     return inputStream;
   }
 
+  /**
+   * Returns a stream of the cached file, read from off-heap memory when the cache keeps the region there, or
+   * <code>null</code> if the file is not cached.
+   */
+  private InputStream getCachedStream(String canonicalPath) {
+    Object cached = cache.getFromRegionCache(CACHE_FILE, canonicalPath);
+    if (cached instanceof OffHeapValue) {
+      // null if the file was evicted since it was found
+      return ((OffHeapValue) cached).openStream();
+    } else if (cached instanceof byte[]) {
+      return new ByteArrayInputStream((byte[]) cached);
+    } else if (cached instanceof ByteArrayOutputStream) {
+      return new ByteArrayInputStream(((ByteArrayOutputStream) cached).toByteArray());
+    }
+    return null;
+  }
+
+  /**
+   * Writes the cached file to the output, or returns <code>false</code> if it is not cached. An off-heap copy is pinned
+   * only while it is written.
+   */
+  private boolean writeCachedFile(String canonicalPath, OutputStream output) throws IOException {
+    Object cached = cache.getFromRegionCache(CACHE_FILE, canonicalPath);
+    if (cached instanceof OffHeapValue) {
+      // false if the file was evicted since it was found
+      return ((OffHeapValue) cached).writeTo(output);
+    } else if (cached instanceof byte[]) {
+      output.write((byte[]) cached);
+      return true;
+    } else if (cached instanceof ByteArrayOutputStream) {
+      ((ByteArrayOutputStream) cached).writeTo(output);
+      return true;
+    }
+    return false;
+  }
+
   @GET
   @Path("/files/{path : .+}")
   @Produces(WILDCARD)
-  public Response readFile(@PathParam("pluginId") String pluginId, @PathParam("path") String path) throws IOException {
+  public Response readFile(@PathParam("pluginId") final String pluginId, @PathParam("path") final String path) throws IOException {
     List<String> pluginRestPerspectives = pluginManager.getPluginRESTPerspectivesForId(pluginId);
     boolean useCache = "true".equals(pluginManager.getPluginSetting(pluginId, "settings/cache", "false")); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
     String maxAge = (String) pluginManager.getPluginSetting(pluginId, "settings/max-age", null); //$NON-NLS-1$
@@ -149,21 +194,33 @@ public class PluginResource {
       return Response.status(Status.FORBIDDEN).build();
     }
 
-    InputStream isTmp;
-    try {
-      isTmp = getCacheBackedStream(pluginId, path, useCache);
-    } catch (FileNotFoundException e) {
-      return Response.status(Status.NOT_FOUND).build();
+    // a cached file is read from the cache only when the body is written, so that nothing is held if it never is
+    final String canonicalPath = pluginId + "/" + path; //$NON-NLS-1$
+    InputStream isTmp = null;
+    if (!useCache || cache.getFromRegionCache(CACHE_FILE, canonicalPath) == null) {
+      try {
+        isTmp = getCacheBackedStream(pluginId, path, useCache);
+      } catch (FileNotFoundException e) {
+        return Response.status(Status.NOT_FOUND).build();
+      }
     }
 
     final InputStream is = isTmp;
 
     StreamingOutput streamingOutput = new StreamingOutput() {
       public void write(OutputStream output) throws IOException {
+        InputStream in = is;
+        if (in == null) {
+          if (writeCachedFile(canonicalPath, output)) {
+            return;
+          }
+          // evicted since the request was accepted
+          in = getCacheBackedStream(pluginId, path, true);
+        }
         try {
-          IOUtils.copy(is, output);
+          IOUtils.copy(in, output);
         } finally {
-          IOUtils.closeQuietly(is);
+          IOUtils.closeQuietly(in);
         }
       }
     };
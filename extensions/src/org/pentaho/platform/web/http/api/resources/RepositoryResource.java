@@ -80,7 +80,7 @@ public class RepositoryResource extends AbstractJaxRSResource {
   @Path("{pathId : .+}/content")
   @Produces({WILDCARD})
   public Response doGetFileOrDir(@PathParam("pathId") String pathId) throws FileNotFoundException {
-    FileResource fileResource = new FileResource(httpServletResponse);
+    FileResource fileResource = new FileResource(httpServletRequest, httpServletResponse);
     return fileResource.doGetFileOrDir(pathId);
   }
 
@@ -484,7 +484,7 @@ public class RepositoryResource extends AbstractJaxRSResource {
   protected Response getRepositoryFileResponse(String filePath, String relPath) throws IOException {
     rsc("Is [{0}] a relative path to a repository file, relative to [{1}]?", relPath, filePath); //$NON-NLS-1$
 
-    FileResource fileResource = new FileResource(httpServletResponse);
+    FileResource fileResource = new FileResource(httpServletRequest, httpServletResponse);
     String path = RepositoryFilenameUtils.separatorsToRepository(RepositoryFilenameUtils.concat(filePath, "../" + relPath)); //$NON-NLS-1$
     Response response = fileResource.doGetFileOrDir(path.replace('/', ':').substring(1));
     if (response.getStatus() != Status.NOT_FOUND.getStatusCode()) {
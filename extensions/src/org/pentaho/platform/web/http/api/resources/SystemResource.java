@@ -23,8 +23,21 @@ package org.pentaho.platform.web.http.api.resources;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.jackrabbit.core.security.authorization.acl.ReadPermissionCache;
+import org.pentaho.platform.api.cache.ICacheInvalidationBus;
+import org.pentaho.platform.api.engine.IAuditEntry;
+import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.config.PentahoSpringBeansConfig;
+import org.pentaho.platform.engine.core.metrics.ExecutionMetricsFormatter;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.services.actionsequence.ActionSequenceCache;
+import org.pentaho.platform.engine.services.audit.AsyncAuditEntry;
+import org.pentaho.platform.plugin.action.sql.SQLResultSetCache;
+import org.pentaho.platform.plugin.services.cache.CacheInvalidationBus;
+import org.pentaho.platform.plugin.services.cache.CacheManager;
+import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
+import org.pentaho.platform.util.xml.TemplatesCache;
 import org.pentaho.platform.web.http.messages.Messages;
 
 import javax.ws.rs.GET;
@@ -34,6 +47,8 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * This api provides methods for discovering information about the system
@@ -45,6 +60,8 @@ public class SystemResource extends AbstractJaxRSResource {
 
   private static final Log logger = LogFactory.getLog(FileResource.class);
 
+  private static final String PROMETHEUS_TEXT_TYPE = "text/plain; version=0.0.4"; //$NON-NLS-1$
+
   /**
    * Returns all users, roles, and ACLs in an XML document. Moved
    * here from now removed SystemAllResource class
@@ -105,4 +122,120 @@ public class SystemResource extends AbstractJaxRSResource {
       throw new Exception(t);
     }
   }
+
+  /**
+   * Returns the execution metrics of the server as JSON: latency histograms of requests, action sequences,
+   * components, content generators, REST calls, repository calls and queries, counters of those calls and of the
+   * caches, and gauges of the cache sizes and the audit queue. Only administrators may read them.
+   *
+   * Response sample:
+   * {
+   *  "timers": {"component": {"SQLLookupRule": {"count": 12, "sumMillis": 130.5, "maxMillis": 40.2,
+   *    "p50Millis": 10, "p95Millis": 40.2, "p99Millis": 40.2, "buckets": {"1": 0, ..., "+Inf": 0}}}},
+   *  "counters": {"jdbc_statements": 12, "templates_cache_hits": 420, ...},
+   *  "gauges": {"templates_cache_size": 8, ...}
+   * }
+   *
+   * @return the metrics as JSON
+   */
+  @GET
+  @Path("/metrics")
+  @Produces({MediaType.APPLICATION_JSON})
+  public Response getMetrics() {
+    if (!canAdminister()) {
+      return Response.status(Response.Status.FORBIDDEN).build();
+    }
+    return Response.ok(ExecutionMetricsFormatter.toJson(getCounters(), getGauges())).type(MediaType.APPLICATION_JSON).build();
+  }
+
+  /**
+   * Returns the same metrics as {@link #getMetrics()} in the Prometheus text exposition format, for scraping.
+   *
+   * @return the metrics as text
+   */
+  @GET
+  @Path("/metrics")
+  @Produces({MediaType.TEXT_PLAIN})
+  public Response getMetricsAsText() {
+    if (!canAdminister()) {
+      return Response.status(Response.Status.FORBIDDEN).build();
+    }
+    return Response.ok(ExecutionMetricsFormatter.toPrometheus(getCounters(), getGauges())).type(PROMETHEUS_TEXT_TYPE).build();
+  }
+
+  private boolean canAdminister() {
+    IAuthorizationPolicy policy = PentahoSystem.get(IAuthorizationPolicy.class);
+    return policy != null && policy.isAllowed(AdministerSecurityAction.NAME);
+  }
+
+  /**
+   * Returns the totals kept by the caches, the invalidation bus and the audit writer, which only ever grow.
+   */
+  private Map<String, Number> getCounters() {
+    Map<String, Number> counters = new TreeMap<String, Number>();
+    counters.put("action_sequence_cache_hits", ActionSequenceCache.getHitCount()); //$NON-NLS-1$
+    counters.put("action_sequence_cache_misses", ActionSequenceCache.getMissCount()); //$NON-NLS-1$
+    counters.put("action_sequence_cache_parse_millis", ActionSequenceCache.getParseTimeMillis()); //$NON-NLS-1$
+    counters.put("action_sequence_cache_saved_parse_millis", ActionSequenceCache.getSavedParseTimeMillis()); //$NON-NLS-1$
+    counters.put("sql_result_cache_hits", SQLResultSetCache.getHitCount()); //$NON-NLS-1$
+    counters.put("sql_result_cache_misses", SQLResultSetCache.getMissCount()); //$NON-NLS-1$
+    counters.put("templates_cache_hits", TemplatesCache.getHitCount()); //$NON-NLS-1$
+    counters.put("templates_cache_misses", TemplatesCache.getMissCount()); //$NON-NLS-1$
+    counters.put("templates_cache_compile_millis", TemplatesCache.getCompileTimeMillis()); //$NON-NLS-1$
+    counters.put("read_permission_cache_hits", ReadPermissionCache.getTotalHitCount()); //$NON-NLS-1$
+    counters.put("read_permission_cache_misses", ReadPermissionCache.getTotalMissCount()); //$NON-NLS-1$
+    counters.put("read_permission_cache_evictions", ReadPermissionCache.getTotalEvictionCount()); //$NON-NLS-1$
+    counters.put("read_permission_cache_invalidations", ReadPermissionCache.getTotalInvalidationCount()); //$NON-NLS-1$
+    CacheInvalidationBus bus = getInvalidationBus();
+    if (bus != null) {
+      counters.put("cache_invalidation_sent_messages", bus.getSentMessageCount()); //$NON-NLS-1$
+      counters.put("cache_invalidation_sent_events", bus.getSentEventCount()); //$NON-NLS-1$
+      counters.put("cache_invalidation_received_messages", bus.getReceivedMessageCount()); //$NON-NLS-1$
+      counters.put("cache_invalidation_applied_events", bus.getAppliedEventCount()); //$NON-NLS-1$
+      counters.put("cache_invalidation_coalesced_events", bus.getCoalescedEventCount()); //$NON-NLS-1$
+      counters.put("cache_invalidation_failed_sends", bus.getFailedSendCount()); //$NON-NLS-1$
+      counters.put("cache_invalidation_rejected_messages", bus.getRejectedMessageCount()); //$NON-NLS-1$
+    }
+    AsyncAuditEntry audit = getAsyncAuditEntry();
+    if (audit != null) {
+      counters.put("audit_written", audit.getWrittenCount()); //$NON-NLS-1$
+      counters.put("audit_dropped", audit.getDroppedCount()); //$NON-NLS-1$
+      counters.put("audit_spilled", audit.getSpilledCount()); //$NON-NLS-1$
+      counters.put("audit_failed", audit.getFailedCount()); //$NON-NLS-1$
+    }
+    return counters;
+  }
+
+  /**
+   * Returns the current sizes and ages, which may go down as well as up.
+   */
+  private Map<String, Number> getGauges() {
+    Map<String, Number> gauges = new TreeMap<String, Number>();
+    gauges.put("templates_cache_size", TemplatesCache.size()); //$NON-NLS-1$
+    ICacheManager cacheManager = PentahoSystem.getCacheManager(null);
+    if (cacheManager instanceof CacheManager) {
+      gauges.put("session_cache_indexed_sessions", ((CacheManager) cacheManager).getIndexedSessionCount()); //$NON-NLS-1$
+      gauges.put("session_cache_indexed_keys", ((CacheManager) cacheManager).getIndexedSessionKeyCount()); //$NON-NLS-1$
+    }
+    AsyncAuditEntry audit = getAsyncAuditEntry();
+    if (audit != null) {
+      gauges.put("audit_queue_depth", audit.getQueueDepth()); //$NON-NLS-1$
+      gauges.put("audit_queue_capacity", audit.getCapacity()); //$NON-NLS-1$
+      gauges.put("audit_oldest_pending_millis", audit.getOldestPendingAgeMillis()); //$NON-NLS-1$
+      gauges.put("audit_last_lag_millis", audit.getLastLagMillis()); //$NON-NLS-1$
+    }
+    return gauges;
+  }
+
+  private CacheInvalidationBus getInvalidationBus() {
+    ICacheInvalidationBus invalidationBus = PentahoSystem.getObjectFactory().objectDefined(
+        ICacheInvalidationBus.class.getSimpleName()) ? PentahoSystem.get(ICacheInvalidationBus.class, null) : null;
+    return (invalidationBus instanceof CacheInvalidationBus) ? (CacheInvalidationBus) invalidationBus : null;
+  }
+
+  private AsyncAuditEntry getAsyncAuditEntry() {
+    IAuditEntry auditEntry = PentahoSystem.getObjectFactory().objectDefined(IAuditEntry.class.getSimpleName()) ? PentahoSystem
+        .get(IAuditEntry.class, null) : null;
+    return (auditEntry instanceof AsyncAuditEntry) ? (AsyncAuditEntry) auditEntry : null;
+  }
 }
@@ -0,0 +1,87 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software 
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this 
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html 
+ * or from the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ *
+*/
+package org.pentaho.platform.web.http.filters;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.engine.core.metrics.ExecutionMetrics;
+import org.pentaho.platform.engine.core.metrics.ExecutionSpan;
+
+/**
+ * Opens the root {@link ExecutionSpan} of a request, so that the action sequences, components, content generators,
+ * REST calls, repository calls and queries run for it are timed as part of it, and its breakdown is logged when it is
+ * slow. Should be mapped to <code>/*</code> ahead of the other filters, so that their time is counted too.
+ * <p>
+ * Init parameters: <code>slowExecutionThreshold</code>, in milliseconds, sets when the breakdown of a request is
+ * logged (0 turns this off); <code>enabled</code> set to <code>false</code> turns all recording off.
+ */
+public class ExecutionMetricsFilter implements Filter {
+
+  private static final Log logger = LogFactory.getLog(ExecutionMetricsFilter.class);
+
+  static final String FILTER_APPLIED = "__pentaho_execution_metrics_filter_applied"; //$NON-NLS-1$
+
+  public void init(FilterConfig filterConfig) throws ServletException {
+    String threshold = filterConfig.getInitParameter("slowExecutionThreshold"); //$NON-NLS-1$
+    if (threshold != null) {
+      try {
+        ExecutionSpan.setSlowExecutionThreshold(Long.parseLong(threshold.trim()));
+      } catch (NumberFormatException e) {
+        logger.warn("Ignoring invalid slowExecutionThreshold: " + threshold); //$NON-NLS-1$
+      }
+    }
+    String enabled = filterConfig.getInitParameter("enabled"); //$NON-NLS-1$
+    if (enabled != null) {
+      ExecutionMetrics.setEnabled(Boolean.parseBoolean(enabled.trim()));
+    }
+  }
+
+  public void destroy() {
+  }
+
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+      ServletException {
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+
+    if (httpRequest.getAttribute(FILTER_APPLIED) != null) {
+      // forwards and includes are timed as part of the request they belong to
+      chain.doFilter(request, response);
+      return;
+    }
+
+    httpRequest.setAttribute(FILTER_APPLIED, Boolean.TRUE);
+    String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+    ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.HTTP_REQUEST, ExecutionMetrics.getPathLabel(path));
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      span.end();
+      httpRequest.removeAttribute(FILTER_APPLIED);
+    }
+  }
+
+}
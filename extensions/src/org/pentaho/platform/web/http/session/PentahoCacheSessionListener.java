@@ -45,6 +45,7 @@ public class PentahoCacheSessionListener implements HttpSessionListener {
         IPentahoSession pentahoSession = (IPentahoSession) obj;
         if(pentahoSession != null) {
           cacheManager.removeRegionCache(pentahoSession.getId());  
+          cacheManager.killSessionCache(pentahoSession);
         }
         
       }
@@ -44,6 +44,8 @@ import org.pentaho.platform.api.engine.IParameterProvider;
 import org.pentaho.platform.api.engine.IPentahoRequestContext;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPluginManager;
+import org.pentaho.platform.engine.core.metrics.ExecutionMetrics;
+import org.pentaho.platform.engine.core.metrics.ExecutionSpan;
 import org.pentaho.platform.engine.core.solution.SimpleParameterProvider;
 import org.pentaho.platform.engine.core.system.PentahoRequestContextHolder;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
@@ -284,7 +286,12 @@ public class GenericServlet extends ServletBase {
       // String contentType = request.getContentType();
       //	    	SimpleStreamSource input = new SimpleStreamSource( "input", contentType, in, null ); //$NON-NLS-1$
       // contentGenerator.setInput(input);
-      contentGenerator.createContent();
+      ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.CONTENT_GENERATOR, contentGeneratorId);
+      try {
+        contentGenerator.createContent();
+      } finally {
+        span.end();
+      }
       if (PentahoSystem.debug) {
         debug("Generic Servlet content generate successfully"); //$NON-NLS-1$
       }
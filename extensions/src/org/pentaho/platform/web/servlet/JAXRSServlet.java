@@ -30,6 +30,8 @@ import javax.ws.rs.ext.MessageBodyWriter;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.engine.core.metrics.ExecutionMetrics;
+import org.pentaho.platform.engine.core.metrics.ExecutionSpan;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -65,7 +67,13 @@ public class JAXRSServlet extends SpringServlet {
     if (logger.isDebugEnabled()) {
       logger.debug("servicing request for resource " + request.getPathInfo()); //$NON-NLS-1$
     }
-    super.service(request, response);
+    ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.REST_RESOURCE, ExecutionMetrics.getPathLabel(request
+        .getPathInfo()));
+    try {
+      super.service(request, response);
+    } finally {
+      span.end();
+    }
   }
 
   @Override
@@ -0,0 +1,254 @@
+package org.pentaho.platform.plugin.services.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.plugin.services.importexport.IRepositoryImportLogger;
+import org.pentaho.platform.plugin.services.importexport.Log4JRepositoryImportLogger;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.UnexpectedRollbackException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class BatchedImporterTest {
+
+  private RecordingImporter importer;
+
+  private CountingTransactionManager transactionManager;
+
+  private List<StubItem> items;
+
+  @Before
+  public void setUp() throws Exception {
+    importer = new RecordingImporter();
+    transactionManager = new CountingTransactionManager();
+    items = new ArrayList<StubItem>();
+  }
+
+  @Test
+  public void testFilesAreImportedInBatches() throws Exception {
+    BatchedImporter batchedImporter = new BatchedImporter(importer, new TransactionTemplate(transactionManager), 3, 0);
+    for (int i = 0; i < 7; i++) {
+      batchedImporter.add(item("file" + i, false)); //$NON-NLS-1$
+    }
+    batchedImporter.finish();
+
+    assertEquals(Arrays.asList("file0", "file1", "file2", "file3", "file4", "file5", "file6"), importer.imported); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+    // the last batch holds a single file, which needs no batch transaction
+    assertEquals(2, transactionManager.commits);
+    assertEquals(7, batchedImporter.getFileCount());
+    assertEquals(70, batchedImporter.getByteCount());
+    assertAllReleased();
+  }
+
+  @Test
+  public void testFailedBatchIsImportedOneFileAtATime() throws Exception {
+    BatchedImporter batchedImporter = new BatchedImporter(importer, new TransactionTemplate(transactionManager), 3, 0);
+    importer.failing = "file1"; //$NON-NLS-1$
+    batchedImporter.add(item("folder", true)); //$NON-NLS-1$
+    batchedImporter.add(item("file1", false)); //$NON-NLS-1$
+    try {
+      batchedImporter.add(item("file2", false)); //$NON-NLS-1$
+      fail();
+    } catch (PlatformImportException e) {
+      // the replay fails on the same file
+    }
+
+    assertEquals(1, transactionManager.rollbacks);
+    assertEquals(0, transactionManager.commits);
+    assertEquals(1, batchedImporter.getReplayedBatchCount());
+    // folder imported in the rolled back batch and again on its own
+    assertEquals(Arrays.asList("folder", "folder"), importer.imported); //$NON-NLS-1$ //$NON-NLS-2$
+    assertAllReleased();
+  }
+
+  @Test
+  public void testBatchMarkedRollbackOnlyIsReplayed() throws Exception {
+    BatchedImporter batchedImporter = new BatchedImporter(importer, new TransactionTemplate(transactionManager), 2, 0);
+    transactionManager.failCommit = true;
+    batchedImporter.add(item("file1", false)); //$NON-NLS-1$
+    batchedImporter.add(item("file2", false)); //$NON-NLS-1$
+    batchedImporter.finish();
+
+    assertEquals(1, batchedImporter.getReplayedBatchCount());
+    assertEquals(Arrays.asList("file1", "file2", "file1", "file2"), importer.imported); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    assertAllReleased();
+  }
+
+  @Test
+  public void testItemWithSideEffectsIsImportedOnItsOwn() throws Exception {
+    BatchedImporter batchedImporter = new BatchedImporter(importer, new TransactionTemplate(transactionManager), 3, 0);
+    batchedImporter.add(item("file1", false)); //$NON-NLS-1$
+    batchedImporter.add(item("file2", false)); //$NON-NLS-1$
+    StubItem schema = item("schema", false); //$NON-NLS-1$
+    schema.repositoryOnly = false;
+    batchedImporter.add(schema);
+    batchedImporter.add(item("file3", false)); //$NON-NLS-1$
+    batchedImporter.finish();
+
+    assertEquals(Arrays.asList("file1", "file2", "schema", "file3"), importer.imported); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    // only file1 and file2 shared a transaction
+    assertEquals(1, transactionManager.commits);
+    assertAllReleased();
+  }
+
+  @Test
+  public void testLoggedImportIsBatched() throws Exception {
+    importer.logger = new Log4JRepositoryImportLogger();
+    ByteArrayOutputStream logStream = new ByteArrayOutputStream();
+    importer.logger.startJob(logStream, "/", Level.INFO); //$NON-NLS-1$
+    try {
+      BatchedImporter batchedImporter = new BatchedImporter(importer, new TransactionTemplate(transactionManager), 3, 0);
+      batchedImporter.add(item("file1", false)); //$NON-NLS-1$
+      batchedImporter.add(item("file2", false)); //$NON-NLS-1$
+      batchedImporter.add(item("file3", false)); //$NON-NLS-1$
+      batchedImporter.finish();
+    } finally {
+      importer.logger.endJob();
+    }
+
+    assertEquals(Arrays.asList("file1", "file2", "file3"), importer.imported); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    assertEquals(1, transactionManager.commits);
+    assertTrue(logStream.toString().contains("Import finished: 3 files")); //$NON-NLS-1$
+    assertAllReleased();
+  }
+
+  @Test
+  public void testOnlyBatchesAreImportedAsBatch() throws Exception {
+    importer.batchFlags = new ArrayList<Boolean>();
+    BatchedImporter batchedImporter = new BatchedImporter(importer, new TransactionTemplate(transactionManager), 2, 0);
+    importer.failing = "file2"; //$NON-NLS-1$
+    batchedImporter.add(item("file1", false)); //$NON-NLS-1$
+    try {
+      batchedImporter.add(item("file2", false)); //$NON-NLS-1$
+      fail();
+    } catch (PlatformImportException e) {
+      // the replay fails on the same file
+    }
+
+    // file1 and file2 in the batch, then file1 and file2 replayed outside of it
+    assertEquals(Arrays.asList(true, true, false, false), importer.batchFlags);
+    assertFalse(BatchedImporter.isImportingBatch());
+  }
+
+  @Test
+  public void testWithoutTransactionTemplate() throws Exception {
+    BatchedImporter batchedImporter = new BatchedImporter(importer, null, 10, 0);
+    batchedImporter.add(item("file1", false)); //$NON-NLS-1$
+    batchedImporter.add(item("file2", false)); //$NON-NLS-1$
+    batchedImporter.finish();
+
+    assertEquals(Arrays.asList("file1", "file2"), importer.imported); //$NON-NLS-1$ //$NON-NLS-2$
+    assertEquals(0, transactionManager.commits);
+    assertAllReleased();
+  }
+
+  private StubItem item(final String name, final boolean folder) {
+    StubItem item = new StubItem(name, folder);
+    items.add(item);
+    return item;
+  }
+
+  private void assertAllReleased() {
+    for (StubItem item : items) {
+      assertTrue(item.name, item.released);
+    }
+  }
+
+  private static class StubItem implements BatchedImporter.Item {
+    private final String name;
+
+    private final boolean folder;
+
+    private boolean repositoryOnly = true;
+
+    private boolean released;
+
+    private StubItem(final String name, final boolean folder) {
+      this.name = name;
+      this.folder = folder;
+    }
+
+    public IPlatformImportBundle createBundle() throws IOException {
+      return new RepositoryFileImportBundle.Builder().name(name).mime("text/directory").build(); //$NON-NLS-1$
+    }
+
+    public boolean isFolder() {
+      return folder;
+    }
+
+    public boolean isRepositoryOnly() {
+      return repositoryOnly;
+    }
+
+    public long getSize() {
+      return folder ? 0 : 10;
+    }
+
+    public void release() {
+      released = true;
+    }
+  }
+
+  private static class RecordingImporter implements IPlatformImporter {
+    private final List<String> imported = new ArrayList<String>();
+
+    private String failing;
+
+    private IRepositoryImportLogger logger;
+
+    private List<Boolean> batchFlags;
+
+    public void importFile(final IPlatformImportBundle bundle) throws PlatformImportException {
+      if (batchFlags != null) {
+        batchFlags.add(BatchedImporter.isImportingBatch());
+      }
+      if (bundle.getName().equals(failing)) {
+        throw new PlatformImportException("failed: " + failing); //$NON-NLS-1$
+      }
+      imported.add(bundle.getName());
+    }
+
+    public IRepositoryImportLogger getRepositoryImportLogger() {
+      return logger;
+    }
+  }
+
+  private static class CountingTransactionManager implements PlatformTransactionManager {
+    private int commits;
+
+    private int rollbacks;
+
+    private boolean failCommit;
+
+    public TransactionStatus getTransaction(final TransactionDefinition definition) {
+      return new SimpleTransactionStatus();
+    }
+
+    public void commit(final TransactionStatus status) {
+      if (failCommit) {
+        failCommit = false;
+        throw new UnexpectedRollbackException("marked rollback-only"); //$NON-NLS-1$
+      }
+      commits++;
+    }
+
+    public void rollback(final TransactionStatus status) {
+      rollbacks++;
+    }
+  }
+
+}
@@ -0,0 +1,170 @@
+package org.pentaho.platform.plugin.services.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.plugin.services.importexport.Log4JRepositoryImportLogger;
+import org.pentaho.test.platform.engine.core.MicroPlatform;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Imports a zip the way the import REST service does: through the platform importer, with an import log started.
+ */
+public class SolutionImportHandlerTest {
+
+  private RecordingHandler fileHandler;
+
+  private CountingTransactionManager transactionManager;
+
+  private PentahoPlatformImporter importer;
+
+  private Log4JRepositoryImportLogger importLogger;
+
+  private ByteArrayOutputStream logStream;
+
+  private MicroPlatform microPlatform;
+
+  @Before
+  public void setUp() throws Exception {
+    Map<String, String> mimes = new HashMap<String, String>();
+    mimes.put("txt", "text/plain"); //$NON-NLS-1$ //$NON-NLS-2$
+    mimes.put("zip", "application/zip"); //$NON-NLS-1$ //$NON-NLS-2$
+    NameBaseMimeResolver mimeResolver = new NameBaseMimeResolver(mimes);
+
+    transactionManager = new CountingTransactionManager();
+    SolutionImportHandler solutionImportHandler = new SolutionImportHandler(mimeResolver);
+    solutionImportHandler.setBlackList(new ArrayList<String>());
+    solutionImportHandler.setWhiteList(Arrays.asList(".txt")); //$NON-NLS-1$
+    solutionImportHandler.setTransactionTemplate(new TransactionTemplate(transactionManager));
+    solutionImportHandler.setBatchSize(3);
+    solutionImportHandler.setProgressInterval(0);
+
+    Map<String, IPlatformImportHandler> handlers = new HashMap<String, IPlatformImportHandler>();
+    handlers.put("application/zip", solutionImportHandler); //$NON-NLS-1$
+    importer = new PentahoPlatformImporter(handlers, mimeResolver);
+    // text/plain files and folders go to the default handler, so they only write repository content
+    fileHandler = new RecordingHandler();
+    importer.setDefaultHandler(fileHandler);
+    importLogger = new Log4JRepositoryImportLogger();
+    importer.setRepositoryImportLogger(importLogger);
+
+    microPlatform = new MicroPlatform();
+    microPlatform.defineInstance(IPlatformImporter.class, importer);
+    microPlatform.start();
+
+    logStream = new ByteArrayOutputStream();
+    importLogger.startJob(logStream, "/public", Level.INFO); //$NON-NLS-1$
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (importLogger.hasLogger()) {
+      importLogger.endJob();
+    }
+    microPlatform.stop();
+  }
+
+  @Test
+  public void testLoggedImportIsBatched() throws Exception {
+    importer.importFile(zipBundle(5));
+    importLogger.endJob();
+
+    assertEquals(Arrays.asList("reports", "file0.txt", "file1.txt", "file2.txt", "file3.txt", "file4.txt"), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+        fileHandler.imported);
+    // the folder and five files in two batches of three
+    assertEquals(2, transactionManager.commits);
+    assertEquals(0, transactionManager.rollbacks);
+    String log = logStream.toString();
+    assertTrue(log, log.contains("Import finished: 5 files")); //$NON-NLS-1$
+    assertTrue(log, log.contains("2 batches, 0 replayed")); //$NON-NLS-1$
+  }
+
+  @Test
+  public void testLoggedImportReplaysFailedBatch() throws Exception {
+    fileHandler.failing = "file1.txt"; //$NON-NLS-1$
+    importer.importFile(zipBundle(5));
+    importLogger.endJob();
+
+    // the first batch is rolled back after file1.txt fails and replayed one file at a time; the second is committed
+    assertEquals(Arrays.asList("reports", "file0.txt", "reports", "file0.txt", "file2.txt", "file3.txt", "file4.txt"), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+        fileHandler.imported);
+    assertEquals(1, transactionManager.rollbacks);
+    assertEquals(1, transactionManager.commits);
+    String log = logStream.toString();
+    assertTrue(log, log.contains("Batch of 3 files rolled back")); //$NON-NLS-1$
+    assertTrue(log, log.contains("failed: file1.txt")); //$NON-NLS-1$
+    assertTrue(log, log.contains("2 batches, 1 replayed")); //$NON-NLS-1$
+  }
+
+  private RepositoryFileImportBundle zipBundle(final int fileCount) throws Exception {
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    ZipOutputStream zipOut = new ZipOutputStream(zip);
+    for (int i = 0; i < fileCount; i++) {
+      zipOut.putNextEntry(new ZipEntry("reports/file" + i + ".txt")); //$NON-NLS-1$ //$NON-NLS-2$
+      zipOut.write(("content " + i).getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+      zipOut.closeEntry();
+    }
+    zipOut.close();
+    RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
+    bundleBuilder.input(new ByteArrayInputStream(zip.toByteArray()));
+    bundleBuilder.charSet("UTF-8"); //$NON-NLS-1$
+    bundleBuilder.hidden(false);
+    bundleBuilder.path("/public"); //$NON-NLS-1$
+    bundleBuilder.name("import.zip"); //$NON-NLS-1$
+    bundleBuilder.mime("application/zip"); //$NON-NLS-1$
+    bundleBuilder.overwriteFile(true);
+    bundleBuilder.applyAclSettings(false);
+    bundleBuilder.retainOwnership(true);
+    return bundleBuilder.build();
+  }
+
+  private static class RecordingHandler implements IPlatformImportHandler {
+    private final List<String> imported = new ArrayList<String>();
+
+    private String failing;
+
+    public void importFile(final IPlatformImportBundle bundle) throws PlatformImportException {
+      if (bundle.getName().equals(failing)) {
+        throw new PlatformImportException("failed: " + failing); //$NON-NLS-1$
+      }
+      imported.add(bundle.getName());
+    }
+  }
+
+  private static class CountingTransactionManager implements PlatformTransactionManager {
+    private int commits;
+
+    private int rollbacks;
+
+    public TransactionStatus getTransaction(final TransactionDefinition definition) {
+      return new SimpleTransactionStatus();
+    }
+
+    public void commit(final TransactionStatus status) {
+      commits++;
+    }
+
+    public void rollback(final TransactionStatus status) {
+      rollbacks++;
+    }
+  }
+
+}
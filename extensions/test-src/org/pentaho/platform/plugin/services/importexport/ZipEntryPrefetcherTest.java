@@ -0,0 +1,222 @@
+package org.pentaho.platform.plugin.services.importexport;
+
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+
+public class ZipEntryPrefetcherTest {
+
+  private ByteArrayOutputStream bytes;
+
+  private ZipOutputStream zos;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    bytes = new ByteArrayOutputStream();
+    zos = new ZipOutputStream(bytes);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    PentahoSessionHolder.removeSession();
+    executor.shutdown();
+  }
+
+  @Test
+  public void testEntriesAreWrittenInOrder() throws Exception {
+    ZipEntryPrefetcher prefetcher = new ZipEntryPrefetcher(zos, executor, 3);
+    try {
+      for (int i = 0; i < 10; i++) {
+        // earlier entries take longer to fetch
+        prefetcher.add(fetch("content" + i, (10 - i) * 5), writer("entry" + i)); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      prefetcher.flush();
+    } finally {
+      prefetcher.close();
+    }
+    zos.finish();
+
+    List<String> names = new ArrayList<String>();
+    ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    ZipEntry entry;
+    while ((entry = zis.getNextEntry()) != null) {
+      names.add(entry.getName());
+      assertEquals("content" + entry.getName().substring("entry".length()), IOUtils.toString(zis)); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    assertEquals(10, names.size());
+    for (int i = 0; i < names.size(); i++) {
+      assertEquals("entry" + i, names.get(i)); //$NON-NLS-1$
+    }
+  }
+
+  @Test
+  public void testFetchRunsAsCallingSession() throws Exception {
+    final IPentahoSession session = new StandaloneSession("joe"); //$NON-NLS-1$
+    PentahoSessionHolder.setSession(session);
+    final IPentahoSession[] seen = new IPentahoSession[1];
+    ZipEntryPrefetcher prefetcher = new ZipEntryPrefetcher(zos, executor, 1);
+    try {
+      prefetcher.add(new Callable<InputStream>() {
+        public InputStream call() {
+          seen[0] = PentahoSessionHolder.getSession();
+          return new ByteArrayInputStream(new byte[0]);
+        }
+      }, writer("a")); //$NON-NLS-1$
+      prefetcher.flush();
+    } finally {
+      prefetcher.close();
+    }
+    assertSame(session, seen[0]);
+  }
+
+  @Test
+  public void testFetchFailureIsRethrownOnWrite() throws Exception {
+    ZipEntryPrefetcher prefetcher = new ZipEntryPrefetcher(zos, executor, 4);
+    try {
+      prefetcher.add(new Callable<InputStream>() {
+        public InputStream call() throws ExportException {
+          throw new ExportException("boom"); //$NON-NLS-1$
+        }
+      }, writer("a")); //$NON-NLS-1$
+      prefetcher.flush();
+      fail();
+    } catch (IOException e) {
+      assertEquals(ExportException.class, e.getCause().getClass());
+    } finally {
+      prefetcher.close();
+    }
+  }
+
+  @Test
+  public void testSynchronousMode() throws Exception {
+    final Thread caller = Thread.currentThread();
+    final Thread[] seen = new Thread[1];
+    ZipEntryPrefetcher prefetcher = new ZipEntryPrefetcher(zos, null, 1);
+    try {
+      prefetcher.add(new Callable<InputStream>() {
+        public InputStream call() {
+          seen[0] = Thread.currentThread();
+          return new ByteArrayInputStream(new byte[0]);
+        }
+      }, writer("a")); //$NON-NLS-1$
+      prefetcher.flush();
+    } finally {
+      prefetcher.close();
+    }
+    assertSame(caller, seen[0]);
+  }
+
+  @Test
+  public void testCloseLetsRunningFetchFinishAndDiscardsItsContent() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch proceed = new CountDownLatch(1);
+    final boolean[] interrupted = new boolean[1];
+    final CountDownLatch discarded = new CountDownLatch(1);
+    ZipEntryPrefetcher prefetcher = new ZipEntryPrefetcher(zos, executor, 4);
+    prefetcher.add(new Callable<String>() {
+      public String call() throws Exception {
+        started.countDown();
+        try {
+          proceed.await();
+        } catch (InterruptedException e) {
+          interrupted[0] = true;
+        }
+        return "content"; //$NON-NLS-1$
+      }
+    }, new ZipEntryPrefetcher.EntryWriter<String>() {
+      @Override
+      public void write(ZipOutputStream zos, String content) {
+        fail();
+      }
+
+      @Override
+      public void discard(String content) {
+        discarded.countDown();
+      }
+    });
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    prefetcher.close();
+    proceed.countDown();
+
+    assertTrue(discarded.await(10, TimeUnit.SECONDS));
+    assertEquals(false, interrupted[0]);
+  }
+
+  @Test
+  public void testBuffer() throws Exception {
+    byte[] small = new byte[100];
+    assertEquals(100, IOUtils.toByteArray(ZipEntryPrefetcher.buffer(new ByteArrayInputStream(small))).length);
+
+    byte[] large = new byte[ZipEntryPrefetcher.MAX_BUFFERED_BYTES * 2 + 7];
+    large[large.length - 1] = 42;
+    byte[] copy = IOUtils.toByteArray(ZipEntryPrefetcher.buffer(new ByteArrayInputStream(large)));
+    assertEquals(large.length, copy.length);
+    assertEquals(42, copy[copy.length - 1]);
+  }
+
+  private Callable<InputStream> fetch(final String content, final long delayMillis) {
+    return new Callable<InputStream>() {
+      public InputStream call() throws Exception {
+        Thread.sleep(delayMillis);
+        return ZipEntryPrefetcher.buffer(new ByteArrayInputStream(content.getBytes("UTF-8"))); //$NON-NLS-1$
+      }
+    };
+  }
+
+  private ZipEntryPrefetcher.EntryWriter<InputStream> writer(final String entryName) {
+    return new ZipEntryPrefetcher.EntryWriter<InputStream>() {
+      @Override
+      public void write(ZipOutputStream zos, InputStream is) throws IOException {
+        zos.putNextEntry(new ZipEntry(entryName));
+        IOUtils.copy(is, zos);
+        zos.closeEntry();
+        is.close();
+      }
+    };
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright 2013 Pentaho Corporation.  All rights reserved.
+ */
+package org.pentaho.platform.web.http.api.resources;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+public class ByteRangeTest {
+
+  @Test
+  public void testClosedRange() {
+    ByteRange range = ByteRange.parse("bytes=0-499", 1000); //$NON-NLS-1$
+    assertTrue(range.isSatisfiable());
+    assertEquals(500, range.getLength());
+    assertEquals("bytes 0-499/1000", range.getContentRange()); //$NON-NLS-1$
+  }
+
+  @Test
+  public void testOpenAndClampedRanges() {
+    assertEquals("bytes 900-999/1000", ByteRange.parse("bytes=900-", 1000).getContentRange()); //$NON-NLS-1$ //$NON-NLS-2$
+    assertEquals("bytes 900-999/1000", ByteRange.parse("bytes=900-5000", 1000).getContentRange()); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  @Test
+  public void testSuffixRange() {
+    assertEquals("bytes 800-999/1000", ByteRange.parse("bytes=-200", 1000).getContentRange()); //$NON-NLS-1$ //$NON-NLS-2$
+    assertEquals("bytes 0-999/1000", ByteRange.parse("bytes=-5000", 1000).getContentRange()); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  @Test
+  public void testUnsatisfiable() {
+    ByteRange range = ByteRange.parse("bytes=1000-", 1000); //$NON-NLS-1$
+    assertFalse(range.isSatisfiable());
+    assertEquals("bytes */1000", range.getContentRange()); //$NON-NLS-1$
+    assertFalse(ByteRange.parse("bytes=-0", 1000).isSatisfiable()); //$NON-NLS-1$
+  }
+
+  @Test
+  public void testIgnored() {
+    assertNull(ByteRange.parse(null, 1000));
+    assertNull(ByteRange.parse("items=0-1", 1000)); //$NON-NLS-1$
+    assertNull(ByteRange.parse("bytes=0-1,5-6", 1000)); //$NON-NLS-1$
+    assertNull(ByteRange.parse("bytes=5-1", 1000)); //$NON-NLS-1$
+    assertNull(ByteRange.parse("bytes=a-", 1000)); //$NON-NLS-1$
+    assertNull(ByteRange.parse("bytes=-+5", 1000)); //$NON-NLS-1$
+  }
+
+  @Test
+  public void testCopy() throws Exception {
+    byte[] content = new byte[20000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    ByteRange range = ByteRange.parse("bytes=9000-18999", content.length); //$NON-NLS-1$
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    range.copy(new ByteArrayInputStream(content), out);
+    byte[] expected = new byte[10000];
+    System.arraycopy(content, 9000, expected, 0, expected.length);
+    assertArrayEquals(expected, out.toByteArray());
+  }
+
+}
@@ -18,9 +18,15 @@
 package org.pentaho.test.platform.plugin;
 
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import org.pentaho.platform.api.engine.ActionSequenceException;
+import org.pentaho.platform.api.engine.ILoopExecutionListener;
 import org.pentaho.platform.api.engine.IOutputHandler;
 import org.pentaho.platform.api.engine.IRuntimeContext;
+import org.pentaho.platform.api.engine.ISolutionActionDefinition;
 import org.pentaho.platform.api.engine.ISolutionEngine;
 import org.pentaho.platform.engine.core.output.SimpleOutputHandler;
 import org.pentaho.platform.engine.core.solution.SimpleParameterProvider;
@@ -98,6 +104,83 @@ public class RuntimeTest extends BaseTest {
     finishTest();
   }
 
+  public void testParallelLoopMergesInLoopOrder() {
+    startTest();
+    LoopRecorder recorder = new LoopRecorder();
+    IRuntimeContext context = runWithListener("/test/platform/ParallelLoopTest.xaction", recorder); //$NON-NLS-1$
+    assertEquals(IRuntimeContext.RUNTIME_STATUS_SUCCESS, context.getStatus());
+    assertEquals(Arrays.asList(new Long[] { 0L, 1L, 2L, 3L, 4L, 5L }), recorder.completed);
+    assertEquals(6, recorder.started.size());
+    // the last iteration's output wins, as in a sequential loop
+    assertEquals("f", context.getOutputParameter("value").getValue()); //$NON-NLS-1$ //$NON-NLS-2$
+    finishTest();
+  }
+
+  public void testParallelLoopStopsAtFirstFailure() {
+    startTest();
+    LoopRecorder recorder = new LoopRecorder();
+    IRuntimeContext context = runWithListener("/test/platform/ParallelLoopFailFastTest.xaction", recorder); //$NON-NLS-1$
+    assertEquals(IRuntimeContext.RUNTIME_STATUS_FAILURE, context.getStatus());
+    // iterations after the failed one are not merged, and those that had not started are cancelled
+    assertEquals(Arrays.asList(new Long[] { 0L, 1L, 2L }), recorder.completed);
+    assertEquals(Arrays.asList(new Long[] { 2L }), recorder.failed);
+    assertTrue(recorder.started.size() < 20);
+    finishTest();
+  }
+
+  public void testParallelLoopContinuesOnError() {
+    startTest();
+    LoopRecorder recorder = new LoopRecorder();
+    IRuntimeContext context = runWithListener("/test/platform/ParallelLoopContinueTest.xaction", recorder); //$NON-NLS-1$
+    // the loop still fails, but only after every iteration ran
+    assertEquals(IRuntimeContext.RUNTIME_STATUS_FAILURE, context.getStatus());
+    assertEquals(Arrays.asList(new Long[] { 0L, 1L, 2L, 3L, 4L, 5L }), recorder.completed);
+    assertEquals(Arrays.asList(new Long[] { 2L }), recorder.failed);
+    finishTest();
+  }
+
+  private IRuntimeContext runWithListener(final String actionPath, final ILoopExecutionListener listener) {
+    StandaloneSession session = new StandaloneSession(Messages.getInstance().getString("BaseTest.DEBUG_JUNIT_SESSION")); //$NON-NLS-1$
+    ISolutionEngine solutionEngine = PentahoSystem.get(ISolutionEngine.class, session);
+    solutionEngine.setLoggingLevel(getLoggingLevel());
+    solutionEngine.init(session);
+    solutionEngine.setlistener(listener);
+    return run(solutionEngine, actionPath, null, false, new SimpleParameterProvider(), getOutputHandler(
+        (OutputStream) null));
+  }
+
+  /**
+   * Records the iterations of a loop as they are started and as their results are merged.
+   */
+  private static class LoopRecorder implements ILoopExecutionListener {
+    private final List<Long> started = new ArrayList<Long>();
+
+    private final List<Long> completed = new ArrayList<Long>();
+
+    private final List<Long> failed = new ArrayList<Long>();
+
+    public void loaded(IRuntimeContext runtime) {
+    }
+
+    public void validated(IRuntimeContext runtime) {
+    }
+
+    public void action(IRuntimeContext runtime, ISolutionActionDefinition action) {
+    }
+
+    public synchronized void loop(IRuntimeContext runtime, long count) {
+      started.add(count);
+    }
+
+    public synchronized void loopIterationComplete(IRuntimeContext runtime, long count, long durationMillis,
+        ActionSequenceException failure) {
+      completed.add(count);
+      if (failure != null) {
+        failed.add(count);
+      }
+    }
+  }
+
   /*public void testBursting() {
     startTest();
     IRuntimeContext context = run("test", "platform", "BurstingTest.xaction"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
@@ -0,0 +1,190 @@
+package org.pentaho.test.platform.plugin;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+import org.pentaho.platform.api.data.IDBDatasourceService;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
+import org.pentaho.platform.plugin.action.sql.SQLResultSetCache;
+import org.pentaho.platform.plugin.action.sql.SQLResultSetCacheStatistics;
+import org.springframework.security.GrantedAuthority;
+import org.springframework.security.GrantedAuthorityImpl;
+import org.springframework.security.context.SecurityContextHolder;
+import org.springframework.security.providers.UsernamePasswordAuthenticationToken;
+
+@SuppressWarnings("nls")
+public class SQLResultSetCacheTest {
+
+  private static final String QUERY = "SELECT REGION, SUM(ACTUAL)\n  FROM QUADRANT_ACTUALS\n WHERE REGION = ?";
+
+  private SimpleMapCacheManager cacheManager;
+
+  private SQLResultSetCache cache;
+
+  @Before
+  public void setUp() {
+    cacheManager = new SimpleMapCacheManager();
+    cache = new SQLResultSetCache(cacheManager, "SampleData, Other", 300, 1024 * 1024);
+    authenticate("joe", "Authenticated", "Admin");
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void testHitsAreIndependentCopies() {
+    SQLResultSetCacheStatistics before = statistics("SampleData");
+    assertNull(get("SampleData", QUERY, params("Eastern"), -1, null));
+    MemoryResultSet results = results();
+    put("SampleData", QUERY, params("Eastern"), -1, null, results, 60);
+    results.getDataRow(0)[1] = Integer.valueOf(-1);
+
+    IPentahoResultSet first = get("SampleData", QUERY, params("Eastern"), -1, null);
+    assertNotNull(first);
+    assertEquals(2, first.getRowCount());
+    assertEquals(Integer.valueOf(100), first.getValueAt(0, 1));
+    assertEquals("REGION", first.getMetaData().getColumnHeaders()[0][0]);
+    ((MemoryResultSet) first).getDataRow(0)[1] = Integer.valueOf(-2);
+    ((Date) first.getValueAt(0, 2)).setTime(0);
+    assertNotNull(first.next());
+
+    IPentahoResultSet second = get("SampleData", QUERY, params("Eastern"), -1, null);
+    assertEquals(Integer.valueOf(100), second.getValueAt(0, 1));
+    assertEquals(new Date(1000), second.getValueAt(0, 2));
+    assertEquals("Eastern", second.next()[0]);
+
+    SQLResultSetCacheStatistics after = statistics("SampleData");
+    assertEquals(2, after.getHitCount() - before.getHitCount());
+    assertEquals(1, after.getMissCount() - before.getMissCount());
+    assertEquals(1, after.getPutCount() - before.getPutCount());
+  }
+
+  @Test
+  public void testKeyedByQueryAndParameters() {
+    put("SampleData", QUERY, params("Eastern"), -1, null, results(), 60);
+    assertNotNull(get("SampleData", "  SELECT REGION,   SUM(ACTUAL) FROM QUADRANT_ACTUALS\tWHERE REGION = ?\n",
+        params("Eastern"), -1, null));
+    assertNull(get("SampleData", QUERY, params("Western"), -1, null));
+    assertNull(get("SampleData", QUERY, params("Eastern"), 10, null));
+    assertNull(get("Other", QUERY, params("Eastern"), -1, null));
+
+    put("SampleData", QUERY, params(Integer.valueOf(1)), -1, null, results(), 60);
+    assertNull(get("SampleData", QUERY, params("1"), -1, null));
+    assertNotNull(get("SampleData", QUERY, params(Integer.valueOf(1)), -1, null));
+
+    // whitespace inside literals is significant
+    put("SampleData", "SELECT * FROM T WHERE A = 'x  y'", null, -1, null, results(), 60);
+    assertNull(get("SampleData", "SELECT * FROM T WHERE A = 'x y'", null, -1, null));
+    assertNotNull(get("SampleData", "SELECT *  FROM T WHERE A = 'x  y'", null, -1, null));
+  }
+
+  @Test
+  public void testKeyedByUserAndRoles() {
+    put("SampleData", QUERY, params("Eastern"), -1, null, results(), 60);
+    authenticate("suzy", "Authenticated", "Admin");
+    assertNull(get("SampleData", QUERY, params("Eastern"), -1, null));
+    authenticate("joe", "Authenticated");
+    assertNull(get("SampleData", QUERY, params("Eastern"), -1, null));
+    authenticate("joe", "Admin", "Authenticated");
+    assertNotNull(get("SampleData", QUERY, params("Eastern"), -1, null));
+  }
+
+  @Test
+  public void testInvalidation() {
+    long invalidations = statistics("SampleData").getInvalidationCount();
+    put("SampleData", QUERY, params("Eastern"), -1, null, results(), 60);
+    put("Other", QUERY, params("Eastern"), -1, null, results(), 60);
+    cache.invalidate("SampleData");
+    assertNull(get("SampleData", QUERY, params("Eastern"), -1, null));
+    assertNotNull(get("Other", QUERY, params("Eastern"), -1, null));
+    assertEquals(1, statistics("SampleData").getInvalidationCount() - invalidations);
+
+    // as the datasource service does on clearDataSource
+    cacheManager.removeFromRegionCache(IDBDatasourceService.RESULT_CACHE, "Other");
+    assertNull(get("Other", QUERY, params("Eastern"), -1, null));
+
+    put("SampleData", QUERY, params("Eastern"), -1, null, results(), 60);
+    assertNotNull(get("SampleData", QUERY, params("Eastern"), -1, null));
+    cache.invalidateAll();
+    assertNull(get("SampleData", QUERY, params("Eastern"), -1, null));
+  }
+
+  @Test
+  public void testResultsReadBeforeInvalidationAreNotCached() {
+    long generation = cache.getGeneration("SampleData");
+    // the datasource is invalidated while the query runs
+    cache.invalidate("SampleData");
+    cache.put("SampleData", generation, QUERY, params("Eastern"), -1, null, results(), 60);
+    assertNull(get("SampleData", QUERY, params("Eastern"), -1, null));
+    assertNull(cache.get("SampleData", generation, QUERY, params("Eastern"), -1, null));
+  }
+
+  @Test
+  public void testConfiguration() {
+    assertTrue(cache.isCachedDatasource("SampleData"));
+    assertTrue(cache.isCachedDatasource("Other"));
+    assertFalse(cache.isCachedDatasource("Reporting"));
+    assertEquals(300, cache.getDefaultTtlSeconds());
+    assertFalse(new SQLResultSetCache(null, "SampleData", 300, 1024).isCachedDatasource("SampleData"));
+
+    // nothing but in memory results with a time to live is cached
+    put("Reporting", QUERY, null, -1, null, results(), 0);
+    assertNull(get("Reporting", QUERY, null, -1, null));
+  }
+
+  private IPentahoResultSet get(final String datasource, final String query, final List<Object> parameters,
+      final int maxRows, final IPentahoSession session) {
+    return cache.get(datasource, cache.getGeneration(datasource), query, parameters, maxRows, session);
+  }
+
+  private void put(final String datasource, final String query, final List<Object> parameters, final int maxRows,
+      final IPentahoSession session, final MemoryResultSet results, final long ttlSeconds) {
+    cache.put(datasource, cache.getGeneration(datasource), query, parameters, maxRows, session, results, ttlSeconds);
+  }
+
+  private static void authenticate(final String user, final String... roles) {
+    GrantedAuthority[] authorities = new GrantedAuthority[roles.length];
+    for (int i = 0; i < roles.length; i++) {
+      authorities[i] = new GrantedAuthorityImpl(roles[i]);
+    }
+    SecurityContextHolder.getContext().setAuthentication(
+        new UsernamePasswordAuthenticationToken(user, "password", authorities));
+  }
+
+  private static List<Object> params(final Object value) {
+    return Collections.singletonList(value);
+  }
+
+  private static MemoryResultSet results() {
+    MemoryResultSet results = new MemoryResultSet(new MemoryMetaData(new Object[][] { { "REGION", "ACTUAL", "UPDATED" } }, null));
+    results.addRow(new Object[] { "Eastern", Integer.valueOf(100), new Date(1000) });
+    results.addRow(new Object[] { "Western", Integer.valueOf(200), new Date(2000) });
+    return results;
+  }
+
+  private static SQLResultSetCacheStatistics statistics(final String datasource) {
+    for (SQLResultSetCacheStatistics statistics : SQLResultSetCache.getStatistics()) {
+      if (statistics.getDatasource().equals(datasource)) {
+        return statistics;
+      }
+    }
+    return new SQLResultSetCacheStatistics(datasource, 0, 0, 0, 0);
+  }
+
+}
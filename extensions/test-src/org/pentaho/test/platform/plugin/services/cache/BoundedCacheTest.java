@@ -0,0 +1,119 @@
+package org.pentaho.test.platform.plugin.services.cache;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.pentaho.platform.api.cache.ICacheWeigher;
+import org.pentaho.platform.plugin.services.cache.BoundedCache;
+import org.pentaho.platform.plugin.services.cache.BoundedCacheProvider;
+import org.pentaho.platform.plugin.services.cache.DefaultCacheWeigher;
+
+@SuppressWarnings("nls")
+public class BoundedCacheTest {
+
+  private static final ICacheWeigher HUNDRED_BYTES = new ICacheWeigher() {
+    public long weigh(Object key, Object value) {
+      return 100L;
+    }
+  };
+
+  @Test
+  public void testStaysWithinMaximumWeight() {
+    BoundedCache cache = new BoundedCache("test", 1000L, 0L, 0L, HUNDRED_BYTES);
+    for (int i = 0; i < 50; i++) {
+      cache.put("key" + i, "value" + i);
+    }
+    assertTrue(cache.getSizeInMemory() <= 1000L);
+    assertEquals(cache.getSizeInMemory() / 100L, cache.getElementCountInMemory());
+    assertEquals(50L - cache.getElementCountInMemory(), cache.getEvictionCount());
+    assertEquals(cache.getEvictionCount() * 100L, cache.getEvictedWeight());
+  }
+
+  @Test
+  public void testFrequentEntriesSurviveScan() {
+    BoundedCache cache = new BoundedCache("test", 1000L, 0L, 0L, HUNDRED_BYTES);
+    for (int i = 0; i < 5; i++) {
+      cache.put("hot" + i, "value" + i);
+    }
+    for (int read = 0; read < 10; read++) {
+      for (int i = 0; i < 5; i++) {
+        assertNotNull(cache.get("hot" + i));
+      }
+    }
+    // entries used once do not displace entries used often
+    for (int i = 0; i < 100; i++) {
+      cache.put("cold" + i, "value" + i);
+    }
+    for (int i = 0; i < 5; i++) {
+      assertEquals("value" + i, cache.get("hot" + i));
+    }
+  }
+
+  @Test
+  public void testReplaceAndRemove() {
+    BoundedCache cache = new BoundedCache("test", 1000L, 0L, 0L, new DefaultCacheWeigher());
+    cache.put("key", new byte[100]);
+    long weight = cache.getSizeInMemory();
+    cache.put("key", new byte[200]);
+    assertEquals(1L, cache.getElementCountInMemory());
+    assertEquals(weight + 100L, cache.getSizeInMemory());
+
+    // an entry heavier than the region is not cached, and does not leave the value it replaces behind
+    cache.put("key", new byte[2000]);
+    assertNull(cache.get("key"));
+    assertEquals(0L, cache.getSizeInMemory());
+
+    cache.put("key", "value");
+    cache.remove("key");
+    assertNull(cache.get("key"));
+    assertEquals(0L, cache.getSizeInMemory());
+
+    cache.put("key", "value");
+    cache.clear();
+    assertEquals(0L, cache.getElementCountInMemory());
+    assertEquals(0L, cache.getSizeInMemory());
+  }
+
+  @Test
+  public void testExpireAfterWrite() throws Exception {
+    BoundedCache cache = new BoundedCache("test", 1000L, TimeUnit.MILLISECONDS.toNanos(1L), 0L, HUNDRED_BYTES);
+    cache.put("key", "value");
+    Thread.sleep(5L);
+    assertNull(cache.get("key"));
+    assertEquals(1L, cache.getExpirationCount());
+    assertEquals(0L, cache.getSizeInMemory());
+  }
+
+  @Test
+  public void testProviderSettings() {
+    Properties defaults = new Properties();
+    defaults.setProperty(BoundedCacheProvider.MAXIMUM_WEIGHT, "5000");
+    defaults.setProperty("large." + BoundedCacheProvider.MAXIMUM_WEIGHT, "100000");
+    BoundedCacheProvider provider = new BoundedCacheProvider();
+    provider.start(defaults);
+
+    assertEquals(5000L, ((BoundedCache) provider.buildCache("small", null)).getMaximumWeight());
+    assertEquals(100000L, ((BoundedCache) provider.buildCache("large", null)).getMaximumWeight());
+    Properties regionProperties = new Properties();
+    regionProperties.setProperty(BoundedCacheProvider.MAXIMUM_WEIGHT, "7000");
+    assertEquals(7000L, ((BoundedCache) provider.buildCache("small", regionProperties)).getMaximumWeight());
+  }
+
+  @Test
+  public void testDefaultWeigher() {
+    DefaultCacheWeigher weigher = new DefaultCacheWeigher();
+    long small = weigher.weigh("key", "value");
+    assertTrue(weigher.weigh("key", new byte[10000]) > 10000L);
+    assertTrue(weigher.weigh("key", new byte[10000]) > small);
+    assertTrue(weigher.weigh("key", new ArrayList<String>(Collections.nCopies(100, "value"))) > 10L * small);
+  }
+
+}
@@ -0,0 +1,234 @@
+package org.pentaho.test.platform.plugin.services.cache;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.cache.ICacheInvalidationListener;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.plugin.services.cache.CacheExpirationRegistry;
+import org.pentaho.platform.plugin.services.cache.CacheInvalidationBus;
+import org.pentaho.platform.plugin.services.cache.ICacheInvalidationTransport;
+import org.pentaho.platform.plugin.services.cache.LastModifiedCache;
+import org.pentaho.platform.plugin.services.cache.OffHeapCache;
+
+@SuppressWarnings("nls")
+public class CacheInvalidationBusTest {
+
+  private List<CacheInvalidationBus> cluster;
+
+  private LoopbackTransport transport1;
+
+  private CacheInvalidationBus node1;
+
+  private CacheInvalidationBus node2;
+
+  private RecordingListener listener1;
+
+  private RecordingListener listener2;
+
+  @Before
+  public void setUp() throws Exception {
+    cluster = new ArrayList<CacheInvalidationBus>();
+    transport1 = new LoopbackTransport(cluster);
+    node1 = new CacheInvalidationBus(transport1);
+    node2 = new CacheInvalidationBus(new LoopbackTransport(cluster));
+    for (CacheInvalidationBus node : Arrays.asList(node1, node2)) {
+      // flushed by the tests only
+      node.setFlushInterval(60000L);
+      node.setCacheExpirationRegistry(new CacheExpirationRegistry());
+      node.start();
+    }
+    listener1 = new RecordingListener();
+    listener2 = new RecordingListener();
+    node1.addListener(listener1);
+    node2.addListener(listener2);
+  }
+
+  @After
+  public void tearDown() {
+    node1.stop();
+    node2.stop();
+  }
+
+  @Test
+  public void testInvalidationsReachTheOtherNodes() throws Exception {
+    node1.publishRemove("region", "key");
+    node1.publishRemove("region", Long.valueOf(42L));
+    node1.publishRemove("region", Integer.valueOf(7));
+    node1.publishClear("other");
+    node1.flush();
+    node2.flush();
+    assertEquals(Arrays.asList("clear other", "remove region key", "remove region 42", "remove region 7"),
+        listener2.events);
+    assertEquals(Long.class, listener2.keys.get(2).getClass());
+    assertEquals(Integer.class, listener2.keys.get(3).getClass());
+    // a node does not apply its own invalidations
+    assertTrue(listener1.events.isEmpty());
+    assertEquals(4L, node2.getAppliedEventCount());
+    assertEquals(1L, node1.getSentMessageCount());
+  }
+
+  @Test
+  public void testInvalidationsAreCoalesced() throws Exception {
+    node1.publishRemove("region", "key1");
+    node1.publishRemove("region", "key1");
+    node1.publishRemove("region", "key2");
+    node1.publishClear("region");
+    node1.publishRemove("region", "key3");
+    node1.flush();
+    node2.flush();
+    assertEquals(Arrays.asList("clear region"), listener2.events);
+    assertEquals(1L, node1.getSentEventCount());
+    assertEquals(4L, node1.getCoalescedEventCount());
+  }
+
+  @Test
+  public void testTooManyKeysClearTheRegion() throws Exception {
+    node1.setMaximumKeysPerRegion(2);
+    node1.publishRemove("region", "key1");
+    node1.publishRemove("region", "key2");
+    node1.publishRemove("region", "key3");
+    node1.flush();
+    node2.flush();
+    assertEquals(Arrays.asList("clear region"), listener2.events);
+  }
+
+  @Test
+  public void testKeysThatCannotTravelClearTheRegion() throws Exception {
+    node1.publishRemove("region", new Object());
+    node1.publishRemove(ICacheManager.SESSION, "key");
+    node1.publishClear(ICacheManager.SESSION);
+    node1.flush();
+    node2.flush();
+    assertEquals(Arrays.asList("clear region"), listener2.events);
+  }
+
+  @Test
+  public void testLargeBatchesAreSplit() throws Exception {
+    transport1.maximumMessageSize = 100;
+    for (int i = 0; i < 20; i++) {
+      node1.publishRemove("region", "key" + i);
+    }
+    node1.flush();
+    node2.flush();
+    assertEquals(20, listener2.events.size());
+    assertTrue(node1.getSentMessageCount() > 1);
+    assertEquals(node1.getSentMessageCount(), node2.getReceivedMessageCount());
+  }
+
+  @Test
+  public void testFailedSendsAreRetried() throws Exception {
+    transport1.failing = true;
+    node1.publishRemove("region", "key");
+    node1.flush();
+    assertEquals(1L, node1.getFailedSendCount());
+    transport1.failing = false;
+    node1.flush();
+    node2.flush();
+    assertEquals(Arrays.asList("remove region key"), listener2.events);
+  }
+
+  @Test
+  public void testUnreadableMessagesAreRejected() {
+    node2.receive(new byte[] { 9 });
+    node2.receive(new byte[] { 1, 0, 0 });
+    assertEquals(2L, node2.getRejectedMessageCount());
+    node2.flush();
+    assertTrue(listener2.events.isEmpty());
+  }
+
+  @Test
+  public void testLastModifiedTimesAreShared() throws Exception {
+    CacheExpirationRegistry registry1 = new CacheExpirationRegistry();
+    CacheExpirationRegistry registry2 = new CacheExpirationRegistry();
+    LastModifiedCache item1 = new LastModifiedCache(new OffHeapCache("shared", 4096), 1000L);
+    LastModifiedCache item2 = new LastModifiedCache(new OffHeapCache("shared", 4096), 500L);
+    registry1.register(item1);
+    registry2.register(item2);
+    node1.setCacheExpirationRegistry(registry1);
+    node2.setCacheExpirationRegistry(registry2);
+    node1.flush();
+    node2.flush();
+    // times seen for the first time are not news
+    assertEquals(500L, item2.getLastModified());
+
+    item1.setLastModified(2000L);
+    node1.flush();
+    node2.flush();
+    assertEquals(2000L, item2.getLastModified());
+
+    // and are not sent back
+    long sent = node2.getSentMessageCount();
+    node2.flush();
+    assertEquals(sent, node2.getSentMessageCount());
+    item1.destroy();
+    item2.destroy();
+  }
+
+  @Test
+  public void testStopSendsPendingInvalidations() throws Exception {
+    node1.publishClear("region");
+    node1.stop();
+    node1.publishClear("ignored");
+    node1.flush();
+    node2.flush();
+    assertEquals(Arrays.asList("clear region"), listener2.events);
+  }
+
+  private static class LoopbackTransport implements ICacheInvalidationTransport {
+    private final List<CacheInvalidationBus> cluster;
+
+    private int maximumMessageSize = 1024;
+
+    private boolean failing;
+
+    LoopbackTransport(final List<CacheInvalidationBus> cluster) {
+      this.cluster = cluster;
+    }
+
+    public void start(final CacheInvalidationBus bus) {
+      cluster.add(bus);
+    }
+
+    public void send(final byte[] message) throws IOException {
+      if (failing) {
+        throw new IOException("unreachable");
+      }
+      for (CacheInvalidationBus bus : cluster) {
+        bus.receive(message);
+      }
+    }
+
+    public int getMaximumMessageSize() {
+      return maximumMessageSize;
+    }
+
+    public void stop() {
+    }
+  }
+
+  private static class RecordingListener implements ICacheInvalidationListener {
+    private final List<String> events = new ArrayList<String>();
+
+    private final List<Object> keys = new ArrayList<Object>();
+
+    public void onRemove(final String region, final Object key) {
+      events.add("remove " + region + " " + key);
+      keys.add(key);
+    }
+
+    public void onClear(final String region) {
+      events.add("clear " + region);
+      keys.add(null);
+    }
+  }
+
+}
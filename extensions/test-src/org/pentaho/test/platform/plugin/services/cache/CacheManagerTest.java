@@ -26,6 +26,7 @@ import org.dom4j.Element;
 import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.plugin.services.cache.CacheManager;
 import org.pentaho.test.platform.engine.core.BaseTest;
 
 import junit.framework.Assert;
@@ -222,6 +223,62 @@ public class CacheManagerTest extends BaseTest {
 
 	  }
 
+	 public void testSessionKeyIndex() {
+	    CacheManager cacheManager = (CacheManager) PentahoSystem.getCacheManager(null);
+	    cacheManager.killSessionCaches();
+	    StandaloneSession userSession1 = new StandaloneSession("Standalone Session", "index-session-1"); //$NON-NLS-1$ //$NON-NLS-2$
+	    StandaloneSession userSession2 = new StandaloneSession("Standalone Session", "index-session-2"); //$NON-NLS-1$ //$NON-NLS-2$
+
+	    cacheManager.putInSessionCache(userSession1, "first", "value1"); //$NON-NLS-1$ //$NON-NLS-2$
+	    cacheManager.putInSessionCache(userSession1, "second", "value2"); //$NON-NLS-1$ //$NON-NLS-2$
+	    cacheManager.putInSessionCache(userSession1, "second", "value2"); //$NON-NLS-1$ //$NON-NLS-2$
+	    cacheManager.putInSessionCache(userSession2, "first", "value3"); //$NON-NLS-1$ //$NON-NLS-2$
+	    Assert.assertEquals(2, cacheManager.getIndexedSessionCount());
+	    Assert.assertEquals(3, cacheManager.getIndexedSessionKeyCount());
+
+	    cacheManager.removeFromSessionCache(userSession1, "first"); //$NON-NLS-1$
+	    Assert.assertEquals(2, cacheManager.getIndexedSessionKeyCount());
+
+	    cacheManager.killSessionCache(userSession1);
+	    Assert.assertNull(cacheManager.getFromSessionCache(userSession1, "second")); //$NON-NLS-1$
+	    Assert.assertEquals("value3", cacheManager.getFromSessionCache(userSession2, "first")); //$NON-NLS-1$ //$NON-NLS-2$
+	    Assert.assertEquals(1, cacheManager.getIndexedSessionCount());
+	    Assert.assertEquals(1, cacheManager.getIndexedSessionKeyCount());
+
+	    // logging out ends the session's entries too
+	    cacheManager.onLogout(userSession2);
+	    Assert.assertNull(cacheManager.getFromSessionCache(userSession2, "first")); //$NON-NLS-1$
+	    Assert.assertEquals(0, cacheManager.getIndexedSessionCount());
+	  }
+
+
+	 public void testPutRacingWithKillIsNotIndexed() {
+	    final CacheManager cacheManager = (CacheManager) PentahoSystem.getCacheManager(null);
+	    cacheManager.killSessionCaches();
+	    final StandaloneSession endingSession = new StandaloneSession("Standalone Session", "racing-session"); //$NON-NLS-1$ //$NON-NLS-2$
+	    // ends the session once the entry is in the cache, before it is indexed
+	    StandaloneSession racingSession = new StandaloneSession("Standalone Session", "racing-session") { //$NON-NLS-1$ //$NON-NLS-2$
+	      private int idCount;
+
+	      @Override
+	      public String getId() {
+	        if (++idCount == 2) {
+	          cacheManager.killSessionCache(endingSession);
+	        }
+	        return super.getId();
+	      }
+	    };
+
+	    cacheManager.putInSessionCache(racingSession, "key", "value"); //$NON-NLS-1$ //$NON-NLS-2$
+	    Assert.assertNull(cacheManager.getFromSessionCache(endingSession, "key")); //$NON-NLS-1$
+	    Assert.assertEquals(0, cacheManager.getIndexedSessionCount());
+
+	    // a put that starts after the kill is indexed as usual
+	    cacheManager.putInSessionCache(endingSession, "key", "value"); //$NON-NLS-1$ //$NON-NLS-2$
+	    Assert.assertEquals(1, cacheManager.getIndexedSessionCount());
+	    cacheManager.killSessionCache(endingSession);
+	    Assert.assertEquals(0, cacheManager.getIndexedSessionCount());
+	  }
 
 	public static void main(final String[] args) {
 		CacheManagerTest test = new CacheManagerTest();
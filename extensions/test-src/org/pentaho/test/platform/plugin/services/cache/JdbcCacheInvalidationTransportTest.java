@@ -0,0 +1,95 @@
+package org.pentaho.test.platform.plugin.services.cache;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.cache.ICacheInvalidationListener;
+import org.pentaho.platform.plugin.services.cache.CacheExpirationRegistry;
+import org.pentaho.platform.plugin.services.cache.CacheInvalidationBus;
+import org.pentaho.platform.plugin.services.cache.JdbcCacheInvalidationTransport;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+@SuppressWarnings("nls")
+public class JdbcCacheInvalidationTransportTest {
+
+  private JdbcCacheInvalidationTransport transport1;
+
+  private JdbcCacheInvalidationTransport transport2;
+
+  private CacheInvalidationBus node1;
+
+  private CacheInvalidationBus node2;
+
+  private final List<String> applied = new ArrayList<String>();
+
+  @Before
+  public void setUp() throws Exception {
+    DataSource dataSource = new DriverManagerDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:cacheinvalidation",
+        "sa", "");
+    transport1 = createTransport(dataSource);
+    transport2 = createTransport(dataSource);
+    node1 = createNode(transport1);
+    node2 = createNode(transport2);
+    node2.addListener(new ICacheInvalidationListener() {
+      public void onRemove(final String region, final Object key) {
+        applied.add("remove " + region + " " + key);
+      }
+
+      public void onClear(final String region) {
+        applied.add("clear " + region);
+      }
+    });
+  }
+
+  @After
+  public void tearDown() {
+    node1.stop();
+    node2.stop();
+  }
+
+  @Test
+  public void testMessagesAreReadOnce() throws Exception {
+    node1.publishRemove("DataSource", "SampleData");
+    node1.publishClear("mondrian-catalog-cache");
+    node1.flush();
+
+    transport2.poll(node2);
+    node2.flush();
+    assertEquals(Arrays.asList("clear mondrian-catalog-cache", "remove DataSource SampleData"), applied);
+
+    // read again within the overlap, but not handed to the bus twice
+    transport2.poll(node2);
+    node2.flush();
+    assertEquals(2, applied.size());
+    assertEquals(1L, node2.getReceivedMessageCount());
+
+    // a node does not read its own messages
+    transport1.poll(node1);
+    assertEquals(0L, node1.getReceivedMessageCount());
+  }
+
+  private static JdbcCacheInvalidationTransport createTransport(final DataSource dataSource) {
+    JdbcCacheInvalidationTransport transport = new JdbcCacheInvalidationTransport();
+    transport.setDataSource(dataSource);
+    // polled by the test only
+    transport.setPollInterval(60000L);
+    return transport;
+  }
+
+  private static CacheInvalidationBus createNode(final JdbcCacheInvalidationTransport transport) throws Exception {
+    CacheInvalidationBus node = new CacheInvalidationBus(transport);
+    node.setFlushInterval(60000L);
+    node.setCacheExpirationRegistry(new CacheExpirationRegistry());
+    node.start();
+    return node;
+  }
+
+}
@@ -0,0 +1,115 @@
+package org.pentaho.test.platform.plugin.services.cache;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.pentaho.platform.plugin.services.cache.OffHeapCache;
+import org.pentaho.platform.plugin.services.cache.OffHeapValue;
+
+@SuppressWarnings("nls")
+public class OffHeapCacheTest {
+
+  @Test
+  public void testPutAndRead() throws Exception {
+    OffHeapCache cache = new OffHeapCache("test", 64 * 1024);
+    byte[] bytes = bytes(3000, 7);
+    cache.put("array", bytes);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    bos.write(bytes);
+    cache.put("stream", bos);
+
+    OffHeapValue value = (OffHeapValue) cache.get("array");
+    assertEquals(3000, value.getLength());
+    assertTrue(Arrays.equals(bytes, value.toByteArray()));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertTrue(((OffHeapValue) cache.get("stream")).writeTo(out));
+    assertTrue(Arrays.equals(bytes, out.toByteArray()));
+    InputStream in = value.openStream();
+    assertTrue(Arrays.equals(bytes, IOUtils.toByteArray(in)));
+    in.close();
+
+    assertEquals(6000L, cache.getSizeInMemory());
+    assertEquals(8192L, cache.getAllocatedBytes());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    OffHeapCache cache = new OffHeapCache("test", 8 * 1024);
+    for (int i = 0; i < 4; i++) {
+      cache.put("key" + i, bytes(2000, i));
+    }
+    assertNotNull(cache.get("key0"));
+    cache.put("key4", bytes(2000, 4));
+    assertNotNull(cache.get("key0"));
+    assertNull(cache.get("key1"));
+    assertNotNull(cache.get("key4"));
+    assertEquals(1L, cache.getEvictionCount());
+    assertEquals(4L, cache.getElementCountInMemory());
+  }
+
+  @Test
+  public void testValueBeingReadIsNotOverwritten() throws Exception {
+    OffHeapCache cache = new OffHeapCache("test", 4096);
+    cache.put("first", bytes(4000, 1));
+    OffHeapValue first = (OffHeapValue) cache.get("first");
+    InputStream in = first.openStream();
+
+    // the only block is still being read, so the new value cannot take it
+    cache.put("second", bytes(4000, 2));
+    assertNull(cache.get("first"));
+    assertNull(cache.get("second"));
+    assertEquals(1L, cache.getRejectionCount());
+    assertTrue(Arrays.equals(bytes(4000, 1), IOUtils.toByteArray(in)));
+    in.close();
+    assertNull(first.openStream());
+    assertFalse(first.writeTo(new ByteArrayOutputStream()));
+
+    cache.put("second", bytes(4000, 2));
+    assertTrue(Arrays.equals(bytes(4000, 2), ((OffHeapValue) cache.get("second")).toByteArray()));
+  }
+
+  @Test
+  public void testFreedBlocksAreMerged() {
+    OffHeapCache cache = new OffHeapCache("test", 16 * 1024);
+    for (int i = 0; i < 32; i++) {
+      cache.put("small" + i, bytes(500, i));
+    }
+    cache.clear();
+    assertEquals(0L, cache.getAllocatedBytes());
+    cache.put("large", bytes(16 * 1024, 3));
+    assertNotNull(cache.get("large"));
+    assertEquals(0L, cache.getRejectionCount());
+  }
+
+  @Test
+  public void testRejectsValuesTheRegionCannotHold() {
+    OffHeapCache cache = new OffHeapCache("test", 4096);
+    cache.put("key", bytes(100, 1));
+    cache.put("key", bytes(5000, 1));
+    assertNull(cache.get("key"));
+    assertEquals(1L, cache.getRejectionCount());
+
+    // values that are not binary are not cached, and do not leave the value they replace behind
+    cache.put("key", bytes(100, 1));
+    cache.put("key", "not binary");
+    assertNull(cache.get("key"));
+  }
+
+  private static byte[] bytes(final int length, final int seed) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) (i * 31 + seed);
+    }
+    return bytes;
+  }
+
+}
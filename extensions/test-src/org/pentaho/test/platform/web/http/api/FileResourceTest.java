@@ -68,6 +68,7 @@ import javax.jcr.Repository;
 import javax.ws.rs.core.MediaType;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.Serializable;
 import java.util.*;
 
 import static javax.ws.rs.core.MediaType.*;
@@ -452,7 +453,8 @@ public class FileResourceTest extends JerseyTest implements ApplicationContextAw
     IUnifiedRepository repo = mock(IUnifiedRepository.class);
     RepositoryFileTree tree = new RepositoryFileTree(new RepositoryFile.Builder("123", "public").build(),
                                                       Arrays.asList(new RepositoryFileTree(new RepositoryFile.Builder("123", "public").build(), new ArrayList<RepositoryFileTree>(0))));
-    doReturn(tree).when(repo).getTree(eq(ClientRepositoryPaths.getPublicFolderPath()), anyInt(), anyString(), anyBoolean());
+    doReturn(tree).when(repo).getTree(eq(ClientRepositoryPaths.getPublicFolderPath()), anyInt(), anyString(), anyBoolean(),
+        anyBoolean(), anyInt(), anyInt());
     // stub IUnifiedRepository end
 
     // set object in PentahoSystem
@@ -470,6 +472,55 @@ public class FileResourceTest extends JerseyTest implements ApplicationContextAw
     cleanupUserAndRoles(systemTenant);
   }
 
+  @Test
+  public void testGetDirChildrenPaged() {
+    loginAsRepositoryAdmin();
+    ITenant systemTenant = tenantManager.createTenant(null, ServerRepositoryPaths.getPentahoRootFolderName(), adminAuthorityName, authenticatedAuthorityName, "Anonymous");
+    userRoleDao.createUser(systemTenant, sysAdminUserName, "password", "", new String[]{adminAuthorityName});
+    ITenant mainTenant_1 = tenantManager.createTenant(systemTenant, MAIN_TENANT_1, adminAuthorityName, authenticatedAuthorityName, "Anonymous");
+    userRoleDao.createUser(mainTenant_1, "admin", "password", "", new String[]{adminAuthorityName});
+    login("admin", mainTenant_1, new String[]{authenticatedAuthorityName});
+    // stub IUnifiedRepository start
+    IUnifiedRepository repo = mock(IUnifiedRepository.class);
+    RepositoryFileTree tree = new RepositoryFileTree(new RepositoryFile.Builder("123", "public").build(),
+                                                      new ArrayList<RepositoryFileTree>(0));
+    final String publicFolderPath = ClientRepositoryPaths.getPublicFolderPath();
+    doReturn(tree).when(repo).getTree(eq(publicFolderPath), anyInt(), anyString(), anyBoolean(), anyBoolean(), anyInt(),
+        anyInt());
+    // stub IUnifiedRepository end
+
+    // set object in PentahoSystem
+    mp.defineInstance(IUnifiedRepository.class, repo);
+
+    WebResource webResource = resource().path("repo/files/public/children");
+
+    // neither offset nor limit: all children, system folders are always left out by the repository
+    assertResponse(webResource.accept(APPLICATION_XML).get(ClientResponse.class), Status.OK, APPLICATION_XML);
+    verify(repo).getTree(publicFolderPath, -1, "*", false, false, 0, -1);
+
+    // offset only: no limit
+    assertResponse(webResource.queryParam("offset", "20").accept(APPLICATION_XML).get(ClientResponse.class),
+        Status.OK, APPLICATION_XML);
+    verify(repo).getTree(publicFolderPath, -1, "*", false, false, 20, -1);
+
+    // limit only: first page
+    assertResponse(webResource.queryParam("limit", "10").accept(APPLICATION_XML).get(ClientResponse.class),
+        Status.OK, APPLICATION_XML);
+    verify(repo).getTree(publicFolderPath, -1, "*", false, false, 0, 10);
+
+    // both, together with the other parameters
+    assertResponse(webResource.queryParam("depth", "1").queryParam("filter", "*.prpt").queryParam("showHidden", "true")
+        .queryParam("offset", "10").queryParam("limit", "5").accept(APPLICATION_XML).get(ClientResponse.class),
+        Status.OK, APPLICATION_XML);
+    verify(repo).getTree(publicFolderPath, 1, "*.prpt", true, false, 10, 5);
+
+    // neither the unpaged tree nor the children's metadata is read
+    verify(repo, never()).getTree(anyString(), anyInt(), anyString(), anyBoolean());
+    verify(repo, never()).getFileMetadata(any(Serializable.class));
+    cleanupUserAndRoles(mainTenant_1);
+    cleanupUserAndRoles(systemTenant);
+  }
+
   @Ignore
   public void testFileAcls() throws InterruptedException {
     loginAsRepositoryAdmin();
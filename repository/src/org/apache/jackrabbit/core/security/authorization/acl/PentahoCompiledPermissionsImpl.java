@@ -17,7 +17,6 @@
 package org.apache.jackrabbit.core.security.authorization.acl;
 
 import org.apache.jackrabbit.api.JackrabbitWorkspace;
-import org.apache.jackrabbit.core.cache.GrowingLRUMap;
 import org.apache.jackrabbit.core.ItemImpl;
 import org.apache.jackrabbit.core.ItemManager;
 import org.apache.jackrabbit.core.NodeImpl;
@@ -33,6 +32,9 @@ import org.apache.jackrabbit.core.security.authorization.Permission;
 import org.apache.jackrabbit.core.security.authorization.PrivilegeBits;
 import org.apache.jackrabbit.core.security.authorization.PrivilegeManagerImpl;
 import org.apache.jackrabbit.core.security.authorization.PrivilegeRegistry;
+import org.apache.jackrabbit.core.state.ItemStateException;
+import org.apache.jackrabbit.core.state.ItemStateManager;
+import org.apache.jackrabbit.core.state.NodeState;
 import org.apache.jackrabbit.spi.Name;
 import org.apache.jackrabbit.spi.Path;
 import org.apache.jackrabbit.util.Text;
@@ -44,7 +46,6 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
   /**
@@ -52,8 +53,9 @@ import java.util.Set;
    * with more lenient locking on cache to prevent deadlocks between 
    * {@link #clearCache} and {@link #canRead} as detailed in
    * <a href="http://jira.pentaho.com/browse/BISERVER-8382">BISERVER-8382</a><br/>
-   * This shouldn't differ from {@code CompiledPermissionsImpl} except for the extra lock
-   * and the <code>synchronized</code> changes within {@link #canRead(Path, ItemId)}
+   * This shouldn't differ from {@code CompiledPermissionsImpl} except for the read cache, which is a
+   * {@link ReadPermissionCache} that is never locked while entries are collected, and the scoped
+   * invalidation in {@link #acModified(AccessControlModifications)}
    * @see CompiledPermissionsImpl
    */
 public class PentahoCompiledPermissionsImpl extends AbstractCompiledPermissions implements AccessControlListener {
@@ -64,13 +66,9 @@ public class PentahoCompiledPermissionsImpl extends AbstractCompiledPermissions
     private final AccessControlUtils util;
 
     /*
-     * Start with initial map size of 1024 and grow up to 5000 before
-     * removing LRU items.
+     * Up to 5000 entries in 16 independently locked LRU segments.
      */
-    @SuppressWarnings("unchecked")
-    private final Map<ItemId, Boolean> readCache = new GrowingLRUMap(1024, 5000);
-    private final Object monitor = new Object();
-    private final Object readMonitor = new Object();
+    private final ReadPermissionCache readCache = new ReadPermissionCache(5000, 16);
 
     PentahoCompiledPermissionsImpl(Set<Principal> principals, SessionImpl session,
                             EntryCollector entryCollector, AccessControlUtils util,
@@ -214,9 +212,7 @@ public class PentahoCompiledPermissionsImpl extends AbstractCompiledPermissions
      */
     @Override
     protected void clearCache() {
-        synchronized (monitor) {
-            readCache.clear();
-        }
+        readCache.clear();
         super.clearCache();
     }
 
@@ -232,68 +228,100 @@ public class PentahoCompiledPermissionsImpl extends AbstractCompiledPermissions
     }
 
     /**
-     * Changed so that access to entryCollector is done outside of a <code>monitor</code> synchronized block.<br/>
+     * Changed so that access to entryCollector is done without holding any lock: cache lookups and updates lock only
+     * a segment of the {@link ReadPermissionCache}, and concurrent misses are evaluated in parallel.<br/>
      * Should be functionally equivalent to {@link CompiledPermissions#canRead(Path, ItemId)}
      * @see org.apache.jackrabbit.core.security.authorization.CompiledPermissions#canRead(Path, ItemId)
      */
     public boolean canRead(Path path, ItemId itemId) throws RepositoryException {
         ItemId id = (itemId == null) ? session.getHierarchyManager().resolvePath(path) : itemId;
+        Boolean cached = readCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        // read before evaluating so that a result that raced with an ACL change is not cached
+        long generation = readCache.getGeneration();
+
         // no extra check for existence as method may only be called for existing items.
         boolean isExistingNode = id.denotesNode();
         boolean canRead = false;
-        // emulates behavior of CompiledPermissionsImpl with two locks
-        synchronized (readMonitor) {
-            synchronized (monitor) {
-                if (readCache.containsKey(id)) {
-                    return readCache.get(id);
-                }
-            }
 
-            ItemManager itemMgr = session.getItemManager();
-            NodeId nodeId = (isExistingNode) ? (NodeId) id : ((PropertyId) id).getParentId();
-            NodeImpl node = (NodeImpl) itemMgr.getItem(nodeId);
+        ItemManager itemMgr = session.getItemManager();
+        NodeId nodeId = (isExistingNode) ? (NodeId) id : ((PropertyId) id).getParentId();
+        NodeImpl node = (NodeImpl) itemMgr.getItem(nodeId);
 
-            boolean isAcItem = util.isAcItem(node);
-            EntryFilterImpl filter;
-            if (path == null) {
-                filter = new EntryFilterImpl(principalNames, id, session);
-            } else {
-                filter = new EntryFilterImpl(principalNames, path, session);
-            }
+        boolean isAcItem = util.isAcItem(node);
+        EntryFilterImpl filter;
+        if (path == null) {
+            filter = new EntryFilterImpl(principalNames, id, session);
+        } else {
+            filter = new EntryFilterImpl(principalNames, path, session);
+        }
 
-            if (isAcItem) {
-                /* item defines ac content -> regular evaluation */
-                Result result = buildResult(node, isExistingNode, isAcItem, filter);
-                canRead = result.grants(Permission.READ);
-            } else {
-                /*
-                 simplified evaluation focusing on READ permission. this allows
-                 to omit evaluation of parent node permissions that are
-                 required when calculating the complete set of permissions
-                 (see special treatment of remove, create or ac-specific
-                  permissions).
-                 */
-                for (AccessControlEntry accessControlEntry : entryCollector.collectEntries(node, filter)) {
-                    ACLTemplate.Entry ace = (ACLTemplate.Entry) accessControlEntry;
-                    if (ace.getPrivilegeBits().includesRead()) {
-                        canRead = ace.isAllow();
-                        break;
-                    }
+        if (isAcItem) {
+            /* item defines ac content -> regular evaluation */
+            Result result = buildResult(node, isExistingNode, isAcItem, filter);
+            canRead = result.grants(Permission.READ);
+        } else {
+            /*
+             simplified evaluation focusing on READ permission. this allows
+             to omit evaluation of parent node permissions that are
+             required when calculating the complete set of permissions
+             (see special treatment of remove, create or ac-specific
+              permissions).
+             */
+            for (AccessControlEntry accessControlEntry : entryCollector.collectEntries(node, filter)) {
+                ACLTemplate.Entry ace = (ACLTemplate.Entry) accessControlEntry;
+                if (ace.getPrivilegeBits().includesRead()) {
+                    canRead = ace.isAllow();
+                    break;
                 }
             }
-            synchronized (monitor) {
-                readCache.put(id, canRead);
-            }
-        }// readMonitor
+        }
+        NodeId[] nodeIds = getNodeIds(node);
+        if (nodeIds != null) {
+            readCache.put(id, nodeIds, canRead, generation);
+        }
         return canRead;
     }
 
+    /**
+     * Returns the ids of {@code node} and of all its ancestors, which scope the invalidation of its read permission, or
+     * {@code null} if an ancestor cannot be resolved, in which case the permission must not be cached. Ancestors are
+     * resolved from their item states, which involves no access control.
+     */
+    private NodeId[] getNodeIds(NodeImpl node) {
+        List<NodeId> nodeIds = new ArrayList<NodeId>();
+        nodeIds.add(node.getNodeId());
+        ItemStateManager stateMgr = session.getItemStateManager();
+        NodeId parentId = node.getNodeState().getParentId();
+        try {
+            while (parentId != null) {
+                nodeIds.add(parentId);
+                parentId = ((NodeState) stateMgr.getItemState(parentId)).getParentId();
+            }
+        } catch (ItemStateException e) {
+            return null;
+        }
+        return nodeIds.toArray(new NodeId[nodeIds.size()]);
+    }
+
     //----------------------------------------< ACLModificationListener >---
     /**
      * @see org.apache.jackrabbit.core.security.authorization.AccessControlListener#acModified(org.apache.jackrabbit.core.security.authorization.AccessControlModifications)
      */
     public void acModified(AccessControlModifications modifications) {
-        // ignore the details of the modifications and clear all caches.
-        clearCache();
+        // the read permissions of items outside the modified subtrees still hold; like clearCache this takes no lock
+        // besides those of the cache segments, so it can't deadlock with canRead (BISERVER-8382)
+        for (Object nodeId : modifications.getNodeIds()) {
+            if (nodeId instanceof NodeId) {
+                readCache.invalidate((NodeId) nodeId);
+            } else {
+                readCache.clear();
+                break;
+            }
+        }
+        // the results cached by AbstractCompiledPermissions can't be scoped
+        super.clearCache();
     }
 }
@@ -0,0 +1,231 @@
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.core.id.ItemId;
+import org.apache.jackrabbit.core.id.NodeId;
+
+/**
+ * Bounded cache of read permissions used by {@link PentahoCompiledPermissionsImpl}, keyed by item id.
+ *
+ * <p>
+ * Entries are spread over a fixed number of segments, each a small LRU map with its own lock, so concurrent readers
+ * rarely wait for each other and never wait for a reader that is evaluating ACEs. Each entry keeps the ids of the node
+ * holding its item and of all that node's ancestors, so that an access control change on a node drops only the
+ * entries in that node's subtree. This still holds after a subtree is moved, because the ids are recorded when the
+ * entry is added.
+ * </p>
+ *
+ * <p>
+ * Locks are held only within this class and never while calling out of it. Callers must not hold a lock of their own
+ * when calling in. This keeps the cache out of any lock cycle with the entry collector (see BISERVER-8382).
+ * </p>
+ */
+public class ReadPermissionCache {
+
+  // ~ Static fields/initializers ======================================================================================
+
+  private static final AtomicLong totalHitCount = new AtomicLong();
+
+  private static final AtomicLong totalMissCount = new AtomicLong();
+
+  private static final AtomicLong totalEvictionCount = new AtomicLong();
+
+  private static final AtomicLong totalInvalidationCount = new AtomicLong();
+
+  // ~ Instance fields =================================================================================================
+
+  private final Segment[] segments;
+
+  /**
+   * Incremented by every invalidation; a result computed while it changed may be stale and is not cached.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  // ~ Constructors ====================================================================================================
+
+  /**
+   * @param maxEntries
+   *          approximate maximum number of entries; each segment holds up to {@code maxEntries / segmentCount}
+   * @param segmentCount
+   *          number of independently locked segments
+   */
+  public ReadPermissionCache(final int maxEntries, final int segmentCount) {
+    if (maxEntries < 1 || segmentCount < 1) {
+      throw new IllegalArgumentException();
+    }
+    int segmentSize = Math.max(1, maxEntries / segmentCount);
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(segmentSize);
+    }
+  }
+
+  // ~ Methods =========================================================================================================
+
+  /**
+   * Returns the cached read permission for {@code id} or {@code null} if there is none.
+   */
+  public Boolean get(final ItemId id) {
+    Segment segment = segmentFor(id);
+    CacheEntry entry;
+    synchronized (segment) {
+      entry = segment.get(id);
+    }
+    if (entry != null) {
+      totalHitCount.incrementAndGet();
+      return entry.canRead;
+    }
+    totalMissCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Returns the current generation. Read it before computing a permission and pass it to
+   * {@link #put(ItemId, NodeId[], boolean, long)}.
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Caches a read permission unless the cache was invalidated since {@code generation} was read.
+   *
+   * @param nodeIds
+   *          ids of the node holding the item (the item itself if it is a node) and of all its ancestors
+   */
+  public void put(final ItemId id, final NodeId[] nodeIds, final boolean canRead, final long generation) {
+    Segment segment = segmentFor(id);
+    synchronized (segment) {
+      // checked under the segment lock: an invalidation increments the generation before it scans the segment
+      if (generation == this.generation.get()) {
+        segment.put(id, new CacheEntry(canRead, nodeIds));
+      }
+    }
+  }
+
+  /**
+   * Drops the entries of the items at or below the node with id {@code nodeId}.
+   */
+  public void invalidate(final NodeId nodeId) {
+    generation.incrementAndGet();
+    totalInvalidationCount.incrementAndGet();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        for (Iterator<CacheEntry> iter = segment.values().iterator(); iter.hasNext();) {
+          if (iter.next().isAtOrBelow(nodeId)) {
+            iter.remove();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops all entries.
+   */
+  public void clear() {
+    generation.incrementAndGet();
+    totalInvalidationCount.incrementAndGet();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  private Segment segmentFor(final ItemId id) {
+    // spread the hash so that ids differing only in their high bits use different segments
+    int h = id.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return segments[(h & 0x7fffffff) % segments.length];
+  }
+
+  /**
+   * Returns the number of lookups, over all caches, that found a permission.
+   */
+  public static long getTotalHitCount() {
+    return totalHitCount.get();
+  }
+
+  /**
+   * Returns the number of lookups, over all caches, that found no permission.
+   */
+  public static long getTotalMissCount() {
+    return totalMissCount.get();
+  }
+
+  /**
+   * Returns the number of entries, over all caches, evicted to make room for newer ones.
+   */
+  public static long getTotalEvictionCount() {
+    return totalEvictionCount.get();
+  }
+
+  /**
+   * Returns the number of access control changes, over all caches, that invalidated entries.
+   */
+  public static long getTotalInvalidationCount() {
+    return totalInvalidationCount.get();
+  }
+
+  // ~ Inner classes ===================================================================================================
+
+  private static class CacheEntry {
+    private final boolean canRead;
+
+    private final NodeId[] nodeIds;
+
+    private CacheEntry(final boolean canRead, final NodeId[] nodeIds) {
+      this.canRead = canRead;
+      this.nodeIds = nodeIds;
+    }
+
+    private boolean isAtOrBelow(final NodeId nodeId) {
+      for (NodeId id : nodeIds) {
+        if (id.equals(nodeId)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * LRU map; guarded by its own monitor.
+   */
+  private static class Segment extends LinkedHashMap<ItemId, CacheEntry> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxEntries;
+
+    private Segment(final int maxEntries) {
+      super(16, 0.75f, true);
+      this.maxEntries = maxEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<ItemId, CacheEntry> eldest) {
+      if (size() > maxEntries) {
+        totalEvictionCount.incrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+
+}
@@ -27,6 +27,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 import org.pentaho.platform.repository2.messages.Messages;
@@ -235,12 +236,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
   public <T extends IRepositoryFileData> List<T> getDataForReadInBatch(final List<RepositoryFile> files,
       final Class<T> dataClass) {
     Assert.notNull(files);
-    List<T> data = new ArrayList<T>(files.size());
-    for (RepositoryFile f : files) {
-      Assert.notNull(f);
-      data.add(getDataAtVersionForRead(f.getId(), f.getVersionId(), dataClass));
-    }
-    return data;
+    return repositoryFileDao.getDataInBatch(files, dataClass);
   }
 
   /**
@@ -266,6 +262,37 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getChildren(folderId, filter);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<RepositoryFile> getChildren(final Serializable folderId, final String filter, final int offset,
+      final int limit) {
+    Assert.notNull(folderId);
+    Assert.isTrue(offset >= 0);
+    return repositoryFileDao.getChildren(folderId, filter, offset, limit);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<RepositoryFile> getChildrenByMetadata(final Serializable folderId, final String metadataKey,
+      final String value, final int offset, final int limit) {
+    Assert.notNull(folderId);
+    Assert.hasText(metadataKey);
+    Assert.notNull(value);
+    Assert.isTrue(offset >= 0);
+    return repositoryFileDao.getChildrenByMetadata(folderId, metadataKey, value, offset, limit);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<RepositoryFile> search(final RepositoryQuery query) {
+    Assert.notNull(query);
+    Assert.hasText(query.getPath());
+    return repositoryFileDao.search(query);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -373,12 +400,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
    */
   public List<VersionSummary> getVersionSummaryInBatch(final List<RepositoryFile> files) {
     Assert.notNull(files);
-    List<VersionSummary> summaries = new ArrayList<VersionSummary>(files.size());
-    for (RepositoryFile file : files) {
-      Assert.notNull(file);
-      summaries.add(getVersionSummary(file.getId(), file.getVersionId()));
-    }
-    return summaries;
+    return repositoryFileDao.getVersionSummaryInBatch(files);
   }
 
   /**
@@ -455,6 +477,16 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getTree(path, depth, filter, showHidden);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public RepositoryFileTree getTree(final String path, final int depth, final String filter,
+      final boolean showHidden, final boolean showSystemFolders, final int offset, final int limit) {
+    Assert.hasText(path);
+    Assert.isTrue(offset >= 0);
+    return repositoryFileDao.getTree(path, depth, filter, showHidden, showSystemFolders, offset, limit);
+  }
+
   private RepositoryFile internalCreateFile(final Serializable parentFolderId, final RepositoryFile file,
       final IRepositoryFileData data, final RepositoryFileAcl acl, final String versionMessage) {
     Assert.notNull(file);
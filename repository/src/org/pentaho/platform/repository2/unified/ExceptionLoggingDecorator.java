@@ -29,8 +29,11 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
+import org.pentaho.platform.engine.core.metrics.ExecutionMetrics;
+import org.pentaho.platform.engine.core.metrics.ExecutionSpan;
 import org.pentaho.platform.repository2.messages.Messages;
 import org.pentaho.platform.util.VersionHelper;
 import org.springframework.util.Assert;
@@ -66,7 +69,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   // ~ Methods =========================================================================================================
 
   public boolean canUnlockFile(final Serializable fileId) {
-    return callLogThrow(new Callable<Boolean>() {
+    return callLogThrow("canUnlockFile", new Callable<Boolean>() { //$NON-NLS-1$
       public Boolean call() throws Exception {
         return delegatee.canUnlockFile(fileId);
       }
@@ -75,7 +78,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   public RepositoryFile createFile(final Serializable parentFolderId, final RepositoryFile file,
       final IRepositoryFileData data, final String versionMessage) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("createFile", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.createFile(parentFolderId, file, data, versionMessage);
       }
@@ -84,7 +87,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   public RepositoryFile createFolder(final Serializable parentFolderId, final RepositoryFile file,
       final String versionMessage) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("createFolder", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.createFolder(parentFolderId, file, versionMessage);
       }
@@ -92,7 +95,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public void deleteFile(final Serializable fileId, final boolean permanent, final String versionMessage) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("deleteFile", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.deleteFile(fileId, permanent, versionMessage);
         return null;
@@ -101,7 +104,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public void deleteFile(final Serializable fileId, final String versionMessage) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("deleteFile", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.deleteFile(fileId, versionMessage);
         return null;
@@ -110,7 +113,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public void deleteFileAtVersion(final Serializable fileId, final Serializable versionId) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("deleteFileAtVersion", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.deleteFileAtVersion(fileId, versionId);
         return null;
@@ -119,7 +122,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public RepositoryFileAcl getAcl(final Serializable fileId) {
-    return callLogThrow(new Callable<RepositoryFileAcl>() {
+    return callLogThrow("getAcl", new Callable<RepositoryFileAcl>() { //$NON-NLS-1$
       public RepositoryFileAcl call() throws Exception {
         return delegatee.getAcl(fileId);
       }
@@ -127,7 +130,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public List<RepositoryFile> getChildren(final Serializable folderId) {
-    return callLogThrow(new Callable<List<RepositoryFile>>() {
+    return callLogThrow("getChildren", new Callable<List<RepositoryFile>>() { //$NON-NLS-1$
       public List<RepositoryFile> call() throws Exception {
         return delegatee.getChildren(folderId);
       }
@@ -135,16 +138,42 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public List<RepositoryFile> getChildren(final Serializable folderId, final String filter) {
-    return callLogThrow(new Callable<List<RepositoryFile>>() {
+    return callLogThrow("getChildren", new Callable<List<RepositoryFile>>() { //$NON-NLS-1$
       public List<RepositoryFile> call() throws Exception {
         return delegatee.getChildren(folderId, filter);
       }
     }, Messages.getInstance().getString("ExceptionLoggingDecorator.getChildren", folderId)); //$NON-NLS-1$
   }
 
+  public List<RepositoryFile> getChildren(final Serializable folderId, final String filter, final int offset,
+      final int limit) {
+    return callLogThrow("getChildren", new Callable<List<RepositoryFile>>() { //$NON-NLS-1$
+      public List<RepositoryFile> call() throws Exception {
+        return delegatee.getChildren(folderId, filter, offset, limit);
+      }
+    }, Messages.getInstance().getString("ExceptionLoggingDecorator.getChildren", folderId)); //$NON-NLS-1$
+  }
+
+  public List<RepositoryFile> getChildrenByMetadata(final Serializable folderId, final String metadataKey,
+      final String value, final int offset, final int limit) {
+    return callLogThrow("getChildrenByMetadata", new Callable<List<RepositoryFile>>() { //$NON-NLS-1$
+      public List<RepositoryFile> call() throws Exception {
+        return delegatee.getChildrenByMetadata(folderId, metadataKey, value, offset, limit);
+      }
+    }, Messages.getInstance().getString("ExceptionLoggingDecorator.getChildren", folderId)); //$NON-NLS-1$
+  }
+
+  public List<RepositoryFile> search(final RepositoryQuery query) {
+    return callLogThrow("search", new Callable<List<RepositoryFile>>() { //$NON-NLS-1$
+      public List<RepositoryFile> call() throws Exception {
+        return delegatee.search(query);
+      }
+    }, Messages.getInstance().getString("ExceptionLoggingDecorator.search", query.getPath())); //$NON-NLS-1$
+  }
+
   public <T extends IRepositoryFileData> T getDataAtVersionForExecute(final Serializable fileId,
       final Serializable versionId, final Class<T> dataClass) {
-    return callLogThrow(new Callable<T>() {
+    return callLogThrow("getDataAtVersionForExecute", new Callable<T>() { //$NON-NLS-1$
       public T call() throws Exception {
         return delegatee.getDataAtVersionForExecute(fileId, versionId, dataClass);
       }
@@ -153,7 +182,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   public <T extends IRepositoryFileData> T getDataAtVersionForRead(final Serializable fileId,
       final Serializable versionId, final Class<T> dataClass) {
-    return callLogThrow(new Callable<T>() {
+    return callLogThrow("getDataAtVersionForRead", new Callable<T>() { //$NON-NLS-1$
       public T call() throws Exception {
         return delegatee.getDataAtVersionForRead(fileId, versionId, dataClass);
       }
@@ -161,7 +190,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public <T extends IRepositoryFileData> T getDataForExecute(final Serializable fileId, final Class<T> dataClass) {
-    return callLogThrow(new Callable<T>() {
+    return callLogThrow("getDataForExecute", new Callable<T>() { //$NON-NLS-1$
       public T call() throws Exception {
         return delegatee.getDataForExecute(fileId, dataClass);
       }
@@ -170,7 +199,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   public <T extends IRepositoryFileData> java.util.List<T> getDataForExecuteInBatch(final List<RepositoryFile> files,
       final Class<T> dataClass) {
-    return callLogThrow(new Callable<List<T>>() {
+    return callLogThrow("getDataForExecuteInBatch", new Callable<List<T>>() { //$NON-NLS-1$
       public List<T> call() throws Exception {
         return delegatee.getDataForReadInBatch(files, dataClass);
       }
@@ -178,7 +207,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public <T extends IRepositoryFileData> T getDataForRead(final Serializable fileId, final Class<T> dataClass) {
-    return callLogThrow(new Callable<T>() {
+    return callLogThrow("getDataForRead", new Callable<T>() { //$NON-NLS-1$
       public T call() throws Exception {
         return delegatee.getDataForRead(fileId, dataClass);
       }
@@ -187,7 +216,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   public <T extends IRepositoryFileData> List<T> getDataForReadInBatch(final List<RepositoryFile> files,
       final Class<T> dataClass) {
-    return callLogThrow(new Callable<List<T>>() {
+    return callLogThrow("getDataForReadInBatch", new Callable<List<T>>() { //$NON-NLS-1$
       public List<T> call() throws Exception {
         return delegatee.getDataForReadInBatch(files, dataClass);
       }
@@ -195,7 +224,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public List<RepositoryFile> getDeletedFiles(final String origParentFolderPath) {
-    return callLogThrow(new Callable<List<RepositoryFile>>() {
+    return callLogThrow("getDeletedFiles", new Callable<List<RepositoryFile>>() { //$NON-NLS-1$
       public List<RepositoryFile> call() throws Exception {
         return delegatee.getDeletedFiles(origParentFolderPath);
       }
@@ -203,7 +232,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public List<RepositoryFile> getDeletedFiles(final String origParentFolderPath, final String filter) {
-    return callLogThrow(new Callable<List<RepositoryFile>>() {
+    return callLogThrow("getDeletedFiles", new Callable<List<RepositoryFile>>() { //$NON-NLS-1$
       public List<RepositoryFile> call() throws Exception {
         return delegatee.getDeletedFiles(origParentFolderPath, filter);
       }
@@ -211,7 +240,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public List<RepositoryFile> getDeletedFiles() {
-    return callLogThrow(new Callable<List<RepositoryFile>>() {
+    return callLogThrow("getDeletedFiles", new Callable<List<RepositoryFile>>() { //$NON-NLS-1$
       public List<RepositoryFile> call() throws Exception {
         return delegatee.getDeletedFiles();
       }
@@ -219,7 +248,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public List<RepositoryFileAce> getEffectiveAces(final Serializable fileId) {
-    return callLogThrow(new Callable<List<RepositoryFileAce>>() {
+    return callLogThrow("getEffectiveAces", new Callable<List<RepositoryFileAce>>() { //$NON-NLS-1$
       public List<RepositoryFileAce> call() throws Exception {
         return delegatee.getEffectiveAces(fileId);
       }
@@ -227,7 +256,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public List<RepositoryFileAce> getEffectiveAces(final Serializable fileId, final boolean forceEntriesInheriting) {
-    return callLogThrow(new Callable<List<RepositoryFileAce>>() {
+    return callLogThrow("getEffectiveAces", new Callable<List<RepositoryFileAce>>() { //$NON-NLS-1$
       public List<RepositoryFileAce> call() throws Exception {
         return delegatee.getEffectiveAces(fileId, forceEntriesInheriting);
       }
@@ -235,7 +264,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public RepositoryFile getFile(final String path) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("getFile", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.getFile(path);
       }
@@ -243,7 +272,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public RepositoryFile getFile(final String path, final boolean loadLocaleMaps) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("getFile", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.getFile(path, loadLocaleMaps);
       }
@@ -251,7 +280,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public RepositoryFile getFileAtVersion(final Serializable fileId, final Serializable versionId) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("getFileAtVersion", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.getFileAtVersion(fileId, versionId);
       }
@@ -259,7 +288,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public RepositoryFile getFileById(final Serializable fileId) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("getFileById", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.getFileById(fileId);
       }
@@ -267,7 +296,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public RepositoryFile getFileById(final Serializable fileId, final boolean loadLocaleMaps) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("getFileById", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.getFileById(fileId, loadLocaleMaps);
       }
@@ -276,7 +305,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public RepositoryFile getFile(final String path, final IPentahoLocale locale) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("getFile", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.getFile(path, locale);
       }
@@ -285,7 +314,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public RepositoryFile getFileById(final Serializable fileId, final IPentahoLocale locale) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("getFileById", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.getFileById(fileId, locale);
       }
@@ -294,7 +323,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public RepositoryFile getFile(final String path, final boolean loadLocaleMaps, final IPentahoLocale locale) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("getFile", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.getFile(path, loadLocaleMaps, locale);
       }
@@ -303,7 +332,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public RepositoryFile getFileById(final Serializable fileId, final boolean loadLocaleMaps, final IPentahoLocale locale) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("getFileById", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.getFileById(fileId, loadLocaleMaps, locale);
       }
@@ -311,7 +340,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public List<VersionSummary> getVersionSummaries(final Serializable fileId) {
-    return callLogThrow(new Callable<List<VersionSummary>>() {
+    return callLogThrow("getVersionSummaries", new Callable<List<VersionSummary>>() { //$NON-NLS-1$
       public List<VersionSummary> call() throws Exception {
         return delegatee.getVersionSummaries(fileId);
       }
@@ -319,7 +348,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public VersionSummary getVersionSummary(final Serializable fileId, final Serializable versionId) {
-    return callLogThrow(new Callable<VersionSummary>() {
+    return callLogThrow("getVersionSummary", new Callable<VersionSummary>() { //$NON-NLS-1$
       public VersionSummary call() throws Exception {
         return delegatee.getVersionSummary(fileId, versionId);
       }
@@ -327,7 +356,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public List<VersionSummary> getVersionSummaryInBatch(final List<RepositoryFile> files) {
-    return callLogThrow(new Callable<List<VersionSummary>>() {
+    return callLogThrow("getVersionSummaryInBatch", new Callable<List<VersionSummary>>() { //$NON-NLS-1$
       public List<VersionSummary> call() throws Exception {
         return delegatee.getVersionSummaryInBatch(files);
       }
@@ -335,7 +364,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public boolean hasAccess(final String path, final EnumSet<RepositoryFilePermission> permissions) {
-    return callLogThrow(new Callable<Boolean>() {
+    return callLogThrow("hasAccess", new Callable<Boolean>() { //$NON-NLS-1$
       public Boolean call() throws Exception {
         return delegatee.hasAccess(path, permissions);
       }
@@ -343,7 +372,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public void lockFile(final Serializable fileId, final String message) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("lockFile", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.lockFile(fileId, message);
         return null;
@@ -352,7 +381,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public void moveFile(final Serializable fileId, final String destAbsPath, final String versionMessage) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("moveFile", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.moveFile(fileId, destAbsPath, versionMessage);
         return null;
@@ -361,7 +390,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public void copyFile(final Serializable fileId, final String destAbsPath, final String versionMessage) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("copyFile", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.copyFile(fileId, destAbsPath, versionMessage);
         return null;
@@ -370,7 +399,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public void restoreFileAtVersion(final Serializable fileId, final Serializable versionId, final String versionMessage) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("restoreFileAtVersion", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.restoreFileAtVersion(fileId, versionId, versionMessage);
         return null;
@@ -379,7 +408,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public void undeleteFile(final Serializable fileId, final String versionMessage) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("undeleteFile", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.undeleteFile(fileId, versionMessage);
         return null;
@@ -388,7 +417,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public void unlockFile(final Serializable fileId) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("unlockFile", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.unlockFile(fileId);
         return null;
@@ -397,7 +426,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public RepositoryFileAcl updateAcl(final RepositoryFileAcl acl) {
-    return callLogThrow(new Callable<RepositoryFileAcl>() {
+    return callLogThrow("updateAcl", new Callable<RepositoryFileAcl>() { //$NON-NLS-1$
       public RepositoryFileAcl call() throws Exception {
         return delegatee.updateAcl(acl);
       }
@@ -406,7 +435,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   public RepositoryFile updateFile(final RepositoryFile file, final IRepositoryFileData data,
       final String versionMessage) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("updateFile", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.updateFile(file, data, versionMessage);
       }
@@ -414,16 +443,25 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public RepositoryFileTree getTree(final String path, final int depth, final String filter, final boolean showHidden) {
-    return callLogThrow(new Callable<RepositoryFileTree>() {
+    return callLogThrow("getTree", new Callable<RepositoryFileTree>() { //$NON-NLS-1$
       public RepositoryFileTree call() throws Exception {
         return delegatee.getTree(path, depth, filter, showHidden);
       }
     }, Messages.getInstance().getString("ExceptionLoggingDecorator.getTree", path)); //$NON-NLS-1$
   }
 
+  public RepositoryFileTree getTree(final String path, final int depth, final String filter,
+      final boolean showHidden, final boolean showSystemFolders, final int offset, final int limit) {
+    return callLogThrow("getTree", new Callable<RepositoryFileTree>() { //$NON-NLS-1$
+      public RepositoryFileTree call() throws Exception {
+        return delegatee.getTree(path, depth, filter, showHidden, showSystemFolders, offset, limit);
+      }
+    }, Messages.getInstance().getString("ExceptionLoggingDecorator.getTree", path)); //$NON-NLS-1$
+  }
+
   public RepositoryFile createFile(final Serializable parentFolderId, final RepositoryFile file,
       final IRepositoryFileData data, final RepositoryFileAcl acl, final String versionMessage) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("createFile", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.createFile(parentFolderId, file, data, acl, versionMessage);
       }
@@ -432,7 +470,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   public RepositoryFile createFolder(final Serializable parentFolderId, final RepositoryFile file,
       final RepositoryFileAcl acl, final String versionMessage) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("createFolder", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.createFolder(parentFolderId, file, acl, versionMessage);
       }
@@ -443,15 +481,19 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
    * Calls the Callable and returns the value it returns. If an exception occurs, it is logged and a new non-chained
    * exception is thrown.
    *
-   * @param <T>      return type
-   * @param callable code to call
-   * @param message  verbose description of operation
+   * @param <T>        return type
+   * @param methodName repository method being called, used to label its execution metrics
+   * @param callable   code to call
+   * @param message    verbose description of operation
    * @return return value of Callable
    */
-  private <T> T callLogThrow(final Callable<T> callable, final String message) {
+  private <T> T callLogThrow(final String methodName, final Callable<T> callable, final String message) {
+    ExecutionMetrics.increment(ExecutionMetrics.REPOSITORY_CALLS);
+    ExecutionSpan span = ExecutionSpan.start(ExecutionMetrics.REPOSITORY, methodName);
     try {
       return callable.call();
     } catch (Exception e) {
+      ExecutionMetrics.increment(ExecutionMetrics.REPOSITORY_ERRORS);
       // generate reference #
       String refNum = UUID.randomUUID().toString();
       if (logger.isErrorEnabled()) {
@@ -476,11 +518,13 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
       throw new UnifiedRepositoryException(Messages.getInstance().getString(
           "ExceptionLoggingDecorator.generalException", message, refNum)); //$NON-NLS-1$
 
+    } finally {
+      span.end();
     }
   }
 
   public List<RepositoryFile> getReferrers(final Serializable fileId) {
-    return callLogThrow(new Callable<List<RepositoryFile>>() {
+    return callLogThrow("getReferrers", new Callable<List<RepositoryFile>>() { //$NON-NLS-1$
       public List<RepositoryFile> call() throws Exception {
         return delegatee.getReferrers(fileId);
       }
@@ -488,7 +532,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public void setFileMetadata(final Serializable fileId, final Map<String, Serializable> metadataMap) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("setFileMetadata", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.setFileMetadata(fileId, metadataMap);
         return null;
@@ -497,7 +541,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public Map<String, Serializable> getFileMetadata(final Serializable fileId) {
-    return callLogThrow(new Callable<Map<String, Serializable>>() {
+    return callLogThrow("getFileMetadata", new Callable<Map<String, Serializable>>() { //$NON-NLS-1$
       public Map<String, Serializable> call() throws Exception {
         return delegatee.getFileMetadata(fileId);
       }
@@ -505,7 +549,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   }
 
   public List<Character> getReservedChars() {
-    return callLogThrow(new Callable<List<Character>>() {
+    return callLogThrow("getReservedChars", new Callable<List<Character>>() { //$NON-NLS-1$
       public List<Character> call() throws Exception {
         return delegatee.getReservedChars();
       }
@@ -537,7 +581,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public List<Locale> getAvailableLocalesForFileById(final Serializable fileId) {
-    return callLogThrow(new Callable<List<Locale>>() {
+    return callLogThrow("getAvailableLocalesForFileById", new Callable<List<Locale>>() { //$NON-NLS-1$
       public List<Locale> call() throws Exception {
         return delegatee.getAvailableLocalesForFileById(fileId);
       }
@@ -546,7 +590,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public List<Locale> getAvailableLocalesForFileByPath(final String relPath) {
-    return callLogThrow(new Callable<List<Locale>>() {
+    return callLogThrow("getAvailableLocalesForFileByPath", new Callable<List<Locale>>() { //$NON-NLS-1$
       public List<Locale> call() throws Exception {
         return delegatee.getAvailableLocalesForFileByPath(relPath);
       }
@@ -555,7 +599,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public List<Locale> getAvailableLocalesForFile(final RepositoryFile repositoryFile) {
-    return callLogThrow(new Callable<List<Locale>>() {
+    return callLogThrow("getAvailableLocalesForFile", new Callable<List<Locale>>() { //$NON-NLS-1$
       public List<Locale> call() throws Exception {
         return delegatee.getAvailableLocalesForFile(repositoryFile);
       }
@@ -564,7 +608,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public Properties getLocalePropertiesForFileById(final Serializable fileId, final String locale) {
-    return callLogThrow(new Callable<Properties>() {
+    return callLogThrow("getLocalePropertiesForFileById", new Callable<Properties>() { //$NON-NLS-1$
       public Properties call() throws Exception {
         return delegatee.getLocalePropertiesForFileById(fileId, locale);
       }
@@ -573,7 +617,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public Properties getLocalePropertiesForFileByPath(final String relPath, final String locale) {
-    return callLogThrow(new Callable<Properties>() {
+    return callLogThrow("getLocalePropertiesForFileByPath", new Callable<Properties>() { //$NON-NLS-1$
       public Properties call() throws Exception {
         return delegatee.getLocalePropertiesForFileByPath(relPath, locale);
       }
@@ -582,7 +626,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public Properties getLocalePropertiesForFile(final RepositoryFile repositoryFile, final String locale) {
-    return callLogThrow(new Callable<Properties>() {
+    return callLogThrow("getLocalePropertiesForFile", new Callable<Properties>() { //$NON-NLS-1$
       public Properties call() throws Exception {
         return delegatee.getLocalePropertiesForFile(repositoryFile, locale);
       }
@@ -591,7 +635,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public void setLocalePropertiesForFileById(final Serializable fileId, final String locale, final Properties properties) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("setLocalePropertiesForFileById", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.setLocalePropertiesForFileById(fileId, locale, properties);
         return null;
@@ -601,7 +645,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public void setLocalePropertiesForFileByPath(final String relPath, final String locale, final Properties properties) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("setLocalePropertiesForFileByPath", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.setLocalePropertiesForFileByPath(relPath, locale, properties);
         return null;
@@ -611,7 +655,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public void setLocalePropertiesForFile(final RepositoryFile repositoryFile, final String locale, final Properties properties) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("setLocalePropertiesForFile", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.setLocalePropertiesForFile(repositoryFile, locale, properties);
         return null;
@@ -621,7 +665,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
 
   @Override
   public void deleteLocalePropertiesForFile(final RepositoryFile repositoryFile, final String locale) {
-    callLogThrow(new Callable<Void>() {
+    callLogThrow("deleteLocalePropertiesForFile", new Callable<Void>() { //$NON-NLS-1$
       public Void call() throws Exception {
         delegatee.deleteLocalePropertiesForFile(repositoryFile, locale);
         return null;
@@ -631,7 +675,7 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
   
   @Override
   public RepositoryFile updateFolder(final RepositoryFile folder, final String versionMessage) {
-    return callLogThrow(new Callable<RepositoryFile>() {
+    return callLogThrow("updateFolder", new Callable<RepositoryFile>() { //$NON-NLS-1$
       public RepositoryFile call() throws Exception {
         return delegatee.updateFolder(folder, versionMessage);
       }
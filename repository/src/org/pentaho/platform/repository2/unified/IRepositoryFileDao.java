@@ -26,6 +26,7 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 
 /**
@@ -45,6 +46,9 @@ public interface IRepositoryFileDao {
 
   RepositoryFileTree getTree(final String relPath, final int depth, final String filter, final boolean showHidden);
 
+  RepositoryFileTree getTree(final String relPath, final int depth, final String filter, final boolean showHidden,
+      final boolean showSystemFolders, final int offset, final int limit);
+
   RepositoryFile getFile(final String relPath, final boolean loadLocaleMaps);
 
   RepositoryFile getFileById(final Serializable fileId);
@@ -62,6 +66,12 @@ public interface IRepositoryFileDao {
   <T extends IRepositoryFileData> T getData(final Serializable fileId, final Serializable versionId,
       final Class<T> dataClass);
 
+  /**
+   * Returns the data of each file (at the file's version id, if any) in the order given, reading the whole batch in one
+   * session.
+   */
+  <T extends IRepositoryFileData> List<T> getDataInBatch(final List<RepositoryFile> files, final Class<T> dataClass);
+
   RepositoryFile createFile(final Serializable parentFolderId, final RepositoryFile file,
       final IRepositoryFileData data, final RepositoryFileAcl acl, final String versionMessage);
 
@@ -72,6 +82,14 @@ public interface IRepositoryFileDao {
 
   List<RepositoryFile> getChildren(final Serializable folderId, final String filter);
 
+  List<RepositoryFile> getChildren(final Serializable folderId, final String filter, final int offset,
+      final int limit);
+
+  List<RepositoryFile> getChildrenByMetadata(final Serializable folderId, final String metadataKey,
+      final String value, final int offset, final int limit);
+
+  List<RepositoryFile> search(final RepositoryQuery query);
+
   RepositoryFile updateFile(final RepositoryFile file, final IRepositoryFileData data, final String versionMessage);
 
   void deleteFile(final Serializable fileId, final String versionMessage);
@@ -96,6 +114,8 @@ public interface IRepositoryFileDao {
 
   VersionSummary getVersionSummary(final Serializable fileId, final Serializable versionId);
 
+  List<VersionSummary> getVersionSummaryInBatch(final List<RepositoryFile> files);
+
   RepositoryFile getFile(final Serializable fileId, final Serializable versionId);
 
   void moveFile(final Serializable fileId, final String destRelPath, final String versionMessage);
@@ -100,7 +100,40 @@ public class RepositoryFileInputStream extends InputStream {
     }
     return is.read();
   }
-  
+
+  /**
+   * Reads directly from the underlying content stream; {@link InputStream}'s default implementation would call
+   * {@link #read()} once per byte.
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (is == null) {
+      setStream();
+    }
+    return is.read(b, off, len);
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (is == null) {
+      setStream();
+    }
+    return is.skip(n);
+  }
+
+  @Override
+  public int available() throws IOException {
+    return is == null ? 0 : is.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    InputStream stream = is != null ? is : (fileData != null ? fileData.getInputStream() : null);
+    if (stream != null) {
+      stream.close();
+    }
+  }
+
   public String getMimeType() {
     if (fileData == null) {
       fileData = repository.getDataForRead(file.getId(), SimpleRepositoryFileData.class);
@@ -108,6 +141,17 @@ public class RepositoryFileInputStream extends InputStream {
 	  return fileData.getMimeType();
   }
 
+  /**
+   * Returns the number of bytes of content, as recorded by the repository with the content itself, or {@code -1} if
+   * the repository does not say.
+   */
+  public long getSize() {
+    if (fileData == null) {
+      fileData = repository.getDataForRead(file.getId(), SimpleRepositoryFileData.class);
+    }
+    return fileData.getSize();
+  }
+
   public IUnifiedRepository getRepository() {
     return repository;
   }
@@ -14,28 +14,54 @@
  */
 package org.pentaho.platform.repository2.unified.fileio;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.repository2.unified.ISourcesStreamEvents;
 import org.pentaho.platform.api.repository2.unified.IStreamListener;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.util.web.MimeHelper;
 
+/**
+ * Buffers everything written to it and stores it as a repository file on {@link #flush()}. Content is kept in memory up
+ * to {@link #getSpillThreshold()} bytes and is spilled to a temporary file beyond that, so that large outputs (e.g.
+ * background executions) do not need the whole payload on the heap. In either case the buffer is handed to the
+ * repository as a stream without being copied.
+ */
 public class RepositoryFileOutputStream extends ByteArrayOutputStream implements ISourcesStreamEvents {
 
+  /**
+   * Number of bytes kept in memory when the {@value #SPILL_THRESHOLD_SETTING} system setting is not set.
+   */
+  public static final int DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+
+  public static final String SPILL_THRESHOLD_SETTING = "repository-file-output-spill-threshold"; //$NON-NLS-1$
+
+  private static final Log logger = LogFactory.getLog(RepositoryFileOutputStream.class);
+
   protected String path = null;
   protected IUnifiedRepository repository;
   protected String charsetName = null;
@@ -44,6 +70,15 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
   protected boolean closed = false;
   protected boolean flushed = false;
   protected ArrayList<IStreamListener> listeners = new ArrayList<IStreamListener>();
+  protected int spillThreshold = readSpillThreshold();
+
+  /**
+   * Temporary file holding the content once more than {@link #spillThreshold} bytes have been written; {@code null}
+   * while the content is in memory.
+   */
+  private File spillFile;
+  private OutputStream spillOutputStream;
+  private long spillCount;
 
   public RepositoryFileOutputStream(final String path,
                                     final boolean autoCreateUniqueFileName,
@@ -144,9 +179,12 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
   @Override
   public void close() throws IOException {
     if (!closed) {
-      flush();
-      closed = true;
-      reset();
+      try {
+        flush();
+      } finally {
+        closed = true;
+        reset();
+      }
     }
   }
 
@@ -157,7 +195,16 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     }
     super.flush();
 
-    ByteArrayInputStream bis = new ByteArrayInputStream(toByteArray());
+    InputStream bis = openContentStream();
+    try {
+      persist(bis);
+    } finally {
+      IOUtils.closeQuietly(bis);
+    }
+    flushed = true;
+  }
+
+  private void persist(final InputStream bis) throws IOException {
 
     //make an effort to determine the correct mime type, default to application/octet-stream
     String ext = RepositoryFilenameUtils.getExtension(path);
@@ -246,7 +293,159 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
       RepositoryFile file = repository.getFile(path);
       repository.updateFile(file, payload, "New File"); //$NON-NLS-1$
     }
-    flushed = true;
+  }
+
+  /**
+   * Returns a stream over everything written so far. The in-memory buffer is wrapped rather than copied.
+   */
+  protected synchronized InputStream openContentStream() throws IOException {
+    if (spillOutputStream != null) {
+      spillOutputStream.flush();
+      return new FileInputStream(spillFile);
+    }
+    return new ByteArrayInputStream(buf, 0, count);
+  }
+
+  /**
+   * Moves the in-memory content to a temporary file; subsequent writes go to that file.
+   */
+  private void spill() throws IOException {
+    spillFile = File.createTempFile("repofile", ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+    spillOutputStream = new BufferedOutputStream(new FileOutputStream(spillFile));
+    spillOutputStream.write(buf, 0, count);
+    spillCount = count;
+    // release the in-memory buffer
+    buf = new byte[32];
+    count = 0;
+  }
+
+  private void discardSpill() {
+    if (spillOutputStream != null) {
+      IOUtils.closeQuietly(spillOutputStream);
+      spillOutputStream = null;
+    }
+    if (spillFile != null) {
+      if (!spillFile.delete()) {
+        logger.warn("unable to delete temporary file " + spillFile.getAbsolutePath()); //$NON-NLS-1$
+      }
+      spillFile = null;
+    }
+    spillCount = 0;
+  }
+
+  @Override
+  public synchronized void write(final int b) {
+    try {
+      if (spillOutputStream == null && count + 1 > spillThreshold) {
+        spill();
+      }
+      if (spillOutputStream != null) {
+        spillOutputStream.write(b);
+        spillCount++;
+        return;
+      }
+    } catch (IOException e) {
+      throw new UnifiedRepositoryException(e);
+    }
+    super.write(b);
+  }
+
+  @Override
+  public synchronized void write(final byte[] b, final int off, final int len) {
+    try {
+      if (spillOutputStream == null && (long) count + len > spillThreshold) {
+        spill();
+      }
+      if (spillOutputStream != null) {
+        spillOutputStream.write(b, off, len);
+        spillCount += len;
+        return;
+      }
+    } catch (IOException e) {
+      throw new UnifiedRepositoryException(e);
+    }
+    super.write(b, off, len);
+  }
+
+  @Override
+  public synchronized int size() {
+    return spillOutputStream != null ? (int) Math.min(spillCount, Integer.MAX_VALUE) : count;
+  }
+
+  @Override
+  public synchronized void reset() {
+    discardSpill();
+    super.reset();
+  }
+
+  /**
+   * Returns a copy of the content. Avoid for large content; it defeats spilling to disk.
+   */
+  @Override
+  public synchronized byte[] toByteArray() {
+    if (spillOutputStream == null) {
+      return super.toByteArray();
+    }
+    InputStream in = null;
+    try {
+      in = openContentStream();
+      return IOUtils.toByteArray(in);
+    } catch (IOException e) {
+      throw new UnifiedRepositoryException(e);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  @Override
+  public synchronized void writeTo(final OutputStream out) throws IOException {
+    if (spillOutputStream == null) {
+      super.writeTo(out);
+      return;
+    }
+    InputStream in = openContentStream();
+    try {
+      IOUtils.copy(in, out);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return spillOutputStream == null ? super.toString() : new String(toByteArray());
+  }
+
+  @Override
+  public synchronized String toString(final String charsetName) throws UnsupportedEncodingException {
+    return spillOutputStream == null ? super.toString(charsetName) : new String(toByteArray(), charsetName);
+  }
+
+  private static int readSpillThreshold() {
+    String threshold = PentahoSystem.getSystemSetting(SPILL_THRESHOLD_SETTING, null);
+    if (threshold != null) {
+      try {
+        return Integer.parseInt(threshold.trim());
+      } catch (NumberFormatException e) {
+        logger.warn("invalid " + SPILL_THRESHOLD_SETTING + ": " + threshold); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return DEFAULT_SPILL_THRESHOLD;
+  }
+
+  /**
+   * Returns the number of bytes kept in memory before the content is spilled to a temporary file.
+   */
+  public int getSpillThreshold() {
+    return spillThreshold;
+  }
+
+  /**
+   * Sets the number of bytes kept in memory before the content is spilled to a temporary file. Has no effect on content
+   * that has already been spilled.
+   */
+  public void setSpillThreshold(final int spillThreshold) {
+    this.spillThreshold = spillThreshold;
   }
 
   public String getFilePath() {
@@ -12,6 +12,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 import org.pentaho.platform.util.VersionHelper;
 
@@ -83,6 +84,19 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getChildren(folderId, filter);
   }
 
+  public List<RepositoryFile> getChildren(Serializable folderId, String filter, int offset, int limit) {
+    return repositoryFileDao.getChildren(folderId, filter, offset, limit);
+  }
+
+  public List<RepositoryFile> getChildrenByMetadata(Serializable folderId, String metadataKey, String value,
+      int offset, int limit) {
+    return repositoryFileDao.getChildrenByMetadata(folderId, metadataKey, value, offset, limit);
+  }
+
+  public List<RepositoryFile> search(RepositoryQuery query) {
+    return repositoryFileDao.search(query);
+  }
+
   public <T extends IRepositoryFileData> T getDataAtVersionForExecute(Serializable fileId, Serializable versionId,
       Class<T> dataClass) {
     return repositoryFileDao.getData(fileId, versionId, dataClass);
@@ -168,6 +182,11 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getTree(path, depth, filter, showHidden);
   }
 
+  public RepositoryFileTree getTree(String path, int depth, String filter, boolean showHidden,
+      boolean showSystemFolders, int offset, int limit) {
+    return repositoryFileDao.getTree(path, depth, filter, showHidden, showSystemFolders, offset, limit);
+  }
+
   public List<VersionSummary> getVersionSummaries(Serializable fileId) {
     return repositoryFileDao.getVersionSummaries(fileId);
   }
@@ -217,11 +236,11 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
   }
 
   public <T extends IRepositoryFileData> List<T> getDataForExecuteInBatch(List<RepositoryFile> files, Class<T> dataClass) {
-    throw new UnsupportedOperationException();
+    return repositoryFileDao.getDataInBatch(files, dataClass);
   }
 
   public <T extends IRepositoryFileData> List<T> getDataForReadInBatch(List<RepositoryFile> files, Class<T> dataClass) {
-    throw new UnsupportedOperationException();
+    return repositoryFileDao.getDataInBatch(files, dataClass);
   }
 
   public List<VersionSummary> getVersionSummaryInBatch(List<RepositoryFile> files) {
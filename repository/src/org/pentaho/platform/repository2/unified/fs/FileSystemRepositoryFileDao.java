@@ -22,6 +22,7 @@ import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
@@ -146,18 +147,45 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     return children;
   }
 
+  public List<RepositoryFile> getChildren(Serializable folderId, String filter, int offset, int limit) {
+    List<RepositoryFile> children = getChildren(folderId, filter);
+    Collections.sort(children);
+    if (offset >= children.size()) {
+      return new ArrayList<RepositoryFile>();
+    }
+    int toIndex = limit < 0 ? children.size() : (int) Math.min((long) offset + limit, children.size());
+    return new ArrayList<RepositoryFile>(children.subList(offset, toIndex));
+  }
+
+  public List<RepositoryFile> getChildrenByMetadata(Serializable folderId, String metadataKey, String value,
+      int offset, int limit) {
+    throw new UnsupportedOperationException("This operation is not support by this repository");
+  }
+
+  public List<RepositoryFile> search(RepositoryQuery query) {
+    throw new UnsupportedOperationException("This operation is not support by this repository");
+  }
+
   @SuppressWarnings("unchecked")
   public <T extends IRepositoryFileData> T getData(Serializable fileId, Serializable versionId, Class<T> dataClass) {
     File f = new File(fileId.toString());
     T data = null;
     try {
-      data = (T) new SimpleRepositoryFileData(new FileInputStream(f), "UTF-8", "text/plain");
+      data = (T) new SimpleRepositoryFileData(new FileInputStream(f), "UTF-8", "text/plain", f.length());
     } catch (FileNotFoundException e) {
       throw new UnifiedRepositoryException(e);
     }
     return data;
   }
 
+  public <T extends IRepositoryFileData> List<T> getDataInBatch(List<RepositoryFile> files, Class<T> dataClass) {
+    List<T> data = new ArrayList<T>(files.size());
+    for (RepositoryFile file : files) {
+      data.add(getData(file.getId(), file.getVersionId(), dataClass));
+    }
+    return data;
+  }
+
   public List<RepositoryFile> getDeletedFiles(Serializable folderId, String filter) {
     throw new UnsupportedOperationException("This operation is not support by this repository");
   }
@@ -233,6 +261,11 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     throw new UnsupportedOperationException("This operation is not support by this repository");
   }
 
+  public RepositoryFileTree getTree(String relPath, int depth, String filter, boolean showHidden,
+      boolean showSystemFolders, int offset, int limit) {
+    throw new UnsupportedOperationException("This operation is not support by this repository");
+  }
+
   public List<VersionSummary> getVersionSummaries(Serializable fileId) {
     throw new UnsupportedOperationException("This operation is not support by this repository");
   }
@@ -241,6 +274,10 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     throw new UnsupportedOperationException("This operation is not support by this repository");
   }
 
+  public List<VersionSummary> getVersionSummaryInBatch(List<RepositoryFile> files) {
+    throw new UnsupportedOperationException("This operation is not support by this repository");
+  }
+
   public void lockFile(Serializable fileId, String message) {
     throw new UnsupportedOperationException("This operation is not support by this repository");
   }
@@ -35,6 +35,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
 import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
@@ -45,6 +46,8 @@ import org.pentaho.platform.repository2.unified.ServerRepositoryPaths;
 import org.pentaho.platform.util.VersionHelper;
 import org.springframework.extensions.jcr.JcrCallback;
 import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -73,6 +76,8 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
 
   private IRepositoryDefaultAclHandler defaultAclHandler;
 
+  private RepositoryFileMetadataCache fileMetadataCache;
+
   // ~ Constructors ====================================================================================================
 
   public JcrRepositoryFileDao(final JcrTemplate jcrTemplate,
@@ -170,6 +175,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     Assert.notNull(file);
     Assert.isTrue(!file.isFolder());
     Assert.notNull(content);
+    invalidateCachedFile(file.getId());
     lockHelper.addLockTokenToSessionIfNecessary(session, pentahoJcrConstants, file.getId());
     JcrRepositoryFileUtils.checkoutNearestVersionableFileIfNecessary(session, pentahoJcrConstants, file.getId());
     JcrRepositoryFileUtils.updateFileNode(session, pentahoJcrConstants, file, content,
@@ -187,6 +193,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
       throws RepositoryException {
     Assert.notNull(folder);
     Assert.isTrue(folder.isFolder());
+    invalidateCachedFile(folder.getId());
     lockHelper.addLockTokenToSessionIfNecessary(session, pentahoJcrConstants, folder.getId());
     JcrRepositoryFileUtils.checkoutNearestVersionableFileIfNecessary(session, pentahoJcrConstants, folder.getId());
     JcrRepositoryFileUtils.updateFolderNode(session, pentahoJcrConstants, folder);
@@ -303,7 +310,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
         Node fileNode = session.getNodeByIdentifier(fileId.toString());
         return fileNode != null ? JcrRepositoryFileUtils.nodeToFile(session, pentahoJcrConstants, pathConversionHelper,
-            lockHelper, fileNode, loadMaps, locale) : null;
+            lockHelper, fileNode, loadMaps, locale, getReadCache()) : null;
       }
     });
   }
@@ -360,7 +367,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
       fileNode = null;
     }
     return fileNode != null ? JcrRepositoryFileUtils.nodeToFile(session, pentahoJcrConstants, pathConversionHelper,
-        lockHelper, (Node) fileNode, loadMaps, locale) : null;
+        lockHelper, (Node) fileNode, loadMaps, locale, getReadCache()) : null;
 
   }
 
@@ -389,6 +396,54 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
 
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>
+   * The whole batch runs in one session. Content nodes are resolved first and grouped by content type so that a
+   * transformer is looked up once per content type; results are returned in the order of {@code files}.
+   * </p>
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends IRepositoryFileData> List<T> getDataInBatch(final List<RepositoryFile> files,
+      final Class<T> contentClass) {
+    Assert.notNull(files);
+    if (files.isEmpty()) {
+      return new ArrayList<T>(0);
+    }
+    return (List<T>) jcrTemplate.execute(new JcrCallback() {
+      @Override
+      public Object doInJcr(final Session session) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
+        Node[] contentNodes = new Node[files.size()];
+        Map<String, List<Integer>> indexesByContentType = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < files.size(); i++) {
+          RepositoryFile file = files.get(i);
+          Assert.notNull(file);
+          Assert.notNull(file.getId());
+          contentNodes[i] = JcrRepositoryFileUtils.getContentNode(session, pentahoJcrConstants, file.getId(),
+              file.getVersionId());
+          String contentType = contentNodes[i].getProperty(pentahoJcrConstants.getPHO_CONTENTTYPE()).getString();
+          List<Integer> indexes = indexesByContentType.get(contentType);
+          if (indexes == null) {
+            indexes = new ArrayList<Integer>();
+            indexesByContentType.put(contentType, indexes);
+          }
+          indexes.add(i);
+        }
+        Object[] data = new Object[files.size()];
+        for (Map.Entry<String, List<Integer>> entry : indexesByContentType.entrySet()) {
+          ITransformer<IRepositoryFileData> transformer = findTransformerForRead(entry.getKey(), contentClass);
+          for (Integer i : entry.getValue()) {
+            data[i] = transformer.fromContentNode(session, pentahoJcrConstants, contentNodes[i]);
+          }
+        }
+        return new ArrayList<Object>(Arrays.asList(data));
+      }
+    });
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -401,7 +456,65 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
       public Object doInJcr(final Session session) throws RepositoryException, IOException {
         PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
         return JcrRepositoryFileUtils.getChildren(session, pentahoJcrConstants, pathConversionHelper, lockHelper,
-            folderId, filter);
+            folderId, filter, getReadCache());
+      }
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<RepositoryFile> getChildren(final Serializable folderId, final String filter, final int offset,
+      final int limit) {
+    Assert.notNull(folderId);
+    Assert.isTrue(offset >= 0);
+    return (List<RepositoryFile>) jcrTemplate.execute(new JcrCallback() {
+      @Override
+      public Object doInJcr(final Session session) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
+        return JcrRepositoryFileUtils.getChildren(session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+            folderId, filter, offset, limit, getReadCache());
+      }
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<RepositoryFile> getChildrenByMetadata(final Serializable folderId, final String metadataKey,
+      final String value, final int offset, final int limit) {
+    Assert.notNull(folderId);
+    Assert.hasText(metadataKey);
+    Assert.notNull(value);
+    Assert.isTrue(offset >= 0);
+    return (List<RepositoryFile>) jcrTemplate.execute(new JcrCallback() {
+      @Override
+      public Object doInJcr(final Session session) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
+        return JcrRepositoryFileUtils.getChildrenByMetadata(session, pentahoJcrConstants, pathConversionHelper,
+            lockHelper, folderId, metadataKey, value, offset, limit, getReadCache());
+      }
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<RepositoryFile> search(final RepositoryQuery query) {
+    Assert.notNull(query);
+    Assert.hasText(query.getPath());
+    return (List<RepositoryFile>) jcrTemplate.execute(new JcrCallback() {
+      @Override
+      public Object doInJcr(final Session session) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
+        return JcrRepositoryFileUtils.search(session, pentahoJcrConstants, pathConversionHelper, lockHelper, query,
+            getReadCache());
       }
     });
   }
@@ -433,6 +546,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
       @Override
       public Object doInJcr(final Session session) throws RepositoryException, IOException {
         PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
+        invalidateCachedFile(fileId);
         lockHelper.lockFile(session, pentahoJcrConstants, fileId, message);
         return null;
       }
@@ -449,6 +563,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
       @Override
       public Object doInJcr(final Session session) throws RepositoryException, IOException {
         PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
+        invalidateCachedFile(fileId);
         lockHelper.unlockFile(session, pentahoJcrConstants, fileId);
         return null;
       }
@@ -506,6 +621,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
         Serializable parentFolderId = JcrRepositoryFileUtils.getParentId(session, fileId);
         JcrRepositoryFileUtils.checkoutNearestVersionableFileIfNecessary(session, pentahoJcrConstants, parentFolderId);
+        invalidateCachedFile(fileId);
         deleteHelper.deleteFile(session, pentahoJcrConstants, fileId);
         session.save();
         JcrRepositoryFileUtils.checkinNearestVersionableFileIfNecessary(session, pentahoJcrConstants, parentFolderId,
@@ -579,6 +695,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
       @Override
       public Object doInJcr(final Session session) throws RepositoryException, IOException {
         PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
+        invalidateCachedFile(fileId);
         deleteHelper.permanentlyDeleteFile(session, pentahoJcrConstants, fileId);
         session.save();
         return null;
@@ -624,6 +741,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         }
         JcrRepositoryFileUtils.checkoutNearestVersionableFileIfNecessary(session, pentahoJcrConstants,
             origParentFolderId);
+        invalidateCachedFile(fileId);
         deleteHelper.undeleteFile(session, pentahoJcrConstants, fileId);
         session.save();
         JcrRepositoryFileUtils.checkinNearestVersionableFileIfNecessary(session, pentahoJcrConstants,
@@ -700,6 +818,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         String finalSrcAbsPath = srcFileNode.getPath();
         String finalDestAbsPath = appendFileName ? cleanDestAbsPath + RepositoryFile.SEPARATOR + srcFileNode.getName()
             : cleanDestAbsPath;
+        invalidateCachedFile(fileId);
         if (copy) {
           session.getWorkspace().copy(finalSrcAbsPath, finalDestAbsPath);
         } else {
@@ -748,6 +867,32 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     });
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<VersionSummary> getVersionSummaryInBatch(final List<RepositoryFile> files) {
+    Assert.notNull(files);
+    if (files.isEmpty()) {
+      return new ArrayList<VersionSummary>(0);
+    }
+    return (List<VersionSummary>) jcrTemplate.execute(new JcrCallback() {
+      @Override
+      public Object doInJcr(final Session session) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
+        List<VersionSummary> summaries = new ArrayList<VersionSummary>(files.size());
+        for (RepositoryFile file : files) {
+          Assert.notNull(file);
+          Assert.notNull(file.getId());
+          summaries.add((VersionSummary) JcrRepositoryFileUtils.getVersionSummary(session, pentahoJcrConstants,
+              file.getId(), file.getVersionId()));
+        }
+        return summaries;
+      }
+    });
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -758,6 +903,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     jcrTemplate.execute(new JcrCallback() {
       @Override
       public Object doInJcr(final Session session) throws RepositoryException, IOException {
+        invalidateCachedFile(fileId);
         Node fileNode = session.getNodeByIdentifier(fileId.toString());
         session.getWorkspace().getVersionManager().restore(fileNode.getPath(), versionId.toString(), true);
         return null;
@@ -794,7 +940,26 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
         String absPath = pathConversionHelper.relToAbs(relPath);
         return JcrRepositoryFileUtils.getTree(session, pentahoJcrConstants, pathConversionHelper, lockHelper, absPath,
-           depth, filter, showHidden);
+           depth, filter, showHidden, getReadCache());
+      }
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public RepositoryFileTree getTree(final String relPath, final int depth, final String filter,
+      final boolean showHidden, final boolean showSystemFolders, final int offset, final int limit) {
+    Assert.hasText(relPath);
+    Assert.isTrue(offset >= 0);
+    return (RepositoryFileTree) jcrTemplate.execute(new JcrCallback() {
+      @Override
+      public Object doInJcr(final Session session) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants(session);
+        String absPath = pathConversionHelper.relToAbs(relPath);
+        return JcrRepositoryFileUtils.getTree(session, pentahoJcrConstants, pathConversionHelper, lockHelper, absPath,
+            depth, filter, showHidden, showSystemFolders, offset, limit, getReadCache());
       }
     });
   }
@@ -854,6 +1019,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     jcrTemplate.execute(new JcrCallback() {
       @Override
       public Object doInJcr(final Session session) throws RepositoryException, IOException {
+        invalidateCachedFile(fileId);
         JcrRepositoryFileUtils.setFileMetadata(session, fileId, metadataMap);
         return null;
       }
@@ -877,6 +1043,51 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     return JcrRepositoryFileUtils.getReservedChars();
   }
 
+  /**
+   * Drops the cached metadata of the given file. Inside a transaction this happens when the transaction completes,
+   * whether it commits or rolls back, and until then the transaction stops using the cache (see
+   * {@link #getReadCache()}), so that it neither reads stale metadata of the files it changes nor caches metadata that
+   * is not committed. Observation events also invalidate the file, but only once the transaction commits.
+   */
+  private void invalidateCachedFile(final Serializable fileId) {
+    if (fileMetadataCache == null || fileId == null) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      fileMetadataCache.invalidate(fileId.toString());
+      return;
+    }
+    CachedFileInvalidation invalidation = (CachedFileInvalidation) TransactionSynchronizationManager
+        .getResource(fileMetadataCache);
+    if (invalidation == null) {
+      invalidation = new CachedFileInvalidation(fileMetadataCache);
+      TransactionSynchronizationManager.bindResource(fileMetadataCache, invalidation);
+      TransactionSynchronizationManager.registerSynchronization(invalidation);
+    }
+    invalidation.fileIds.add(fileId.toString());
+  }
+
+  /**
+   * Returns the cache to be used by a read, or {@code null} if the current transaction has changed files.
+   */
+  private RepositoryFileMetadataCache getReadCache() {
+    if (fileMetadataCache != null && TransactionSynchronizationManager.hasResource(fileMetadataCache)) {
+      return null;
+    }
+    return fileMetadataCache;
+  }
+
+  public RepositoryFileMetadataCache getFileMetadataCache() {
+    return fileMetadataCache;
+  }
+
+  /**
+   * Optional. When set, read operations consult the cache after resolving nodes with the caller's session.
+   */
+  public void setFileMetadataCache(final RepositoryFileMetadataCache fileMetadataCache) {
+    this.fileMetadataCache = fileMetadataCache;
+  }
+
   public IRepositoryDefaultAclHandler getDefaultAclHandler() {
     return defaultAclHandler;
   }
@@ -966,6 +1177,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
            .getString("JcrRepositoryFileDao.LOCALE_0001_UPDATE_PROPERTIES", repositoryFile.getId());
         lockHelper.addLockTokenToSessionIfNecessary(session, pentahoJcrConstants, repositoryFile.getId());
         JcrRepositoryFileUtils.checkoutNearestVersionableFileIfNecessary(session, pentahoJcrConstants, repositoryFile.getId());
+        invalidateCachedFile(repositoryFile.getId());
         JcrRepositoryFileUtils.updateFileLocaleProperties(session, repositoryFile.getId(), locale, properties);
         session.save();
         JcrRepositoryFileUtils.checkinNearestVersionableFileIfNecessary(session, pentahoJcrConstants, repositoryFile.getId(),
@@ -988,6 +1200,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
            .getString("JcrRepositoryFileDao.LOCALE_0002_DELETE_PROPERTIES", repositoryFile.getId());
         lockHelper.addLockTokenToSessionIfNecessary(session, pentahoJcrConstants, repositoryFile.getId());
         JcrRepositoryFileUtils.checkoutNearestVersionableFileIfNecessary(session, pentahoJcrConstants, repositoryFile.getId());
+        invalidateCachedFile(repositoryFile.getId());
         JcrRepositoryFileUtils.deleteFileLocaleProperties(session, repositoryFile.getId(), locale);
         session.save();
         JcrRepositoryFileUtils.checkinNearestVersionableFileIfNecessary(session, pentahoJcrConstants, repositoryFile.getId(),
@@ -1011,4 +1224,27 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     });
   }
 
+  /**
+   * Collects the files changed by one transaction and drops them from the cache when the transaction completes.
+   */
+  private static class CachedFileInvalidation extends TransactionSynchronizationAdapter {
+    private final RepositoryFileMetadataCache cache;
+
+    private final Set<String> fileIds = new HashSet<String>();
+
+    private CachedFileInvalidation(final RepositoryFileMetadataCache cache) {
+      this.cache = cache;
+    }
+
+    @Override
+    public void afterCompletion(final int status) {
+      if (TransactionSynchronizationManager.hasResource(cache)) {
+        TransactionSynchronizationManager.unbindResource(cache);
+      }
+      for (String fileId : fileIds) {
+        cache.invalidate(fileId);
+      }
+    }
+  }
+
 }
@@ -14,6 +14,7 @@
  */
 package org.pentaho.platform.repository2.unified.jcr;
 
+import org.apache.commons.lang.LocaleUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.jackrabbit.JcrConstants;
@@ -31,6 +32,11 @@ import org.springframework.util.StringUtils;
 
 import javax.jcr.*;
 import javax.jcr.lock.Lock;
+import javax.jcr.query.Query;
+import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.QueryObjectModelConstants;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+import javax.jcr.query.qom.Selector;
 import javax.jcr.version.Version;
 import javax.jcr.version.VersionHistory;
 import javax.jcr.version.VersionManager;
@@ -93,6 +99,42 @@ public class JcrRepositoryFileUtils {
     return file;
   }
 
+  /**
+   * Same as {@link #nodeToFile(Session, PentahoJcrConstants, IPathConversionHelper, ILockHelper, Node, boolean,
+   * IPentahoLocale)} but consults {@code cache} first. The node must have been resolved using {@code session} so that
+   * access control has already been applied. Frozen nodes and requests for locale maps bypass the cache.
+   */
+  public static RepositoryFile nodeToFile(final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final Node node,
+      final boolean loadMaps, final IPentahoLocale pentahoLocale, final RepositoryFileMetadataCache cache)
+      throws RepositoryException {
+    if (cache == null || loadMaps || node.isNodeType(pentahoJcrConstants.getNT_FROZENNODE())) {
+      return nodeToFile(session, pentahoJcrConstants, pathConversionHelper, lockHelper, node, loadMaps, pentahoLocale);
+    }
+    IPentahoLocale locale = pentahoLocale != null ? pentahoLocale : getDefaultLocale();
+    String nodeId = node.getIdentifier();
+    String absPath = node.getPath();
+    String localeKey = locale.toString();
+    RepositoryFile file = cache.get(nodeId, localeKey);
+    // the relative path depends on the tenant of the caller; treat a different path as a miss
+    if (file != null && equals(file.getPath(), pathConversionHelper.absToRel(absPath))) {
+      return file;
+    }
+    long generation = cache.getGeneration();
+    file = nodeToFile(session, pentahoJcrConstants, pathConversionHelper, lockHelper, node, false, locale);
+    cache.put(nodeId, absPath, localeKey, file, generation);
+    return file;
+  }
+
+  private static boolean equals(final String s1, final String s2) {
+    return s1 == null ? s2 == null : s1.equals(s2);
+  }
+
+  private static IPentahoLocale getDefaultLocale() {
+    Locale currentLocale = LocaleHelper.getLocale();
+    return currentLocale != null ? new PentahoLocale(currentLocale) : new PentahoLocale();
+  }
+
   public static RepositoryFile nodeToFile(final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final Node node,
       final boolean loadMaps, IPentahoLocale pentahoLocale) throws RepositoryException {
@@ -164,13 +206,7 @@ public class JcrRepositoryFileUtils {
 
     // Get default locale if null
     if (pentahoLocale == null) {
-      Locale currentLocale = LocaleHelper.getLocale();
-      if(currentLocale != null){
-        pentahoLocale = new PentahoLocale(currentLocale);
-      }
-      else{
-        pentahoLocale = new PentahoLocale();
-      }
+      pentahoLocale = getDefaultLocale();
     }
 
     if (isPentahoHierarchyNode(session, pentahoJcrConstants, node)) {
@@ -550,6 +586,16 @@ public class JcrRepositoryFileUtils {
   public static IRepositoryFileData getContent(final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final Serializable fileId, final Serializable versionId, final ITransformer<IRepositoryFileData> transformer)
       throws RepositoryException {
+    Node fileNode = getContentNode(session, pentahoJcrConstants, fileId, versionId);
+    return transformer.fromContentNode(session, pentahoJcrConstants, fileNode);
+  }
+
+  /**
+   * Returns the node holding the content of the given file: the frozen node of the given version (or of the base
+   * version if {@code versionId} is {@code null}) for versioned files and the file node itself otherwise.
+   */
+  public static Node getContentNode(final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Serializable fileId, final Serializable versionId) throws RepositoryException {
     Node fileNode = session.getNodeByIdentifier(fileId.toString());
     if (isVersioned(session, pentahoJcrConstants, fileNode)) {
       VersionManager vMgr = session.getWorkspace().getVersionManager();
@@ -562,13 +608,18 @@ public class JcrRepositoryFileUtils {
       fileNode = getNodeAtVersion(pentahoJcrConstants, version);
     }
     Assert.isTrue(!isPentahoFolder(pentahoJcrConstants, fileNode));
-
-    return transformer.fromContentNode(session, pentahoJcrConstants, fileNode);
+    return fileNode;
   }
 
   public static List<RepositoryFile> getChildren(final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final Serializable folderId,
       final String filter) throws RepositoryException {
+    return getChildren(session, pentahoJcrConstants, pathConversionHelper, lockHelper, folderId, filter, null);
+  }
+
+  public static List<RepositoryFile> getChildren(final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final Serializable folderId,
+      final String filter, final RepositoryFileMetadataCache cache) throws RepositoryException {
     Node folderNode = session.getNodeByIdentifier(folderId.toString());
     Assert.isTrue(isPentahoFolder(pentahoJcrConstants, folderNode));
 
@@ -584,13 +635,313 @@ public class JcrRepositoryFileUtils {
     while (nodeIterator.hasNext()) {
       Node node = nodeIterator.nextNode();
       if (isSupportedNodeType(pentahoJcrConstants, node)) {
-        children.add(nodeToFile(session, pentahoJcrConstants, pathConversionHelper, lockHelper, node));
+        children.add(nodeToFile(session, pentahoJcrConstants, pathConversionHelper, lockHelper, node, false, null,
+            cache));
       }
     }
     Collections.sort(children);
     return children;
   }
 
+  /**
+   * Returns the children of the given folder sorted and then restricted to the page starting at {@code offset} with at
+   * most {@code limit} entries ({@code limit < 0} means no limit).
+   */
+  public static List<RepositoryFile> getChildren(final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final Serializable folderId,
+      final String filter, final int offset, final int limit, final RepositoryFileMetadataCache cache)
+      throws RepositoryException {
+    return page(getChildren(session, pentahoJcrConstants, pathConversionHelper, lockHelper, folderId, filter, cache),
+        offset, limit);
+  }
+
+  /**
+   * Returns the files (not folders) that are immediate children of the given folder and whose metadata value for
+   * {@code metadataKey} equals {@code value}, sorted and then restricted to the page starting at {@code offset} with at
+   * most {@code limit} entries ({@code limit < 0} means no limit).
+   *
+   * <p>
+   * Metadata is stored as properties of the {@code pho:metadata} child node of each file. Rather than reading that node
+   * for every child of the folder, a single query finds the metadata nodes below the folder that carry the value; only
+   * the matching files are then read.
+   * </p>
+   */
+  public static List<RepositoryFile> getChildrenByMetadata(final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final IPathConversionHelper pathConversionHelper,
+      final ILockHelper lockHelper, final Serializable folderId, final String metadataKey, final String value,
+      final int offset, final int limit, final RepositoryFileMetadataCache cache) throws RepositoryException {
+    checkName(metadataKey);
+    Node folderNode = session.getNodeByIdentifier(folderId.toString());
+    Assert.isTrue(isPentahoFolder(pentahoJcrConstants, folderNode));
+    String prefix = session.getNamespacePrefix(PentahoJcrConstants.PHO_NS);
+    Assert.hasText(prefix);
+
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    final String selectorName = "metadata"; //$NON-NLS-1$
+    Selector selector = fac.selector(JcrConstants.NT_UNSTRUCTURED, selectorName);
+    Constraint valueConstraint = fac.comparison(fac.propertyValue(selectorName, prefix + ":" + metadataKey), //$NON-NLS-1$
+        QueryObjectModelConstants.JCR_OPERATOR_EQUAL_TO, fac.literal(session.getValueFactory().createValue(value)));
+    Constraint descendantNodeConstraint = fac.descendantNode(selectorName, folderNode.getPath());
+    Query query = fac.createQuery(selector, fac.and(descendantNodeConstraint, valueConstraint), null, null);
+    NodeIterator nodeIter = session.getWorkspace().getQueryManager().createQuery(query.getStatement(),
+        Query.JCR_JQOM).execute().getNodes();
+
+    List<RepositoryFile> children = new ArrayList<RepositoryFile>();
+    String metadataNodeName = pentahoJcrConstants.getPHO_METADATA();
+    while (nodeIter.hasNext()) {
+      Node metadataNode = nodeIter.nextNode();
+      if (!metadataNode.getName().equals(metadataNodeName)) {
+        continue;
+      }
+      Node fileNode = metadataNode.getParent();
+      // the query also matches deeper descendants; keep immediate children only
+      if (isPentahoFile(pentahoJcrConstants, fileNode) && fileNode.getParent().isSame(folderNode)) {
+        children.add(nodeToFile(session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode, false, null,
+            cache));
+      }
+    }
+    Collections.sort(children);
+    return page(children, offset, limit);
+  }
+
+  /**
+   * Returns the sorted page of the files and folders below {@link RepositoryQuery#getPath()} that match
+   * {@code query}.
+   *
+   * <p>
+   * Each group of criteria that the index can answer is run as one query: full text words on any node (a hit in the
+   * content, metadata or locale node of a file counts for the file), creator and metadata values on the
+   * {@code pho:metadata} nodes, mime type on the content nodes and dates on the file nodes. Only the files found by
+   * every query are read, and those are checked against the remaining criteria with
+   * {@link RepositoryQuery#accepts(RepositoryFile)}. A query with no indexed criteria, such as one by name only, lists
+   * every file below the path. The index only returns nodes that the session may read.
+   * </p>
+   */
+  public static List<RepositoryFile> search(final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final RepositoryQuery query,
+      final RepositoryFileMetadataCache cache) throws RepositoryException {
+    String absPath = pathConversionHelper.relToAbs(query.getPath());
+    if (!session.itemExists(absPath) || !(query.isIncludeFiles() || query.isIncludeFolders())) {
+      return new ArrayList<RepositoryFile>(0);
+    }
+    Item item = session.getItem(absPath);
+    Assert.isTrue(item.isNode());
+    Node folderNode = (Node) item;
+    String prefix = session.getNamespacePrefix(PentahoJcrConstants.PHO_NS);
+    Assert.hasText(prefix);
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    ValueFactory valueFactory = session.getValueFactory();
+    final String selectorName = "node"; //$NON-NLS-1$
+    Constraint descendantNodeConstraint = fac.descendantNode(selectorName, folderNode.getPath());
+
+    // null until the first query has run; then the files found by every query so far, by identifier
+    Map<String, Node> candidates = null;
+
+    for (String words : new String[] { query.getText(), query.getTitle(), query.getDescription() }) {
+      if (words != null && (candidates == null || !candidates.isEmpty())) {
+        String expression = toFullTextExpression(words);
+        if (expression.length() == 0) {
+          // nothing but punctuation, which matches no file
+          return new ArrayList<RepositoryFile>(0);
+        }
+        Constraint fullTextConstraint = fac.fullTextSearch(selectorName, null,
+            fac.literal(valueFactory.createValue(expression)));
+        candidates = retain(candidates, findFileNodes(session, pentahoJcrConstants, folderNode, fac,
+            fac.selector(JcrConstants.NT_BASE, selectorName), fac.and(descendantNodeConstraint, fullTextConstraint),
+            null));
+      }
+    }
+
+    if ((query.getCreatorId() != null || !query.getMetadata().isEmpty())
+        && (candidates == null || !candidates.isEmpty())) {
+      Constraint metadataConstraint = descendantNodeConstraint;
+      if (query.getCreatorId() != null) {
+        metadataConstraint = fac.and(metadataConstraint, fac.comparison(fac.propertyValue(selectorName, prefix
+            + ":" + PentahoJcrConstants.PHO_CONTENTCREATOR), QueryObjectModelConstants.JCR_OPERATOR_EQUAL_TO, //$NON-NLS-1$
+            fac.literal(valueFactory.createValue(query.getCreatorId()))));
+      }
+      for (Map.Entry<String, String> entry : query.getMetadata().entrySet()) {
+        checkName(entry.getKey());
+        metadataConstraint = fac.and(metadataConstraint, fac.comparison(fac.propertyValue(selectorName, prefix
+            + ":" + entry.getKey()), QueryObjectModelConstants.JCR_OPERATOR_EQUAL_TO, //$NON-NLS-1$
+            fac.literal(valueFactory.createValue(entry.getValue()))));
+      }
+      candidates = retain(candidates, findFileNodes(session, pentahoJcrConstants, folderNode, fac,
+          fac.selector(JcrConstants.NT_UNSTRUCTURED, selectorName), metadataConstraint,
+          pentahoJcrConstants.getPHO_METADATA()));
+    }
+
+    if (query.getMimeType() != null && (candidates == null || !candidates.isEmpty())) {
+      Constraint mimeTypeConstraint = fac.comparison(fac.propertyValue(selectorName,
+          pentahoJcrConstants.getJCR_MIMETYPE()), QueryObjectModelConstants.JCR_OPERATOR_EQUAL_TO,
+          fac.literal(valueFactory.createValue(query.getMimeType())));
+      candidates = retain(candidates, findFileNodes(session, pentahoJcrConstants, folderNode, fac,
+          fac.selector(JcrConstants.NT_RESOURCE, selectorName), fac.and(descendantNodeConstraint, mimeTypeConstraint),
+          pentahoJcrConstants.getJCR_CONTENT()));
+    }
+
+    boolean hasDates = query.getCreatedAfter() != null || query.getCreatedBefore() != null
+        || query.getModifiedAfter() != null || query.getModifiedBefore() != null;
+    if (candidates == null || (hasDates && !candidates.isEmpty())) {
+      Constraint fileConstraint = descendantNodeConstraint;
+      fileConstraint = and(fac, fileConstraint, dateConstraint(fac, valueFactory, selectorName,
+          pentahoJcrConstants.getJCR_CREATED(), QueryObjectModelConstants.JCR_OPERATOR_GREATER_THAN,
+          query.getCreatedAfter()));
+      fileConstraint = and(fac, fileConstraint, dateConstraint(fac, valueFactory, selectorName,
+          pentahoJcrConstants.getJCR_CREATED(), QueryObjectModelConstants.JCR_OPERATOR_LESS_THAN,
+          query.getCreatedBefore()));
+      fileConstraint = and(fac, fileConstraint, dateConstraint(fac, valueFactory, selectorName,
+          pentahoJcrConstants.getPHO_LASTMODIFIED(), QueryObjectModelConstants.JCR_OPERATOR_GREATER_THAN,
+          query.getModifiedAfter()));
+      fileConstraint = and(fac, fileConstraint, dateConstraint(fac, valueFactory, selectorName,
+          pentahoJcrConstants.getPHO_LASTMODIFIED(), QueryObjectModelConstants.JCR_OPERATOR_LESS_THAN,
+          query.getModifiedBefore()));
+      String nodeType;
+      if (!query.isIncludeFolders()) {
+        nodeType = pentahoJcrConstants.getPHO_NT_PENTAHOFILE();
+      } else if (!query.isIncludeFiles()) {
+        nodeType = pentahoJcrConstants.getPHO_NT_PENTAHOFOLDER();
+      } else {
+        nodeType = pentahoJcrConstants.getPHO_NT_PENTAHOHIERARCHYNODE();
+      }
+      candidates = retain(candidates, findFileNodes(session, pentahoJcrConstants, folderNode, fac,
+          fac.selector(nodeType, selectorName), fileConstraint, null));
+    }
+
+    IPentahoLocale pentahoLocale = query.getLocale() != null ? new PentahoLocale(LocaleUtils.toLocale(query
+        .getLocale())) : null;
+    List<RepositoryFile> files = new ArrayList<RepositoryFile>();
+    for (Node fileNode : candidates.values()) {
+      RepositoryFile file = nodeToFile(session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode,
+          false, pentahoLocale, cache);
+      if (query.accepts(file)) {
+        files.add(file);
+      }
+    }
+    Collections.sort(files);
+    return page(files, query.getOffset(), query.getLimit());
+  }
+
+  /**
+   * Runs a query and returns the files and folders below {@code folderNode} that contain the nodes found, by
+   * identifier. If {@code nodeName} is not {@code null}, only nodes with that name that are immediate children of a
+   * file or folder count.
+   */
+  private static Map<String, Node> findFileNodes(final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final Node folderNode, final QueryObjectModelFactory fac,
+      final Selector selector, final Constraint constraint, final String nodeName) throws RepositoryException {
+    Query query = fac.createQuery(selector, constraint, null, null);
+    NodeIterator nodeIter = session.getWorkspace().getQueryManager().createQuery(query.getStatement(),
+        Query.JCR_JQOM).execute().getNodes();
+    Map<String, Node> fileNodes = new LinkedHashMap<String, Node>();
+    while (nodeIter.hasNext()) {
+      Node node = nodeIter.nextNode();
+      if (nodeName != null) {
+        if (!node.getName().equals(nodeName)) {
+          continue;
+        }
+        node = node.getParent();
+      }
+      Node fileNode = getEnclosingFileNode(pentahoJcrConstants, folderNode, node, nodeName == null);
+      if (fileNode != null) {
+        fileNodes.put(fileNode.getIdentifier(), fileNode);
+      }
+    }
+    return fileNodes;
+  }
+
+  /**
+   * Returns {@code node} if it is a file or folder below {@code folderNode}; otherwise, if {@code searchAncestors},
+   * its nearest ancestor that is, or {@code null} if there is none the session may read. Deleted files, which are kept
+   * below an internal folder of the trash, are never returned.
+   */
+  private static Node getEnclosingFileNode(final PentahoJcrConstants pentahoJcrConstants, final Node folderNode,
+      final Node node, final boolean searchAncestors) throws RepositoryException {
+    int folderDepth = folderNode.getDepth();
+    Node current = node;
+    try {
+      while (current.getDepth() > folderDepth) {
+        if (isSupportedNodeType(pentahoJcrConstants, current)) {
+          return isInInternalFolder(pentahoJcrConstants, folderDepth, current) ? null : current;
+        }
+        if (!searchAncestors) {
+          return null;
+        }
+        current = current.getParent();
+      }
+    } catch (AccessDeniedException e) {
+      // an ancestor the session may not read
+    }
+    return null;
+  }
+
+  /**
+   * Returns {@code true} if an ancestor of {@code node} below the given depth is an internal folder, such as the trash.
+   */
+  private static boolean isInInternalFolder(final PentahoJcrConstants pentahoJcrConstants, final int folderDepth,
+      final Node node) throws RepositoryException {
+    Node current = node.getParent();
+    while (current.getDepth() > folderDepth) {
+      if (current.isNodeType(pentahoJcrConstants.getPHO_NT_INTERNALFOLDER())) {
+        return true;
+      }
+      current = current.getParent();
+    }
+    return false;
+  }
+
+  private static Map<String, Node> retain(final Map<String, Node> candidates, final Map<String, Node> found) {
+    if (candidates == null) {
+      return found;
+    }
+    candidates.keySet().retainAll(found.keySet());
+    return candidates;
+  }
+
+  private static Constraint dateConstraint(final QueryObjectModelFactory fac, final ValueFactory valueFactory,
+      final String selectorName, final String propertyName, final String operator, final Date date)
+      throws RepositoryException {
+    if (date == null) {
+      return null;
+    }
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTime(date);
+    return fac.comparison(fac.propertyValue(selectorName, propertyName), operator, fac.literal(valueFactory
+        .createValue(calendar)));
+  }
+
+  private static Constraint and(final QueryObjectModelFactory fac, final Constraint constraint1,
+      final Constraint constraint2) throws RepositoryException {
+    return constraint2 != null ? fac.and(constraint1, constraint2) : constraint1;
+  }
+
+  /**
+   * Turns words into a full text search expression that requires each of them. Only letters and digits are kept so
+   * that nothing in the input is taken as search syntax.
+   */
+  private static String toFullTextExpression(final String words) {
+    StringBuilder buf = new StringBuilder();
+    for (String word : RepositoryQuery.splitWords(words)) {
+      if (buf.length() > 0) {
+        buf.append(' ');
+      }
+      buf.append(word);
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Returns a copy of the sub list starting at {@code offset} with at most {@code limit} entries ({@code limit < 0}
+   * means no limit). Never returns {@code null}.
+   */
+  private static <T> List<T> page(final List<T> list, final int offset, final int limit) {
+    if (offset >= list.size()) {
+      return new ArrayList<T>(0);
+    }
+    int toIndex = limit < 0 ? list.size() : (int) Math.min((long) offset + limit, list.size());
+    return new ArrayList<T>(list.subList(offset, toIndex));
+  }
+
   public static boolean isPentahoFolder(final PentahoJcrConstants pentahoJcrConstants, final Node node)
       throws RepositoryException {
     Assert.notNull(node);
@@ -929,6 +1280,14 @@ public class JcrRepositoryFileUtils {
   public static RepositoryFileTree getTree(final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final String absPath,
       final int depth, final String filter, final boolean showHidden) throws RepositoryException {
+    return getTree(session, pentahoJcrConstants, pathConversionHelper, lockHelper, absPath, depth, filter, showHidden,
+        null);
+  }
+
+  public static RepositoryFileTree getTree(final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final String absPath,
+      final int depth, final String filter, final boolean showHidden, final RepositoryFileMetadataCache cache)
+      throws RepositoryException {
 
     Item fileItem = session.getItem(absPath);
     // items are nodes or properties; this must be a node
@@ -936,7 +1295,7 @@ public class JcrRepositoryFileUtils {
     Node fileNode = (Node) fileItem;
 
     RepositoryFile rootFile = JcrRepositoryFileUtils.nodeToFile(session, pentahoJcrConstants, pathConversionHelper,
-        lockHelper, fileNode, false, null);
+        lockHelper, fileNode, false, null, cache);
     if (!showHidden && rootFile.isHidden()) {
       return null;
     }
@@ -950,7 +1309,7 @@ public class JcrRepositoryFileUtils {
           Node childNode = childNodes.nextNode();
           if (isSupportedNodeType(pentahoJcrConstants, childNode)) {
             RepositoryFileTree repositoryFileTree = getTree(session, pentahoJcrConstants, pathConversionHelper,
-                lockHelper, childNode.getPath(), depth - 1, filter, showHidden);
+                lockHelper, childNode.getPath(), depth - 1, filter, showHidden, cache);
             if (repositoryFileTree != null) {
               children.add(repositoryFileTree);
             }
@@ -964,6 +1323,65 @@ public class JcrRepositoryFileUtils {
     return new RepositoryFileTree(rootFile, children);
   }
 
+  /**
+   * Same as {@link #getTree(Session, PentahoJcrConstants, IPathConversionHelper, ILockHelper, String, int, String,
+   * boolean, RepositoryFileMetadataCache)} except that only the page of the root's (sorted) immediate children starting
+   * at {@code offset} with at most {@code limit} entries is returned ({@code limit < 0} means no limit). The immediate
+   * children are listed without descending into them so that only the children on the requested page are expanded.
+   * Unless {@code showSystemFolders} is set, immediate children marked as {@link IUnifiedRepository#SYSTEM_FOLDER} are
+   * left out before the page is taken.
+   */
+  public static RepositoryFileTree getTree(final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final String absPath,
+      final int depth, final String filter, final boolean showHidden, final boolean showSystemFolders,
+      final int offset, final int limit, final RepositoryFileMetadataCache cache) throws RepositoryException {
+
+    Item fileItem = session.getItem(absPath);
+    // items are nodes or properties; this must be a node
+    Assert.isTrue(fileItem.isNode());
+    Node fileNode = (Node) fileItem;
+
+    RepositoryFile rootFile = JcrRepositoryFileUtils.nodeToFile(session, pentahoJcrConstants, pathConversionHelper,
+        lockHelper, fileNode, false, null, cache);
+    if (!showHidden && rootFile.isHidden()) {
+      return null;
+    }
+    if (depth == 0) {
+      return new RepositoryFileTree(rootFile, null);
+    }
+    List<RepositoryFile> childFiles = new ArrayList<RepositoryFile>();
+    Map<Serializable, String> childAbsPaths = new HashMap<Serializable, String>();
+    if (isPentahoFolder(pentahoJcrConstants, fileNode)) {
+      NodeIterator childNodes = filter != null ? fileNode.getNodes(filter) : fileNode.getNodes();
+      while (childNodes.hasNext()) {
+        Node childNode = childNodes.nextNode();
+        if (isSupportedNodeType(pentahoJcrConstants, childNode)
+            && (showSystemFolders || !isSystemFolder(session, pentahoJcrConstants, childNode))) {
+          RepositoryFile childFile = nodeToFile(session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+              childNode, false, null, cache);
+          if (showHidden || !childFile.isHidden()) {
+            childFiles.add(childFile);
+            childAbsPaths.put(childFile.getId(), childNode.getPath());
+          }
+        }
+      }
+    }
+    Collections.sort(childFiles);
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>();
+    for (RepositoryFile childFile : page(childFiles, offset, limit)) {
+      if (depth - 1 == 0) {
+        children.add(new RepositoryFileTree(childFile, null));
+      } else {
+        RepositoryFileTree repositoryFileTree = getTree(session, pentahoJcrConstants, pathConversionHelper,
+            lockHelper, childAbsPaths.get(childFile.getId()), depth - 1, filter, showHidden, cache);
+        if (repositoryFileTree != null) {
+          children.add(repositoryFileTree);
+        }
+      }
+    }
+    return new RepositoryFileTree(rootFile, children);
+  }
+
   public static Node updateFileLocaleProperties(final Session session, final Serializable fileId,
                                                 String locale, Properties properties) throws RepositoryException {
 
@@ -1061,6 +1479,21 @@ public class JcrRepositoryFileUtils {
     }
   }
 
+  /**
+   * Returns whether the node's metadata marks it as a {@link IUnifiedRepository#SYSTEM_FOLDER}. Only the one property is
+   * read, rather than all of the file's metadata.
+   */
+  private static boolean isSystemFolder(final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Node node) throws RepositoryException {
+    if (!node.hasNode(pentahoJcrConstants.getPHO_METADATA())) {
+      return false;
+    }
+    String prefix = session.getNamespacePrefix(PentahoJcrConstants.PHO_NS);
+    String propertyName = prefix + ":" + IUnifiedRepository.SYSTEM_FOLDER; //$NON-NLS-1$
+    Node metadataNode = node.getNode(pentahoJcrConstants.getPHO_METADATA());
+    return metadataNode.hasProperty(propertyName) && metadataNode.getProperty(propertyName).getBoolean();
+  }
+
   public static Map<String, Serializable> getFileMetadata(final Session session, final Serializable fileId)
       throws ItemNotFoundException, RepositoryException {
     Map<String, Serializable> values = new HashMap<String, Serializable>();
@@ -1166,4 +1599,4 @@ public class JcrRepositoryFileUtils {
         lockHelper, (Node) fileNode, loadMaps, locale) : null;
 
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
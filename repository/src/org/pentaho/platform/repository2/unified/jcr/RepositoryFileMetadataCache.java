@@ -0,0 +1,324 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+package org.pentaho.platform.repository2.unified.jcr;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.ObservationManager;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jackrabbit.core.observation.SynchronousEventListener;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.springframework.extensions.jcr.SessionFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Shared, size-bounded cache of {@link RepositoryFile} metadata built by {@link JcrRepositoryFileUtils#nodeToFile}.
+ * Entries are keyed by node identifier (and by the locale used to resolve title and description) and are indexed by
+ * absolute path so that they can be invalidated from JCR observation events.
+ *
+ * <p>
+ * There is no TTL. The cache registers itself as a {@link SynchronousEventListener} on a long-lived session obtained
+ * from the given session factory; every event invalidates the node at the event path and all of its ancestors (file
+ * metadata lives in child nodes such as {@code pho:metadata} and {@code pho:locales}). Removals and moves additionally
+ * invalidate the whole subtree.
+ * </p>
+ *
+ * <p>
+ * This class does no access control. Callers must resolve the {@link javax.jcr.Node} with the requesting user's
+ * session before consulting the cache so that ACL checks still run per session.
+ * </p>
+ */
+public class RepositoryFileMetadataCache implements SynchronousEventListener {
+
+  // ~ Static fields/initializers ======================================================================================
+
+  private static final Log logger = LogFactory.getLog(RepositoryFileMetadataCache.class);
+
+  private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  private static final int ALL_EVENT_TYPES = Event.NODE_ADDED | Event.NODE_REMOVED | Event.NODE_MOVED
+      | Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+  private static final char SEPARATOR = '/';
+
+  // ~ Instance fields =================================================================================================
+
+  private final SessionFactory sessionFactory;
+
+  private final int maxEntries;
+
+  /**
+   * Guarded by {@code this}. Access-ordered so that iteration order is least recently used first.
+   */
+  private final LinkedHashMap<String, NodeEntry> entriesById;
+
+  /**
+   * Guarded by {@code this}. Absolute path to node identifier.
+   */
+  private final Map<String, String> idsByPath = new HashMap<String, String>();
+
+  /**
+   * Incremented on every event batch. Readers capture it before building a file and only store the result if no event
+   * arrived in the meantime; this prevents a slow reader from caching state that was invalidated while it was reading.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
+
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  private final AtomicLong invalidationCount = new AtomicLong();
+
+  private Session observationSession;
+
+  // ~ Constructors ====================================================================================================
+
+  public RepositoryFileMetadataCache(final SessionFactory sessionFactory) {
+    this(sessionFactory, DEFAULT_MAX_ENTRIES);
+  }
+
+  public RepositoryFileMetadataCache(final SessionFactory sessionFactory, final int maxEntries) {
+    super();
+    Assert.isTrue(maxEntries > 0);
+    this.sessionFactory = sessionFactory;
+    this.maxEntries = maxEntries;
+    this.entriesById = new LinkedHashMap<String, NodeEntry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, NodeEntry> eldest) {
+        if (size() > RepositoryFileMetadataCache.this.maxEntries) {
+          idsByPath.remove(eldest.getValue().absPath);
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  // ~ Methods =========================================================================================================
+
+  /**
+   * Opens the observation session and registers this cache as a listener for the whole workspace. Called by Spring.
+   */
+  public synchronized void init() throws RepositoryException {
+    if (sessionFactory == null || observationSession != null) {
+      return;
+    }
+    observationSession = sessionFactory.getSession();
+    ObservationManager observationManager = observationSession.getWorkspace().getObservationManager();
+    observationManager.addEventListener(this, ALL_EVENT_TYPES, String.valueOf(SEPARATOR), true, null, null, false);
+  }
+
+  /**
+   * Unregisters this cache and closes the observation session. Called by Spring.
+   */
+  public synchronized void destroy() {
+    if (observationSession != null) {
+      try {
+        observationSession.getWorkspace().getObservationManager().removeEventListener(this);
+      } catch (RepositoryException e) {
+        logger.warn("unable to remove event listener", e); //$NON-NLS-1$
+      } finally {
+        observationSession.logout();
+        observationSession = null;
+      }
+    }
+    clear();
+  }
+
+  /**
+   * Returns the current generation. Capture this before reading a node and pass it to
+   * {@link #put(String, String, String, RepositoryFile, long)}.
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Returns the cached file for the given node and locale or {@code null} if not cached.
+   */
+  public synchronized RepositoryFile get(final String nodeId, final String locale) {
+    NodeEntry entry = entriesById.get(nodeId);
+    RepositoryFile file = entry != null ? entry.filesByLocale.get(locale) : null;
+    if (file != null) {
+      hitCount.incrementAndGet();
+    } else {
+      missCount.incrementAndGet();
+    }
+    return file;
+  }
+
+  /**
+   * Stores a file unless an event arrived after {@code expectedGeneration} was captured.
+   */
+  public synchronized void put(final String nodeId, final String absPath, final String locale,
+      final RepositoryFile file, final long expectedGeneration) {
+    if (generation.get() != expectedGeneration) {
+      return;
+    }
+    NodeEntry entry = entriesById.get(nodeId);
+    if (entry == null || !entry.absPath.equals(absPath)) {
+      if (entry != null) {
+        idsByPath.remove(entry.absPath);
+      }
+      entry = new NodeEntry(absPath);
+      entriesById.put(nodeId, entry);
+      idsByPath.put(absPath, nodeId);
+    }
+    entry.filesByLocale.put(locale, file);
+  }
+
+  /**
+   * Drops the entry for the given node identifier, if any.
+   */
+  public synchronized void invalidate(final String nodeId) {
+    generation.incrementAndGet();
+    NodeEntry entry = entriesById.remove(nodeId);
+    if (entry != null) {
+      idsByPath.remove(entry.absPath);
+      invalidationCount.incrementAndGet();
+    }
+  }
+
+  public synchronized void clear() {
+    generation.incrementAndGet();
+    entriesById.clear();
+    idsByPath.clear();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void onEvent(final EventIterator events) {
+    generation.incrementAndGet();
+    while (events.hasNext()) {
+      Event event = events.nextEvent();
+      try {
+        String path = event.getPath();
+        if (path == null) {
+          continue;
+        }
+        int type = event.getType();
+        if ((type & (Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED)) != 0) {
+          path = getParentPath(path);
+        }
+        synchronized (this) {
+          invalidatePathAndAncestors(path);
+          if ((type & (Event.NODE_REMOVED | Event.NODE_MOVED)) != 0) {
+            invalidateDescendants(path);
+          }
+        }
+      } catch (RepositoryException e) {
+        // should never happen; be safe and drop everything
+        logger.warn("unable to read event path; clearing cache", e); //$NON-NLS-1$
+        clear();
+      }
+    }
+  }
+
+  private void invalidatePathAndAncestors(final String absPath) {
+    String currentPath = absPath;
+    while (currentPath != null) {
+      String nodeId = idsByPath.remove(currentPath);
+      if (nodeId != null) {
+        entriesById.remove(nodeId);
+        invalidationCount.incrementAndGet();
+      }
+      currentPath = getParentPath(currentPath);
+    }
+  }
+
+  private void invalidateDescendants(final String absPath) {
+    String prefix = absPath + SEPARATOR;
+    Iterator<Map.Entry<String, String>> iter = idsByPath.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<String, String> pathAndId = iter.next();
+      if (pathAndId.getKey().startsWith(prefix)) {
+        entriesById.remove(pathAndId.getValue());
+        iter.remove();
+        invalidationCount.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Returns {@code null} for the root path.
+   */
+  private String getParentPath(final String absPath) {
+    int lastSlashIndex = absPath.lastIndexOf(SEPARATOR);
+    if (lastSlashIndex < 0 || absPath.length() == 1) {
+      return null;
+    }
+    return lastSlashIndex == 0 ? String.valueOf(SEPARATOR) : absPath.substring(0, lastSlashIndex);
+  }
+
+  public synchronized int getSize() {
+    return entriesById.size();
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  public long getInvalidationCount() {
+    return invalidationCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return "RepositoryFileMetadataCache [size=" + getSize() + ", maxEntries=" + maxEntries + ", hits=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() //$NON-NLS-1$ //$NON-NLS-2$
+        + ", invalidations=" + getInvalidationCount() + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  // ~ Inner classes ===================================================================================================
+
+  private static class NodeEntry {
+    private final String absPath;
+
+    private final Map<String, RepositoryFile> filesByLocale = new HashMap<String, RepositoryFile>(2);
+
+    private NodeEntry(final String absPath) {
+      this.absPath = absPath;
+    }
+  }
+
+}
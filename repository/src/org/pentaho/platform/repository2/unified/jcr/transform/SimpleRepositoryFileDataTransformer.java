@@ -16,6 +16,7 @@ package org.pentaho.platform.repository2.unified.jcr.transform;
 
 import java.io.InputStream;
 import java.util.Calendar;
+import javax.jcr.Binary;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -84,7 +85,7 @@ public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleR
     if (StringUtils.hasText(data.getEncoding())) {
       resourceNode.setProperty(pentahoJcrConstants.getJCR_ENCODING(), data.getEncoding());
     }
-    resourceNode.setProperty(pentahoJcrConstants.getJCR_DATA(), session.getValueFactory().createBinary(data.getStream()));
+    resourceNode.setProperty(pentahoJcrConstants.getJCR_DATA(), session.getValueFactory().createBinary(data.getInputStream()));
     resourceNode.setProperty(pentahoJcrConstants.getJCR_MIMETYPE(), data.getMimeType());
   }
 
@@ -98,9 +99,10 @@ public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleR
     if (resourceNode.hasProperty(pentahoJcrConstants.getJCR_ENCODING())) {
       encoding = resourceNode.getProperty(pentahoJcrConstants.getJCR_ENCODING()).getString();
     }
-    InputStream data = resourceNode.getProperty(pentahoJcrConstants.getJCR_DATA()).getBinary().getStream();
+    Binary binary = resourceNode.getProperty(pentahoJcrConstants.getJCR_DATA()).getBinary();
+    InputStream data = binary.getStream();
     String mimeType = resourceNode.getProperty(pentahoJcrConstants.getJCR_MIMETYPE()).getString();
-    return new SimpleRepositoryFileData(data, encoding, mimeType);
+    return new SimpleRepositoryFileData(data, encoding, mimeType, binary.getSize());
   }
 
   /**
@@ -117,7 +119,7 @@ public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleR
     if (StringUtils.hasText(data.getEncoding())) {
       resourceNode.setProperty(pentahoJcrConstants.getJCR_ENCODING(), data.getEncoding());
     }
-    resourceNode.setProperty(pentahoJcrConstants.getJCR_DATA(), session.getValueFactory().createBinary(data.getStream()));
+    resourceNode.setProperty(pentahoJcrConstants.getJCR_DATA(), session.getValueFactory().createBinary(data.getInputStream()));
     resourceNode.setProperty(pentahoJcrConstants.getJCR_MIMETYPE(), data.getMimeType());
   }
 
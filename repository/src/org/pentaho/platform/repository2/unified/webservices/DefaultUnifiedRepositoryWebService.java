@@ -24,6 +24,7 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
@@ -53,6 +54,8 @@ public class DefaultUnifiedRepositoryWebService implements IUnifiedRepositoryWeb
 
   protected VersionSummaryAdapter versionSummaryAdapter = new VersionSummaryAdapter();
 
+  protected RepositoryQueryAdapter repositoryQueryAdapter = new RepositoryQueryAdapter();
+
   // ~ Constructors ====================================================================================================
 
   /**
@@ -80,6 +83,24 @@ public class DefaultUnifiedRepositoryWebService implements IUnifiedRepositoryWeb
     return marshalFiles(repo.getChildren(folderId, filter));
   }
 
+  public List<RepositoryFileDto> getChildrenPaged(String folderId, String filter, int offset, int limit) {
+    return marshalFiles(repo.getChildren(folderId, filter, offset, limit));
+  }
+
+  public List<RepositoryFileDto> search(RepositoryQueryDto query) {
+    RepositoryQuery repositoryQuery = repositoryQueryAdapter.unmarshal(query);
+    IAuthorizationPolicy policy = PentahoSystem.get(IAuthorizationPolicy.class);
+    if (!policy.isAllowed(AdministerSecurityAction.NAME)) {
+      // Keep system folders from non-admin users. They are excluded by the query, ahead of paging, so pages stay full.
+      if (repositoryQuery.getPath().startsWith("/etc") || repositoryQuery.getPath().startsWith("/system")) {
+        throw new RuntimeException("This user is not allowed to search the ETC or SYSTEM folder in JCR.");
+      }
+      repositoryQuery = new RepositoryQuery.Builder(repositoryQuery).excludePath("/etc").excludePath("/system")
+          .build();
+    }
+    return marshalFiles(repo.search(repositoryQuery));
+  }
+
   public NodeRepositoryFileDataDto getDataAsNodeForRead(final String fileId) {
     NodeRepositoryFileData fileData = repo.getDataForRead(fileId, NodeRepositoryFileData.class);
     return fileData != null ? nodeRepositoryFileDataAdapter.marshal(fileData) : null;
@@ -87,17 +108,24 @@ public class DefaultUnifiedRepositoryWebService implements IUnifiedRepositoryWeb
 
   public List<NodeRepositoryFileDataDto> getDataAsNodeForReadInBatch(final List<RepositoryFileDto> files) {
     List<NodeRepositoryFileDataDto> data = new ArrayList<NodeRepositoryFileDataDto>(files.size());
-    for (RepositoryFileDto f : files) {
-      if (f.getVersionId() == null) {
-        data.add(nodeRepositoryFileDataAdapter.marshal(repo.getDataForRead(f.getId(), NodeRepositoryFileData.class)));
-      } else {
-        data.add(nodeRepositoryFileDataAdapter.marshal(repo.getDataAtVersionForRead(f.getId(), f.getVersionId(),
-            NodeRepositoryFileData.class)));
-      }
+    for (NodeRepositoryFileData fileData : repo.getDataForReadInBatch(toFileLookups(files),
+        NodeRepositoryFileData.class)) {
+      data.add(nodeRepositoryFileDataAdapter.marshal(fileData));
     }
     return data;
   }
 
+  /**
+   * Converts the given DTOs to the id and version id only files expected by the {@code InBatch} repository methods.
+   */
+  protected List<RepositoryFile> toFileLookups(final List<RepositoryFileDto> files) {
+    List<RepositoryFile> lookups = new ArrayList<RepositoryFile>(files.size());
+    for (RepositoryFileDto f : files) {
+      lookups.add(new RepositoryFile.Builder(f.getId(), f.getName()).versionId(f.getVersionId()).build());
+    }
+    return lookups;
+  }
+
   public RepositoryFileDto getFile(String path) {
     validateEtcReadAccess(path);
     RepositoryFile file = repo.getFile(path);
@@ -122,23 +150,17 @@ public class DefaultUnifiedRepositoryWebService implements IUnifiedRepositoryWeb
   }
 
   public RepositoryFileTreeDto getTree(final String path, final int depth, final String filter, final boolean showHidden) {
-    RepositoryFileTree tree = repo.getTree(path, depth, filter, showHidden);
+    return getTreePaged(path, depth, filter, showHidden, true, 0, -1);
+  }
 
+  public RepositoryFileTreeDto getTreePaged(final String path, final int depth, final String filter,
+      final boolean showHidden, final boolean showSystemFolders, final int offset, final int limit) {
     // Filter system folders from non-admin users.
     // PDI uses this web-service and system folders must be returned to admin repository database connections.
-    List<RepositoryFileTree> files = new ArrayList<RepositoryFileTree>();
     IAuthorizationPolicy policy = PentahoSystem.get(IAuthorizationPolicy.class);
     boolean isAdmin = policy.isAllowed(AdministerSecurityAction.NAME);
-    for (RepositoryFileTree file : tree.getChildren()) {
-      Map<String, Serializable> fileMeta = repo.getFileMetadata(file.getFile().getId());
-      boolean isSystemFolder = fileMeta.containsKey(IUnifiedRepository.SYSTEM_FOLDER) ? (Boolean) fileMeta
-          .get(IUnifiedRepository.SYSTEM_FOLDER) : false;
-      if (!isAdmin && isSystemFolder) {
-        continue;
-      }
-      files.add(file);
-    }
-    tree = new RepositoryFileTree(tree.getFile(), files);
+    RepositoryFileTree tree = repo.getTree(path, depth, filter, showHidden, showSystemFolders && isAdmin, offset,
+        limit);
     return tree != null ? repositoryFileTreeAdapter.marshal(tree) : null;
   }
 
@@ -284,8 +306,8 @@ public class DefaultUnifiedRepositoryWebService implements IUnifiedRepositoryWeb
 
   public List<VersionSummaryDto> getVersionSummaryInBatch(final List<RepositoryFileDto> files) {
     List<VersionSummaryDto> versions = new ArrayList<VersionSummaryDto>(files.size());
-    for (RepositoryFileDto file : files) {
-      versions.add(versionSummaryAdapter.marshal(repo.getVersionSummary(file.getId(), file.getVersionId())));
+    for (VersionSummary summary : repo.getVersionSummaryInBatch(toFileLookups(files))) {
+      versions.add(versionSummaryAdapter.marshal(summary));
     }
     return versions;
   }
@@ -67,6 +67,11 @@ public interface IUnifiedRepositoryWebService extends RemoteService {
 
   List<RepositoryFileDto> getChildrenWithFilter(final String folderId, final String filter);
 
+  List<RepositoryFileDto> getChildrenPaged(final String folderId, final String filter, final int offset,
+      final int limit);
+
+  List<RepositoryFileDto> search(final RepositoryQueryDto query);
+
   RepositoryFileDto updateFile(final RepositoryFileDto file, final NodeRepositoryFileDataDto data,
       final String versionMessage);
 
@@ -94,6 +99,9 @@ public interface IUnifiedRepositoryWebService extends RemoteService {
 
   RepositoryFileTreeDto getTree(final String path, final int depth, final String filter, final boolean showHidden);
 
+  RepositoryFileTreeDto getTreePaged(final String path, final int depth, final String filter,
+      final boolean showHidden, final boolean showSystemFolders, final int offset, final int limit);
+
   RepositoryFileAclDto getAcl(final String fileId);
 
   RepositoryFileAclDto updateAcl(final RepositoryFileAclDto acl);
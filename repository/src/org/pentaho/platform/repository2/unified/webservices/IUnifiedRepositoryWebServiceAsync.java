@@ -46,6 +46,11 @@ public interface IUnifiedRepositoryWebServiceAsync {
 
   void getChildrenWithFilter(String folderId, String filter, AsyncCallback<List<RepositoryFileDto>> arg3);
 
+  void getChildrenPaged(String folderId, String filter, int offset, int limit,
+      AsyncCallback<List<RepositoryFileDto>> arg5);
+
+  void search(RepositoryQueryDto query, AsyncCallback<List<RepositoryFileDto>> arg2);
+
   void getDataAsNodeForRead(String fileId, AsyncCallback<NodeRepositoryFileDataDto> arg2);
 
   void getDataAsNodeForReadAtVersion(String fileId, String versionId, AsyncCallback<NodeRepositoryFileDataDto> arg3);
@@ -76,6 +81,9 @@ public interface IUnifiedRepositoryWebServiceAsync {
 
   void getTree(String path, int depth, String filter, boolean showHidden, AsyncCallback<RepositoryFileTreeDto> arg5);
 
+  void getTreePaged(String path, int depth, String filter, boolean showHidden, boolean showSystemFolders, int offset,
+      int limit, AsyncCallback<RepositoryFileTreeDto> arg8);
+
   void getVersionSummaries(String fileId, AsyncCallback<List<VersionSummaryDto>> arg2);
 
   void getVersionSummary(String fileId, String versionId, AsyncCallback<VersionSummaryDto> arg3);
@@ -0,0 +1,73 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the 
+ * terms of the GNU General Public License, version 2 as published by the Free Software 
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this 
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html 
+ * or from the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+package org.pentaho.platform.repository2.unified.webservices;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
+
+/**
+ * Converts {@code RepositoryQuery} into JAXB-safe object and vice-versa.
+ */
+public class RepositoryQueryAdapter extends XmlAdapter<RepositoryQueryDto, RepositoryQuery> {
+
+  @Override
+  public RepositoryQueryDto marshal(final RepositoryQuery v) {
+    RepositoryQueryDto q = new RepositoryQueryDto();
+    q.path = v.getPath();
+    q.text = v.getText();
+    q.name = v.getName();
+    q.title = v.getTitle();
+    q.description = v.getDescription();
+    q.creatorId = v.getCreatorId();
+    q.mimeType = v.getMimeType();
+    List<StringKeyStringValueDto> metadata = new ArrayList<StringKeyStringValueDto>(v.getMetadata().size());
+    for (Map.Entry<String, String> entry : v.getMetadata().entrySet()) {
+      metadata.add(new StringKeyStringValueDto(entry.getKey(), entry.getValue()));
+    }
+    q.metadata = metadata;
+    q.createdAfter = v.getCreatedAfter();
+    q.createdBefore = v.getCreatedBefore();
+    q.modifiedAfter = v.getModifiedAfter();
+    q.modifiedBefore = v.getModifiedBefore();
+    q.includeFiles = v.isIncludeFiles();
+    q.includeFolders = v.isIncludeFolders();
+    q.showHidden = v.isShowHidden();
+    q.locale = v.getLocale();
+    q.offset = v.getOffset();
+    q.limit = v.getLimit();
+    return q;
+  }
+
+  @Override
+  public RepositoryQuery unmarshal(final RepositoryQueryDto v) {
+    RepositoryQuery.Builder builder = new RepositoryQuery.Builder().path(v.path).text(v.text).name(v.name)
+        .title(v.title).description(v.description).creatorId(v.creatorId).mimeType(v.mimeType)
+        .createdAfter(v.createdAfter).createdBefore(v.createdBefore).modifiedAfter(v.modifiedAfter)
+        .modifiedBefore(v.modifiedBefore).includeFiles(v.includeFiles).includeFolders(v.includeFolders)
+        .showHidden(v.showHidden).locale(v.locale).offset(Math.max(0, v.offset)).limit(v.limit);
+    if (v.metadata != null) {
+      for (StringKeyStringValueDto entry : v.metadata) {
+        builder.metadata(entry.getKey(), entry.getValue());
+      }
+    }
+    return builder.build();
+  }
+
+}
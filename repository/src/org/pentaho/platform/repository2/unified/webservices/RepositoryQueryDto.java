@@ -0,0 +1,224 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the 
+ * terms of the GNU General Public License, version 2 as published by the Free Software 
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this 
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html 
+ * or from the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+package org.pentaho.platform.repository2.unified.webservices;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+/**
+ * JAXB-safe version of {@code RepositoryQuery}. ({@code RepositoryQuery} has no zero-arg constructor and no public
+ * mutators.)
+ * 
+ * @see RepositoryQueryAdapter
+ */
+@XmlRootElement
+public class RepositoryQueryDto implements Serializable {
+
+  private static final long serialVersionUID = -2212432946522917329L;
+
+  String path;
+
+  String text;
+
+  String name;
+
+  String title;
+
+  String description;
+
+  String creatorId;
+
+  String mimeType;
+
+  List<StringKeyStringValueDto> metadata = new ArrayList<StringKeyStringValueDto>(0);
+
+  Date createdAfter;
+
+  Date createdBefore;
+
+  Date modifiedAfter;
+
+  Date modifiedBefore;
+
+  boolean includeFiles = true;
+
+  boolean includeFolders = true;
+
+  boolean showHidden;
+
+  String locale;
+
+  int offset;
+
+  int limit = -1;
+
+  public RepositoryQueryDto() {
+    super();
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public void setPath(String path) {
+    this.path = path;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public void setText(String text) {
+    this.text = text;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public void setTitle(String title) {
+    this.title = title;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription(String description) {
+    this.description = description;
+  }
+
+  public String getCreatorId() {
+    return creatorId;
+  }
+
+  public void setCreatorId(String creatorId) {
+    this.creatorId = creatorId;
+  }
+
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  public void setMimeType(String mimeType) {
+    this.mimeType = mimeType;
+  }
+
+  public List<StringKeyStringValueDto> getMetadata() {
+    return metadata;
+  }
+
+  public void setMetadata(List<StringKeyStringValueDto> metadata) {
+    this.metadata = metadata;
+  }
+
+  @XmlJavaTypeAdapter(value=DateAdapter.class)
+  public Date getCreatedAfter() {
+    return createdAfter;
+  }
+
+  public void setCreatedAfter(Date createdAfter) {
+    this.createdAfter = createdAfter;
+  }
+
+  @XmlJavaTypeAdapter(value=DateAdapter.class)
+  public Date getCreatedBefore() {
+    return createdBefore;
+  }
+
+  public void setCreatedBefore(Date createdBefore) {
+    this.createdBefore = createdBefore;
+  }
+
+  @XmlJavaTypeAdapter(value=DateAdapter.class)
+  public Date getModifiedAfter() {
+    return modifiedAfter;
+  }
+
+  public void setModifiedAfter(Date modifiedAfter) {
+    this.modifiedAfter = modifiedAfter;
+  }
+
+  @XmlJavaTypeAdapter(value=DateAdapter.class)
+  public Date getModifiedBefore() {
+    return modifiedBefore;
+  }
+
+  public void setModifiedBefore(Date modifiedBefore) {
+    this.modifiedBefore = modifiedBefore;
+  }
+
+  public boolean isIncludeFiles() {
+    return includeFiles;
+  }
+
+  public void setIncludeFiles(boolean includeFiles) {
+    this.includeFiles = includeFiles;
+  }
+
+  public boolean isIncludeFolders() {
+    return includeFolders;
+  }
+
+  public void setIncludeFolders(boolean includeFolders) {
+    this.includeFolders = includeFolders;
+  }
+
+  public boolean isShowHidden() {
+    return showHidden;
+  }
+
+  public void setShowHidden(boolean showHidden) {
+    this.showHidden = showHidden;
+  }
+
+  public String getLocale() {
+    return locale;
+  }
+
+  public void setLocale(String locale) {
+    this.locale = locale;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset(int offset) {
+    this.offset = offset;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public void setLimit(int limit) {
+    this.limit = limit;
+  }
+
+}
@@ -75,13 +75,9 @@ public class DefaultUnifiedRepositoryJaxwsWebService extends DefaultUnifiedRepos
 
   public List<SimpleRepositoryFileDataDto> getDataAsBinaryForReadInBatch(final List<RepositoryFileDto> files) {
     List<SimpleRepositoryFileDataDto> data = new ArrayList<SimpleRepositoryFileDataDto>(files.size());
-    for (RepositoryFileDto f : files) {
-      if (f.getVersionId() == null) {
-        data.add(SimpleRepositoryFileDataDto.convert(repo.getDataForRead(f.getId(), SimpleRepositoryFileData.class)));
-      } else {
-        data.add(SimpleRepositoryFileDataDto.convert(repo.getDataAtVersionForExecute(f.getId(), f.getVersionId(),
-            SimpleRepositoryFileData.class)));
-      }
+    for (SimpleRepositoryFileData simpleData : repo.getDataForReadInBatch(toFileLookups(files),
+        SimpleRepositoryFileData.class)) {
+      data.add(SimpleRepositoryFileDataDto.convert(simpleData));
     }
     return data;
   }
@@ -25,6 +25,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
@@ -38,6 +39,7 @@ import org.pentaho.platform.repository2.unified.webservices.RepositoryFileAclAda
 import org.pentaho.platform.repository2.unified.webservices.RepositoryFileAdapter;
 import org.pentaho.platform.repository2.unified.webservices.RepositoryFileDto;
 import org.pentaho.platform.repository2.unified.webservices.RepositoryFileTreeAdapter;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryQueryAdapter;
 import org.pentaho.platform.repository2.unified.webservices.StringKeyStringValueDto;
 import org.pentaho.platform.repository2.unified.webservices.VersionSummaryAdapter;
 import org.pentaho.platform.repository2.unified.webservices.VersionSummaryDto;
@@ -59,6 +61,8 @@ public class UnifiedRepositoryToWebServiceAdapter implements IUnifiedRepository
 
   private RepositoryFileTreeAdapter repositoryFileTreeAdapter = new RepositoryFileTreeAdapter();
 
+  private RepositoryQueryAdapter repositoryQueryAdapter = new RepositoryQueryAdapter();
+
   private NodeRepositoryFileDataAdapter nodeRepositoryFileDataAdapter = new NodeRepositoryFileDataAdapter();
 
   private RepositoryFileAclAdapter repositoryFileAclAdapter = new RepositoryFileAclAdapter();
@@ -136,6 +140,37 @@ public class UnifiedRepositoryToWebServiceAdapter implements IUnifiedRepository
         folderId.toString() != null ? folderId.toString() : null, filter));
   }
 
+  @Override
+  public List<RepositoryFile> getChildren(Serializable folderId, String filter, int offset, int limit) {
+    return unmarshalFiles(repoWebService.getChildrenPaged(folderId.toString() != null ? folderId.toString() : null,
+        filter, offset, limit));
+  }
+
+  /**
+   * The web service has no metadata query; the metadata of each child is compared here instead.
+   */
+  @Override
+  public List<RepositoryFile> getChildrenByMetadata(Serializable folderId, String metadataKey, String value,
+      int offset, int limit) {
+    List<RepositoryFile> children = new ArrayList<RepositoryFile>();
+    for (RepositoryFile child : getChildren(folderId)) {
+      if (!child.isFolder() && value.equals(getFileMetadata(child.getId()).get(metadataKey))) {
+        children.add(child);
+      }
+    }
+    Collections.sort(children);
+    if (offset >= children.size()) {
+      return new ArrayList<RepositoryFile>();
+    }
+    int toIndex = limit < 0 ? children.size() : (int) Math.min((long) offset + limit, children.size());
+    return new ArrayList<RepositoryFile>(children.subList(offset, toIndex));
+  }
+
+  @Override
+  public List<RepositoryFile> search(RepositoryQuery query) {
+    return unmarshalFiles(repoWebService.search(repositoryQueryAdapter.marshal(query)));
+  }
+
   @Override
   public <T extends IRepositoryFileData> T getDataForExecute(Serializable fileId, Class<T> dataClass) {
     throw new UnsupportedOperationException();
@@ -389,6 +424,13 @@ public class UnifiedRepositoryToWebServiceAdapter implements IUnifiedRepository
     return repositoryFileTreeAdapter.unmarshal(repoWebService.getTree(path, depth, filter, showHidden));
   }
 
+  @Override
+  public RepositoryFileTree getTree(final String path, final int depth, final String filter, final boolean showHidden,
+      final boolean showSystemFolders, final int offset, final int limit) {
+    return repositoryFileTreeAdapter.unmarshal(repoWebService.getTreePaged(path, depth, filter, showHidden,
+        showSystemFolders, offset, limit));
+  }
+
   @Override
   public RepositoryFile createFile(final Serializable parentFolderId, final RepositoryFile file,
       final IRepositoryFileData data, final RepositoryFileAcl acl, final String versionMessage) {
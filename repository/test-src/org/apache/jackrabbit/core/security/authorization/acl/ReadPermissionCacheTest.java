@@ -0,0 +1,136 @@
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.id.PropertyId;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+
+public class ReadPermissionCacheTest extends TestCase {
+
+  private static final NodeId ROOT = new NodeId(0L, 0L);
+
+  private static final NodeId FOLDER = new NodeId(0L, 1L);
+
+  private static final NodeId FILE = new NodeId(0L, 2L);
+
+  private static final NodeId OTHER_FOLDER = new NodeId(0L, 3L);
+
+  private static final NodeId OTHER_FILE = new NodeId(0L, 4L);
+
+  public void testHitAndMiss() {
+    ReadPermissionCache cache = new ReadPermissionCache(10, 2);
+    long hits = ReadPermissionCache.getTotalHitCount();
+    long misses = ReadPermissionCache.getTotalMissCount();
+    assertNull(cache.get(FILE));
+    cache.put(FILE, new NodeId[] { FILE, FOLDER, ROOT }, true, cache.getGeneration());
+    cache.put(OTHER_FILE, new NodeId[] { OTHER_FILE, OTHER_FOLDER, ROOT }, false, cache.getGeneration());
+    assertEquals(Boolean.TRUE, cache.get(FILE));
+    assertEquals(Boolean.FALSE, cache.get(OTHER_FILE));
+    assertEquals(2, cache.size());
+    assertEquals(2, ReadPermissionCache.getTotalHitCount() - hits);
+    assertEquals(1, ReadPermissionCache.getTotalMissCount() - misses);
+  }
+
+  public void testEviction() {
+    ReadPermissionCache cache = new ReadPermissionCache(2, 1);
+    long evictions = ReadPermissionCache.getTotalEvictionCount();
+    cache.put(ROOT, new NodeId[] { ROOT }, true, cache.getGeneration());
+    cache.put(FOLDER, new NodeId[] { FOLDER, ROOT }, true, cache.getGeneration());
+    // touch the root so that the folder is the least recently used
+    cache.get(ROOT);
+    cache.put(FILE, new NodeId[] { FILE, FOLDER, ROOT }, true, cache.getGeneration());
+    assertEquals(2, cache.size());
+    assertEquals(1, ReadPermissionCache.getTotalEvictionCount() - evictions);
+    assertNull(cache.get(FOLDER));
+    assertNotNull(cache.get(ROOT));
+    assertNotNull(cache.get(FILE));
+  }
+
+  public void testInvalidateDropsSubtreeOnly() {
+    ReadPermissionCache cache = new ReadPermissionCache(100, 4);
+    PropertyId property = new PropertyId(FILE, NameConstants.JCR_PRIMARYTYPE);
+    cache.put(ROOT, new NodeId[] { ROOT }, true, cache.getGeneration());
+    cache.put(FOLDER, new NodeId[] { FOLDER, ROOT }, true, cache.getGeneration());
+    cache.put(FILE, new NodeId[] { FILE, FOLDER, ROOT }, true, cache.getGeneration());
+    cache.put(property, new NodeId[] { FILE, FOLDER, ROOT }, true, cache.getGeneration());
+    cache.put(OTHER_FILE, new NodeId[] { OTHER_FILE, OTHER_FOLDER, ROOT }, true, cache.getGeneration());
+
+    cache.invalidate(FOLDER);
+
+    assertNull(cache.get(FOLDER));
+    assertNull(cache.get(FILE));
+    assertNull(cache.get(property));
+    assertNotNull(cache.get(ROOT));
+    assertNotNull(cache.get(OTHER_FILE));
+
+    cache.invalidate(ROOT);
+    assertEquals(0, cache.size());
+  }
+
+  public void testPutAfterInvalidationIsIgnored() {
+    ReadPermissionCache cache = new ReadPermissionCache(10, 1);
+    long generation = cache.getGeneration();
+    // an ACL changes while the permission is being evaluated
+    cache.invalidate(OTHER_FOLDER);
+    cache.put(FILE, new NodeId[] { FILE, FOLDER, ROOT }, true, generation);
+    assertNull(cache.get(FILE));
+
+    cache.put(FILE, new NodeId[] { FILE, FOLDER, ROOT }, true, cache.getGeneration());
+    assertNotNull(cache.get(FILE));
+  }
+
+  public void testClear() {
+    ReadPermissionCache cache = new ReadPermissionCache(10, 2);
+    long invalidations = ReadPermissionCache.getTotalInvalidationCount();
+    cache.put(FILE, new NodeId[] { FILE, FOLDER, ROOT }, true, cache.getGeneration());
+    cache.put(OTHER_FILE, new NodeId[] { OTHER_FILE, OTHER_FOLDER, ROOT }, true, cache.getGeneration());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(1, ReadPermissionCache.getTotalInvalidationCount() - invalidations);
+  }
+
+  public void testConcurrentReadersAndInvalidation() throws Exception {
+    final ReadPermissionCache cache = new ReadPermissionCache(64, 8);
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicInteger failures = new AtomicInteger();
+    Thread[] readers = new Thread[8];
+    for (int t = 0; t < readers.length; t++) {
+      final int offset = t;
+      readers[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int i = 0; i < 10000; i++) {
+              NodeId id = new NodeId(1L, (i + offset) % 200);
+              Boolean canRead = cache.get(id);
+              if (canRead == null) {
+                long generation = cache.getGeneration();
+                cache.put(id, new NodeId[] { id, FOLDER, ROOT }, id.getLeastSignificantBits() % 2 == 0, generation);
+              } else if (canRead.booleanValue() != (id.getLeastSignificantBits() % 2 == 0)) {
+                failures.incrementAndGet();
+              }
+              if (i % 1000 == 0) {
+                cache.invalidate(FOLDER);
+              }
+            }
+          } catch (Exception e) {
+            failures.incrementAndGet();
+          }
+        }
+      };
+      readers[t].start();
+    }
+    start.countDown();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertEquals(0, failures.get());
+    assertTrue(cache.size() <= 64);
+  }
+
+}
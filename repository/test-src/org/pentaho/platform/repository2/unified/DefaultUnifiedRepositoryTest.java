@@ -58,6 +58,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileSid.Type;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryMalformedNameException;
@@ -83,6 +84,10 @@ import org.pentaho.platform.repository2.unified.jcr.JcrTenantUtils;
 import org.pentaho.platform.repository2.unified.jcr.SimpleJcrTestUtils;
 import org.pentaho.platform.repository2.unified.jcr.jackrabbit.security.TestPrincipalProvider;
 import org.pentaho.platform.repository2.unified.jcr.sejcr.CredentialsStrategy;
+import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedRepositoryWebService;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryFileTreeDto;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryQueryDto;
 import org.pentaho.platform.security.policy.rolebased.IRoleAuthorizationPolicyRoleBindingDao;
 import org.pentaho.platform.security.policy.rolebased.RoleBindingStruct;
 import org.pentaho.platform.security.policy.rolebased.actions.*;
@@ -1262,6 +1267,49 @@ public class DefaultUnifiedRepositoryTest implements ApplicationContextAware {
     assertEquals(0, children.size());
   }
 
+  @Test
+  public void testGetChildrenPaged() throws Exception {
+    login(sysAdminUserName, systemTenant, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    ITenant tenantAcme = tenantManager.createTenant(systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName, "Anonymous");
+    userRoleDao.createUser(tenantAcme, USERNAME_ADMIN, "password", "", new String[]{tenantAdminRoleName});
+
+    login(USERNAME_ADMIN, tenantAcme, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    userRoleDao.createUser(tenantAcme, USERNAME_SUZY, "password", "", null);
+
+    login(USERNAME_SUZY, tenantAcme, new String[]{tenantAuthenticatedRoleName});
+
+    Serializable rootFolderId = repo.getFile(ClientRepositoryPaths.getRootFolderPath()).getId();
+    List<RepositoryFile> children = repo.getChildren(rootFolderId, null, 0, 2);
+    assertEquals(2, children.size());
+    assertEquals("etc", children.get(0).getName());
+    assertEquals("home", children.get(1).getName());
+    children = repo.getChildren(rootFolderId, null, 2, 2);
+    assertEquals(1, children.size());
+    assertEquals("public", children.get(0).getName());
+    // limit < 0 returns everything from offset on
+    children = repo.getChildren(rootFolderId, null, 1, -1);
+    assertEquals(2, children.size());
+    assertEquals("home", children.get(0).getName());
+    assertEquals("public", children.get(1).getName());
+    children = repo.getChildren(rootFolderId, null, 1, 0);
+    assertTrue(children.isEmpty());
+    // offset at or past the end returns an empty page
+    children = repo.getChildren(rootFolderId, null, 3, 10);
+    assertTrue(children.isEmpty());
+    children = repo.getChildren(rootFolderId, null, 100, -1);
+    assertTrue(children.isEmpty());
+    // offset + limit must not overflow
+    children = repo.getChildren(rootFolderId, null, 2, Integer.MAX_VALUE);
+    assertEquals(1, children.size());
+    assertEquals("public", children.get(0).getName());
+    children = repo.getChildren(rootFolderId, null, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    assertTrue(children.isEmpty());
+    // the filter is applied before paging
+    children = repo.getChildren(rootFolderId, "*e*", 1, 1);
+    assertEquals(1, children.size());
+    assertEquals("home", children.get(0).getName());
+  }
+
   /**
    * A user should only be able to see his home folder (unless your the admin).
    */
@@ -2838,6 +2886,90 @@ public class DefaultUnifiedRepositoryTest implements ApplicationContextAware {
     assertEquals(1, root.getChildren().size());
   }
 
+  @Test
+  public void testGetTreePaged() throws Exception {
+    login(sysAdminUserName, systemTenant, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    ITenant tenantAcme = tenantManager.createTenant(systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName, "Anonymous");
+    userRoleDao.createUser(tenantAcme, USERNAME_ADMIN, "password", "", new String[]{tenantAdminRoleName});
+
+    login(USERNAME_ADMIN, tenantAcme, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    userRoleDao.createUser(tenantAcme, USERNAME_SUZY, "password", "", null);
+
+    login(USERNAME_SUZY, tenantAcme, new String[]{tenantAuthenticatedRoleName});
+
+    final String rootFolderPath = ClientRepositoryPaths.getRootFolderPath();
+    RepositoryFileTree root = repo.getTree(rootFolderPath, 0, null, true, true, 0, 1);
+    assertNotNull(root.getFile());
+    assertNull(root.getChildren());
+
+    root = repo.getTree(rootFolderPath, 1, null, true, true, 0, 2);
+    assertNotNull(root.getFile());
+    assertEquals(2, root.getChildren().size());
+    assertEquals("etc", root.getChildren().get(0).getFile().getName());
+    assertEquals("home", root.getChildren().get(1).getFile().getName());
+    assertNull(root.getChildren().get(0).getChildren());
+
+    // limit < 0 returns everything from offset on
+    root = repo.getTree(rootFolderPath, 1, null, true, true, 1, -1);
+    assertEquals(2, root.getChildren().size());
+    assertEquals("home", root.getChildren().get(0).getFile().getName());
+    assertEquals("public", root.getChildren().get(1).getFile().getName());
+
+    // offset at or past the end returns an empty page
+    root = repo.getTree(rootFolderPath, 1, null, true, true, 3, 10);
+    assertNotNull(root.getFile());
+    assertTrue(root.getChildren().isEmpty());
+    root = repo.getTree(rootFolderPath, -1, null, true, true, 100, -1);
+    assertTrue(root.getChildren().isEmpty());
+
+    // offset + limit must not overflow
+    root = repo.getTree(rootFolderPath, 1, null, true, true, 2, Integer.MAX_VALUE);
+    assertEquals(1, root.getChildren().size());
+    assertEquals("public", root.getChildren().get(0).getFile().getName());
+    root = repo.getTree(rootFolderPath, 1, null, true, true, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    assertTrue(root.getChildren().isEmpty());
+
+    // only the children on the page are expanded, to the remaining depth
+    root = repo.getTree(rootFolderPath, -1, null, true, true, 1, 1);
+    assertEquals(1, root.getChildren().size());
+    RepositoryFileTree home = root.getChildren().get(0);
+    assertEquals("home", home.getFile().getName());
+    assertFalse(home.getChildren().isEmpty());
+    assertTrue(home.getChildren().get(0).getChildren().isEmpty());
+  }
+
+  @Test
+  public void testGetTreePagedSkipsSystemFolders() throws Exception {
+    login(sysAdminUserName, systemTenant, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    ITenant tenantAcme = tenantManager.createTenant(systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName, "Anonymous");
+    userRoleDao.createUser(tenantAcme, USERNAME_ADMIN, "password", "", new String[]{tenantAdminRoleName});
+
+    login(USERNAME_ADMIN, tenantAcme, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    userRoleDao.createUser(tenantAcme, USERNAME_SUZY, "password", "", null);
+
+    login(USERNAME_SUZY, tenantAcme, new String[]{tenantAuthenticatedRoleName});
+
+    // etc is a system folder and sorts first, so it sits on the first page
+    final String rootFolderPath = ClientRepositoryPaths.getRootFolderPath();
+    RepositoryFileTree root = repo.getTree(rootFolderPath, 1, null, true, false, 0, 2);
+    assertEquals(2, root.getChildren().size());
+    assertEquals("home", root.getChildren().get(0).getFile().getName());
+    assertEquals("public", root.getChildren().get(1).getFile().getName());
+
+    root = repo.getTree(rootFolderPath, 1, null, true, false, 1, 1);
+    assertEquals(1, root.getChildren().size());
+    assertEquals("public", root.getChildren().get(0).getFile().getName());
+
+    // the web service leaves system folders out for non-admin users even when they are asked for
+    DefaultUnifiedRepositoryWebService repoWs = new DefaultUnifiedRepositoryWebService(repo);
+    RepositoryFileTreeDto rootDto = repoWs.getTreePaged(rootFolderPath, 1, null, true, true, 0, 2);
+    assertEquals(2, rootDto.getChildren().size());
+    assertEquals("home", rootDto.getChildren().get(0).getFile().getName());
+    assertEquals("public", rootDto.getChildren().get(1).getFile().getName());
+    rootDto = repoWs.getTree(rootFolderPath, 1, null, true);
+    assertEquals(2, rootDto.getChildren().size());
+  }
+
   @Test
   public void testGetTreeWithShowHidden() throws Exception {
     RepositoryFileTree root = null;
@@ -2949,6 +3081,15 @@ public class DefaultUnifiedRepositoryTest implements ApplicationContextAware {
     assertEquals(sampleString1, d.getSampleString());
     d = data.get(1);
     assertEquals(sampleString2, d.getSampleString());
+
+    // Check that order is preserved and duplicates are allowed
+    data = repo.getDataForReadInBatch(Arrays.asList(lookup2, lookup1, lookup2), SampleRepositoryFileData.class);
+    assertEquals(3, data.size());
+    assertEquals(sampleString2, data.get(0).getSampleString());
+    assertEquals(sampleString1, data.get(1).getSampleString());
+    assertEquals(sampleString2, data.get(2).getSampleString());
+
+    assertTrue(repo.getDataForReadInBatch(new ArrayList<RepositoryFile>(), SampleRepositoryFileData.class).isEmpty());
   }
 
   @Test
@@ -3015,6 +3156,164 @@ public class DefaultUnifiedRepositoryTest implements ApplicationContextAware {
     assertEquals(value5, savedMap.get(key5));
   }
 
+  @Test
+  public void testGetChildrenByMetadata() throws Exception {
+    login(sysAdminUserName, systemTenant, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    ITenant tenantAcme = tenantManager.createTenant(systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName, "Anonymous");
+    userRoleDao.createUser(tenantAcme, USERNAME_ADMIN, "password", "", new String[]{tenantAdminRoleName});
+
+    login(USERNAME_ADMIN, tenantAcme, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    userRoleDao.createUser(tenantAcme, USERNAME_SUZY, "password", "", null);
+
+    login(USERNAME_SUZY, tenantAcme, new String[]{tenantAuthenticatedRoleName});
+
+    final String parentFolderPath = ClientRepositoryPaths.getUserHomeFolderPath(USERNAME_SUZY);
+    RepositoryFile parentFolder = repo.getFile(parentFolderPath);
+    final String key = "lineage-id";
+
+    RepositoryFile file1 = createSampleFile(parentFolderPath, "a.sample", "a", true, 1, false);
+    RepositoryFile file2 = createSampleFile(parentFolderPath, "b.sample", "b", true, 2, false);
+    RepositoryFile file3 = createSampleFile(parentFolderPath, "c.sample", "c", true, 3, false);
+    RepositoryFile subFolder = repo.createFolder(parentFolder.getId(), new RepositoryFile.Builder("sub").folder(true)
+        .build(), null);
+    RepositoryFile nested = createSampleFile(subFolder.getPath(), "d.sample", "d", true, 4, false);
+    for (RepositoryFile file : new RepositoryFile[] { file1, file3, nested }) {
+      Map<String, Serializable> metadataMap = new HashMap<String, Serializable>();
+      metadataMap.put(key, "lineage1");
+      repo.setFileMetadata(file.getId(), metadataMap);
+    }
+    Map<String, Serializable> metadataMap = new HashMap<String, Serializable>();
+    metadataMap.put(key, "lineage2");
+    repo.setFileMetadata(file2.getId(), metadataMap);
+
+    // nested files are not children of the folder
+    List<RepositoryFile> children = repo.getChildrenByMetadata(parentFolder.getId(), key, "lineage1", 0, -1);
+    assertEquals(2, children.size());
+    assertEquals(file1.getId(), children.get(0).getId());
+    assertEquals(file3.getId(), children.get(1).getId());
+
+    children = repo.getChildrenByMetadata(parentFolder.getId(), key, "lineage1", 1, 1);
+    assertEquals(1, children.size());
+    assertEquals(file3.getId(), children.get(0).getId());
+
+    assertTrue(repo.getChildrenByMetadata(parentFolder.getId(), key, "lineage3", 0, -1).isEmpty());
+  }
+
+  @Test
+  public void testSearch() throws Exception {
+    login(sysAdminUserName, systemTenant, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    ITenant tenantAcme = tenantManager.createTenant(systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName, "Anonymous");
+    userRoleDao.createUser(tenantAcme, USERNAME_ADMIN, "password", "", new String[]{tenantAdminRoleName});
+
+    login(USERNAME_ADMIN, tenantAcme, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    userRoleDao.createUser(tenantAcme, USERNAME_SUZY, "password", "", null);
+
+    login(USERNAME_SUZY, tenantAcme, new String[]{tenantAuthenticatedRoleName});
+
+    final String parentFolderPath = ClientRepositoryPaths.getUserHomeFolderPath(USERNAME_SUZY);
+    RepositoryFile parentFolder = repo.getFile(parentFolderPath);
+    final String key = "lineage-id";
+
+    RepositoryFile sample = createSampleFile(parentFolderPath, "a.sample", "a", true, 1, false);
+    RepositoryFile report = createSimpleFile(parentFolder.getId(), "report.txt");
+    RepositoryFile sales = repo.createFile(parentFolder.getId(), new RepositoryFile.Builder("sales.txt").title(
+        RepositoryFile.DEFAULT_LOCALE, "Quarterly Sales").build(), new SimpleRepositoryFileData(
+        new ByteArrayInputStream("Hello World!".getBytes("UTF-8")), "UTF-8", "text/plain"), null);
+    RepositoryFile subFolder = repo.createFolder(parentFolder.getId(), new RepositoryFile.Builder("sub").folder(true)
+        .build(), null);
+    RepositoryFile nested = createSampleFile(subFolder.getPath(), "d.sample", "d", true, 4, false);
+    for (RepositoryFile file : new RepositoryFile[] { sample, nested }) {
+      Map<String, Serializable> metadataMap = new HashMap<String, Serializable>();
+      metadataMap.put(key, "lineage1");
+      repo.setFileMetadata(file.getId(), metadataMap);
+    }
+
+    RepositoryQuery.Builder home = new RepositoryQuery.Builder().path(parentFolderPath);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).metadata(key, "lineage1").build()),
+        sample, nested);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).path(subFolder.getPath())
+        .metadata(key, "lineage1").build()), nested);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).mimeType("text/plain").build()), report,
+        sales);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).title("sales").build()), sales);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).title("quarterly SALES").build()), sales);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).title("annual sales").build()));
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).name("*.SAMPLE").build()), sample,
+        nested);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).name("sub").includeFiles(false)
+        .build()), subFolder);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).name("sub").includeFolders(false)
+        .build()));
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).createdAfter(new Date(0)).name("*.txt")
+        .build()), report, sales);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).modifiedBefore(new Date(0)).build()));
+
+    // pages are taken from the sorted matches
+    List<RepositoryFile> all = repo.search(new RepositoryQuery.Builder(home.build()).mimeType("text/plain").build());
+    List<RepositoryFile> page = repo.search(new RepositoryQuery.Builder(home.build()).mimeType("text/plain")
+        .offset(1).limit(1).build());
+    assertEquals(1, page.size());
+    assertEquals(all.get(1).getId(), page.get(0).getId());
+
+    // punctuation alone matches nothing
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).text("?!*").build()));
+
+    // deleted files are kept in the trash below the home folder, but are not found
+    repo.deleteFile(report.getId(), null);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).mimeType("text/plain").build()), sales);
+    assertSearchResult(repo.search(new RepositoryQuery.Builder(home.build()).name("*.txt").build()), sales);
+  }
+
+  @Test
+  public void testSearchSkipsSystemFoldersForNonAdmin() throws Exception {
+    login(sysAdminUserName, systemTenant, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    ITenant tenantAcme = tenantManager.createTenant(systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName, "Anonymous");
+    userRoleDao.createUser(tenantAcme, USERNAME_ADMIN, "password", "", new String[]{tenantAdminRoleName});
+
+    login(USERNAME_ADMIN, tenantAcme, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
+    userRoleDao.createUser(tenantAcme, USERNAME_SUZY, "password", "", null);
+    // sorted ahead of the public file, so a page cut before the system folders are left out would be empty
+    createSimpleFile(repo.getFile(ClientRepositoryPaths.getEtcFolderPath()).getId(), "a.txt");
+    RepositoryFile publicFile = createSimpleFile(repo.getFile(ClientRepositoryPaths.getPublicFolderPath()).getId(),
+        "b.txt");
+
+    login(USERNAME_SUZY, tenantAcme, new String[]{tenantAuthenticatedRoleName});
+
+    DefaultUnifiedRepositoryWebService repoWs = new DefaultUnifiedRepositoryWebService(repo);
+    RepositoryQueryDto query = new RepositoryQueryDto();
+    query.setPath(ClientRepositoryPaths.getRootFolderPath());
+    query.setName("*.txt");
+    List<RepositoryFileDto> found = repoWs.search(query);
+    assertEquals(1, found.size());
+    assertEquals(publicFile.getId().toString(), found.get(0).getId());
+
+    query.setLimit(1);
+    found = repoWs.search(query);
+    assertEquals(1, found.size());
+    assertEquals(publicFile.getId().toString(), found.get(0).getId());
+
+    query.setPath(ClientRepositoryPaths.getEtcFolderPath());
+    try {
+      repoWs.search(query);
+      fail();
+    } catch (RuntimeException e) {
+      // non-admin users may not search the system folders
+    }
+  }
+
+  private void assertSearchResult(final List<RepositoryFile> actual, final RepositoryFile... expected) {
+    Set<Serializable> expectedIds = new HashSet<Serializable>();
+    for (RepositoryFile file : expected) {
+      expectedIds.add(file.getId());
+    }
+    Set<Serializable> actualIds = new HashSet<Serializable>();
+    for (RepositoryFile file : actual) {
+      actualIds.add(file.getId());
+    }
+    assertEquals(expected.length, actual.size());
+    assertEquals(expectedIds, actualIds);
+  }
+
   @Test
   public void testFileCreator() throws Exception {
     login(sysAdminUserName, systemTenant, new String[]{tenantAdminRoleName, tenantAuthenticatedRoleName});
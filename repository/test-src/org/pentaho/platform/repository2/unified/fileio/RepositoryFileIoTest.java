@@ -1,9 +1,15 @@
 package org.pentaho.platform.repository2.unified.fileio;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.pentaho.platform.repository2.unified.UnifiedRepositoryTestUtils.hasData;
@@ -11,13 +17,19 @@ import static org.pentaho.platform.repository2.unified.UnifiedRepositoryTestUtil
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.test.platform.engine.core.MicroPlatform;
 
@@ -115,6 +127,65 @@ public class RepositoryFileIoTest {
         argThat(hasData(expectedPayload, "application/octet-stream")), anyString());
   }
 
+  @Test
+  public void testWriteBinarySpilledToDisk() throws IOException {
+    final String fileName = "test-spill.bin";
+    final String filePath = publicDirPath + "/" + fileName;
+    IUnifiedRepository repo = mock(IUnifiedRepository.class);
+    // simulate request for publicDir
+    RepositoryFile publicDir = new RepositoryFile.Builder("123", ClientRepositoryPaths.getPublicFolderName()).folder(
+        true).build();
+    doReturn(publicDir).when(repo).getFile(publicDirPath);
+    // the spilled content is only readable while the repository is called
+    final List<byte[]> persisted = new ArrayList<byte[]>();
+    doAnswer(new Answer<RepositoryFile>() {
+      public RepositoryFile answer(InvocationOnMock invocation) throws Throwable {
+        SimpleRepositoryFileData data = (SimpleRepositoryFileData) invocation.getArguments()[2];
+        persisted.add(IOUtils.toByteArray(data.getInputStream()));
+        return null;
+      }
+    }).when(repo).createFile(eq("123"), any(RepositoryFile.class), any(IRepositoryFileData.class), anyString());
+    mp.defineInstance(IUnifiedRepository.class, repo);
+
+    final byte[] expectedPayload = "binary string larger than the threshold".getBytes();
+    RepositoryFileOutputStream rfos = new RepositoryFileOutputStream(filePath);
+    rfos.setSpillThreshold(8);
+    rfos.write(expectedPayload, 0, 4);
+    rfos.write(expectedPayload, 4, expectedPayload.length - 4);
+    assertEquals(expectedPayload.length, rfos.size());
+    assertArrayEquals(expectedPayload, rfos.toByteArray());
+    rfos.close();
+
+    assertEquals(1, persisted.size());
+    assertArrayEquals(expectedPayload, persisted.get(0));
+    assertEquals(0, rfos.size());
+  }
+
+  @Test
+  public void testSpilledContentIsDiscardedWhenStoringFails() throws IOException {
+    final String filePath = publicDirPath + "/test-spill-failure.bin";
+    IUnifiedRepository repo = mock(IUnifiedRepository.class);
+    RepositoryFile publicDir = new RepositoryFile.Builder("123", ClientRepositoryPaths.getPublicFolderName()).folder(
+        true).build();
+    doReturn(publicDir).when(repo).getFile(publicDirPath);
+    doThrow(new IllegalStateException("repository unavailable")).when(repo).createFile(eq("123"),
+        any(RepositoryFile.class), any(IRepositoryFileData.class), anyString());
+    mp.defineInstance(IUnifiedRepository.class, repo);
+
+    RepositoryFileOutputStream rfos = new RepositoryFileOutputStream(filePath);
+    rfos.setSpillThreshold(8);
+    rfos.write("binary string larger than the threshold".getBytes());
+    try {
+      rfos.close();
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    // the stream is closed and its temporary file gone
+    assertEquals(0, rfos.size());
+    rfos.close();
+  }
+
   @Test(expected = FileNotFoundException.class)
   public void testReadNonExistentPath() throws IOException {
     final String filePath = ClientRepositoryPaths.getPublicFolderPath() + "/doesnotexist";
@@ -0,0 +1,169 @@
+package org.pentaho.platform.repository2.unified.jcr;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import junit.framework.TestCase;
+
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+public class RepositoryFileMetadataCacheTest extends TestCase {
+
+  private static final String LOCALE = "en"; //$NON-NLS-1$
+
+  private RepositoryFileMetadataCache cache;
+
+  @Override
+  protected void setUp() throws Exception {
+    cache = new RepositoryFileMetadataCache(null, 3);
+  }
+
+  public void testHitAndMiss() {
+    RepositoryFile file = put("id1", "/pentaho/tenant0/public/a.prpt"); //$NON-NLS-1$ //$NON-NLS-2$
+    assertSame(file, cache.get("id1", LOCALE)); //$NON-NLS-1$
+    assertNull(cache.get("id1", "fr")); //$NON-NLS-1$ //$NON-NLS-2$
+    assertNull(cache.get("id2", LOCALE)); //$NON-NLS-1$
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  public void testEviction() {
+    put("id1", "/a"); //$NON-NLS-1$ //$NON-NLS-2$
+    put("id2", "/b"); //$NON-NLS-1$ //$NON-NLS-2$
+    put("id3", "/c"); //$NON-NLS-1$ //$NON-NLS-2$
+    // touch id1 so that id2 is the least recently used
+    cache.get("id1", LOCALE); //$NON-NLS-1$
+    put("id4", "/d"); //$NON-NLS-1$ //$NON-NLS-2$
+    assertEquals(3, cache.getSize());
+    assertEquals(1, cache.getEvictionCount());
+    assertNull(cache.get("id2", LOCALE)); //$NON-NLS-1$
+    assertNotNull(cache.get("id1", LOCALE)); //$NON-NLS-1$
+  }
+
+  public void testPropertyEventInvalidatesOwningFileAndAncestors() {
+    put("folder", "/pentaho/tenant0/public"); //$NON-NLS-1$ //$NON-NLS-2$
+    put("file", "/pentaho/tenant0/public/a.prpt"); //$NON-NLS-1$ //$NON-NLS-2$
+    put("sibling", "/pentaho/tenant0/public/b.prpt"); //$NON-NLS-1$ //$NON-NLS-2$
+    cache.onEvent(new StubEventIterator(new StubEvent(Event.PROPERTY_CHANGED,
+        "/pentaho/tenant0/public/a.prpt/pho:metadata/pho:contentCreator"))); //$NON-NLS-1$
+    assertNull(cache.get("file", LOCALE)); //$NON-NLS-1$
+    assertNull(cache.get("folder", LOCALE)); //$NON-NLS-1$
+    assertNotNull(cache.get("sibling", LOCALE)); //$NON-NLS-1$
+  }
+
+  public void testRemoveEventInvalidatesSubtree() {
+    put("folder", "/pentaho/tenant0/public/reports"); //$NON-NLS-1$ //$NON-NLS-2$
+    put("child", "/pentaho/tenant0/public/reports/a.prpt"); //$NON-NLS-1$ //$NON-NLS-2$
+    put("other", "/pentaho/tenant0/public/reports2"); //$NON-NLS-1$ //$NON-NLS-2$
+    cache.onEvent(new StubEventIterator(new StubEvent(Event.NODE_REMOVED, "/pentaho/tenant0/public/reports"))); //$NON-NLS-1$
+    assertNull(cache.get("folder", LOCALE)); //$NON-NLS-1$
+    assertNull(cache.get("child", LOCALE)); //$NON-NLS-1$
+    assertNotNull(cache.get("other", LOCALE)); //$NON-NLS-1$
+  }
+
+  public void testStalePutIsIgnored() {
+    long generation = cache.getGeneration();
+    cache.invalidate("unrelated"); //$NON-NLS-1$
+    cache.put("id1", "/a", LOCALE, file("id1", "/a"), generation); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    assertNull(cache.get("id1", LOCALE)); //$NON-NLS-1$
+  }
+
+  private RepositoryFile put(final String id, final String absPath) {
+    RepositoryFile file = file(id, absPath);
+    cache.put(id, absPath, LOCALE, file, cache.getGeneration());
+    return file;
+  }
+
+  private RepositoryFile file(final String id, final String absPath) {
+    return new RepositoryFile.Builder(id, absPath.substring(absPath.lastIndexOf('/') + 1)).path(absPath).build();
+  }
+
+  private static class StubEvent implements Event {
+    private final int type;
+
+    private final String path;
+
+    private StubEvent(final int type, final String path) {
+      this.type = type;
+      this.path = path;
+    }
+
+    public int getType() {
+      return type;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public String getUserID() {
+      return null;
+    }
+
+    public String getIdentifier() {
+      return null;
+    }
+
+    @SuppressWarnings("rawtypes")
+    public java.util.Map getInfo() {
+      return null;
+    }
+
+    public String getUserData() {
+      return null;
+    }
+
+    public long getDate() {
+      return 0;
+    }
+  }
+
+  private static class StubEventIterator implements EventIterator {
+    private final List<Event> events;
+
+    private final Iterator<Event> iter;
+
+    private int position;
+
+    private StubEventIterator(final Event... events) {
+      this.events = Arrays.asList(events);
+      this.iter = this.events.iterator();
+    }
+
+    public Event nextEvent() {
+      position++;
+      return iter.next();
+    }
+
+    public void skip(final long skipNum) {
+      for (long i = 0; i < skipNum; i++) {
+        nextEvent();
+      }
+    }
+
+    public long getSize() {
+      return events.size();
+    }
+
+    public long getPosition() {
+      return position;
+    }
+
+    public boolean hasNext() {
+      return iter.hasNext();
+    }
+
+    public Object next() {
+      return nextEvent();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
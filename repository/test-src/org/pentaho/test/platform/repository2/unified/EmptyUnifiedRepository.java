@@ -29,6 +29,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 
 /**
@@ -49,6 +50,12 @@ public class EmptyUnifiedRepository implements IUnifiedRepository {
     return null;
   }
 
+  @Override
+  public RepositoryFileTree getTree(final String path, final int depth, final String filter,
+      final boolean showHidden, final boolean showSystemFolders, final int offset, final int limit) {
+    return null;
+  }
+
   @Override
   public RepositoryFile getFileAtVersion(final Serializable fileId, final Serializable versionId) {
     return null;
@@ -137,6 +144,23 @@ public class EmptyUnifiedRepository implements IUnifiedRepository {
     return null;
   }
 
+  @Override
+  public List<RepositoryFile> getChildren(final Serializable folderId, final String filter, final int offset,
+      final int limit) {
+    return null;
+  }
+
+  @Override
+  public List<RepositoryFile> getChildrenByMetadata(final Serializable folderId, final String metadataKey,
+      final String value, final int offset, final int limit) {
+    return null;
+  }
+
+  @Override
+  public List<RepositoryFile> search(final RepositoryQuery query) {
+    return null;
+  }
+
   @Override
   public RepositoryFile updateFile(final RepositoryFile file, final IRepositoryFileData data,
       final String versionMessage) {
@@ -45,6 +45,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
@@ -179,6 +180,30 @@ public class MockUnifiedRepository implements IUnifiedRepository {
     return new RepositoryFileTree(rootFile, children);
   }
 
+  @Override
+  public RepositoryFileTree getTree(final String path, final int depth, final String filter,
+      final boolean showHidden, final boolean showSystemFolders, final int offset, final int limit) {
+    RepositoryFileTree tree = getTree(path, depth, filter, showHidden);
+    if (tree == null || tree.getChildren() == null) {
+      return tree;
+    }
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>();
+    for (RepositoryFileTree child : tree.getChildren()) {
+      if (showSystemFolders || !Boolean.TRUE.equals(getFileMetadata(child.getFile().getId()).get(SYSTEM_FOLDER))) {
+        children.add(child);
+      }
+    }
+    return new RepositoryFileTree(tree.getFile(), page(children, offset, limit));
+  }
+
+  private static <T> List<T> page(final List<T> list, final int offset, final int limit) {
+    if (offset >= list.size()) {
+      return new ArrayList<T>();
+    }
+    int toIndex = limit < 0 ? list.size() : (int) Math.min((long) offset + limit, list.size());
+    return new ArrayList<T>(list.subList(offset, toIndex));
+  }
+
   @Override
   public RepositoryFile getFileAtVersion(final Serializable fileId, final Serializable versionId) {
     return versionManager.getFileAtVersion(fileId, versionId).getFile();
@@ -421,6 +446,80 @@ public class MockUnifiedRepository implements IUnifiedRepository {
     return children;
   }
 
+  @Override
+  public List<RepositoryFile> getChildren(final Serializable folderId, final String filter, final int offset,
+      final int limit) {
+    List<RepositoryFile> children = getChildren(folderId, filter);
+    Collections.sort(children);
+    return page(children, offset, limit);
+  }
+
+  @Override
+  public List<RepositoryFile> getChildrenByMetadata(final Serializable folderId, final String metadataKey,
+      final String value, final int offset, final int limit) {
+    List<RepositoryFile> children = new ArrayList<RepositoryFile>();
+    for (RepositoryFile child : getChildren(folderId)) {
+      if (!child.isFolder() && value.equals(getFileMetadata(child.getId()).get(metadataKey))) {
+        children.add(child);
+      }
+    }
+    Collections.sort(children);
+    return page(children, offset, limit);
+  }
+
+  /**
+   * Walks the tree below the query path. Text is only matched against names, titles and descriptions.
+   */
+  @Override
+  public List<RepositoryFile> search(final RepositoryQuery query) {
+    List<RepositoryFile> files = new ArrayList<RepositoryFile>();
+    if (root.getFileRecord(query.getPath()) != null) {
+      RepositoryFileTree tree = getTree(query.getPath(), -1, null, true);
+      if (tree != null && tree.getChildren() != null) {
+        search(query, tree.getChildren(), files);
+      }
+    }
+    Collections.sort(files);
+    return page(files, query.getOffset(), query.getLimit());
+  }
+
+  private void search(final RepositoryQuery query, final List<RepositoryFileTree> trees,
+      final List<RepositoryFile> files) {
+    for (RepositoryFileTree tree : trees) {
+      RepositoryFile file = tree.getFile();
+      if (query.accepts(file) && matchesContent(query, file)) {
+        files.add(file);
+      }
+      if (tree.getChildren() != null) {
+        search(query, tree.getChildren(), files);
+      }
+    }
+  }
+
+  private boolean matchesContent(final RepositoryQuery query, final RepositoryFile file) {
+    if (query.getText() != null
+        && !RepositoryQuery.containsWords(file.getName() + " " + StringUtils.defaultString(file.getTitle()) + " " //$NON-NLS-1$ //$NON-NLS-2$
+            + StringUtils.defaultString(file.getDescription()), query.getText())) {
+      return false;
+    }
+    if (query.getMimeType() != null) {
+      IRepositoryFileData data = file.isFolder() ? null : root.getFileRecord(file.getPath()).getData();
+      if (!(data instanceof SimpleRepositoryFileData)
+          || !query.getMimeType().equals(((SimpleRepositoryFileData) data).getMimeType())) {
+        return false;
+      }
+    }
+    if (!query.getMetadata().isEmpty()) {
+      Map<String, Serializable> metadata = getFileMetadata(file.getId());
+      for (Map.Entry<String, String> entry : query.getMetadata().entrySet()) {
+        if (!entry.getValue().equals(metadata.get(entry.getKey()))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   private static boolean matches(final String in, final String pattern) {
     StringBuilder buf = new StringBuilder();
     // build a regex
@@ -29,6 +29,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryQuery;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 import org.springframework.util.Assert;
 
@@ -78,6 +79,12 @@ public class UnmodifiableRepository implements IUnifiedRepository {
     return repository.getTree(path, depth, filter, showHidden);
   }
 
+  @Override
+  public RepositoryFileTree getTree(final String path, final int depth, final String filter,
+      final boolean showHidden, final boolean showSystemFolders, final int offset, final int limit) {
+    return repository.getTree(path, depth, filter, showHidden, showSystemFolders, offset, limit);
+  }
+
   /**
    * Gets file as it was at the given version.
    *
@@ -319,6 +326,23 @@ public class UnmodifiableRepository implements IUnifiedRepository {
     return repository.getChildren(folderId, filter);
   }
 
+  @Override
+  public List<RepositoryFile> getChildren(final Serializable folderId, final String filter, final int offset,
+      final int limit) {
+    return repository.getChildren(folderId, filter, offset, limit);
+  }
+
+  @Override
+  public List<RepositoryFile> getChildrenByMetadata(final Serializable folderId, final String metadataKey,
+      final String value, final int offset, final int limit) {
+    return repository.getChildrenByMetadata(folderId, metadataKey, value, offset, limit);
+  }
+
+  @Override
+  public List<RepositoryFile> search(final RepositoryQuery query) {
+    return repository.search(query);
+  }
+
   /**
    * Updates a file and/or the data of a file.
    *
@@ -38,7 +38,7 @@ public class RefreshRepositoryCommand extends AbstractCommand {
   }
 
   protected void performOperation(final boolean feedback) {
-    RepositoryFileTreeManager.getInstance().fetchRepositoryFileTree(true,null, null, SolutionBrowserPanel.getInstance().getSolutionTree().isShowHiddenFiles());
+    RepositoryFileTreeManager.getInstance().fetchRepositoryFileTree(true, RepositoryFileTreeManager.LAZY_FETCH_DEPTH, null, SolutionBrowserPanel.getInstance().getSolutionTree().isShowHiddenFiles());
   }
 
   protected void performOperation() {
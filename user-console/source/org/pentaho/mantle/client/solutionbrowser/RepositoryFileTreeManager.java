@@ -17,7 +17,9 @@
 package org.pentaho.mantle.client.solutionbrowser;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.pentaho.gwt.widgets.client.filechooser.JsonToRepositoryFileTreeConverter;
 import org.pentaho.gwt.widgets.client.filechooser.RepositoryFile;
@@ -29,15 +31,32 @@ import com.google.gwt.http.client.RequestBuilder;
 import com.google.gwt.http.client.RequestCallback;
 import com.google.gwt.http.client.RequestException;
 import com.google.gwt.http.client.Response;
+import com.google.gwt.http.client.URL;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 
 public class RepositoryFileTreeManager {
   public static final String SEPARATOR = "/"; //$NON-NLS-1$
   public static final String FOLDER_HOME = "home"; //$NON-NLS-1$
+
+  /**
+   * Depth used by the browse perspective. Deeper folders are fetched with {@link #fetchChildren} when they are expanded
+   * instead of loading the whole repository up front.
+   */
+  public static final int LAZY_FETCH_DEPTH = 2;
+
   private ArrayList<IRepositoryFileTreeListener> listeners = new ArrayList<IRepositoryFileTreeListener>();
 
   private RepositoryFileTree fileTree;
+  /**
+   * Depth of the last full fetch; negative when the whole tree was fetched.
+   */
+  private int fileTreeDepth = -1;
+  /**
+   * Paths of folders whose children have been fetched (only used when {@link #fileTreeDepth} is not negative).
+   */
+  private Set<String> loadedFolderPaths = new HashSet<String>();
+  private Set<String> fetchingFolderPaths = new HashSet<String>();
   private List<RepositoryFile> trashItems;
   private static RepositoryFileTreeManager instance;
 
@@ -89,20 +108,100 @@ public class RepositoryFileTreeManager {
   }
 
   public void fetchRepositoryFileTree(final boolean forceReload, Integer depth, String filter, Boolean showHidden) {
-    if (forceReload || fileTree == null) {
+    if (forceReload || fileTree == null || !isFetched(depth)) {
       fetchRepositoryFileTree(null, depth, filter, showHidden);
     }
   }
 
   public void fetchRepositoryFileTree(final AsyncCallback<RepositoryFileTree> callback, final boolean forceReload, Integer depth, String filter,
       Boolean showHidden) {
-    if (forceReload || fileTree == null) {
+    if (forceReload || fileTree == null || !isFetched(depth)) {
       fetchRepositoryFileTree(callback, depth, filter, showHidden);
     } else {
       callback.onSuccess(fileTree);
     }
   }
 
+  /**
+   * Returns true if the cached tree was fetched at least as deep as the given depth (null meaning the whole tree).
+   */
+  private boolean isFetched(Integer depth) {
+    return fileTreeDepth < 0 || (depth != null && depth >= 0 && depth <= fileTreeDepth);
+  }
+
+  /**
+   * Returns true if the children of the given folder are part of the cached tree. Folders below the fetch depth are
+   * returned without children until {@link #fetchChildren} is called for them.
+   */
+  public boolean isLoaded(RepositoryFileTree folder) {
+    return fileTreeDepth < 0 || (folder != null && folder.getFile() != null && loadedFolderPaths.contains(folder.getFile().getPath()));
+  }
+
+  private void markLoaded(RepositoryFileTree tree, int depth) {
+    if (depth == 0 || tree == null || tree.getFile() == null || !tree.getFile().isFolder()) {
+      return;
+    }
+    loadedFolderPaths.add(tree.getFile().getPath());
+    if (tree.getChildren() != null) {
+      for (RepositoryFileTree child : tree.getChildren()) {
+        markLoaded(child, depth - 1);
+      }
+    }
+  }
+
+  /**
+   * Fetches the children of a folder that was below the fetch depth and grafts them onto the cached tree. The callback
+   * is not called if a fetch for the same folder is already in progress.
+   */
+  public void fetchChildren(final RepositoryFileTree folder, String filter, Boolean showHidden, final AsyncCallback<RepositoryFileTree> callback) {
+    final String path = folder.getFile().getPath();
+    if (isLoaded(folder)) {
+      callback.onSuccess(folder);
+      return;
+    }
+    if (!fetchingFolderPaths.add(path)) {
+      return;
+    }
+    if (filter == null) {
+      filter = "*"; //$NON-NLS-1$
+    }
+    if (showHidden == null) {
+      showHidden = Boolean.FALSE;
+    }
+    // fetch one extra level so that we know which of the children are empty folders
+    final int depth = 2;
+    String url = GWT.getHostPageBaseURL() + "api/repo/files/" + URL.encodePathSegment(path.replace(SEPARATOR, ":")) //$NON-NLS-1$ //$NON-NLS-2$
+        + "/children?depth=" + depth + "&filter=" + filter + "&showHidden=" + showHidden + "&ts=" + System.currentTimeMillis(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    RequestBuilder builder = new RequestBuilder(RequestBuilder.GET, url);
+    builder.setHeader("Accept", "application/json"); //$NON-NLS-1$ //$NON-NLS-2$
+    try {
+      builder.sendRequest(null, new RequestCallback() {
+
+        public void onError(Request request, Throwable exception) {
+          fetchingFolderPaths.remove(path);
+          callback.onFailure(exception);
+        }
+
+        public void onResponseReceived(Request request, Response response) {
+          fetchingFolderPaths.remove(path);
+          if (response.getStatusCode() == Response.SC_OK) {
+            RepositoryFileTree fetched = new JsonToRepositoryFileTreeConverter(response.getText()).getTree();
+            List<RepositoryFileTree> children = fetched.getChildren();
+            folder.setChildren(children != null ? children : new ArrayList<RepositoryFileTree>());
+            markLoaded(folder, depth);
+            callback.onSuccess(folder);
+          } else {
+            callback.onFailure(new Exception(response.getStatusText()));
+          }
+        }
+
+      });
+    } catch (RequestException e) {
+      fetchingFolderPaths.remove(path);
+      callback.onFailure(e);
+    }
+  }
+
   public void fetchRepositoryFileTree(final AsyncCallback<RepositoryFileTree> callback, Integer depth, String filter, Boolean showHidden) {
     // notify listeners that we are about to talk to the server (in case there's anything they want to do
     // such as busy cursor or tree loading indicators)
@@ -119,6 +218,7 @@ public class RepositoryFileTreeManager {
       showHidden = Boolean.FALSE;
     }
     url = url + "depth=" + depth + "&filter=" + filter + "&showHidden=" + showHidden + "&ts=" + System.currentTimeMillis(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    final int fetchDepth = depth;
     builder = new RequestBuilder(RequestBuilder.GET, url);
     builder.setHeader("Accept", "application/json");
 
@@ -135,6 +235,11 @@ public class RepositoryFileTreeManager {
         	
           final JsonToRepositoryFileTreeConverter converter = new JsonToRepositoryFileTreeConverter(response.getText());
           fileTree = converter.getTree();
+          fileTreeDepth = fetchDepth;
+          loadedFolderPaths.clear();
+          if (fetchDepth >= 0) {
+            markLoaded(fileTree, fetchDepth);
+          }
           
           
           String deletedFilesUrl = GWT.getHostPageBaseURL() + "api/repo/files/deleted?ts=" + System.currentTimeMillis();;
@@ -178,8 +178,11 @@ public class FilesListPanel extends FlowPanel implements IRepositoryFileTreeList
       // Get the user object. 
       RepositoryFileTree tree = (RepositoryFileTree) item.getUserObject();
       // Since we are only listing the files here. Get to each item of the tree and get the file from it
-      for(RepositoryFileTree treeItem :tree.getChildren()) {
-        files.add(treeItem.getFile());
+      // (children are null until a lazily fetched folder has been loaded; SolutionTree re-selects it then)
+      if (tree != null && tree.getChildren() != null) {
+        for(RepositoryFileTree treeItem :tree.getChildren()) {
+          files.add(treeItem.getFile());
+        }
       }
     }
     // let's sort this list based on localized name
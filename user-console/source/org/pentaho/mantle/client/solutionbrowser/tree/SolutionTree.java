@@ -52,6 +52,7 @@ import com.google.gwt.event.logical.shared.SelectionHandler;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Event;
 import com.google.gwt.user.client.Window;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.FocusPanel;
 import com.google.gwt.user.client.ui.Focusable;
 import com.google.gwt.user.client.ui.MenuBar;
@@ -99,7 +100,7 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, I
           Widget treeItemWidget = selectedItem.getWidget();
           if (selectedItem instanceof FileTreeItem) {
             RepositoryFile repositoryFile = ((FileTreeItem)selectedItem).getRepositoryFile();
-            if(repositoryFile.isHidden()) {
+            if (repositoryFile != null && repositoryFile.isHidden()) {
               ((LeafItemWidget) treeItemWidget).getLeafLabel().removeStyleDependentName("hiddenSelected"); //$NON-NLS-1$
               ((LeafItemWidget) treeItemWidget).getLeafLabel().addStyleDependentName("hidden"); //$NON-NLS-1$
             } else {
@@ -113,11 +114,14 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, I
           }
         }
         selectedItem = event.getSelectedItem();
+        if (selectedItem instanceof FileTreeItem) {
+          fetchChildren((FileTreeItem) selectedItem);
+        }
         if (selectedItem != null) {
           Widget treeItemWidget = selectedItem.getWidget();
           if (selectedItem instanceof FileTreeItem) {
             RepositoryFile repositoryFile = ((FileTreeItem)selectedItem).getRepositoryFile();
-            if(repositoryFile.isHidden()) {
+            if (repositoryFile != null && repositoryFile.isHidden()) {
               ((LeafItemWidget) treeItemWidget).getLeafLabel().removeStyleDependentName("hidden"); //$NON-NLS-1$
               ((LeafItemWidget) treeItemWidget).getLeafLabel().addStyleDependentName("hiddenSelected"); //$NON-NLS-1$
             } else {
@@ -137,6 +141,9 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, I
     // By default, expanding a node does not select it. Add that in here
     this.addOpenHandler(new OpenHandler<TreeItem>() {
       public void onOpen(OpenEvent<TreeItem> event) {
+        if (event.getTarget() instanceof FileTreeItem) {
+          fetchChildren((FileTreeItem) event.getTarget());
+        }
         SolutionTree.this.setSelectedItem(event.getTarget());
       }
     });
@@ -162,7 +169,8 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, I
         }
       }
     }
-    RepositoryFileTreeManager.getInstance().addRepositoryFileTreeListener(this, null, null, showHiddenFiles);
+    RepositoryFileTreeManager.getInstance().addRepositoryFileTreeListener(this, RepositoryFileTreeManager.LAZY_FETCH_DEPTH, null,
+        showHiddenFiles);
   }
 
   public void onBrowserEvent(Event event) {
@@ -315,13 +323,42 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, I
   }
 
   /**
-   * 
+   * Fetches the children of a folder that was below the fetch depth of the {@link RepositoryFileTreeManager} and adds
+   * them in place of the loading placeholder. Re-selects the item once loaded so that the files list is refreshed.
    */
+  private void fetchChildren(final FileTreeItem item) {
+    final RepositoryFileTree folder = (RepositoryFileTree) item.getUserObject();
+    if (folder == null || !folder.getFile().isFolder() || RepositoryFileTreeManager.getInstance().isLoaded(folder)) {
+      return;
+    }
+    RepositoryFileTreeManager.getInstance().fetchChildren(folder, null, isShowHiddenFiles(), new AsyncCallback<RepositoryFileTree>() {
+      public void onFailure(Throwable caught) {
+        Window.alert(caught.toString());
+      }
+
+      public void onSuccess(RepositoryFileTree result) {
+        item.removeItems();
+        buildSolutionTree(item, folder);
+        ArrayList<FileTreeItem> nodes = new ArrayList<FileTreeItem>();
+        nodes.add(item);
+        getAllNodes(item, nodes);
+        fixLeafNodes(nodes);
+        if (getSelectedItem() == item) {
+          setSelectedItem(item, true);
+        }
+      }
+    });
+  }
+
   private void fixLeafNodes() {
-    List<FileTreeItem> allNodes = getAllNodes();
-    for (FileTreeItem treeItem : allNodes) {
+    fixLeafNodes(getAllNodes());
+  }
+
+  private void fixLeafNodes(List<FileTreeItem> nodes) {
+    for (FileTreeItem treeItem : nodes) {
       RepositoryFileTree userObject = (RepositoryFileTree) treeItem.getUserObject();
-      if (userObject != null && userObject.getChildren().size() == 0) { // This is a leaf node so change the widget
+      if (userObject != null && RepositoryFileTreeManager.getInstance().isLoaded(userObject)
+          && (userObject.getChildren() == null || userObject.getChildren().size() == 0)) { // This is a leaf node so change the widget
         treeItem.setWidget(new LeafItemWidget(treeItem.getText(), "mantle/images/treeLeaf.png")); //$NON-NLS-1$
         DOM.setStyleAttribute(treeItem.getElement(), "paddingLeft", "0px"); //$NON-NLS-1$ //$NON-NLS-2$
       }
@@ -455,6 +492,9 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, I
 
   private void buildSolutionTree(FileTreeItem parentTreeItem, RepositoryFileTree repositoryFileTree) {
     List<RepositoryFileTree> children = repositoryFileTree.getChildren();
+    if (children == null) {
+      return;
+    }
     for (RepositoryFileTree treeItem : children) {
       RepositoryFile file = treeItem.getFile();
       boolean isDirectory = file.isFolder();
@@ -547,7 +587,14 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, I
          * files.add(file); }
          */
         if (isDirectory) {
-          buildSolutionTree(childTreeItem, treeItem);
+          if (RepositoryFileTreeManager.getInstance().isLoaded(treeItem)) {
+            buildSolutionTree(childTreeItem, treeItem);
+          } else {
+            // placeholder so that the folder can be expanded; replaced by fetchChildren
+            FileTreeItem loadingItem = new FileTreeItem(Messages.getString("loadingEllipsis")); //$NON-NLS-1$
+            loadingItem.setFileName(""); //$NON-NLS-1$
+            childTreeItem.addItem(loadingItem);
+          }
         } else {
           if (parentTreeItem != null) {
             parentTreeItem.removeItem(childTreeItem);